@@ -21,7 +21,10 @@ import org.openmrs.module.DaemonToken;
 import org.openmrs.module.DaemonTokenAware;
 import org.openmrs.module.Module;
 import org.openmrs.module.ModuleFactory;
+import org.openmrs.module.billing.api.ReceiptNumberGeneratorFactory;
 import org.openmrs.module.billing.api.billing.BillingEventListener;
+import org.openmrs.module.billing.api.billing.OrderBillingStrategyRegistry;
+import org.openmrs.module.billing.api.evaluator.ExemptionVariableRegistry;
 import org.openmrs.module.billing.web.CashierWebConstants;
 import org.openmrs.module.web.WebModuleUtil;
 
@@ -43,6 +46,9 @@ public class BillingModuleActivator extends BaseModuleActivator implements Daemo
 	public void contextRefreshed() {
 		log.info("OpenMRS Billing Module refreshed");
 		
+		rebuildOrderBillingStrategyRegistry();
+		rebuildExemptionVariableRegistry();
+		ReceiptNumberGeneratorFactory.refreshGenerators();
 		subscribeBillingEventListeners();
 	}
 	
@@ -65,11 +71,37 @@ public class BillingModuleActivator extends BaseModuleActivator implements Daemo
 		log.info("OpenMRS Billing Module stopped");
 	}
 	
+	/**
+	 * @see BaseModuleActivator#willStop()
+	 */
+	@Override
+	public void willStop() {
+		unsubscribeBillingEventListeners();
+	}
+	
 	@Override
 	public void willRefreshContext() {
 		unsubscribeBillingEventListeners();
 	}
 	
+	private void rebuildOrderBillingStrategyRegistry() {
+		try {
+			Context.getRegisteredComponent("orderBillingStrategyRegistry", OrderBillingStrategyRegistry.class).rebuild();
+		}
+		catch (Exception e) {
+			log.error("Failed to build the order billing strategy registry", e);
+		}
+	}
+	
+	private void rebuildExemptionVariableRegistry() {
+		try {
+			Context.getRegisteredComponent("exemptionVariableRegistry", ExemptionVariableRegistry.class).rebuild();
+		}
+		catch (Exception e) {
+			log.error("Failed to build the exemption variable registry", e);
+		}
+	}
+	
 	private void subscribeBillingEventListeners() {
 		if (daemonToken == null) {
 			log.error("Cannot subscribe billing event listeners: daemon token has not been set");
@@ -81,6 +113,7 @@ public class BillingModuleActivator extends BaseModuleActivator implements Daemo
 				listener.setDaemonToken(daemonToken);
 				Event.subscribe(listener.getSubscribedClass(), listener.getSubscribedAction().name(), listener);
 				subscribedListeners.add(listener);
+				listener.start();
 				log.info("Subscribed {} to {} {} events", listener.getClass().getSimpleName(),
 				    listener.getSubscribedClass().getSimpleName(), listener.getSubscribedAction());
 			}
@@ -94,6 +127,7 @@ public class BillingModuleActivator extends BaseModuleActivator implements Daemo
 		for (BillingEventListener listener : subscribedListeners) {
 			try {
 				Event.unsubscribe(listener.getSubscribedClass(), listener.getSubscribedAction(), listener);
+				listener.stop();
 				log.info("Unsubscribed {} from {} {} events", listener.getClass().getSimpleName(),
 				    listener.getSubscribedClass().getSimpleName(), listener.getSubscribedAction());
 			}
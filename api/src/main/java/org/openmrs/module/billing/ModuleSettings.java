@@ -37,8 +37,30 @@ public class ModuleSettings {
 	
 	public static final String SYSTEM_RECEIPT_NUMBER_GENERATOR = "billing.systemReceiptNumberGenerator";
 	
+	public static final String RECEIPT_NUMBER_ASSIGNMENT_PROPERTY = "billing.receiptNumberAssignment";
+	
 	public static final String SEQUENCE_BLOCK_SIZE_PROPERTY = "billing.sequenceBlockSize";
 	
+	public static final String SEQUENCE_MIN_BLOCK_SIZE_PROPERTY = "billing.sequenceMinBlockSize";
+	
+	public static final String SEQUENCE_MAX_BLOCK_SIZE_PROPERTY = "billing.sequenceMaxBlockSize";
+	
+	public static final String SEQUENCE_PREFETCH_THRESHOLD_PROPERTY = "billing.sequencePrefetchThreshold";
+	
+	public static final String ORDER_BILLING_QUEUE_CAPACITY_PROPERTY = "billing.orderBilling.queueCapacity";
+	
+	public static final String ORDER_BILLING_WORKER_COUNT_PROPERTY = "billing.orderBilling.workerCount";
+	
+	public static final String ORDER_BILLING_BATCH_SIZE_PROPERTY = "billing.orderBilling.batchSize";
+	
+	public static final String ORDER_BILLING_COALESCE_BILLS_PROPERTY = "billing.orderBilling.coalesceBills";
+	
+	public static final String ORDER_BILLING_DRUG_PRICE_CACHE_SIZE_PROPERTY = "billing.orderBilling.drugPriceCacheSize";
+	
+	public static final String PAGING_COUNT_CACHE_SECONDS_PROPERTY = "billing.pagingCountCacheSeconds";
+	
+	public static final String BILL_LOOKUP_CACHE_SIZE_PROPERTY = "billing.billLookupCacheSize";
+	
 	public static final String ADJUSTMENT_REASON_FIELD = "billing.adjustmentReasonField";
 	
 	public static final String ALLOW_BILL_ADJUSTMENT = "billing.allowBillAdjustments";
@@ -65,6 +87,8 @@ public class ModuleSettings {
 	
 	public static final String PATIENT_PAYMENT_STATUS_RESOLVER = "billing.patientPaymentStatusResolver";
 	
+	public static final String PATIENT_PAYMENT_STATUS_CACHE_SIZE_PROPERTY = "billing.patientPaymentStatusCacheSize";
+	
 	private static final AdministrationService administrationService;
 	
 	static {
@@ -11,6 +11,7 @@ package org.openmrs.module.billing.api;
 
 import org.openmrs.Concept;
 import org.openmrs.module.billing.api.model.BillExemption;
+import org.openmrs.module.billing.api.model.BillExemptionRule;
 import org.openmrs.module.billing.api.model.ExemptionType;
 
 import java.util.List;
@@ -26,4 +27,15 @@ public interface BillExemptionService {
 	List<BillExemption> getExemptionsByConcept(Concept concept, ExemptionType itemType, boolean includeRetired);
 	
 	List<BillExemption> getExemptionsByItemType(ExemptionType itemType, boolean includeRetired);
+	
+	/**
+	 * Returns the non-voided rules of the non-retired exemptions for a concept and exemption type. The
+	 * rules are served from an in-memory catalog that is rebuilt after an exemption is saved, so this
+	 * does not query the database on every call. The returned rules are read-only copies.
+	 *
+	 * @param concept the concept being billed
+	 * @param itemType the exemption type to match
+	 * @return the active rules, or an empty list if there are none
+	 */
+	List<BillExemptionRule> getActiveExemptionRules(Concept concept, ExemptionType itemType);
 }
@@ -9,14 +9,24 @@
  */
 package org.openmrs.module.billing.api;
 
+import org.openmrs.Patient;
+import org.openmrs.Visit;
 import org.openmrs.annotation.Authorized;
 import org.openmrs.api.OpenmrsService;
+import org.openmrs.module.billing.api.base.KeysetPagingInfo;
 import org.openmrs.module.billing.api.base.PagingInfo;
 import org.openmrs.module.billing.api.model.Bill;
+import org.openmrs.module.billing.api.model.BillLookupStatistics;
+import org.openmrs.module.billing.api.model.BillStatus;
+import org.openmrs.module.billing.api.model.BillSummary;
+import org.openmrs.module.billing.api.model.CashPoint;
+import org.openmrs.module.billing.api.search.BillFetchPlan;
 import org.openmrs.module.billing.api.search.BillSearch;
 import org.openmrs.module.billing.api.util.PrivilegeConstants;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Service interface for managing billing operations
@@ -46,6 +56,17 @@ public interface BillService extends OpenmrsService {
 	@Authorized(PrivilegeConstants.VIEW_BILLS)
 	Bill getBillByUuid(String uuid);
 	
+	/**
+	 * Retrieves a bill by its UUID, loading the associations of a fetch plan in the same query.
+	 *
+	 * @param uuid the UUID of the bill
+	 * @param fetchPlan the associations to load with the bill, or null for the mapped defaults
+	 * @return the bill with the specified UUID, or null if not found
+	 * @throws org.openmrs.api.APIAuthenticationException if the user lacks VIEW_BILLS privilege
+	 */
+	@Authorized(PrivilegeConstants.VIEW_BILLS)
+	Bill getBillByUuid(String uuid, BillFetchPlan fetchPlan);
+	
 	/**
 	 * Retrieves a bill by its receipt number.
 	 *
@@ -56,6 +77,17 @@ public interface BillService extends OpenmrsService {
 	@Authorized(PrivilegeConstants.VIEW_BILLS)
 	Bill getBillByReceiptNumber(String receiptNumber);
 	
+	/**
+	 * Returns how often {@link #getBillByUuid(String)} and {@link #getBillByReceiptNumber(String)}
+	 * loaded the bill by its remembered id from the session or the second-level cache rather than
+	 * querying for it.
+	 *
+	 * @return the lookup statistics since startup
+	 * @throws org.openmrs.api.APIAuthenticationException if the user lacks VIEW_BILLS privilege
+	 */
+	@Authorized(PrivilegeConstants.VIEW_BILLS)
+	BillLookupStatistics getBillLookupStatistics();
+	
 	/**
 	 * Retrieves all bills for a specific patient.
 	 *
@@ -73,16 +105,51 @@ public interface BillService extends OpenmrsService {
 	 * By default, voided bills are excluded from search results unless explicitly included via
 	 * {@link BillSearch#setIncludeVoided(Boolean)}.
 	 * </p>
+	 * <p>
+	 * Bills are ordered newest first unless {@link BillSearch#getSortOrder()} asks for the largest
+	 * balances first. When {@code pagingInfo} is a
+	 * {@link org.openmrs.module.billing.api.base.KeysetPagingInfo} the page is found by seeking past
+	 * the previous page's last bill rather than by offset, and the token for the next page is set on
+	 * it; this only works for bills ordered newest first.
+	 * </p>
 	 *
 	 * @param billSearch the search criteria
 	 * @param pagingInfo optional paging information (can be null for no paging)
 	 * @return a list of bills matching the search criteria, or an empty list if none found
 	 * @throws org.openmrs.api.APIAuthenticationException if the user lacks VIEW_BILLS privilege
+	 * @throws IllegalArgumentException if keyset paging is asked for bills that are not ordered newest
+	 *             first
 	 * @see BillSearch
 	 */
 	@Authorized(PrivilegeConstants.VIEW_BILLS)
 	List<Bill> getBills(BillSearch billSearch, PagingInfo pagingInfo);
 	
+	/**
+	 * Searches for bills like {@link #getBills(BillSearch, PagingInfo)} and returns a summary of each:
+	 * its receipt number, patient, status, total, amount after discount, payments and date. The
+	 * amounts are the totals stored on each bill, so list screens get them without loading any bill.
+	 *
+	 * @param billSearch the search criteria
+	 * @param pagingInfo optional paging information (can be null for no paging)
+	 * @return the summaries of the matching bills, in the order of the search, or an empty list if
+	 *         none found
+	 * @throws org.openmrs.api.APIAuthenticationException if the user lacks VIEW_BILLS privilege
+	 */
+	@Authorized(PrivilegeConstants.VIEW_BILLS)
+	List<BillSummary> getBillSummaries(BillSearch billSearch, PagingInfo pagingInfo);
+	
+	/**
+	 * Finds which of the given patients have at least one non-voided bill, optionally in one of the
+	 * given statuses. The bills are checked by the database, so none of them are loaded.
+	 *
+	 * @param patientIds the ids of the patients to check
+	 * @param statuses the bill statuses to look for, or null or empty for any status
+	 * @return the ids of the patients that have such a bill, or an empty set if none do
+	 * @throws org.openmrs.api.APIAuthenticationException if the user lacks VIEW_BILLS privilege
+	 */
+	@Authorized(PrivilegeConstants.VIEW_BILLS)
+	Set<Integer> getPatientIdsWithBills(Collection<Integer> patientIds, Collection<BillStatus> statuses);
+	
 	/**
 	 * Generates and downloads a receipt for the specified bill.
 	 *
@@ -153,4 +220,36 @@ public interface BillService extends OpenmrsService {
 	@Authorized(PrivilegeConstants.VIEW_BILLS)
 	boolean isBillEditable(Bill bill);
 	
+	/**
+	 * Retrieves the patient's non-voided PENDING bill for the given visit and cash point, locking it
+	 * for update.
+	 * <p>
+	 * The visit row is locked first, so concurrent callers for the same visit are serialized until the
+	 * current transaction ends. This lets a caller append to the returned bill, or create a new one
+	 * when none exists, without racing another transaction into a duplicate bill. The lookup and the
+	 * save must therefore run in the same transaction.
+	 * </p>
+	 *
+	 * @param patient the patient the bill belongs to
+	 * @param visit the visit the bill is attached to
+	 * @param cashPoint the cash point the bill is assigned to
+	 * @return the pending bill, or null if none exists or any argument is null
+	 * @throws org.openmrs.api.APIAuthenticationException if the user lacks MANAGE_BILLS privilege
+	 */
+	@Authorized(PrivilegeConstants.MANAGE_BILLS)
+	Bill getPendingBillForUpdate(Patient patient, Visit visit, CashPoint cashPoint);
+	
+	/**
+	 * Checks that the stored totals of a page of bills, voided ones included, match their line items,
+	 * payments and discounts, and corrects those that do not. The stored totals are normally kept
+	 * current on every save, so a correction means a bill was changed outside the API.
+	 *
+	 * @param pagingInfo the page of bills to check, newest first; the token for the next page is set
+	 *            on it when more bills remain
+	 * @return the number of bills whose stored totals were corrected
+	 * @throws org.openmrs.api.APIAuthenticationException if the user lacks MANAGE_BILLS privilege
+	 */
+	@Authorized(PrivilegeConstants.MANAGE_BILLS)
+	int checkBillTotals(KeysetPagingInfo pagingInfo);
+	
 }
@@ -112,6 +112,17 @@ public interface CashPointService extends OpenmrsService {
 	@Authorized({ PrivilegeConstants.MANAGE_METADATA })
 	List<CashPoint> getAllCashPoints(boolean includeRetired);
 	
+	/**
+	 * Finds the cash point that serves the specified location: a non-retired cash point at the
+	 * location or at its closest ancestor, otherwise the first non-retired cash point. The mapping is
+	 * held in memory and refreshed when cash points are saved, retired, unretired or purged.
+	 *
+	 * @param location the location to find a cash point for, may be null
+	 * @return the cash point serving the location, or {@code null} if there are no active cash points
+	 */
+	@Authorized({ PrivilegeConstants.MANAGE_METADATA })
+	CashPoint resolveCashPoint(Location location);
+	
 	/**
 	 * Saves or updates the specified cash point.
 	 *
@@ -9,11 +9,17 @@
  */
 package org.openmrs.module.billing.api;
 
+import java.util.Date;
 import java.util.List;
 
+import org.openmrs.annotation.Authorized;
+import org.openmrs.module.billing.api.base.PagingInfo;
 import org.openmrs.module.billing.api.base.entity.IObjectDataService;
 import org.openmrs.module.billing.api.model.GroupSequence;
+import org.openmrs.module.billing.api.model.SequenceGroupStatistics;
+import org.openmrs.module.billing.api.model.SequenceUsageSnapshot;
 import org.openmrs.module.billing.api.model.SequentialReceiptNumberGeneratorModel;
+import org.openmrs.module.billing.api.util.PrivilegeConstants;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -52,6 +58,7 @@ public interface ISequentialReceiptNumberGeneratorService extends IObjectDataSer
 	 * @should Continue from the persisted value for an existing group
 	 * @should Reserve a new block when the pool is drained
 	 * @should Use the block size from the global property
+	 * @should Hand out every value exactly once across several nodes
 	 * @should Throw IllegalArgumentException if the group is null
 	 */
 	@Transactional
@@ -74,6 +81,41 @@ public interface ISequentialReceiptNumberGeneratorService extends IObjectDataSer
 	@Transactional(propagation = Propagation.REQUIRES_NEW)
 	int reserveSequenceBlock(String group, int blockSize);
 	
+	/**
+	 * Gets the current block size and refill frequency of each sequence group this server has
+	 * reserved values for since startup, with how many values it reserved, issued and abandoned, how
+	 * long its refills took and how often callers contended for its pool.
+	 *
+	 * @return The statistics of each group, ordered by group.
+	 * @should Count the reserved, issued and abandoned values of each group
+	 */
+	@Transactional(readOnly = true)
+	@Authorized({ PrivilegeConstants.VIEW_METADATA })
+	List<SequenceGroupStatistics> getSequenceStatistics();
+	
+	/**
+	 * Persists a {@link SequenceUsageSnapshot} of the statistics of each sequence group that was used
+	 * on this server since its previous snapshot. This is run periodically by the sequence usage
+	 * snapshot task and once more when the service shuts down.
+	 *
+	 * @return The saved snapshots.
+	 */
+	@Transactional
+	@Authorized({ PrivilegeConstants.MANAGE_METADATA })
+	List<SequenceUsageSnapshot> saveSequenceUsageSnapshots();
+	
+	/**
+	 * Gets the persisted usage snapshots of all servers, oldest first.
+	 *
+	 * @param group The sequence group, or null for all groups.
+	 * @param since The earliest snapshot date, or null for all snapshots.
+	 * @param pagingInfo The paging information, or null for all matching snapshots.
+	 * @return The matching snapshots.
+	 */
+	@Transactional(readOnly = true)
+	@Authorized({ PrivilegeConstants.VIEW_METADATA })
+	List<SequenceUsageSnapshot> getSequenceUsageSnapshots(String group, Date since, PagingInfo pagingInfo);
+	
 	/**
 	 * Returns all sequences.
 	 *
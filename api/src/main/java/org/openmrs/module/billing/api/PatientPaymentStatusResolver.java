@@ -12,7 +12,27 @@ package org.openmrs.module.billing.api;
 import org.openmrs.Patient;
 import org.openmrs.module.billing.api.model.PatientPaymentStatusResult;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public interface PatientPaymentStatusResolver {
 	
 	PatientPaymentStatusResult resolve(Patient patient);
+	
+	/**
+	 * Resolves the payment status of many patients in one call, such as everyone on a ward list.
+	 * Resolvers that can look the patients up together should override this; by default each patient
+	 * is resolved on its own.
+	 *
+	 * @param patients the patients to resolve
+	 * @return the result for each patient, in the order the patients were given
+	 */
+	default Map<Patient, PatientPaymentStatusResult> resolveAll(Collection<Patient> patients) {
+		Map<Patient, PatientPaymentStatusResult> results = new LinkedHashMap<>();
+		for (Patient patient : patients) {
+			results.put(patient, resolve(patient));
+		}
+		return results;
+	}
 }
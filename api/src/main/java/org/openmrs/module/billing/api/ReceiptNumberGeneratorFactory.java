@@ -9,9 +9,18 @@
  */
 package org.openmrs.module.billing.api;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
@@ -19,7 +28,7 @@ import org.openmrs.GlobalProperty;
 import org.openmrs.api.APIException;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.billing.ModuleSettings;
-import org.reflections.Reflections;
+import org.openmrs.util.OpenmrsClassLoader;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -29,8 +38,16 @@ import org.springframework.transaction.annotation.Transactional;
 @Slf4j
 public class ReceiptNumberGeneratorFactory {
 	
+	/**
+	 * The resource listing the {@link IReceiptNumberGenerator} implementations of a module, one fully
+	 * qualified class name per line.
+	 */
+	public static final String GENERATOR_INDEX = "META-INF/services/org.openmrs.module.billing.api.IReceiptNumberGenerator";
+	
 	private static volatile IReceiptNumberGenerator generator;
 	
+	private static volatile List<Class<? extends IReceiptNumberGenerator>> generatorClasses;
+	
 	protected ReceiptNumberGeneratorFactory() {
 	}
 	
@@ -101,28 +118,20 @@ public class ReceiptNumberGeneratorFactory {
 	}
 	
 	/**
-	 * Locates and instantiates all classes that implement {@link IReceiptNumberGenerator} in the
-	 * current classpath.
+	 * Instantiates all public, concrete classes that implement {@link IReceiptNumberGenerator}. The
+	 * classes are those listed in the {@value #GENERATOR_INDEX} index of any module and those of the
+	 * generators registered as Spring beans. They are looked up once and cached until
+	 * {@link #refreshGenerators()} is called when the modules are refreshed.
 	 *
 	 * @return The instantiated receipt number generators.
 	 * @should Locate all classes that implement IReceiptNumberGenerator
 	 * @should Not throw an exception if the class instantiation fails
 	 * @should Use the existing instance for the currently defined generator
+	 * @should Look up the generator classes only once until refreshed
 	 */
 	public static IReceiptNumberGenerator[] locateGenerators() {
-		// Search for any modules that define classes which implement the IReceiptNumberGenerator interface
-		Reflections reflections = new Reflections("org.openmrs.module");
-		List<Class<? extends IReceiptNumberGenerator>> classes = new ArrayList<Class<? extends IReceiptNumberGenerator>>();
-		for (Class<? extends IReceiptNumberGenerator> cls : reflections.getSubTypesOf(IReceiptNumberGenerator.class)) {
-			// We only care about public instantiable classes so ignore others
-			if (!cls.isInterface() && !Modifier.isAbstract(cls.getModifiers()) && Modifier.isPublic(cls.getModifiers())) {
-				classes.add(cls);
-			}
-		}
-		
-		// Now attempt to instantiate each found class
 		List<IReceiptNumberGenerator> instances = new ArrayList<IReceiptNumberGenerator>();
-		for (Class<? extends IReceiptNumberGenerator> cls : classes) {
+		for (Class<? extends IReceiptNumberGenerator> cls : getGeneratorClasses()) {
 			if (generator != null && cls.equals(generator.getClass())) {
 				instances.add(generator);
 			} else {
@@ -143,12 +152,98 @@ public class ReceiptNumberGeneratorFactory {
 		return results;
 	}
 	
+	/**
+	 * Discards the cached generator classes so that the next {@link #locateGenerators()} looks them up
+	 * again. The module activator calls this whenever the context is refreshed.
+	 */
+	public static synchronized void refreshGenerators() {
+		generatorClasses = null;
+	}
+	
+	private static List<Class<? extends IReceiptNumberGenerator>> getGeneratorClasses() {
+		List<Class<? extends IReceiptNumberGenerator>> classes = generatorClasses;
+		if (classes == null) {
+			classes = loadGeneratorClasses();
+		}
+		
+		return classes;
+	}
+	
+	private static synchronized List<Class<? extends IReceiptNumberGenerator>> loadGeneratorClasses() {
+		if (generatorClasses != null) {
+			return generatorClasses;
+		}
+		
+		Set<Class<? extends IReceiptNumberGenerator>> classes = new LinkedHashSet<Class<? extends IReceiptNumberGenerator>>();
+		ClassLoader classLoader = OpenmrsClassLoader.getInstance();
+		for (String className : readGeneratorIndex(classLoader)) {
+			try {
+				Class<?> cls = Class.forName(className, false, classLoader);
+				if (IReceiptNumberGenerator.class.isAssignableFrom(cls)) {
+					classes.add(cls.asSubclass(IReceiptNumberGenerator.class));
+				} else {
+					log.warn("Ignoring '{}' in {}; it does not implement IReceiptNumberGenerator.", className,
+					    GENERATOR_INDEX);
+				}
+			}
+			catch (ClassNotFoundException | LinkageError ex) {
+				log.warn("Ignoring '{}' in {}; the class could not be loaded.", className, GENERATOR_INDEX, ex);
+			}
+		}
+		for (IReceiptNumberGenerator registered : Context.getRegisteredComponents(IReceiptNumberGenerator.class)) {
+			classes.add(registered.getClass());
+		}
+		
+		List<Class<? extends IReceiptNumberGenerator>> result = new ArrayList<Class<? extends IReceiptNumberGenerator>>();
+		for (Class<? extends IReceiptNumberGenerator> cls : classes) {
+			// We only care about public instantiable classes so ignore others
+			if (!cls.isInterface() && !Modifier.isAbstract(cls.getModifiers()) && Modifier.isPublic(cls.getModifiers())) {
+				result.add(cls);
+			}
+		}
+		
+		generatorClasses = Collections.unmodifiableList(result);
+		log.info("Located receipt number generators: {}", result);
+		
+		return generatorClasses;
+	}
+	
+	// Reads the class names from every copy of the index, in the format used by ServiceLoader
+	private static Set<String> readGeneratorIndex(ClassLoader classLoader) {
+		Set<String> classNames = new LinkedHashSet<String>();
+		try {
+			Enumeration<URL> indexes = classLoader.getResources(GENERATOR_INDEX);
+			while (indexes.hasMoreElements()) {
+				URL index = indexes.nextElement();
+				try (BufferedReader reader = new BufferedReader(
+				        new InputStreamReader(index.openStream(), StandardCharsets.UTF_8))) {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						String className = StringUtils.substringBefore(line, "#").trim();
+						if (!className.isEmpty()) {
+							classNames.add(className);
+						}
+					}
+				}
+				catch (IOException ex) {
+					log.warn("Could not read the receipt number generator index {}.", index, ex);
+				}
+			}
+		}
+		catch (IOException ex) {
+			log.warn("Could not locate the receipt number generator indexes.", ex);
+		}
+		
+		return classNames;
+	}
+	
 	/**
 	 * Resets this factory, effectively creating a new instance. If you are using this for anything
 	 * other than testing you are likely doing something wrong.
 	 */
 	static void reset() {
 		generator = null;
+		refreshGenerators();
 	}
 	
 	/**
@@ -0,0 +1,269 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+import org.openmrs.module.billing.api.model.Bill;
+import org.openmrs.module.billing.api.model.SequentialReceiptNumberGeneratorModel;
+import org.openmrs.patient.impl.LuhnIdentifierValidator;
+
+/**
+ * The receipt number layout of a {@link SequentialReceiptNumberGeneratorModel}, compiled once so that
+ * formatting a number allocates little more than the resulting string. The date prefix is formatted
+ * once per day or second, numbers are built in a reusable per-thread buffer, and the Luhn check digit
+ * is summed from the counter's digits and the precomputed sums of the other parts instead of
+ * re-scanning the number.
+ * <p>
+ * The numbers are the same as those built by concatenating the parts and passing the number without
+ * separators to {@link LuhnIdentifierValidator}. When the separator could be confused with part of
+ * the number (it contains a digit or shares a character with a prefix), or a prefix has characters
+ * the validator rejects, the sequence group and check digit are still computed that way.
+ * </p>
+ * <p>
+ * Instances are immutable apart from the cached date prefix and safe to share between threads.
+ * </p>
+ */
+final class ReceiptNumberTemplate {
+	
+	// The characters accepted by LuhnIdentifierValidator
+	private static final String CHECK_DIGIT_CHARACTERS = "0123456789ABCDEFGHIJKLMNOPQRSTUVYWXZ_";
+	
+	private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(32));
+	
+	private final SequentialReceiptNumberGenerator.GroupingType groupingType;
+	
+	private final String separator;
+	
+	private final String cashierPrefix;
+	
+	private final String cashPointPrefix;
+	
+	private final int padding;
+	
+	private final boolean includeCheckDigit;
+	
+	private final DateTimeFormatter dateFormat;
+	
+	private final ChronoUnit dateUnit;
+	
+	private final Clock clock;
+	
+	private final boolean plain;
+	
+	private final LuhnIdentifierValidator checkDigitValidator = new LuhnIdentifierValidator();
+	
+	private volatile DatePrefix datePrefix;
+	
+	ReceiptNumberTemplate(SequentialReceiptNumberGeneratorModel model, Clock clock) {
+		this.groupingType = model.getGroupingType();
+		this.separator = model.getSeparator();
+		this.cashierPrefix = model.getCashierPrefix();
+		this.cashPointPrefix = model.getCashPointPrefix();
+		this.padding = model.getSequencePadding();
+		this.includeCheckDigit = model.getIncludeCheckDigit();
+		this.clock = clock;
+		
+		switch (model.getSequenceType()) {
+			case DATE_COUNTER:
+				dateFormat = DateTimeFormatter.ofPattern("yyMMdd");
+				dateUnit = ChronoUnit.DAYS;
+				break;
+			case DATE_TIME_COUNTER:
+				dateFormat = DateTimeFormatter.ofPattern("yyMMddHHmmss");
+				dateUnit = ChronoUnit.SECONDS;
+				break;
+			default:
+				dateFormat = null;
+				dateUnit = null;
+				break;
+		}
+		
+		plain = isPlain(separator, cashierPrefix) && isPlain(separator, cashPointPrefix);
+	}
+	
+	/**
+	 * @param bill the bill being numbered
+	 * @return the group whose sequence numbers the bill: its grouping without separators
+	 */
+	String getSequenceGroup(Bill bill) {
+		StringBuilder buffer = BUFFER.get();
+		buffer.setLength(0);
+		if (plain) {
+			appendGrouping(buffer, bill, "");
+			return buffer.toString();
+		}
+		
+		appendGrouping(buffer, bill, separator);
+		return separator.isEmpty() ? buffer.toString() : buffer.toString().replace(separator, "");
+	}
+	
+	/**
+	 * @param bill the bill being numbered
+	 * @param sequenceGroup the bill's {@link #getSequenceGroup(Bill) sequence group}
+	 * @param sequence the value reserved from the group's sequence
+	 * @return the receipt number
+	 */
+	String format(Bill bill, String sequenceGroup, int sequence) {
+		StringBuilder buffer = BUFFER.get();
+		buffer.setLength(0);
+		
+		appendGrouping(buffer, bill, separator);
+		if (buffer.length() > 0) {
+			buffer.append(separator);
+		}
+		
+		DatePrefix prefix = getDatePrefix();
+		if (prefix != null) {
+			buffer.append(prefix.text);
+		}
+		
+		for (int digits = countDigits(sequence); digits < padding; digits++) {
+			buffer.append('0');
+		}
+		buffer.append(sequence);
+		
+		if (includeCheckDigit) {
+			char checkDigit;
+			if (plain) {
+				checkDigit = computeCheckDigit(sequenceGroup, prefix, sequence);
+			} else {
+				String identifier = checkDigitValidator.getValidIdentifier(separator.isEmpty() ? buffer.toString()
+				        : buffer.toString().replace(separator, ""));
+				checkDigit = identifier.charAt(identifier.length() - 1);
+			}
+			buffer.append(separator).append(checkDigit);
+		}
+		
+		return buffer.toString();
+	}
+	
+	private void appendGrouping(StringBuilder buffer, Bill bill, String groupSeparator) {
+		switch (groupingType) {
+			case CASHIER:
+				appendId(buffer.append(cashierPrefix), bill.getCashier().getId());
+				break;
+			case CASH_POINT:
+				appendId(buffer.append(cashPointPrefix), bill.getCashPoint().getId());
+				break;
+			case CASHIER_AND_CASH_POINT:
+				appendId(buffer.append(cashierPrefix), bill.getCashier().getId()).append(groupSeparator);
+				appendId(buffer.append(cashPointPrefix), bill.getCashPoint().getId());
+				break;
+			default:
+				break;
+		}
+	}
+	
+	// Appends the id's digits without creating a string for them
+	private static StringBuilder appendId(StringBuilder buffer, Integer id) {
+		return id == null ? buffer.append((Object) null) : buffer.append(id.intValue());
+	}
+	
+	private DatePrefix getDatePrefix() {
+		if (dateFormat == null) {
+			return null;
+		}
+		
+		long now = clock.millis();
+		DatePrefix current = datePrefix;
+		if (current == null || now < current.validFrom || now >= current.validUntil) {
+			ZonedDateTime start = Instant.ofEpochMilli(now).atZone(clock.getZone()).truncatedTo(dateUnit);
+			current = new DatePrefix(dateFormat.format(start), start.toInstant().toEpochMilli(),
+			        start.plus(1, dateUnit).toInstant().toEpochMilli());
+			datePrefix = current;
+		}
+		
+		return current;
+	}
+	
+	/**
+	 * Computes the check digit of LuhnIdentifierValidator, whose Luhn sum runs from the rightmost
+	 * character: first the counter (its zero padding weighs nothing), then the date prefix and then the
+	 * sequence group.
+	 */
+	private char computeCheckDigit(String sequenceGroup, DatePrefix prefix, int sequence) {
+		int sum = 0;
+		int position = 0;
+		for (int value = sequence; value > 0; value /= 10, position++) {
+			sum += weight(value % 10, position);
+		}
+		position = Math.max(Math.max(position, 1), padding);
+		
+		if (prefix != null) {
+			sum += prefix.checkDigitSums[position % 2];
+			position += prefix.text.length();
+		}
+		
+		for (int i = sequenceGroup.length() - 1; i >= 0; i--, position++) {
+			sum += weight(sequenceGroup.charAt(i) - '0', position);
+		}
+		
+		sum = Math.abs(sum) + 10;
+		return (char) ('0' + (10 - sum % 10) % 10);
+	}
+	
+	private static int weight(int digit, int position) {
+		return position % 2 == 0 ? 2 * digit - digit / 5 * 9 : digit;
+	}
+	
+	private static int countDigits(int value) {
+		int digits = 1;
+		for (int remaining = value / 10; remaining != 0; remaining /= 10) {
+			digits++;
+		}
+		
+		return digits;
+	}
+	
+	private static boolean isPlain(String separator, String prefix) {
+		for (int i = 0; i < prefix.length(); i++) {
+			char c = prefix.charAt(i);
+			if (CHECK_DIGIT_CHARACTERS.indexOf(c) < 0 || separator.indexOf(c) >= 0) {
+				return false;
+			}
+		}
+		for (int i = 0; i < separator.length(); i++) {
+			if (Character.isDigit(separator.charAt(i))) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static final class DatePrefix {
+		
+		private final String text;
+		
+		private final long validFrom;
+		
+		private final long validUntil;
+		
+		// The prefix's share of the Luhn sum when its last character is at an even or odd position
+		private final int[] checkDigitSums = new int[2];
+		
+		DatePrefix(String text, long validFrom, long validUntil) {
+			this.text = text;
+			this.validFrom = validFrom;
+			this.validUntil = validUntil;
+			
+			for (int parity = 0; parity < 2; parity++) {
+				for (int i = 0; i < text.length(); i++) {
+					checkDigitSums[parity] += weight(text.charAt(text.length() - 1 - i) - '0', parity + i);
+				}
+			}
+		}
+	}
+}
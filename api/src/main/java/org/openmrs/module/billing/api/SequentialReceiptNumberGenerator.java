@@ -9,12 +9,9 @@
  */
 package org.openmrs.module.billing.api;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
+import java.time.Clock;
 
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang.StringUtils;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.billing.api.model.Bill;
 import org.openmrs.module.billing.api.model.SequentialReceiptNumberGeneratorModel;
@@ -33,6 +30,8 @@ public class SequentialReceiptNumberGenerator implements IReceiptNumberGenerator
 	
 	private final LuhnIdentifierValidator checkDigitGenerator;
 	
+	private volatile ReceiptNumberTemplate template;
+	
 	private boolean loaded = false;
 	
 	public SequentialReceiptNumberGenerator() {
@@ -61,11 +60,13 @@ public class SequentialReceiptNumberGenerator implements IReceiptNumberGenerator
 	}
 	
 	/**
-	 * Loads the generator settings from the database.
+	 * Loads the generator settings from the database and compiles them into the receipt number
+	 * template.
 	 */
 	@Override
 	public void load() {
 		model = service.getOnly();
+		template = new ReceiptNumberTemplate(model, Clock.systemDefaultZone());
 		loaded = true;
 	}
 	
@@ -89,10 +90,11 @@ public class SequentialReceiptNumberGenerator implements IReceiptNumberGenerator
 		
 		log.debug("Generating receipt number for bill {}...", bill.getUuid());
 		
-		String grouping = createGrouping(bill);
-		String sequence = getSequence(grouping);
+		ReceiptNumberTemplate template = this.template;
+		String group = template.getSequenceGroup(bill);
+		int sequence = service.reserveNextSequence(group);
 		
-		String number = buildReceiptNumber(grouping, sequence);
+		String number = template.format(bill, group, sequence);
 		log.debug("Generated receipt number '{}' for bill {}.", number, bill.getUuid());
 		
 		return number;
@@ -112,73 +114,6 @@ public class SequentialReceiptNumberGenerator implements IReceiptNumberGenerator
 		return numberWithoutSep.substring(numberWithoutSep.length() - 1);
 	}
 	
-	private String createGrouping(Bill bill) {
-		String result = "";
-		
-		switch (model.getGroupingType()) {
-			case CASHIER:
-				result = model.getCashierPrefix() + bill.getCashier().getId();
-				break;
-			case CASH_POINT:
-				result = model.getCashPointPrefix() + bill.getCashPoint().getId();
-				break;
-			case CASHIER_AND_CASH_POINT:
-				result = model.getCashierPrefix() + bill.getCashier().getId() + model.getSeparator()
-				        + model.getCashPointPrefix() + bill.getCashPoint().getId();
-				break;
-			default:
-				break;
-		}
-		
-		return result;
-	}
-	
-	private String getSequence(String grouping) {
-		// Do not include the separator when getting the next sequence
-		String groupingWithoutSep = grouping;
-		if (!model.getSeparator().isEmpty()) {
-			groupingWithoutSep = groupingWithoutSep.replace(model.getSeparator(), "");
-		}
-		
-		int sequenceNumber = service.reserveNextSequence(groupingWithoutSep);
-		
-		// Any changes to the date/time generation must be also applied to the unit tests that mock the date generation
-		SimpleDateFormat format;
-		Calendar cal = Calendar.getInstance();
-		String sequence = String.format("%0" + model.getSequencePadding() + "d", sequenceNumber);
-		switch (model.getSequenceType()) {
-			case DATE_COUNTER:
-				format = new SimpleDateFormat("yyMMdd");
-				sequence = format.format(new Date(cal.getTimeInMillis())) + sequence;
-				
-				break;
-			case DATE_TIME_COUNTER:
-				format = new SimpleDateFormat("yyMMddHHmmss");
-				sequence = format.format(new Date(cal.getTimeInMillis())) + sequence;
-				
-				break;
-			default:
-				break;
-		}
-		
-		return sequence;
-	}
-	
-	private String buildReceiptNumber(String grouping, String sequence) {
-		String number;
-		if (StringUtils.isEmpty(grouping)) {
-			number = sequence;
-		} else {
-			number = grouping + model.getSeparator() + sequence;
-		}
-		
-		if (model.getIncludeCheckDigit()) {
-			number = number + model.getSeparator() + generateCheckDigit(number);
-		}
-		
-		return number;
-	}
-	
 	/**
 	 * The defination of the constants to be used in Sequence receipt generation
 	 */
@@ -0,0 +1,39 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.base;
+
+/**
+ * How the total record count of a paged search is loaded.
+ */
+public enum CountStrategy {
+	
+	/**
+	 * Count every matching record on each request.
+	 */
+	EXACT,
+	
+	/**
+	 * Reuse the exact count of the same search for a few seconds, as set by
+	 * {@code billing.pagingCountCacheSeconds}.
+	 */
+	CACHED,
+	
+	/**
+	 * Count only up to one record past the requested page. The total is exact when it is reached and
+	 * otherwise only tells that there are more results.
+	 */
+	CAPPED,
+	
+	/**
+	 * Use the database's row estimate of the table when the search has no filters, and a capped count
+	 * otherwise or when no estimate is available.
+	 */
+	ESTIMATE
+}
@@ -0,0 +1,105 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.base;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Paging information for seek (keyset) pagination of results ordered newest first by date created
+ * and id. Instead of a page number it carries the position of the last record of the previous page,
+ * so each page costs the same to load however deep it is. Clients receive the position as an opaque
+ * continuation token. The total record count is not loaded.
+ */
+@Getter
+public class KeysetPagingInfo extends PagingInfo {
+	
+	private static final String TOKEN_VERSION = "1";
+	
+	private static final String SEPARATOR = ":";
+	
+	private Date afterDateCreated;
+	
+	private Integer afterId;
+	
+	private String nextToken;
+	
+	/**
+	 * Creates paging information for the first page.
+	 *
+	 * @param pageSize The number of records to include on each page.
+	 */
+	public KeysetPagingInfo(int pageSize) {
+		super(1, pageSize);
+		setLoadRecordCount(false);
+	}
+	
+	/**
+	 * Creates paging information for the page that follows a continuation token.
+	 *
+	 * @param pageSize The number of records to include on each page.
+	 * @param token The token returned with the previous page, or null for the first page.
+	 * @throws IllegalArgumentException if the token is not a valid continuation token
+	 */
+	public KeysetPagingInfo(int pageSize, String token) {
+		this(pageSize);
+		if (StringUtils.isNotBlank(token)) {
+			decode(token.trim());
+		}
+	}
+	
+	/**
+	 * Records the position of the last record of the loaded page, from which the next page starts.
+	 *
+	 * @param dateCreated The date the record was created.
+	 * @param id The id of the record.
+	 */
+	public void setNextPosition(Date dateCreated, Integer id) {
+		String position = TOKEN_VERSION + SEPARATOR + dateCreated.getTime() + SEPARATOR + id;
+		nextToken = Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * @return true if this is the first page
+	 */
+	public boolean isFirstPage() {
+		return afterDateCreated == null;
+	}
+	
+	@Override
+	public Boolean hasMoreResults() {
+		return nextToken != null;
+	}
+	
+	private void decode(String token) {
+		String[] parts;
+		try {
+			parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(SEPARATOR);
+		}
+		catch (IllegalArgumentException ex) {
+			throw new IllegalArgumentException("Invalid continuation token: " + token, ex);
+		}
+		if (parts.length != 3 || !TOKEN_VERSION.equals(parts[0])) {
+			throw new IllegalArgumentException("Invalid continuation token: " + token);
+		}
+		
+		try {
+			afterDateCreated = new Date(Long.parseLong(parts[1]));
+			afterId = Integer.valueOf(parts[2]);
+		}
+		catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("Invalid continuation token: " + token, ex);
+		}
+	}
+}
@@ -32,6 +32,11 @@ public class PagingInfo {
 	
 	private boolean loadRecordCount;
 	
+	/**
+	 * How the total record count is loaded; {@code null} counts every record.
+	 */
+	private CountStrategy countStrategy;
+	
 	/**
 	 * Creates a new {@link PagingInfo} instance.
 	 *
@@ -0,0 +1,146 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.base;
+
+import lombok.AllArgsConstructor;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.billing.ModuleSettings;
+import org.openmrs.module.billing.api.util.BoundedCache;
+import org.openmrs.module.billing.api.util.GlobalPropertyUtil;
+
+/**
+ * Loads the total record count of a paged search with the {@link CountStrategy} set on its
+ * {@link PagingInfo}. Cached counts are shared by all users and kept for
+ * {@link ModuleSettings#PAGING_COUNT_CACHE_SECONDS_PROPERTY} seconds, keyed by the count query and
+ * its parameter values.
+ */
+public final class RecordCounter {
+	
+	public static final int DEFAULT_CACHE_SECONDS = 60;
+	
+	static final int MAX_CACHED_COUNTS = 500;
+	
+	private static final BoundedCache<Object, CachedCount> CACHED_COUNTS = new BoundedCache<>(MAX_CACHED_COUNTS);
+	
+	private RecordCounter() {
+	}
+	
+	/**
+	 * Counts the records matched by a search and sets the total on the paging information.
+	 *
+	 * @param pagingInfo The paging information of the search.
+	 * @param query The count query of the search.
+	 */
+	public static void loadRecordCount(PagingInfo pagingInfo, CountQuery query) {
+		CountStrategy strategy = pagingInfo.getCountStrategy() == null ? CountStrategy.EXACT
+		        : pagingInfo.getCountStrategy();
+		
+		long count;
+		switch (strategy) {
+			case CACHED:
+				count = countCached(query);
+				break;
+			case CAPPED:
+				count = query.countUpTo(getCountLimit(pagingInfo));
+				break;
+			case ESTIMATE:
+				count = estimate(pagingInfo, query);
+				break;
+			default:
+				count = query.count();
+		}
+		
+		pagingInfo.setTotalRecordCount(count);
+	}
+	
+	/**
+	 * Discards all cached counts.
+	 */
+	public static void clearCachedCounts() {
+		CACHED_COUNTS.clear();
+	}
+	
+	private static long countCached(CountQuery query) {
+		int seconds = getCacheSeconds();
+		Object signature = seconds > 0 ? query.getSignature() : null;
+		if (signature == null) {
+			return query.count();
+		}
+		
+		long now = System.currentTimeMillis();
+		CachedCount cached = CACHED_COUNTS.get(signature);
+		if (cached != null && cached.expiresAt > now) {
+			return cached.count;
+		}
+		
+		long count = query.count();
+		CACHED_COUNTS.put(signature, new CachedCount(count, now + seconds * 1000L));
+		return count;
+	}
+	
+	private static long estimate(PagingInfo pagingInfo, CountQuery query) {
+		int limit = getCountLimit(pagingInfo);
+		Long estimate = query.estimate();
+		// A small or stale estimate could end the paging too early, so count exactly up to the requested page
+		if (estimate == null || estimate < limit) {
+			return query.countUpTo(limit);
+		}
+		return estimate;
+	}
+	
+	// One record past the requested page, which is enough to tell whether there is a next page
+	private static int getCountLimit(PagingInfo pagingInfo) {
+		return (int) Math.min(Integer.MAX_VALUE, (long) pagingInfo.getPage() * pagingInfo.getPageSize() + 1);
+	}
+	
+	// Zero turns the cache off
+	private static int getCacheSeconds() {
+		return GlobalPropertyUtil.getIntProperty(Context.getAdministrationService(),
+		    ModuleSettings.PAGING_COUNT_CACHE_SECONDS_PROPERTY, 0, DEFAULT_CACHE_SECONDS);
+	}
+	
+	/**
+	 * The count query of a paged search.
+	 */
+	public interface CountQuery {
+		
+		/**
+		 * @return The number of matching records.
+		 */
+		long count();
+		
+		/**
+		 * @param limit The most records to count.
+		 * @return The number of matching records, up to the limit.
+		 */
+		long countUpTo(int limit);
+		
+		/**
+		 * @return The estimated number of matching records, or null if none is available.
+		 */
+		default Long estimate() {
+			return null;
+		}
+		
+		/**
+		 * @return A value that equals the signature of every query matching the same records, or null
+		 *         if the count cannot be cached.
+		 */
+		Object getSignature();
+	}
+	
+	@AllArgsConstructor
+	private static class CachedCount {
+		
+		private final long count;
+		
+		private final long expiresAt;
+	}
+}
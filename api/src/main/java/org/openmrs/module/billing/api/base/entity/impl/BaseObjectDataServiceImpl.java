@@ -26,6 +26,7 @@ import org.openmrs.OpenmrsObject;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.BaseOpenmrsService;
 import org.openmrs.module.billing.api.base.PagingInfo;
+import org.openmrs.module.billing.api.base.RecordCounter;
 import org.openmrs.module.billing.api.base.Utility;
 import org.openmrs.module.billing.api.base.entity.IObjectDataService;
 import org.openmrs.module.billing.api.base.entity.db.hibernate.BaseHibernateRepository;
@@ -304,7 +305,8 @@ public abstract class BaseObjectDataServiceImpl<E extends OpenmrsObject, P exten
 	}
 	
 	/**
-	 * Loads the record count for the specified criteria into the specified paging object.
+	 * Loads the record count for the specified criteria into the specified paging object, using the
+	 * paging object's {@link org.openmrs.module.billing.api.base.CountStrategy}.
 	 *
 	 * @param pagingInfo The {@link PagingInfo} object to load with the record count.
 	 * @param criteria The {@link Criteria} to execute against the hibernate data source or {@code null}
@@ -328,10 +330,7 @@ public abstract class BaseObjectDataServiceImpl<E extends OpenmrsObject, P exten
 				transformer = impl.getResultTransformer();
 				
 				try {
-					criteria.setProjection(Projections.rowCount());
-					
-					Long count = repository.<Long> selectValue(criteria);
-					pagingInfo.setTotalRecordCount(count == null ? 0 : count);
+					RecordCounter.loadRecordCount(pagingInfo, new LegacyCriteriaCountQuery(criteria));
 					pagingInfo.setLoadRecordCount(false);
 				}
 				finally {
@@ -389,4 +388,39 @@ public abstract class BaseObjectDataServiceImpl<E extends OpenmrsObject, P exten
 		
 		return query;
 	}
+	
+	/**
+	 * Counts the records matched by a {@link Criteria}. Table estimates are not used, so estimated
+	 * counts fall back to a capped count.
+	 */
+	private class LegacyCriteriaCountQuery implements RecordCounter.CountQuery {
+		
+		private final Criteria criteria;
+		
+		LegacyCriteriaCountQuery(Criteria criteria) {
+			this.criteria = criteria;
+		}
+		
+		@Override
+		public long count() {
+			criteria.setProjection(Projections.rowCount());
+			
+			Long count = repository.<Long> selectValue(criteria);
+			return count == null ? 0 : count;
+		}
+		
+		@Override
+		public long countUpTo(int limit) {
+			criteria.setProjection(Projections.id());
+			criteria.setMaxResults(limit);
+			
+			return criteria.list().size();
+		}
+		
+		@Override
+		public Object getSignature() {
+			// The criteria implementation lists its entity and restrictions with their values
+			return criteria.toString();
+		}
+	}
 }
@@ -34,4 +34,18 @@ public interface BillingEventListener extends EventListener, DaemonTokenAware {
 	 * The event action this listener subscribes to (e.g. {@link Event.Action#CREATED}).
 	 */
 	Event.Action getSubscribedAction();
+	
+	/**
+	 * Called after the listener has been subscribed. Listeners that process events in the background
+	 * start their workers here.
+	 */
+	default void start() {
+	}
+	
+	/**
+	 * Called after the listener has been unsubscribed, before the module context is refreshed or the
+	 * module stops. Listeners must release any background workers here.
+	 */
+	default void stop() {
+	}
 }
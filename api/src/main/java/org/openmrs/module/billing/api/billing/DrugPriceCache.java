@@ -0,0 +1,112 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.billing;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.module.billing.ModuleSettings;
+import org.openmrs.module.billing.api.util.BoundedCache;
+import org.openmrs.module.billing.api.util.GlobalPropertyUtil;
+import org.openmrs.module.billing.api.util.LazyBoundedCache;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Size-bounded cache of the stock item and price used to bill orders for each drug, so that billing
+ * a drug order usually needs no catalog queries. The item price services call {@link #invalidate()}
+ * whenever an item price is saved, retired or purged, which discards every entry. The maximum size
+ * is read from {@link ModuleSettings#ORDER_BILLING_DRUG_PRICE_CACHE_SIZE_PROPERTY} whenever the
+ * cache is recreated.
+ * <p>
+ * Stock items that the stock management module adds for an already cached drug are picked up the
+ * next time the cache is invalidated.
+ */
+public class DrugPriceCache {
+	
+	public static final int DEFAULT_MAX_SIZE = 1000;
+	
+	@Setter(onMethod_ = @Autowired)
+	private AdministrationService administrationService;
+	
+	private final LazyBoundedCache<Integer, DrugPrice> entries = new LazyBoundedCache<>(this::getMaxSize);
+	
+	private final AtomicLong hits = new AtomicLong();
+	
+	private final AtomicLong misses = new AtomicLong();
+	
+	private final AtomicLong invalidations = new AtomicLong();
+	
+	/**
+	 * Returns the cached stock item and price for a drug, loading and caching them on a miss.
+	 *
+	 * @param drugId the drug being ordered
+	 * @param loader looks up the stock item and price; may return null, which is not cached
+	 * @return the stock item and price, or null if the drug has no stock item
+	 */
+	public DrugPrice get(Integer drugId, Function<Integer, DrugPrice> loader) {
+		BoundedCache<Integer, DrugPrice> current = entries.get();
+		DrugPrice price = current.get(drugId);
+		if (price != null) {
+			hits.incrementAndGet();
+			return price;
+		}
+		
+		misses.incrementAndGet();
+		price = loader.apply(drugId);
+		// An invalidation while loading replaces the cache, so a stale price never reaches the new one
+		current.put(drugId, price);
+		return price;
+	}
+	
+	/**
+	 * Discards all cached entries, now and again once the current transaction completes.
+	 */
+	public void invalidate() {
+		invalidations.incrementAndGet();
+		entries.resetNowAndAfterCompletion();
+	}
+	
+	/**
+	 * @return a point-in-time view of the cache size and hit rate since startup
+	 */
+	public DrugPriceCacheStatistics getStatistics() {
+		long hitCount = hits.get();
+		long missCount = misses.get();
+		
+		return DrugPriceCacheStatistics.builder().size(entries.size()).maxSize(entries.getMaxSize()).hits(hitCount)
+		        .misses(missCount).hitRate(LazyBoundedCache.hitRate(hitCount, hitCount + missCount))
+		        .invalidations(invalidations.get()).build();
+	}
+	
+	private int getMaxSize() {
+		return GlobalPropertyUtil.getPositiveIntProperty(administrationService,
+		    ModuleSettings.ORDER_BILLING_DRUG_PRICE_CACHE_SIZE_PROPERTY, DEFAULT_MAX_SIZE);
+	}
+	
+	/**
+	 * The stock item billed for a drug and the price of its most recent item price.
+	 */
+	@Getter
+	@AllArgsConstructor
+	public static class DrugPrice {
+		
+		private final Integer stockItemId;
+		
+		/**
+		 * The item price, or null when the stock item has none and its purchase price applies.
+		 */
+		private final BigDecimal price;
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.billing;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Snapshot of the {@link DrugPriceCache} size and hit rate.
+ */
+@Builder
+@Getter
+public class DrugPriceCacheStatistics {
+	
+	private int size;
+	
+	private int maxSize;
+	
+	private long hits;
+	
+	private long misses;
+	
+	/**
+	 * Fraction of lookups served from the cache since startup, between 0 and 1.
+	 */
+	private double hitRate;
+	
+	private long invalidations;
+}
@@ -13,22 +13,18 @@ import javax.jms.JMSException;
 import javax.jms.MapMessage;
 import javax.jms.Message;
 
-import java.util.List;
-
 import lombok.Setter;
-import org.springframework.core.OrderComparator;
 import lombok.extern.slf4j.Slf4j;
 import org.openmrs.OpenmrsObject;
 import org.openmrs.Order;
 import org.openmrs.api.db.hibernate.HibernateUtil;
-import org.openmrs.api.context.Context;
-import org.openmrs.api.context.Daemon;
 import org.openmrs.event.Event;
 import org.openmrs.module.DaemonToken;
 
 /**
  * Listens for Order CREATED events from the OpenMRS Event module and delegates billing to the
- * appropriate {@link OrderBillingStrategy}.
+ * appropriate {@link OrderBillingStrategy}. Events are handed to an {@link OrderBillingPipeline} so
+ * that bulk order entry is billed by a bounded pool of workers.
  */
 @Slf4j
 @Setter
@@ -36,6 +32,10 @@ public class OrderBillingEventListener implements BillingEventListener {
 	
 	private DaemonToken daemonToken;
 	
+	private OrderBillingPipeline pipeline;
+	
+	private OrderBillingStrategyRegistry strategyRegistry;
+	
 	@Override
 	public Class<? extends OpenmrsObject> getSubscribedClass() {
 		return Order.class;
@@ -53,32 +53,42 @@ public class OrderBillingEventListener implements BillingEventListener {
 			return;
 		}
 		
-		Daemon.runInDaemonThread(() -> {
-			try {
-				processMessage(message);
+		try {
+			String uuid = getCreatedOrderUuid(message);
+			if (uuid != null) {
+				pipeline.submit(uuid);
 			}
-			catch (Exception e) {
-				log.error("Error processing order billing event", e);
-			}
-		}, daemonToken);
+		}
+		catch (Exception e) {
+			log.error("Error processing order billing event", e);
+		}
+	}
+	
+	@Override
+	public void setDaemonToken(DaemonToken daemonToken) {
+		this.daemonToken = daemonToken;
+		pipeline.setDaemonToken(daemonToken);
+	}
+	
+	@Override
+	public void start() {
+		pipeline.start(this::processOrder);
 	}
 	
-	private void processMessage(Message message) throws JMSException {
+	@Override
+	public void stop() {
+		pipeline.stop();
+	}
+	
+	private String getCreatedOrderUuid(Message message) throws JMSException {
 		MapMessage mapMessage = (MapMessage) message;
-		String uuid = mapMessage.getString("uuid");
 		String action = mapMessage.getString("action");
 		
 		if (!"CREATED".equals(action)) {
-			return;
+			return null;
 		}
 		
-		Order order = Context.getOrderService().getOrderByUuid(uuid);
-		if (order == null) {
-			log.warn("Order not found for UUID: {}", uuid);
-			return;
-		}
-		
-		processOrder(order);
+		return mapMessage.getString("uuid");
 	}
 	
 	/**
@@ -89,34 +99,29 @@ public class OrderBillingEventListener implements BillingEventListener {
 	 */
 	void processOrder(Order order) {
 		Order realOrder = HibernateUtil.getRealObjectFromProxy(order);
-		List<OrderBillingStrategy> strategies = Context.getRegisteredComponents(OrderBillingStrategy.class);
-		OrderComparator.sort(strategies);
-		
-		for (OrderBillingStrategy strategy : strategies) {
-			if (strategy.supports(realOrder)) {
-				BillingResult result = strategy.handleOrder(realOrder);
-				switch (result.getAction()) {
-					case CREATED:
-						log.info("Bill {} created for order {} by {}", result.getBill().getUuid(), order.getUuid(),
-						    strategy.getClass().getSimpleName());
-						break;
-					case UPDATED:
-						log.info("Bill {} updated for order {} by {}", result.getBill().getUuid(), order.getUuid(),
-						    strategy.getClass().getSimpleName());
-						break;
-					case DISCONTINUED:
-						log.info("Line item voided for order {} by {}", order.getUuid(),
-						    strategy.getClass().getSimpleName());
-						break;
-					case SKIPPED:
-						log.info("Order {} skipped by {}: {}", order.getUuid(), strategy.getClass().getSimpleName(),
-						    result.getReason());
-						break;
-				}
-				return;
-			}
+		OrderBillingStrategy strategy = strategyRegistry.getStrategy(realOrder);
+		if (strategy == null) {
+			log.debug("No billing strategy found for order type: {}", realOrder.getClass().getSimpleName());
+			return;
 		}
 		
-		log.debug("No billing strategy found for order type: {}", order.getClass().getSimpleName());
+		BillingResult result = strategy.handleOrder(realOrder);
+		switch (result.getAction()) {
+			case CREATED:
+				log.info("Bill {} created for order {} by {}", result.getBill().getUuid(), order.getUuid(),
+				    strategy.getClass().getSimpleName());
+				break;
+			case UPDATED:
+				log.info("Bill {} updated for order {} by {}", result.getBill().getUuid(), order.getUuid(),
+				    strategy.getClass().getSimpleName());
+				break;
+			case DISCONTINUED:
+				log.info("Line item voided for order {} by {}", order.getUuid(), strategy.getClass().getSimpleName());
+				break;
+			case SKIPPED:
+				log.info("Order {} skipped by {}: {}", order.getUuid(), strategy.getClass().getSimpleName(),
+				    result.getReason());
+				break;
+		}
 	}
 }
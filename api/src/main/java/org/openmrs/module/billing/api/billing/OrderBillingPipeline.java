@@ -0,0 +1,320 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.billing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.Order;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.context.Daemon;
+import org.openmrs.module.DaemonToken;
+import org.openmrs.module.billing.ModuleSettings;
+import org.openmrs.module.billing.api.db.OrderBillingDAO;
+import org.openmrs.module.billing.api.util.GlobalPropertyUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Bounded ingestion pipeline for order billing events. Order UUIDs are queued and billed by a fixed
+ * pool of workers; each worker drains up to {@code batchSize} UUIDs, loads the orders in a single
+ * query and bills them in one transaction. When the queue is full the order is billed on the
+ * submitting thread, which applies backpressure to the event consumer instead of dropping events.
+ */
+@Slf4j
+public class OrderBillingPipeline {
+	
+	public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+	
+	public static final int DEFAULT_WORKER_COUNT = 2;
+	
+	public static final int DEFAULT_BATCH_SIZE = 25;
+	
+	private static final long ENQUEUE_TIMEOUT_MILLIS = 500;
+	
+	private static final long POLL_TIMEOUT_MILLIS = 1000;
+	
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+	
+	@Setter(onMethod_ = @Autowired)
+	private OrderBillingDAO orderBillingDAO;
+	
+	@Setter(onMethod_ = @Autowired)
+	private PlatformTransactionManager transactionManager;
+	
+	@Setter
+	private volatile DaemonToken daemonToken;
+	
+	private volatile BlockingQueue<String> queue;
+	
+	private volatile boolean running;
+	
+	private ExecutorService workers;
+	
+	@Setter(AccessLevel.PACKAGE)
+	private Consumer<Order> orderProcessor;
+	
+	private int workerCount;
+	
+	private int batchSize;
+	
+	private long startedAt;
+	
+	private final AtomicLong submitted = new AtomicLong();
+	
+	private final AtomicLong processed = new AtomicLong();
+	
+	private final AtomicLong failed = new AtomicLong();
+	
+	private final AtomicLong batches = new AtomicLong();
+	
+	private final AtomicLong processedOnCaller = new AtomicLong();
+	
+	/**
+	 * Starts the worker pool using the queue capacity, worker count and batch size global properties.
+	 * Calling this method on a running pipeline has no effect.
+	 *
+	 * @param orderProcessor bills a single order; invoked on a worker inside the batch transaction
+	 */
+	public synchronized void start(Consumer<Order> orderProcessor) {
+		if (running) {
+			return;
+		}
+		
+		start(orderProcessor, getPositiveIntProperty(ModuleSettings.ORDER_BILLING_QUEUE_CAPACITY_PROPERTY,
+		    DEFAULT_QUEUE_CAPACITY), getPositiveIntProperty(ModuleSettings.ORDER_BILLING_WORKER_COUNT_PROPERTY,
+		    DEFAULT_WORKER_COUNT), getPositiveIntProperty(ModuleSettings.ORDER_BILLING_BATCH_SIZE_PROPERTY,
+		    DEFAULT_BATCH_SIZE));
+	}
+	
+	synchronized void start(Consumer<Order> orderProcessor, int queueCapacity, int workerCount, int batchSize) {
+		if (running) {
+			return;
+		}
+		
+		this.orderProcessor = orderProcessor;
+		this.workerCount = workerCount;
+		this.batchSize = batchSize;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.workers = Executors.newFixedThreadPool(workerCount, new WorkerThreadFactory());
+		this.startedAt = System.currentTimeMillis();
+		submitted.set(0);
+		processed.set(0);
+		failed.set(0);
+		batches.set(0);
+		processedOnCaller.set(0);
+		this.running = true;
+		
+		for (int i = 0; i < workerCount; i++) {
+			workers.execute(this::runWorker);
+		}
+		
+		log.info("Order billing pipeline started with {} workers, batch size {} and queue capacity {}", workerCount,
+		    batchSize, queueCapacity);
+	}
+	
+	/**
+	 * Stops accepting new orders, lets the workers bill what is already queued and waits for them to
+	 * finish. Orders still queued when the shutdown timeout elapses are logged and discarded.
+	 */
+	public synchronized void stop() {
+		if (!running) {
+			return;
+		}
+		
+		running = false;
+		workers.shutdown();
+		try {
+			if (!workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				workers.shutdownNow();
+			}
+		}
+		catch (InterruptedException e) {
+			workers.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		
+		List<String> remaining = new ArrayList<>();
+		queue.drainTo(remaining);
+		if (!remaining.isEmpty()) {
+			log.warn("Order billing pipeline stopped with {} unbilled orders: {}", remaining.size(), remaining);
+		}
+		
+		log.info("Order billing pipeline stopped");
+	}
+	
+	/**
+	 * Queues an order for billing. If the pipeline is not running, or the queue stays full for longer
+	 * than the enqueue timeout, or the calling thread is interrupted while waiting for room, the order
+	 * is billed on the calling thread before this method returns.
+	 *
+	 * @param orderUuid the UUID of a persisted order
+	 */
+	public void submit(String orderUuid) {
+		BlockingQueue<String> currentQueue = queue;
+		boolean interrupted = false;
+		if (running && currentQueue != null) {
+			try {
+				if (currentQueue.offer(orderUuid, ENQUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+					submitted.incrementAndGet();
+					return;
+				}
+				log.debug("Order billing queue is full; billing order {} on the calling thread", orderUuid);
+			}
+			catch (InterruptedException e) {
+				// Bill the order anyway so the event is not lost, and restore the interrupt afterwards
+				interrupted = true;
+				log.warn("Interrupted while queueing order {}; billing it on the calling thread", orderUuid);
+			}
+		}
+		
+		try {
+			submitted.incrementAndGet();
+			processedOnCaller.incrementAndGet();
+			runBatch(Collections.singletonList(orderUuid));
+		}
+		finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * @return a point-in-time view of the queue depth and throughput counters
+	 */
+	public OrderBillingPipelineStatistics getStatistics() {
+		BlockingQueue<String> currentQueue = queue;
+		long processedCount = processed.get();
+		long elapsedMillis = startedAt > 0 ? System.currentTimeMillis() - startedAt : 0;
+		
+		return OrderBillingPipelineStatistics.builder().running(running)
+		        .queueDepth(currentQueue == null ? 0 : currentQueue.size())
+		        .queueCapacity(currentQueue == null ? 0 : currentQueue.size() + currentQueue.remainingCapacity())
+		        .workerCount(workerCount).batchSize(batchSize).submitted(submitted.get()).processed(processedCount)
+		        .failed(failed.get()).batches(batches.get()).processedOnCaller(processedOnCaller.get())
+		        .ordersPerSecond(elapsedMillis > 0 ? processedCount * 1000.0 / elapsedMillis : 0.0).build();
+	}
+	
+	private void runWorker() {
+		List<String> batch = new ArrayList<>(batchSize);
+		while (running || !queue.isEmpty()) {
+			try {
+				String first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				
+				batch.add(first);
+				queue.drainTo(batch, batchSize - 1);
+				runBatch(new ArrayList<>(batch));
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (Exception e) {
+				log.error("Unexpected error in order billing worker", e);
+			}
+			finally {
+				batch.clear();
+			}
+		}
+	}
+	
+	/**
+	 * Bills a batch in a daemon thread and waits for it, so each batch gets its own authenticated
+	 * session and concurrency stays bounded by the number of workers.
+	 */
+	private void runBatch(List<String> uuids) {
+		DaemonToken token = daemonToken;
+		if (token == null) {
+			log.error("Cannot bill orders {}: daemon token not set", uuids);
+			failed.addAndGet(uuids.size());
+			return;
+		}
+		
+		Thread thread = Daemon.runInDaemonThread(() -> processBatch(uuids), token);
+		try {
+			thread.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	void processBatch(List<String> uuids) {
+		batches.incrementAndGet();
+		try {
+			int billed = new TransactionTemplate(transactionManager).execute(status -> billOrders(uuids));
+			processed.addAndGet(billed);
+		}
+		catch (Exception e) {
+			if (uuids.size() == 1) {
+				failed.incrementAndGet();
+				log.error("Error billing order {}", uuids.get(0), e);
+				return;
+			}
+			
+			log.warn("Billing batch of {} orders failed; retrying each order in its own transaction", uuids.size(), e);
+			Context.clearSession();
+			for (String uuid : uuids) {
+				processBatch(Collections.singletonList(uuid));
+			}
+		}
+	}
+	
+	private int billOrders(List<String> uuids) {
+		List<Order> orders = orderBillingDAO.getOrdersByUuids(uuids);
+		if (orders.size() < uuids.size()) {
+			Set<String> missing = new HashSet<>(uuids);
+			orders.forEach(order -> missing.remove(order.getUuid()));
+			log.warn("Orders not found for UUIDs: {}", missing);
+		}
+		
+		for (Order order : orders) {
+			orderProcessor.accept(order);
+		}
+		
+		return orders.size();
+	}
+	
+	private int getPositiveIntProperty(String propertyName, int defaultValue) {
+		return GlobalPropertyUtil.getPositiveIntProperty(Context.getAdministrationService(), propertyName, defaultValue);
+	}
+	
+	private static class WorkerThreadFactory implements ThreadFactory {
+		
+		private final AtomicInteger count = new AtomicInteger();
+		
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "billing-order-worker-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.billing;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Snapshot of the {@link OrderBillingPipeline} queue depth and throughput counters.
+ */
+@Builder
+@Getter
+public class OrderBillingPipelineStatistics {
+	
+	private boolean running;
+	
+	private int queueDepth;
+	
+	private int queueCapacity;
+	
+	private int workerCount;
+	
+	private int batchSize;
+	
+	/**
+	 * Orders accepted since the pipeline started, whether queued or billed on the calling thread.
+	 */
+	private long submitted;
+	
+	private long processed;
+	
+	private long failed;
+	
+	private long batches;
+	
+	/**
+	 * Orders billed on the submitting thread because the queue was full or the pipeline was stopped.
+	 */
+	private long processedOnCaller;
+	
+	/**
+	 * Average number of orders billed per second since the pipeline started.
+	 */
+	private double ordersPerSecond;
+}
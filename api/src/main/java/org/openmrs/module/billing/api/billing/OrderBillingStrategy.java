@@ -20,6 +20,10 @@ import org.springframework.core.Ordered;
  * {@link Ordered#getOrder()} (lowest value = highest priority). The first strategy whose
  * {@link #supports(Order)} returns {@code true} handles the order. To override a default strategy,
  * register a bean with a lower order value so it is evaluated first.
+ * <p>
+ * Strategies are looked up once per module context refresh by {@link OrderBillingStrategyRegistry},
+ * which caches the candidate chain per order class and action using
+ * {@link #supportsType(Class, Order.Action)}.
  */
 public interface OrderBillingStrategy extends Ordered {
 	
@@ -31,6 +35,19 @@ public interface OrderBillingStrategy extends Ordered {
 	 */
 	boolean supports(Order order);
 	
+	/**
+	 * Whether this strategy could handle orders of the given class and action. Used to precompute the
+	 * candidate strategies for each order class; {@link #supports(Order)} is still called for every
+	 * order. Strategies that cannot decide from the type alone must return {@code true}.
+	 *
+	 * @param orderClass the concrete order class
+	 * @param action the order action
+	 * @return false if no order of this class and action can be supported by this strategy
+	 */
+	default boolean supportsType(Class<? extends Order> orderClass, Order.Action action) {
+		return true;
+	}
+	
 	/**
 	 * Generate and persist a bill for the given order. Implementations should check for duplicates
 	 * (idempotency) before creating a new bill.
@@ -52,6 +69,21 @@ public interface OrderBillingStrategy extends Ordered {
 	 * Resolve the cash point for the bill.
 	 *
 	 * @return the cash point, or null if one cannot be determined
+	 * @deprecated implement {@link #resolveCashPoint(Order)} instead
+	 */
+	@Deprecated
+	default CashPoint resolveCashPoint() {
+		return null;
+	}
+	
+	/**
+	 * Resolve the cash point for the bill. Defaults to {@link #resolveCashPoint()} so strategies
+	 * written against the no-arg method keep working.
+	 *
+	 * @param order the order being billed
+	 * @return the cash point, or null if one cannot be determined
 	 */
-	CashPoint resolveCashPoint();
+	default CashPoint resolveCashPoint(Order order) {
+		return resolveCashPoint();
+	}
 }
@@ -0,0 +1,121 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.billing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.Order;
+import org.openmrs.api.context.Context;
+import org.openmrs.api.db.hibernate.HibernateUtil;
+import org.springframework.core.OrderComparator;
+
+/**
+ * Dispatch index from order class and action to the {@link OrderBillingStrategy} chain that may
+ * handle it. The registered strategies are looked up and sorted once by {@link #rebuild()}, which
+ * the module activator calls whenever the context is refreshed; the chain for each order class is
+ * resolved on first use and cached until the next rebuild.
+ */
+@Slf4j
+public class OrderBillingStrategyRegistry {
+	
+	private volatile Dispatch dispatch;
+	
+	/**
+	 * Reloads the registered strategies and discards the cached chains.
+	 */
+	public synchronized void rebuild() {
+		List<OrderBillingStrategy> strategies = new ArrayList<>(
+		        Context.getRegisteredComponents(OrderBillingStrategy.class));
+		OrderComparator.sort(strategies);
+		dispatch = new Dispatch(Collections.unmodifiableList(strategies));
+		
+		log.info("Order billing strategy registry built with {} strategies: {}", strategies.size(),
+		    strategies.stream().map(s -> s.getClass().getSimpleName()).collect(Collectors.toList()));
+	}
+	
+	/**
+	 * Finds the first strategy in the chain for the order's class and action whose
+	 * {@link OrderBillingStrategy#supports(Order)} accepts the order.
+	 *
+	 * @param order the order to bill
+	 * @return the strategy to handle the order, or null if none supports it
+	 */
+	public OrderBillingStrategy getStrategy(Order order) {
+		Order realOrder = HibernateUtil.getRealObjectFromProxy(order);
+		for (OrderBillingStrategy strategy : getStrategyChain(realOrder.getClass(), realOrder.getAction())) {
+			if (strategy.supports(realOrder)) {
+				return strategy;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * @param orderClass the concrete order class
+	 * @param action the order action
+	 * @return the strategies that may handle orders of this class and action, in priority order
+	 */
+	public List<OrderBillingStrategy> getStrategyChain(Class<? extends Order> orderClass, Order.Action action) {
+		if (action == null) {
+			return Collections.emptyList();
+		}
+		
+		Dispatch current = dispatch;
+		if (current == null) {
+			rebuildIfEmpty();
+			current = dispatch;
+		}
+		
+		return current.chains.computeIfAbsent(orderClass, current::resolveChains).get(action);
+	}
+	
+	private synchronized void rebuildIfEmpty() {
+		if (dispatch == null) {
+			rebuild();
+		}
+	}
+	
+	/**
+	 * Immutable strategy list plus the chains derived from it, swapped as a unit on rebuild so that a
+	 * chain resolved against an old strategy list can never be cached against a new one.
+	 */
+	private static class Dispatch {
+		
+		private final List<OrderBillingStrategy> strategies;
+		
+		private final ConcurrentMap<Class<?>, Map<Order.Action, List<OrderBillingStrategy>>> chains = new ConcurrentHashMap<>();
+		
+		Dispatch(List<OrderBillingStrategy> strategies) {
+			this.strategies = strategies;
+		}
+		
+		@SuppressWarnings("unchecked")
+		private Map<Order.Action, List<OrderBillingStrategy>> resolveChains(Class<?> orderClass) {
+			Map<Order.Action, List<OrderBillingStrategy>> chainsByAction = new EnumMap<>(Order.Action.class);
+			for (Order.Action action : Order.Action.values()) {
+				chainsByAction.put(action,
+				    Collections.unmodifiableList(strategies.stream()
+				            .filter(s -> s.supportsType((Class<? extends Order>) orderClass, action))
+				            .collect(Collectors.toList())));
+			}
+			
+			return chainsByAction;
+		}
+	}
+}
@@ -10,34 +10,37 @@
 package org.openmrs.module.billing.api.billing.impl;
 
 import java.math.BigDecimal;
-import java.util.Date;
 import java.util.EnumSet;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.openmrs.Order;
 import org.openmrs.Patient;
-import org.openmrs.PatientProgram;
 import org.openmrs.Provider;
-import org.openmrs.api.ProgramWorkflowService;
+import org.openmrs.Visit;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.module.billing.ModuleSettings;
 import org.openmrs.module.billing.api.BillExemptionService;
 import org.openmrs.module.billing.api.BillLineItemService;
 import org.openmrs.module.billing.api.BillService;
 import org.openmrs.module.billing.api.CashPointService;
 import org.openmrs.module.billing.api.billing.BillingResult;
+import org.openmrs.module.billing.api.db.OrderBillingDAO;
 import org.openmrs.module.billing.api.evaluator.ExemptionRuleEngine;
+import org.openmrs.module.billing.api.evaluator.ExemptionVariableProvider;
+import org.openmrs.module.billing.api.evaluator.ExemptionVariableRegistry;
 import org.openmrs.module.billing.api.model.Bill;
-import org.openmrs.module.billing.api.model.BillExemption;
+import org.openmrs.module.billing.api.model.BillExemptionRule;
 import org.openmrs.module.billing.api.model.BillLineItem;
 import org.openmrs.module.billing.api.model.BillLineItemStatus;
 import org.openmrs.module.billing.api.model.BillStatus;
 import org.openmrs.module.billing.api.model.CashPoint;
 import org.openmrs.module.billing.api.model.ExemptionType;
+import org.openmrs.module.billing.api.model.OrderBillingStatus;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -66,7 +69,11 @@ public abstract class AbstractDefaultOrderBillingStrategy extends AbstractOrderB
 	@Qualifier("ruleEngine")
 	protected ExemptionRuleEngine exemptionRuleEngine;
 	
-	protected ProgramWorkflowService programWorkflowService;
+	protected ExemptionVariableRegistry exemptionVariableRegistry;
+	
+	protected AdministrationService administrationService;
+	
+	protected OrderBillingDAO orderBillingDAO;
 	
 	protected PlatformTransactionManager transactionManager;
 	
@@ -123,19 +130,36 @@ public abstract class AbstractDefaultOrderBillingStrategy extends AbstractOrderB
 	 */
 	protected abstract Optional<BillLineItem> createBillLineItem(Order order);
 	
+	/**
+	 * Bills the order unless it has already been claimed in the order billing ledger. The claim is an
+	 * insert against the ledger's unique order key, so redelivered or concurrently processed events for
+	 * the same order bill it at most once. The outcome is recorded in the ledger; a skipped order is
+	 * claimed again when its event is redelivered.
+	 */
 	protected BillingResult createBillIfAbsent(Order order) {
-		BillLineItem existingLineItem = billLineItemService.getBillLineItemByOrder(order);
-		if (existingLineItem != null) {
-			log.info("Bill line item already exists for order: {}, skipping duplicate bill creation", order.getUuid());
+		if (!orderBillingDAO.claimOrder(order)) {
+			log.info("Order {} has already been claimed for billing, skipping duplicate bill creation", order.getUuid());
 			return BillingResult.skipped("Duplicate — bill already exists");
 		}
 		
 		Optional<BillLineItem> lineItemOpt = createBillLineItem(order);
 		if (!lineItemOpt.isPresent()) {
-			return BillingResult.skipped("No billable item found for order");
+			return recordOutcome(order, null, BillingResult.skipped("No billable item found for order"));
 		}
 		
-		return createBill(order.getPatient(), lineItemOpt.get(), order);
+		BillLineItem lineItem = lineItemOpt.get();
+		return recordOutcome(order, lineItem, createBill(order.getPatient(), lineItem, order));
+	}
+	
+	private BillingResult recordOutcome(Order order, BillLineItem lineItem, BillingResult result) {
+		if (result.getAction() == BillingResult.Action.SKIPPED) {
+			orderBillingDAO.recordOrderBillingOutcome(order, OrderBillingStatus.SKIPPED, result.getReason(), null);
+		} else {
+			OrderBillingStatus status = lineItem.getStatus() == BillLineItemStatus.EXEMPTED ? OrderBillingStatus.EXEMPTED
+			        : OrderBillingStatus.BILLED;
+			orderBillingDAO.recordOrderBillingOutcome(order, status, null, lineItem);
+		}
+		return result;
 	}
 	
 	protected BillingResult createBill(Patient patient, BillLineItem lineItem, Order order) {
@@ -145,27 +169,61 @@ public abstract class AbstractDefaultOrderBillingStrategy extends AbstractOrderB
 			return BillingResult.skipped("Cannot resolve cashier");
 		}
 		
-		CashPoint cashPoint = resolveCashPoint();
+		CashPoint cashPoint = resolveCashPoint(order);
 		if (cashPoint == null) {
 			log.error("Cannot resolve cash point for order: {}", order.getUuid());
 			return BillingResult.skipped("Cannot resolve cash point");
 		}
 		
+		Visit visit = order.getEncounter() != null ? order.getEncounter().getVisit() : null;
+		if (visit != null && isBillCoalescingEnabled()) {
+			TransactionTemplate txTemplate = new TransactionTemplate(transactionManager);
+			return txTemplate.execute(status -> {
+				Bill pendingBill = billService.getPendingBillForUpdate(patient, visit, cashPoint);
+				if (pendingBill != null) {
+					return appendToBill(pendingBill, lineItem);
+				}
+				return BillingResult.created(billService.saveBill(newBill(patient, cashier, cashPoint, visit, lineItem)));
+			});
+		}
+		
+		Bill savedBill = billService.saveBill(newBill(patient, cashier, cashPoint, visit, lineItem));
+		return BillingResult.created(savedBill);
+	}
+	
+	/**
+	 * Append an order line item to an existing pending bill. Only called while the bill is locked by
+	 * {@link BillService#getPendingBillForUpdate}.
+	 */
+	protected BillingResult appendToBill(Bill bill, BillLineItem lineItem) {
+		lineItem.setLineItemOrder(bill.getLineItems() == null ? 0 : bill.getLineItems().size());
+		bill.addLineItem(lineItem);
+		
+		Bill savedBill = billService.saveBill(bill);
+		return BillingResult.updated(savedBill);
+	}
+	
+	private Bill newBill(Patient patient, Provider cashier, CashPoint cashPoint, Visit visit, BillLineItem lineItem) {
 		Bill bill = new Bill();
 		bill.setPatient(patient);
 		bill.setStatus(BillStatus.PENDING);
 		bill.setCashier(cashier);
 		bill.setCashPoint(cashPoint);
-		if (order.getEncounter() != null) {
-			bill.setVisit(order.getEncounter().getVisit());
-		}
+		bill.setVisit(visit);
 		bill.addLineItem(lineItem);
-		
-		Bill savedBill = billService.saveBill(bill);
-		return BillingResult.created(savedBill);
+		return bill;
+	}
+	
+	/**
+	 * Whether order line items should be appended to the patient's pending bill for the visit instead
+	 * of each order creating its own bill.
+	 */
+	protected boolean isBillCoalescingEnabled() {
+		return Boolean.parseBoolean(
+		    StringUtils.trim(administrationService.getGlobalProperty(ModuleSettings.ORDER_BILLING_COALESCE_BILLS_PROPERTY)));
 	}
 	
-	// resolveCashier() and resolveCashPoint() are inherited from the interface
+	// resolveCashier(Order) and resolveCashPoint(Order) are inherited from the interface
 	// and must be implemented by concrete strategy classes.
 	
 	/**
@@ -187,16 +245,15 @@ public abstract class AbstractDefaultOrderBillingStrategy extends AbstractOrderB
 			return false;
 		}
 		
-		List<BillExemption> exemptions = billExemptionService.getExemptionsByConcept(order.getConcept(), exemptionType,
-		    false);
-		if (exemptions == null || exemptions.isEmpty()) {
+		List<BillExemptionRule> rules = billExemptionService.getActiveExemptionRules(order.getConcept(), exemptionType);
+		if (rules == null || rules.isEmpty()) {
 			return false;
 		}
 		
 		Map<String, Object> variables = buildExemptionVariables(order);
 		
-		for (BillExemption exemption : exemptions) {
-			if (exemptionRuleEngine.isExemptionApplicable(exemption, variables)) {
+		for (BillExemptionRule rule : rules) {
+			if (exemptionRuleEngine.evaluateRule(rule, variables)) {
 				return true;
 			}
 		}
@@ -204,28 +261,11 @@ public abstract class AbstractDefaultOrderBillingStrategy extends AbstractOrderB
 		return false;
 	}
 	
+	/**
+	 * The variables are resolved by the registered {@link ExemptionVariableProvider}s when a rule
+	 * first reads them, so an order is only charged for the variables its rules actually use.
+	 */
 	protected Map<String, Object> buildExemptionVariables(Order order) {
-		Map<String, Object> variables = new HashMap<>();
-		
-		Patient patient = order.getPatient();
-		variables.put("patient", patient);
-		if (patient != null) {
-			variables.put("patientAge", patient.getAge());
-		}
-		
-		Map<String, Object> orderData = new HashMap<>();
-		orderData.put("uuid", order.getUuid());
-		if (order.getConcept() != null) {
-			orderData.put("conceptId", order.getConcept().getConceptId());
-		}
-		variables.put("order", orderData);
-		
-		List<PatientProgram> programs = programWorkflowService.getPatientPrograms(patient, null, null, null, new Date(),
-		    null, false);
-		List<String> activePrograms = programs.stream().filter(PatientProgram::getActive)
-		        .map(pp -> pp.getProgram().getName()).collect(Collectors.toList());
-		variables.put("activePrograms", activePrograms);
-		
-		return variables;
+		return exemptionVariableRegistry.createVariables(order);
 	}
 }
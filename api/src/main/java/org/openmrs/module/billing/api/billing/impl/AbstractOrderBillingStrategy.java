@@ -18,7 +18,6 @@ import org.openmrs.Provider;
 import org.openmrs.api.db.hibernate.HibernateUtil;
 import org.openmrs.module.billing.api.billing.BillingResult;
 import org.openmrs.module.billing.api.billing.OrderBillingStrategy;
-import org.openmrs.module.billing.api.model.CashPoint;
 import org.springframework.core.Ordered;
 
 import java.util.Set;
@@ -69,6 +68,19 @@ public abstract class AbstractOrderBillingStrategy implements OrderBillingStrate
 		return supportedActions.contains(realOrder.getAction()) && supportsOrder(realOrder);
 	}
 	
+	@Override
+	public boolean supportsType(Class<? extends Order> orderClass, Order.Action action) {
+		return supportedActions.contains(action) && supportsOrderType(orderClass);
+	}
+	
+	/**
+	 * Whether this strategy could handle orders of the given concrete class. Must agree with
+	 * {@link #supportsOrder(Order)}; the default accepts every class.
+	 */
+	protected boolean supportsOrderType(Class<? extends Order> orderClass) {
+		return true;
+	}
+	
 	/**
 	 * Whether this strategy handles the given (already deproxied) order. Subclasses only need to check
 	 * the order type here — the base class handles action filtering and deproxying.
@@ -93,9 +105,4 @@ public abstract class AbstractOrderBillingStrategy implements OrderBillingStrate
 	public Provider resolveCashier(Order order) {
 		return null;
 	}
-	
-	@Override
-	public CashPoint resolveCashPoint() {
-		return null;
-	}
 }
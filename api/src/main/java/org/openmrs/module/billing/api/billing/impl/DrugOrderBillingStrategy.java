@@ -16,8 +16,11 @@ import java.util.Optional;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.openmrs.DrugOrder;
+import org.openmrs.Encounter;
 import org.openmrs.Order;
 import org.openmrs.Provider;
+import org.openmrs.module.billing.api.billing.DrugPriceCache;
+import org.openmrs.module.billing.api.billing.DrugPriceCache.DrugPrice;
 import org.openmrs.module.billing.api.model.BillLineItemStatus;
 import org.openmrs.module.billing.api.model.CashPoint;
 import org.openmrs.module.billing.api.ItemPriceService;
@@ -31,7 +34,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 /**
  * Default billing strategy for {@link DrugOrder}s. Creates a bill line item based on the stock item
- * linked to the ordered drug.
+ * linked to the ordered drug. The stock item and price of each drug are kept in the
+ * {@link DrugPriceCache}.
  */
 @Slf4j
 @Setter(onMethod_ = @Autowired)
@@ -41,11 +45,18 @@ public class DrugOrderBillingStrategy extends AbstractDefaultOrderBillingStrateg
 	
 	private ItemPriceService itemPriceService;
 	
+	private DrugPriceCache drugPriceCache;
+	
 	@Override
 	protected boolean supportsOrder(Order order) {
 		return order instanceof DrugOrder;
 	}
 	
+	@Override
+	protected boolean supportsOrderType(Class<? extends Order> orderClass) {
+		return DrugOrder.class.isAssignableFrom(orderClass);
+	}
+	
 	@Override
 	protected Optional<BillLineItem> createBillLineItem(Order order) {
 		DrugOrder drugOrder = (DrugOrder) order;
@@ -56,9 +67,9 @@ public class DrugOrderBillingStrategy extends AbstractDefaultOrderBillingStrateg
 		}
 		
 		Integer drugId = drugOrder.getDrug().getDrugId();
-		List<StockItem> stockItems = stockManagementService.getStockItemByDrug(drugId);
+		DrugPrice drugPrice = drugPriceCache.get(drugId, this::loadDrugPrice);
 		
-		if (stockItems.isEmpty()) {
+		if (drugPrice == null) {
 			log.debug("No stock item found for drug ID: {}", drugId);
 			return Optional.empty();
 		}
@@ -67,16 +78,27 @@ public class DrugOrderBillingStrategy extends AbstractDefaultOrderBillingStrateg
 		boolean isExempted = checkIfOrderIsExempted(order, ExemptionType.COMMODITY);
 		BillLineItemStatus lineItemStatus = isExempted ? BillLineItemStatus.EXEMPTED : BillLineItemStatus.PENDING;
 		
-		StockItem stockItem = stockItems.get(0);
-		BillLineItem lineItem = createLineItem(resolvePrice(stockItem), quantity, lineItemStatus, order);
+		// A cache hit needs no query: the reference is only loaded if the purchase price has to be read
+		StockItem stockItem = orderBillingDAO.getStockItemReference(drugPrice.getStockItemId());
+		BillLineItem lineItem = createLineItem(resolvePrice(drugPrice, stockItem), quantity, lineItemStatus, order);
 		lineItem.setItem(stockItem);
 		return Optional.of(lineItem);
 	}
 	
-	private BigDecimal resolvePrice(StockItem stockItem) {
+	private DrugPrice loadDrugPrice(Integer drugId) {
+		List<StockItem> stockItems = stockManagementService.getStockItemByDrug(drugId);
+		if (stockItems.isEmpty()) {
+			return null;
+		}
+		
+		StockItem stockItem = stockItems.get(0);
 		List<CashierItemPrice> itemPrices = itemPriceService.getItemPrice(stockItem);
-		if (!itemPrices.isEmpty()) {
-			return itemPrices.get(0).getPrice();
+		return new DrugPrice(stockItem.getId(), itemPrices.isEmpty() ? null : itemPrices.get(0).getPrice());
+	}
+	
+	private BigDecimal resolvePrice(DrugPrice drugPrice, StockItem stockItem) {
+		if (drugPrice.getPrice() != null) {
+			return drugPrice.getPrice();
 		} else if (stockItem.getPurchasePrice() != null) {
 			return stockItem.getPurchasePrice();
 		}
@@ -89,8 +111,8 @@ public class DrugOrderBillingStrategy extends AbstractDefaultOrderBillingStrateg
 	}
 	
 	@Override
-	public CashPoint resolveCashPoint() {
-		List<CashPoint> cashPoints = cashPointService.getAllCashPoints(false);
-		return cashPoints.isEmpty() ? null : cashPoints.get(0);
+	public CashPoint resolveCashPoint(Order order) {
+		Encounter encounter = order.getEncounter();
+		return cashPointService.resolveCashPoint(encounter != null ? encounter.getLocation() : null);
 	}
 }
@@ -15,6 +15,7 @@ import java.util.Optional;
 
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.openmrs.Encounter;
 import org.openmrs.Order;
 import org.openmrs.Provider;
 import org.openmrs.TestOrder;
@@ -48,6 +49,11 @@ public class TestOrderBillingStrategy extends AbstractDefaultOrderBillingStrateg
 		return order instanceof TestOrder;
 	}
 	
+	@Override
+	protected boolean supportsOrderType(Class<? extends Order> orderClass) {
+		return TestOrder.class.isAssignableFrom(orderClass);
+	}
+	
 	@Override
 	protected Optional<BillLineItem> createBillLineItem(Order order) {
 		TestOrder testOrder = (TestOrder) order;
@@ -91,8 +97,8 @@ public class TestOrderBillingStrategy extends AbstractDefaultOrderBillingStrateg
 	}
 	
 	@Override
-	public CashPoint resolveCashPoint() {
-		List<CashPoint> cashPoints = cashPointService.getAllCashPoints(false);
-		return cashPoints.isEmpty() ? null : cashPoints.get(0);
+	public CashPoint resolveCashPoint(Order order) {
+		Encounter encounter = order.getEncounter();
+		return cashPointService.resolveCashPoint(encounter != null ? encounter.getLocation() : null);
 	}
 }
@@ -9,12 +9,21 @@
  */
 package org.openmrs.module.billing.api.db;
 
+import org.openmrs.Patient;
+import org.openmrs.Visit;
 import org.openmrs.module.billing.api.base.PagingInfo;
 import org.openmrs.module.billing.api.model.Bill;
+import org.openmrs.module.billing.api.model.BillLookupStatistics;
+import org.openmrs.module.billing.api.model.BillStatus;
+import org.openmrs.module.billing.api.model.BillSummary;
+import org.openmrs.module.billing.api.model.CashPoint;
+import org.openmrs.module.billing.api.search.BillFetchPlan;
 import org.openmrs.module.billing.api.search.BillSearch;
 
 import javax.annotation.Nonnull;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Data Access Object (DAO) interface for {@link Bill} persistence operations.
@@ -44,6 +53,15 @@ public interface BillDAO {
 	 */
 	Bill getBillByUuid(@Nonnull String uuid);
 	
+	/**
+	 * Retrieves a bill by its UUID, loading the associations of a fetch plan with it.
+	 *
+	 * @param uuid the UUID of the bill (must not be null)
+	 * @param fetchPlan the associations to load with the bill, or null for the mapped defaults
+	 * @return the bill with the specified UUID, or null if not found
+	 */
+	Bill getBillByUuid(@Nonnull String uuid, BillFetchPlan fetchPlan);
+	
 	/**
 	 * Retrieves a bill by its receipt number.
 	 * <p>
@@ -56,6 +74,14 @@ public interface BillDAO {
 	 */
 	Bill getBillByReceiptNumber(@Nonnull String receiptNumber);
 	
+	/**
+	 * Returns how often bills looked up by uuid or receipt number were loaded by their remembered id
+	 * rather than queried.
+	 *
+	 * @return the lookup statistics since startup
+	 */
+	BillLookupStatistics getLookupStatistics();
+	
 	/**
 	 * Retrieves all bills for a specific patient.
 	 * <p>
@@ -72,19 +98,42 @@ public interface BillDAO {
 	/**
 	 * Searches for bills using the specified search criteria.
 	 * <p>
-	 * Results are ordered by date created descending (most recent first). By default, voided bills are
-	 * excluded from results unless {@link BillSearch#setIncludeVoided(Boolean)} is set to true. The
-	 * search criteria support filtering by patient, cashier, cash point, and status.
+	 * Results are ordered by date created descending (most recent first) unless
+	 * {@link BillSearch#getSortOrder()} asks for another order. By default, voided bills are excluded
+	 * from results unless {@link BillSearch#setIncludeVoided(Boolean)} is set to true. The search
+	 * criteria support filtering by patient, cashier, cash point, status and outstanding balance.
 	 * </p>
 	 *
 	 * @param billSearch the search criteria (must not be null)
 	 * @param pagingInfo optional paging information (can be null for no paging). When provided with
 	 *            {@code loadRecordCount=true}, the total count will be populated in the pagingInfo
 	 * @return a list of bills matching the search criteria, or an empty list if none found
+	 * @throws IllegalArgumentException if keyset paging is asked for bills that are not ordered newest
+	 *             first
 	 * @see BillSearch
 	 */
 	List<Bill> getBills(@Nonnull BillSearch billSearch, PagingInfo pagingInfo);
 	
+	/**
+	 * Searches for bills like {@link #getBills(BillSearch, PagingInfo)} but returns summaries whose
+	 * amounts are the totals stored on the bills, without loading the bills.
+	 *
+	 * @param billSearch the search criteria (must not be null)
+	 * @param pagingInfo optional paging information (can be null for no paging)
+	 * @return the summaries of the matching bills, in the order of the search
+	 */
+	List<BillSummary> getBillSummaries(@Nonnull BillSearch billSearch, PagingInfo pagingInfo);
+	
+	/**
+	 * Finds which of the given patients have at least one non-voided bill, optionally in one of the
+	 * given statuses. Each patient is checked with an EXISTS subquery, so no bills are loaded.
+	 *
+	 * @param patientIds the patients to check (must not be null)
+	 * @param statuses the bill statuses to look for, or null or empty for any status
+	 * @return the ids of the patients that have such a bill
+	 */
+	Set<Integer> getPatientIdsWithBills(@Nonnull Collection<Integer> patientIds, Collection<BillStatus> statuses);
+	
 	/**
 	 * Persists a bill to the database.
 	 * <p>
@@ -108,4 +157,17 @@ public interface BillDAO {
 	 */
 	void purgeBill(@Nonnull Bill bill);
 	
+	/**
+	 * Retrieves the most recent non-voided PENDING bill for the patient, visit and cash point with a
+	 * pessimistic write lock. The visit row is locked before the lookup so that concurrent callers
+	 * wanting a bill for the same visit wait for the current transaction to end, even when no bill
+	 * exists yet.
+	 *
+	 * @param patient the patient the bill belongs to (must not be null)
+	 * @param visit the visit the bill is attached to (must not be null)
+	 * @param cashPoint the cash point the bill is assigned to (must not be null)
+	 * @return the locked pending bill, or null if none exists
+	 */
+	Bill getPendingBillForUpdate(@Nonnull Patient patient, @Nonnull Visit visit, @Nonnull CashPoint cashPoint);
+	
 }
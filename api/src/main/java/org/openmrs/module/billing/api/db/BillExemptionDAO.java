@@ -26,4 +26,9 @@ public interface BillExemptionDAO {
 	List<BillExemption> getExemptionsByConcept(Concept concept, ExemptionType itemType, boolean includeRetired);
 	
 	List<BillExemption> getExemptionsByItemType(ExemptionType itemType, boolean includeRetired);
+	
+	/**
+	 * @return all non-retired exemptions with their rules loaded in the same query
+	 */
+	List<BillExemption> getActiveExemptionsWithRules();
 }
@@ -0,0 +1,52 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.db;
+
+import org.openmrs.module.billing.api.base.PagingInfo;
+import org.openmrs.module.billing.api.model.SequenceUsageSnapshot;
+
+import javax.annotation.Nonnull;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) interface for reserving values from the receipt number group sequences
+ * and for recording how they are used.
+ */
+public interface GroupSequenceDAO {
+	
+	/**
+	 * Atomically adds to the value of a group sequence with a single update statement. The updated
+	 * row stays locked until the current transaction ends, so concurrent reservations on any node are
+	 * serialized by the database without a separate locking select.
+	 *
+	 * @param group the sequence group (must not be null)
+	 * @param delta the amount to add to the sequence value
+	 * @return the new sequence value, or null if the group has no sequence yet
+	 */
+	Integer addToSequence(@Nonnull String group, int delta);
+	
+	/**
+	 * Saves a usage snapshot of a group sequence.
+	 *
+	 * @param snapshot the snapshot to save (must not be null)
+	 */
+	void saveUsageSnapshot(@Nonnull SequenceUsageSnapshot snapshot);
+	
+	/**
+	 * Retrieves the usage snapshots of a group sequence, or of all of them, oldest first.
+	 *
+	 * @param group the sequence group, or null for all groups
+	 * @param since the earliest snapshot date, or null for all snapshots
+	 * @param pagingInfo the paging information, or null for all matching snapshots
+	 * @return the matching snapshots, or an empty list if none match
+	 */
+	List<SequenceUsageSnapshot> getUsageSnapshots(String group, Date since, PagingInfo pagingInfo);
+}
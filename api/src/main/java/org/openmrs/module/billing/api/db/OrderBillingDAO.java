@@ -0,0 +1,77 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.db;
+
+import org.openmrs.Order;
+import org.openmrs.module.billing.api.model.BillLineItem;
+import org.openmrs.module.billing.api.model.OrderBillingRecord;
+import org.openmrs.module.billing.api.model.OrderBillingStatus;
+import org.openmrs.module.stockmanagement.api.model.StockItem;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) interface for the order lookups performed by the order billing pipeline
+ * and for the order billing ledger.
+ */
+public interface OrderBillingDAO {
+	
+	/**
+	 * Retrieves the orders with the given UUIDs in a single query. UUIDs that do not match an order
+	 * are ignored.
+	 *
+	 * @param uuids the order UUIDs to load (must not be null)
+	 * @return the matching orders in no particular order, or an empty list if none match
+	 */
+	List<Order> getOrdersByUuids(@Nonnull Collection<String> uuids);
+	
+	/**
+	 * Returns a reference to a stock item without loading it. The stock item is loaded from the
+	 * database the first time one of its properties other than the id is read.
+	 *
+	 * @param stockItemId the id of an existing stock item (must not be null)
+	 * @return a reference to the stock item
+	 */
+	StockItem getStockItemReference(@Nonnull Integer stockItemId);
+	
+	/**
+	 * Claims an order for billing by inserting its ledger record. The unique key on the order makes
+	 * the claim atomic: when the same order is billed concurrently only one transaction succeeds, and
+	 * the others see the order as already claimed. An order whose ledger record is
+	 * {@link OrderBillingStatus#SKIPPED} is claimed again, so it is billed once the configuration that
+	 * caused it to be skipped has been fixed.
+	 *
+	 * @param order a persisted order (must not be null)
+	 * @return true if the order was claimed, false if it is already claimed, billed or exempted
+	 */
+	boolean claimOrder(@Nonnull Order order);
+	
+	/**
+	 * Records the outcome of billing a claimed order in its ledger record.
+	 *
+	 * @param order the claimed order (must not be null)
+	 * @param status the outcome (must not be null)
+	 * @param reason why the order was skipped, or null
+	 * @param lineItem the line item created for the order, or null
+	 */
+	void recordOrderBillingOutcome(@Nonnull Order order, @Nonnull OrderBillingStatus status, String reason,
+	        BillLineItem lineItem);
+	
+	/**
+	 * Retrieves the ledger record of an order.
+	 *
+	 * @param order the order (must not be null)
+	 * @return the order's ledger record, or null if the order has not been claimed
+	 */
+	OrderBillingRecord getOrderBillingRecord(@Nonnull Order order);
+	
+}
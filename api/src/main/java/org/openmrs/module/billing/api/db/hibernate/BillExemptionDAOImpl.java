@@ -100,4 +100,12 @@ public class BillExemptionDAOImpl implements BillExemptionDAO {
 		return session.createQuery(query).getResultList();
 	}
 	
+	@Override
+	public List<BillExemption> getActiveExemptionsWithRules() {
+		return sessionFactory.getCurrentSession()
+		        .createQuery("select distinct e from BillExemption e left join fetch e.rules where e.retired = false",
+		            BillExemption.class)
+		        .getResultList();
+	}
+	
 }
@@ -0,0 +1,118 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.db.hibernate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import lombok.Setter;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.module.billing.ModuleSettings;
+import org.openmrs.module.billing.api.model.Bill;
+import org.openmrs.module.billing.api.model.BillLookupStatistics;
+import org.openmrs.module.billing.api.util.BoundedCache;
+import org.openmrs.module.billing.api.util.GlobalPropertyUtil;
+import org.openmrs.module.billing.api.util.LazyBoundedCache;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Size-bounded map from bill uuids and receipt numbers to bill ids, so that repeated lookups load the
+ * bill by id from the session or the second-level cache instead of querying for it. Only bills that
+ * were found are remembered, and the bill loaded for a remembered id is checked against the uuid or
+ * receipt number it was looked up by, so a receipt number that is assigned or changed after a lookup
+ * never returns the wrong bill. The maximum size is read from
+ * {@link ModuleSettings#BILL_LOOKUP_CACHE_SIZE_PROPERTY} when the cache is first used.
+ */
+public class BillLookupCache {
+	
+	public static final int DEFAULT_MAX_SIZE = 10000;
+	
+	/**
+	 * The unique values a bill can be looked up by.
+	 */
+	public enum Key {
+		
+		UUID(Bill::getUuid),
+		
+		RECEIPT_NUMBER(Bill::getReceiptNumber);
+		
+		private final Function<Bill, String> value;
+		
+		Key(Function<Bill, String> value) {
+			this.value = value;
+		}
+	}
+	
+	@Setter(onMethod_ = @Autowired)
+	private AdministrationService administrationService;
+	
+	private final LazyBoundedCache<String, Integer> entries = new LazyBoundedCache<>(this::getMaxSize);
+	
+	private final AtomicLong hits = new AtomicLong();
+	
+	private final AtomicLong misses = new AtomicLong();
+	
+	private final AtomicLong staleEntries = new AtomicLong();
+	
+	/**
+	 * Returns the bill with the given uuid or receipt number, loading it by its remembered id when
+	 * possible and running the query otherwise.
+	 *
+	 * @param key what the value is
+	 * @param value the uuid or receipt number to look up
+	 * @param loadById loads a bill by id, or returns null if it no longer exists
+	 * @param query finds the bill by the value when its id is not remembered
+	 * @return the bill, or null if no bill has the value
+	 */
+	public Bill get(Key key, String value, Function<Integer, Bill> loadById, Supplier<Bill> query) {
+		BoundedCache<String, Integer> current = entries.get();
+		String entry = key.name() + ':' + value;
+		
+		Integer billId = current.get(entry);
+		if (billId != null) {
+			Bill bill = loadById.apply(billId);
+			if (bill != null && value.equals(key.value.apply(bill))) {
+				hits.incrementAndGet();
+				return bill;
+			}
+			
+			// The bill was purged, rolled back or given another receipt number since it was looked up
+			current.remove(entry);
+			staleEntries.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		
+		Bill bill = query.get();
+		if (bill != null && bill.getId() != null) {
+			current.put(entry, bill.getId());
+		}
+		return bill;
+	}
+	
+	/**
+	 * @return a point-in-time view of the cache size and hit rate since startup
+	 */
+	public BillLookupStatistics getStatistics() {
+		long hitCount = hits.get();
+		long missCount = misses.get();
+		long staleCount = staleEntries.get();
+		
+		return BillLookupStatistics.builder().size(entries.size()).maxSize(entries.getMaxSize()).hits(hitCount)
+		        .misses(missCount).staleEntries(staleCount)
+		        .hitRate(LazyBoundedCache.hitRate(hitCount, hitCount + missCount + staleCount)).build();
+	}
+	
+	private int getMaxSize() {
+		return GlobalPropertyUtil.getPositiveIntProperty(administrationService,
+		    ModuleSettings.BILL_LOOKUP_CACHE_SIZE_PROPERTY, DEFAULT_MAX_SIZE);
+	}
+}
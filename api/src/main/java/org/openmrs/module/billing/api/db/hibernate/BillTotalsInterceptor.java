@@ -0,0 +1,129 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.db.hibernate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Hibernate;
+import org.hibernate.type.Type;
+import org.openmrs.module.billing.api.model.Bill;
+import org.openmrs.module.billing.api.model.BillDiscount;
+import org.openmrs.module.billing.api.model.BillLineItem;
+import org.openmrs.module.billing.api.model.Payment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the stored totals of each {@link Bill} in step with its line items, payments and discounts.
+ * Before every flush each bill in the session recomputes the parts it may have changed: those whose
+ * collection is loaded, and those with a line item, payment or discount in the session. Collections
+ * that were never loaded cannot have changed, so they are not read. Bills whose totals changed are
+ * then updated by the flush itself. New bills get their totals when they are first saved.
+ */
+@Component("billTotalsInterceptor")
+public class BillTotalsInterceptor extends EmptyInterceptor {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private enum Part {
+		BILL,
+		LINE_ITEMS,
+		PAYMENTS,
+		DISCOUNTS
+	}
+	
+	@Override
+	public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+		if (!(entity instanceof Bill)) {
+			return false;
+		}
+		
+		Bill bill = (Bill) entity;
+		bill.updateStoredTotals();
+		setState(state, propertyNames, "storedTotal", bill.getStoredTotal());
+		setState(state, propertyNames, "storedTotalPaid", bill.getStoredTotalPaid());
+		setState(state, propertyNames, "storedTotalDiscount", bill.getStoredTotalDiscount());
+		return true;
+	}
+	
+	@Override
+	@SuppressWarnings("rawtypes")
+	public void preFlush(Iterator entities) {
+		// Collect first: resolving a bill proxy loads it, which must not happen while iterating the session
+		List<Object> touchedBills = new ArrayList<>();
+		List<Part> touchedParts = new ArrayList<>();
+		while (entities.hasNext()) {
+			Object entity = entities.next();
+			Part part = getPart(entity);
+			Object bill = part == null ? null : getBill(entity);
+			if (bill != null) {
+				touchedBills.add(bill);
+				touchedParts.add(part);
+			}
+		}
+		
+		Map<Bill, Set<Part>> bills = new IdentityHashMap<>();
+		for (int i = 0; i < touchedBills.size(); i++) {
+			Bill bill = (Bill) Hibernate.unproxy(touchedBills.get(i));
+			bills.computeIfAbsent(bill, key -> EnumSet.noneOf(Part.class)).add(touchedParts.get(i));
+		}
+		for (Map.Entry<Bill, Set<Part>> entry : bills.entrySet()) {
+			Bill bill = entry.getKey();
+			Set<Part> parts = entry.getValue();
+			bill.updateStoredTotals(parts.contains(Part.LINE_ITEMS) || Hibernate.isInitialized(bill.getLineItems()),
+			    parts.contains(Part.PAYMENTS) || Hibernate.isInitialized(bill.getPayments()),
+			    parts.contains(Part.DISCOUNTS) || Hibernate.isInitialized(bill.getDiscounts()));
+		}
+	}
+	
+	private static Part getPart(Object entity) {
+		if (entity instanceof Bill) {
+			return Part.BILL;
+		}
+		if (entity instanceof BillLineItem) {
+			return Part.LINE_ITEMS;
+		}
+		if (entity instanceof Payment) {
+			return Part.PAYMENTS;
+		}
+		if (entity instanceof BillDiscount) {
+			return Part.DISCOUNTS;
+		}
+		return null;
+	}
+	
+	private static Object getBill(Object entity) {
+		if (entity instanceof Bill) {
+			return entity;
+		}
+		if (entity instanceof BillLineItem) {
+			return ((BillLineItem) entity).getBill();
+		}
+		if (entity instanceof Payment) {
+			return ((Payment) entity).getBill();
+		}
+		return ((BillDiscount) entity).getBill();
+	}
+	
+	private static void setState(Object[] state, String[] propertyNames, String propertyName, Object value) {
+		int index = ArrayUtils.indexOf(propertyNames, propertyName);
+		if (index >= 0) {
+			state[index] = value;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.db.hibernate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.persistence.Parameter;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.EntityType;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.query.Query;
+import org.openmrs.module.billing.api.base.RecordCounter;
+
+/**
+ * Counts the records of an entity that match a list of JPA criteria predicates.
+ *
+ * @param <T> The entity type.
+ */
+@Slf4j
+class CriteriaCountQuery<T> implements RecordCounter.CountQuery {
+	
+	private final SessionFactory sessionFactory;
+	
+	private final Class<T> entityClass;
+	
+	private final List<Predicate> predicates;
+	
+	private TypedQuery<Long> countQuery;
+	
+	CriteriaCountQuery(SessionFactory sessionFactory, Class<T> entityClass, List<Predicate> predicates) {
+		this.sessionFactory = sessionFactory;
+		this.entityClass = entityClass;
+		this.predicates = predicates;
+	}
+	
+	@Override
+	public long count() {
+		Long count = getCountQuery().getSingleResult();
+		return count == null ? 0 : count;
+	}
+	
+	@Override
+	public long countUpTo(int limit) {
+		Session session = sessionFactory.getCurrentSession();
+		CriteriaBuilder cb = session.getCriteriaBuilder();
+		CriteriaQuery<Object> idQuery = cb.createQuery(Object.class);
+		Root<T> root = idQuery.from(entityClass);
+		
+		EntityType<T> type = session.getMetamodel().entity(entityClass);
+		Path<?> id = root.get(type.getId(type.getIdType().getJavaType()));
+		idQuery.select(id);
+		where(idQuery);
+		
+		return session.createQuery(idQuery).setMaxResults(limit).getResultList().size();
+	}
+	
+	@Override
+	public Long estimate() {
+		return predicates == null || predicates.isEmpty() ? estimateRowCount(sessionFactory, entityClass)
+		        : null;
+	}
+	
+	@Override
+	public Object getSignature() {
+		try {
+			Query<?> query = getCountQuery().unwrap(Query.class);
+			Map<String, Object> parameters = new TreeMap<>();
+			for (Parameter<?> parameter : query.getParameters()) {
+				String name = parameter.getName() != null ? parameter.getName() : String.valueOf(parameter.getPosition());
+				parameters.put(name, query.getParameterValue(parameter));
+			}
+			return Arrays.asList(entityClass.getName(), query.getQueryString(), parameters);
+		}
+		catch (RuntimeException ex) {
+			log.debug("Could not read the parameters of the {} count query; the count will not be cached",
+			    entityClass.getSimpleName(), ex);
+			return null;
+		}
+	}
+	
+	private TypedQuery<Long> getCountQuery() {
+		if (countQuery == null) {
+			Session session = sessionFactory.getCurrentSession();
+			CriteriaBuilder cb = session.getCriteriaBuilder();
+			CriteriaQuery<Long> query = cb.createQuery(Long.class);
+			Root<T> root = query.from(entityClass);
+			query.select(cb.count(root));
+			where(query);
+			
+			countQuery = session.createQuery(query);
+		}
+		return countQuery;
+	}
+	
+	private void where(CriteriaQuery<?> query) {
+		if (predicates != null && !predicates.isEmpty()) {
+			query.where(predicates.toArray(new Predicate[0]));
+		}
+	}
+	
+	/**
+	 * Reads the database's estimate of the number of rows in an entity's table. Estimates are
+	 * available on MySQL, MariaDB and PostgreSQL and may be off by a large margin until the table has
+	 * been analyzed.
+	 *
+	 * @param sessionFactory The Hibernate session factory.
+	 * @param entityClass The entity class.
+	 * @return The estimated row count, or null if the database does not provide one.
+	 */
+	private static Long estimateRowCount(SessionFactory sessionFactory, Class<?> entityClass) {
+		SessionFactoryImplementor factory = sessionFactory.unwrap(SessionFactoryImplementor.class);
+		EntityPersister persister = factory.getMetamodel().entityPersister(entityClass);
+		if (!(persister instanceof AbstractEntityPersister)) {
+			return null;
+		}
+		
+		String sql;
+		Dialect dialect = factory.getJdbcServices().getDialect();
+		if (dialect instanceof MySQLDialect) {
+			sql = "select table_rows from information_schema.tables where table_schema = database() and table_name = :table";
+		} else if (dialect instanceof PostgreSQL81Dialect) {
+			sql = "select cast(reltuples as bigint) from pg_class where relname = :table and relkind = 'r'";
+		} else {
+			return null;
+		}
+		
+		String table = StringUtils.substringAfterLast("." + ((AbstractEntityPersister) persister).getTableName(), ".");
+		List<?> rows = sessionFactory.getCurrentSession().createNativeQuery(sql)
+		        .setParameter("table", StringUtils.strip(table, "`\"")).setMaxResults(1).getResultList();
+		if (rows.isEmpty() || !(rows.get(0) instanceof Number) || ((Number) rows.get(0)).longValue() < 0) {
+			return null;
+		}
+		return ((Number) rows.get(0)).longValue();
+	}
+}
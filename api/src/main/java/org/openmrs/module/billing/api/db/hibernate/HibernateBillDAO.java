@@ -13,27 +13,58 @@ import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.LockMode;
+import org.hibernate.LockOptions;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.openmrs.Patient;
-import org.openmrs.api.context.Context;
-import org.openmrs.api.db.hibernate.HibernatePatientDAO;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.Person;
+import org.openmrs.PersonName;
+import org.openmrs.Visit;
+import org.openmrs.module.billing.api.base.KeysetPagingInfo;
 import org.openmrs.module.billing.api.base.PagingInfo;
 import org.openmrs.module.billing.api.db.BillDAO;
 import org.openmrs.module.billing.api.model.Bill;
+import org.openmrs.module.billing.api.model.BillLookupStatistics;
+import org.openmrs.module.billing.api.model.BillStatus;
+import org.openmrs.module.billing.api.model.BillSummary;
+import org.openmrs.module.billing.api.model.CashPoint;
 import org.openmrs.module.billing.api.model.BillDiscount;
 import org.openmrs.module.billing.api.model.BillRefund;
+import org.openmrs.module.billing.api.search.BillFetchPlan;
 import org.openmrs.module.billing.api.search.BillSearch;
+import org.openmrs.module.billing.api.search.BillSortOrder;
+import org.openmrs.module.billing.api.search.PatientNameMatchMode;
 
 import javax.annotation.Nonnull;
+import javax.persistence.EntityGraph;
+import javax.persistence.LockModeType;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import javax.persistence.criteria.Subquery;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.openmrs.module.billing.api.db.hibernate.PagingUtil.applyPaging;
 
@@ -50,9 +81,30 @@ public class HibernateBillDAO implements BillDAO {
 	
 	private static final String FIELD_VOIDED = "voided";
 	
+	private static final String FIELD_DATE_CREATED = "dateCreated";
+	
+	private static final String FIELD_ID = "id";
+	
+	private static final String FIELD_STORED_TOTAL = "storedTotal";
+	
+	private static final String FIELD_STORED_TOTAL_PAID = "storedTotalPaid";
+	
+	private static final String FIELD_STORED_TOTAL_DISCOUNT = "storedTotalDiscount";
+	
+	private static final String[] PERSON_NAME_FIELDS = { "givenName", "middleName", "familyName", "familyName2" };
+	
+	private static final char LIKE_ESCAPE = '!';
+	
+	private static final String LOAD_GRAPH_HINT = "javax.persistence.loadgraph";
+	
+	private static final int PATIENT_BATCH_SIZE = 500;
+	
 	@Setter(AccessLevel.PROTECTED)
 	private SessionFactory sessionFactory;
 	
+	@Setter(AccessLevel.PROTECTED)
+	private BillLookupCache billLookupCache;
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -66,10 +118,17 @@ public class HibernateBillDAO implements BillDAO {
 	 */
 	@Override
 	public Bill getBillByUuid(@Nonnull String uuid) {
-		TypedQuery<Bill> query = sessionFactory.getCurrentSession().createQuery("select b from Bill b where b.uuid = :uuid",
-		    Bill.class);
-		query.setParameter("uuid", uuid);
-		return query.getResultStream().findFirst().orElse(null);
+		return getBillByUuid(uuid, null);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Bill getBillByUuid(@Nonnull String uuid, BillFetchPlan fetchPlan) {
+		Session session = sessionFactory.getCurrentSession();
+		return billLookupCache.get(BillLookupCache.Key.UUID, uuid, id -> findBill(session, id, fetchPlan),
+		    () -> findBillByUuid(session, uuid, fetchPlan));
 	}
 	
 	/**
@@ -77,10 +136,17 @@ public class HibernateBillDAO implements BillDAO {
 	 */
 	@Override
 	public Bill getBillByReceiptNumber(@Nonnull String receiptNumber) {
-		TypedQuery<Bill> query = sessionFactory.getCurrentSession()
-		        .createQuery("select b from Bill b where b.receiptNumber = :receiptNumber", Bill.class);
-		query.setParameter("receiptNumber", receiptNumber);
-		return query.getResultStream().findFirst().orElse(null);
+		Session session = sessionFactory.getCurrentSession();
+		return billLookupCache.get(BillLookupCache.Key.RECEIPT_NUMBER, receiptNumber, this::getBill,
+		    () -> findBillByReceiptNumber(session, receiptNumber));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public BillLookupStatistics getLookupStatistics() {
+		return billLookupCache.getStatistics();
 	}
 	
 	/**
@@ -120,18 +186,153 @@ public class HibernateBillDAO implements BillDAO {
 		
 		List<Predicate> predicates = buildBillSearchPredicate(cb, cq, root, billSearch);
 		
+		if (pagingInfo instanceof KeysetPagingInfo) {
+			requireNewestFirst(billSearch);
+			return getBillsAfter(session, cq, root, predicates, (KeysetPagingInfo) pagingInfo,
+			    billSearch.getFetchPlan());
+		}
+		
 		if (!predicates.isEmpty()) {
 			cq.where(predicates.toArray(new Predicate[0]));
 		}
-		cq.orderBy(cb.desc(root.get("dateCreated")));
+		cq.orderBy(orderBy(cb, root, billSearch.getSortOrder()));
 		
 		TypedQuery<Bill> query = session.createQuery(cq);
+		applyFetchPlan(session, query, billSearch.getFetchPlan(), pagingInfo != null);
 		
 		applyPaging(query, pagingInfo, predicates, sessionFactory, Bill.class);
 		
 		return query.getResultList();
 	}
 	
+	// Seeks past the previous page's last bill instead of skipping rows, so every page costs the same
+	private List<Bill> getBillsAfter(Session session, CriteriaQuery<Bill> cq, Root<Bill> root, List<Predicate> predicates,
+	        KeysetPagingInfo pagingInfo, BillFetchPlan fetchPlan) {
+		CriteriaBuilder cb = session.getCriteriaBuilder();
+		List<Predicate> where = afterPosition(cb, root, predicates, pagingInfo);
+		if (!where.isEmpty()) {
+			cq.where(where.toArray(new Predicate[0]));
+		}
+		cq.orderBy(cb.desc(root.get(FIELD_DATE_CREATED)), cb.desc(root.get(FIELD_ID)));
+		
+		int pageSize = pagingInfo.getPageSize();
+		TypedQuery<Bill> query = session.createQuery(cq);
+		applyFetchPlan(session, query, fetchPlan, true);
+		// One extra row tells whether there is a next page without counting
+		query.setMaxResults(pageSize + 1);
+		
+		List<Bill> bills = query.getResultList();
+		if (bills.size() > pageSize) {
+			bills = new ArrayList<>(bills.subList(0, pageSize));
+			Bill last = bills.get(pageSize - 1);
+			pagingInfo.setNextPosition(last.getDateCreated(), last.getId());
+		}
+		
+		return bills;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<BillSummary> getBillSummaries(@Nonnull BillSearch billSearch, PagingInfo pagingInfo) {
+		Session session = sessionFactory.getCurrentSession();
+		
+		CriteriaBuilder cb = session.getCriteriaBuilder();
+		CriteriaQuery<Object[]> cq = cb.createQuery(Object[].class);
+		Root<Bill> root = cq.from(Bill.class);
+		Join<Bill, Patient> patient = root.join("patient");
+		Join<Patient, PersonName> name = patient.join("names", JoinType.LEFT);
+		name.on(cb.equal(name.get("preferred"), true), cb.equal(name.get(FIELD_VOIDED), false));
+		
+		// A patient can have more than one preferred name; keep only the first so each bill is listed once
+		Subquery<Integer> firstName = cq.subquery(Integer.class);
+		Root<PersonName> preferredName = firstName.from(PersonName.class);
+		firstName.select(cb.min(preferredName.<Integer> get("personNameId"))).where(
+		    cb.equal(preferredName.get("person"), patient), cb.equal(preferredName.get("preferred"), true),
+		    cb.equal(preferredName.get(FIELD_VOIDED), false));
+		
+		// The amounts are the totals stored on the bill, so no line item, payment or discount is read
+		cq.multiselect(root.get(FIELD_ID), root.get("uuid"), root.get("receiptNumber"), patient.get("uuid"),
+		    name.get("givenName"), name.get("middleName"), name.get("familyName"), name.get("familyName2"),
+		    root.get(FIELD_STATUS), root.get(FIELD_STORED_TOTAL), root.get(FIELD_STORED_TOTAL_PAID),
+		    root.get(FIELD_STORED_TOTAL_DISCOUNT), root.get(FIELD_DATE_CREATED));
+		
+		List<Predicate> predicates = buildBillSearchPredicate(cb, cq, root, billSearch);
+		KeysetPagingInfo keysetPagingInfo = pagingInfo instanceof KeysetPagingInfo ? (KeysetPagingInfo) pagingInfo : null;
+		if (keysetPagingInfo != null) {
+			requireNewestFirst(billSearch);
+		}
+		List<Predicate> where = new ArrayList<>(
+		        keysetPagingInfo != null ? afterPosition(cb, root, predicates, keysetPagingInfo) : predicates);
+		where.add(cb.or(cb.isNull(name.get("personNameId")), cb.equal(name.get("personNameId"), firstName)));
+		cq.where(where.toArray(new Predicate[0]));
+		cq.orderBy(orderBy(cb, root, billSearch.getSortOrder()));
+		
+		TypedQuery<Object[]> query = session.createQuery(cq);
+		if (keysetPagingInfo != null) {
+			query.setMaxResults(keysetPagingInfo.getPageSize() + 1);
+		} else {
+			applyPaging(query, pagingInfo, predicates, sessionFactory, Bill.class);
+		}
+		
+		List<Object[]> rows = query.getResultList();
+		if (keysetPagingInfo != null && rows.size() > keysetPagingInfo.getPageSize()) {
+			rows = rows.subList(0, keysetPagingInfo.getPageSize());
+			Object[] last = rows.get(rows.size() - 1);
+			keysetPagingInfo.setNextPosition((Date) last[12], (Integer) last[0]);
+		}
+		
+		List<BillSummary> summaries = new ArrayList<>(rows.size());
+		for (Object[] row : rows) {
+			BigDecimal billTotal = toBigDecimal((Number) row[9]);
+			BigDecimal discount = toBigDecimal((Number) row[11]);
+			summaries.add(BillSummary.builder().uuid((String) row[1]).receiptNumber((String) row[2])
+			        .patientUuid((String) row[3])
+			        .patientName(joinNames((String) row[4], (String) row[5], (String) row[6], (String) row[7]))
+			        .status((BillStatus) row[8]).total(billTotal)
+			        .amountAfterDiscount(billTotal.subtract(discount).max(BigDecimal.ZERO))
+			        .totalPayments(toBigDecimal((Number) row[10])).dateCreated((Date) row[12]).build());
+		}
+		
+		return summaries;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Set<Integer> getPatientIdsWithBills(@Nonnull Collection<Integer> patientIds, Collection<BillStatus> statuses) {
+		Session session = sessionFactory.getCurrentSession();
+		CriteriaBuilder cb = session.getCriteriaBuilder();
+		
+		Set<Integer> result = new HashSet<>();
+		List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(patientIds));
+		for (int start = 0; start < ids.size(); start += PATIENT_BATCH_SIZE) {
+			List<Integer> batch = ids.subList(start, Math.min(start + PATIENT_BATCH_SIZE, ids.size()));
+			
+			CriteriaQuery<Integer> cq = cb.createQuery(Integer.class);
+			Root<Patient> patient = cq.from(Patient.class);
+			
+			// Matches the (patient_id, status, voided) index, so each patient costs one index probe
+			Subquery<Integer> bills = cq.subquery(Integer.class);
+			Root<Bill> bill = bills.from(Bill.class);
+			List<Predicate> billPredicates = new ArrayList<>();
+			billPredicates.add(cb.equal(bill.get("patient"), patient));
+			if (statuses != null && !statuses.isEmpty()) {
+				billPredicates.add(bill.get(FIELD_STATUS).in(statuses));
+			}
+			billPredicates.add(cb.equal(bill.get(FIELD_VOIDED), false));
+			bills.select(cb.literal(1)).where(billPredicates.toArray(new Predicate[0]));
+			
+			Path<Integer> patientId = patient.get("patientId");
+			cq.select(patientId).where(patientId.in(batch), cb.exists(bills));
+			result.addAll(session.createQuery(cq).getResultList());
+		}
+		
+		return result;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -149,6 +350,117 @@ public class HibernateBillDAO implements BillDAO {
 		sessionFactory.getCurrentSession().remove(bill);
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Bill getPendingBillForUpdate(@Nonnull Patient patient, @Nonnull Visit visit, @Nonnull CashPoint cashPoint) {
+		Session session = sessionFactory.getCurrentSession();
+		session.buildLockRequest(new LockOptions(LockMode.PESSIMISTIC_WRITE)).lock(visit);
+		
+		TypedQuery<Bill> query = session.createQuery(
+		    "select b from Bill b where b.patient = :patient and b.visit = :visit and b.cashPoint = :cashPoint "
+		            + "and b.status = :status and b.voided = false order by b.dateCreated desc",
+		    Bill.class);
+		query.setParameter("patient", patient);
+		query.setParameter("visit", visit);
+		query.setParameter("cashPoint", cashPoint);
+		query.setParameter("status", BillStatus.PENDING);
+		query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+		query.setMaxResults(1);
+		return query.getResultStream().findFirst().orElse(null);
+	}
+	
+	private static BigDecimal toBigDecimal(Number number) {
+		if (number == null) {
+			return BigDecimal.ZERO;
+		}
+		return number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString());
+	}
+	
+	private static String joinNames(String... names) {
+		String joined = Arrays.stream(names).filter(StringUtils::isNotBlank).collect(Collectors.joining(" "));
+		return joined.isEmpty() ? null : joined;
+	}
+	
+	private static List<Order> orderBy(CriteriaBuilder cb, Root<Bill> root, BillSortOrder sortOrder) {
+		List<Order> order = new ArrayList<>();
+		if (sortOrder == BillSortOrder.HIGHEST_BALANCE_FIRST) {
+			order.add(cb.desc(balance(cb, root)));
+		}
+		order.add(cb.desc(root.get(FIELD_DATE_CREATED)));
+		order.add(cb.desc(root.get(FIELD_ID)));
+		return order;
+	}
+	
+	// The outstanding balance of a bill from its stored totals, which the totals index covers
+	private static Expression<BigDecimal> balance(CriteriaBuilder cb, Root<Bill> root) {
+		Expression<BigDecimal> afterDiscount = cb.diff(root.<BigDecimal> get(FIELD_STORED_TOTAL),
+		    root.<BigDecimal> get(FIELD_STORED_TOTAL_DISCOUNT));
+		return cb.diff(afterDiscount, root.<BigDecimal> get(FIELD_STORED_TOTAL_PAID));
+	}
+	
+	private static void requireNewestFirst(BillSearch billSearch) {
+		if (billSearch.getSortOrder() != null && billSearch.getSortOrder() != BillSortOrder.NEWEST_FIRST) {
+			throw new IllegalArgumentException("Keyset paging only supports bills ordered newest first");
+		}
+	}
+	
+	// Seeks past the previous page's last bill, which is newest first by date created and then id
+	private List<Predicate> afterPosition(CriteriaBuilder cb, Root<Bill> root, List<Predicate> predicates,
+	        KeysetPagingInfo pagingInfo) {
+		List<Predicate> where = new ArrayList<>(predicates);
+		if (!pagingInfo.isFirstPage()) {
+			Date afterDateCreated = pagingInfo.getAfterDateCreated();
+			where.add(cb.or(cb.lessThan(root.<Date> get(FIELD_DATE_CREATED), afterDateCreated),
+			    cb.and(cb.equal(root.get(FIELD_DATE_CREATED), afterDateCreated),
+			        cb.lessThan(root.<Integer> get(FIELD_ID), pagingInfo.getAfterId()))));
+		}
+		return where;
+	}
+	
+	// A bill already in the session or the second-level cache is returned from there, and the plan's
+	// collections are then batch fetched when first used
+	private Bill findBill(Session session, Integer id, BillFetchPlan fetchPlan) {
+		if (fetchPlan == null) {
+			return session.find(Bill.class, id);
+		}
+		
+		return session.find(Bill.class, id,
+		    Collections.singletonMap(LOAD_GRAPH_HINT, createEntityGraph(session, fetchPlan, false)));
+	}
+	
+	private Bill findBillByUuid(Session session, String uuid, BillFetchPlan fetchPlan) {
+		TypedQuery<Bill> query = session.createQuery("select b from Bill b where b.uuid = :uuid", Bill.class);
+		query.setParameter("uuid", uuid);
+		applyFetchPlan(session, query, fetchPlan, false);
+		return query.getResultStream().findFirst().orElse(null);
+	}
+	
+	private Bill findBillByReceiptNumber(Session session, String receiptNumber) {
+		TypedQuery<Bill> query = session.createQuery("select b from Bill b where b.receiptNumber = :receiptNumber",
+		    Bill.class);
+		query.setParameter("receiptNumber", receiptNumber);
+		return query.getResultStream().findFirst().orElse(null);
+	}
+	
+	private void applyFetchPlan(Session session, TypedQuery<Bill> query, BillFetchPlan fetchPlan, boolean paged) {
+		if (fetchPlan == null) {
+			return;
+		}
+		
+		query.setHint(LOAD_GRAPH_HINT, createEntityGraph(session, fetchPlan, paged));
+	}
+	
+	private EntityGraph<Bill> createEntityGraph(Session session, BillFetchPlan fetchPlan, boolean paged) {
+		EntityGraph<Bill> graph = session.createEntityGraph(Bill.class);
+		graph.addAttributeNodes(fetchPlan.getAssociations());
+		if (!paged) {
+			graph.addAttributeNodes(fetchPlan.getCollections());
+		}
+		return graph;
+	}
+	
 	private List<Predicate> buildBillSearchPredicate(CriteriaBuilder cb, CriteriaQuery<?> cq, Root<Bill> root,
 	        BillSearch billSearch) {
 		List<Predicate> predicates = new ArrayList<>();
@@ -158,7 +470,8 @@ public class HibernateBillDAO implements BillDAO {
 		}
 		
 		if (StringUtils.isNotBlank(billSearch.getPatientName())) {
-			predicates.add(buildPatientNamePredicate(cb, root, billSearch.getPatientName()));
+			predicates.add(buildPatientNamePredicate(cb, cq, root, billSearch.getPatientName(),
+			    billSearch.getPatientNameMatchMode()));
 		}
 		
 		if (StringUtils.isNotEmpty(billSearch.getCashierUuid())) {
@@ -181,6 +494,10 @@ public class HibernateBillDAO implements BillDAO {
 			predicates.add(cb.equal(root.get(FIELD_VOIDED), false));
 		}
 		
+		if (billSearch.getMinBalance() != null) {
+			predicates.add(cb.greaterThanOrEqualTo(balance(cb, root), billSearch.getMinBalance()));
+		}
+		
 		if (billSearch.getDiscountStatuses() != null && !billSearch.getDiscountStatuses().isEmpty()) {
 			Subquery<Integer> sub = cq.subquery(Integer.class);
 			Root<BillDiscount> discountRoot = sub.from(BillDiscount.class);
@@ -202,13 +519,54 @@ public class HibernateBillDAO implements BillDAO {
 		return predicates;
 	}
 	
-	private Predicate buildPatientNamePredicate(CriteriaBuilder cb, Root<Bill> root, String patientName) {
-		List<Patient> matchingPatients = Context.getRegisteredComponent("patientDAO", HibernatePatientDAO.class)
-		        .getPatients(patientName, 0, null);
-		if (matchingPatients != null && !matchingPatients.isEmpty()) {
-			return root.get("patient").in(matchingPatients);
+	// Each word must match a part of the same person name, or the whole text an identifier. Both are
+	// uncorrelated IN subqueries, so the database can resolve the matching patients from the name and
+	// identifier indexes once instead of probing them for every bill, and no patients are loaded.
+	private Predicate buildPatientNamePredicate(CriteriaBuilder cb, CriteriaQuery<?> cq, Root<Bill> root,
+	        String patientName, PatientNameMatchMode matchMode) {
+		boolean prefix = matchMode != PatientNameMatchMode.ANYWHERE;
+		boolean columnIgnoresCase = isCaseInsensitiveCollation();
+		String text = patientName.trim();
+		
+		Subquery<Person> names = cq.subquery(Person.class);
+		Root<PersonName> name = names.from(PersonName.class);
+		List<Predicate> nameConditions = new ArrayList<>();
+		nameConditions.add(cb.equal(name.get(FIELD_VOIDED), false));
+		for (String word : StringUtils.split(text)) {
+			List<Predicate> parts = new ArrayList<>();
+			for (String field : PERSON_NAME_FIELDS) {
+				parts.add(like(cb, name.<String> get(field), word, prefix, columnIgnoresCase));
+			}
+			nameConditions.add(cb.or(parts.toArray(new Predicate[0])));
+		}
+		names.select(name.get("person")).where(nameConditions.toArray(new Predicate[0]));
+		
+		Subquery<Patient> identifiers = cq.subquery(Patient.class);
+		Root<PatientIdentifier> identifier = identifiers.from(PatientIdentifier.class);
+		identifiers.select(identifier.get("patient")).where(cb.equal(identifier.get(FIELD_VOIDED), false),
+		    like(cb, identifier.<String> get("identifier"), text, prefix, columnIgnoresCase));
+		
+		return cb.or(root.get("patient").in(names), root.get("patient").in(identifiers));
+	}
+	
+	private Predicate like(CriteriaBuilder cb, Path<String> path, String text, boolean prefix,
+	        boolean columnIgnoresCase) {
+		String escaped = text.replace(String.valueOf(LIKE_ESCAPE), LIKE_ESCAPE + String.valueOf(LIKE_ESCAPE))
+		        .replace("%", LIKE_ESCAPE + "%").replace("_", LIKE_ESCAPE + "_");
+		if (prefix && columnIgnoresCase) {
+			// Comparing the column itself keeps its index usable
+			return cb.like(path, escaped + "%", LIKE_ESCAPE);
 		}
-		return cb.disjunction();
+		
+		String pattern = (prefix ? "" : "%") + escaped.toLowerCase(Locale.ROOT) + "%";
+		return cb.like(cb.lower(path), pattern, LIKE_ESCAPE);
+	}
+	
+	// MySQL and MariaDB compare the name and identifier columns with their default case-insensitive
+	// collation; other databases, such as PostgreSQL and H2, compare them case-sensitively
+	private boolean isCaseInsensitiveCollation() {
+		return sessionFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices()
+		        .getDialect() instanceof MySQLDialect;
 	}
 	
 }
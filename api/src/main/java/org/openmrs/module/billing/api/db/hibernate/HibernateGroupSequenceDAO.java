@@ -0,0 +1,143 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.db.hibernate;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.openmrs.module.billing.api.base.PagingInfo;
+import org.openmrs.module.billing.api.db.GroupSequenceDAO;
+import org.openmrs.module.billing.api.model.GroupSequence;
+import org.openmrs.module.billing.api.model.SequenceUsageSnapshot;
+
+import javax.annotation.Nonnull;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Hibernate implementation of {@link GroupSequenceDAO}.
+ * <p>
+ * PostgreSQL returns the new value from the update itself, and MySQL hands it back through
+ * {@code last_insert_id()} on the same connection. Other databases re-read the row after updating
+ * it, which is safe because the update holds the row lock until the transaction ends.
+ * </p>
+ */
+@RequiredArgsConstructor
+public class HibernateGroupSequenceDAO implements GroupSequenceDAO {
+	
+	private static final String UPDATE_STATEMENT = "update cashier_seq_group_sequence "
+	        + "set sequence_value = sequence_value + :delta where sequence_group = :group";
+	
+	private static final String UPDATE_RETURNING_STATEMENT = UPDATE_STATEMENT + " returning sequence_value";
+	
+	private static final String UPDATE_LAST_INSERT_ID_STATEMENT = "update cashier_seq_group_sequence "
+	        + "set sequence_value = last_insert_id(sequence_value + :delta) where sequence_group = :group";
+	
+	private static final String SELECT_STATEMENT = "select sequence_value from cashier_seq_group_sequence "
+	        + "where sequence_group = :group";
+	
+	private final SessionFactory sessionFactory;
+	
+	private volatile ReadBack readBack;
+	
+	@Override
+	public Integer addToSequence(@Nonnull String group, int delta) {
+		Session session = sessionFactory.getCurrentSession();
+		switch (getReadBack()) {
+			case RETURNING:
+				return toInteger(session.createNativeQuery(UPDATE_RETURNING_STATEMENT)
+				        .addSynchronizedEntityClass(GroupSequence.class).setParameter("delta", delta)
+				        .setParameter("group", group).uniqueResult());
+			case LAST_INSERT_ID:
+				if (executeUpdate(session, UPDATE_LAST_INSERT_ID_STATEMENT, group, delta) == 0) {
+					return null;
+				}
+				return toInteger(session.createNativeQuery("select last_insert_id()").uniqueResult());
+			default:
+				if (executeUpdate(session, UPDATE_STATEMENT, group, delta) == 0) {
+					return null;
+				}
+				return toInteger(session.createNativeQuery(SELECT_STATEMENT).addSynchronizedEntityClass(GroupSequence.class)
+				        .setParameter("group", group).uniqueResult());
+		}
+	}
+	
+	@Override
+	public void saveUsageSnapshot(@Nonnull SequenceUsageSnapshot snapshot) {
+		sessionFactory.getCurrentSession().saveOrUpdate(snapshot);
+	}
+	
+	@Override
+	public List<SequenceUsageSnapshot> getUsageSnapshots(String group, Date since, PagingInfo pagingInfo) {
+		Session session = sessionFactory.getCurrentSession();
+		CriteriaBuilder cb = session.getCriteriaBuilder();
+		CriteriaQuery<SequenceUsageSnapshot> query = cb.createQuery(SequenceUsageSnapshot.class);
+		Root<SequenceUsageSnapshot> root = query.from(SequenceUsageSnapshot.class);
+		
+		List<Predicate> predicates = new ArrayList<>();
+		if (group != null) {
+			predicates.add(cb.equal(root.get("group"), group));
+		}
+		if (since != null) {
+			predicates.add(cb.greaterThanOrEqualTo(root.<Date> get("dateCreated"), since));
+		}
+		query.where(predicates.toArray(new Predicate[0]))
+		        .orderBy(cb.asc(root.get("dateCreated")), cb.asc(root.get("sequenceUsageSnapshotId")));
+		
+		TypedQuery<SequenceUsageSnapshot> typedQuery = session.createQuery(query);
+		PagingUtil.applyPaging(typedQuery, pagingInfo, predicates, sessionFactory, SequenceUsageSnapshot.class);
+		
+		return typedQuery.getResultList();
+	}
+	
+	private int executeUpdate(Session session, String statement, String group, int delta) {
+		return session.createNativeQuery(statement).addSynchronizedEntityClass(GroupSequence.class)
+		        .setParameter("delta", delta).setParameter("group", group).executeUpdate();
+	}
+	
+	private ReadBack getReadBack() {
+		ReadBack current = readBack;
+		if (current != null) {
+			return current;
+		}
+		
+		Dialect dialect = sessionFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+		if (dialect instanceof PostgreSQL81Dialect) {
+			current = ReadBack.RETURNING;
+		} else if (dialect instanceof MySQLDialect) {
+			current = ReadBack.LAST_INSERT_ID;
+		} else {
+			current = ReadBack.SELECT;
+		}
+		
+		readBack = current;
+		return current;
+	}
+	
+	private static Integer toInteger(Object value) {
+		return value == null ? null : ((Number) value).intValue();
+	}
+	
+	private enum ReadBack {
+		RETURNING,
+		LAST_INSERT_ID,
+		SELECT
+	}
+}
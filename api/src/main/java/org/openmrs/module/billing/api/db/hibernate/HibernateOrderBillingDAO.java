@@ -0,0 +1,125 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.db.hibernate;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.openmrs.Order;
+import org.openmrs.module.billing.api.db.OrderBillingDAO;
+import org.openmrs.module.billing.api.model.BillLineItem;
+import org.openmrs.module.billing.api.model.OrderBillingRecord;
+import org.openmrs.module.billing.api.model.OrderBillingStatus;
+import org.openmrs.module.stockmanagement.api.model.StockItem;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hibernate implementation of {@link OrderBillingDAO}.
+ */
+@RequiredArgsConstructor
+public class HibernateOrderBillingDAO implements OrderBillingDAO {
+	
+	private final SessionFactory sessionFactory;
+	
+	private volatile String claimStatement;
+	
+	@Override
+	public List<Order> getOrdersByUuids(@Nonnull Collection<String> uuids) {
+		if (uuids.isEmpty()) {
+			return Collections.emptyList();
+		}
+		
+		return sessionFactory.getCurrentSession().createQuery("select o from Order o where o.uuid in (:uuids)", Order.class)
+		        .setParameterList("uuids", uuids).getResultList();
+	}
+	
+	@Override
+	public StockItem getStockItemReference(@Nonnull Integer stockItemId) {
+		return sessionFactory.getCurrentSession().load(StockItem.class, stockItemId);
+	}
+	
+	@Override
+	public boolean claimOrder(@Nonnull Order order) {
+		Session session = sessionFactory.getCurrentSession();
+		
+		// An order skipped earlier, e.g. because no price or cash point was configured, may be billed again
+		int reclaimed = session
+		        .createQuery("update OrderBillingRecord r set r.status = :claimed, r.reason = null, "
+		                + "r.dateChanged = current_timestamp() where r.order = :order and r.status = :skipped")
+		        .setParameter("claimed", OrderBillingStatus.CLAIMED).setParameter("skipped", OrderBillingStatus.SKIPPED)
+		        .setParameter("order", order).executeUpdate();
+		if (reclaimed > 0) {
+			return true;
+		}
+		
+		return session.createNativeQuery(getClaimStatement()).setParameter("orderId", order.getOrderId())
+		        .setParameter("status", OrderBillingStatus.CLAIMED.name()).executeUpdate() > 0;
+	}
+	
+	@Override
+	public void recordOrderBillingOutcome(@Nonnull Order order, @Nonnull OrderBillingStatus status, String reason,
+	        BillLineItem lineItem) {
+		Session session = sessionFactory.getCurrentSession();
+		if (lineItem != null) {
+			// The line item must be inserted before the ledger record can reference it
+			session.flush();
+		}
+		
+		session.createQuery("update OrderBillingRecord r set r.status = :status, r.reason = :reason, "
+		        + "r.billLineItem = :lineItem, r.dateChanged = current_timestamp() where r.order = :order")
+		        .setParameter("status", status).setParameter("reason", reason).setParameter("lineItem", lineItem)
+		        .setParameter("order", order).executeUpdate();
+	}
+	
+	@Override
+	public OrderBillingRecord getOrderBillingRecord(@Nonnull Order order) {
+		return sessionFactory.getCurrentSession()
+		        .createQuery("select r from OrderBillingRecord r where r.order = :order", OrderBillingRecord.class)
+		        .setParameter("order", order).getResultStream().findFirst().orElse(null);
+	}
+	
+	/**
+	 * Uses the database's insert-or-ignore form where there is one, so a concurrent duplicate claim
+	 * waits for the first one and then inserts nothing instead of failing the transaction. Other
+	 * databases, e.g. H2 in tests, get a guarded insert that skips claims already committed; a claim
+	 * racing an uncommitted one there can still hit the unique key.
+	 */
+	private String getClaimStatement() {
+		String statement = claimStatement;
+		if (statement != null) {
+			return statement;
+		}
+		
+		Dialect dialect = sessionFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+		if (dialect instanceof MySQLDialect) {
+			statement = "insert ignore into cashier_order_billing_record (order_id, status, date_created) "
+			        + "values (:orderId, :status, current_timestamp)";
+		} else if (dialect instanceof PostgreSQL81Dialect) {
+			statement = "insert into cashier_order_billing_record (order_id, status, date_created) "
+			        + "values (:orderId, :status, current_timestamp) on conflict (order_id) do nothing";
+		} else {
+			statement = "insert into cashier_order_billing_record (order_id, status, date_created) "
+			        + "select o.order_id, :status, current_timestamp from orders o where o.order_id = :orderId "
+			        + "and not exists (select 1 from cashier_order_billing_record r where r.order_id = :orderId)";
+		}
+		
+		claimStatement = statement;
+		return statement;
+	}
+	
+}
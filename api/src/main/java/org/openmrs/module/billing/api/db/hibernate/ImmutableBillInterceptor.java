@@ -38,7 +38,7 @@ public class ImmutableBillInterceptor extends ImmutableEntityInterceptor {
 	
 	private static final String[] MUTABLE_PROPERTY_NAMES = new String[] { "changedBy", "dateChanged", "voided", "dateVoided",
 	        "voidedBy", "voidReason", "payment", "billAdjusted", "adjustmentReason", "adjustedBy", "receiptPrinted",
-	        "status", "receiptNumber" };
+	        "status", "receiptNumber", "storedTotal", "storedTotalPaid", "storedTotalDiscount" };
 	
 	@Override
 	protected Class<?> getSupportedType() {
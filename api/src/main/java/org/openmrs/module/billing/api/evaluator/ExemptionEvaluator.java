@@ -17,4 +17,14 @@ public interface ExemptionEvaluator {
 	
 	boolean evaluate(String script, Map<String, Object> variables);
 	
+	/**
+	 * Checks that a script can be evaluated, compiling it ahead of its first evaluation where the
+	 * evaluator supports that. Called when a rule is saved.
+	 *
+	 * @param script the rule script
+	 * @throws IllegalArgumentException if the script is not valid
+	 */
+	default void validate(String script) {
+	}
+	
 }
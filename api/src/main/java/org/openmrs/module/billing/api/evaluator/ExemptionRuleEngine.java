@@ -27,11 +27,15 @@ public class ExemptionRuleEngine {
 	}
 	
 	public boolean evaluateRule(BillExemptionRule rule, Map<String, Object> variables) {
-		ExemptionEvaluator evaluator = evaluatorsByType.get(rule.getScriptType());
-		if (evaluator == null) {
-			throw new IllegalArgumentException("Unsupported script type: " + rule.getScriptType());
-		}
-		return evaluator.evaluate(rule.getScript(), variables);
+		return getEvaluator(rule).evaluate(rule.getScript(), variables);
+	}
+	
+	/**
+	 * @param rule the rule to check
+	 * @throws IllegalArgumentException if the script type is unsupported or the script is not valid
+	 */
+	public void validateRule(BillExemptionRule rule) {
+		getEvaluator(rule).validate(rule.getScript());
 	}
 	
 	public boolean isExemptionApplicable(BillExemption exemption, Map<String, Object> variables) {
@@ -41,4 +45,12 @@ public class ExemptionRuleEngine {
 		
 		return exemption.getRules().stream().filter(r -> !r.getVoided()).anyMatch(r -> evaluateRule(r, variables));
 	}
+	
+	private ExemptionEvaluator getEvaluator(BillExemptionRule rule) {
+		ExemptionEvaluator evaluator = evaluatorsByType.get(rule.getScriptType());
+		if (evaluator == null) {
+			throw new IllegalArgumentException("Unsupported script type: " + rule.getScriptType());
+		}
+		return evaluator;
+	}
 }
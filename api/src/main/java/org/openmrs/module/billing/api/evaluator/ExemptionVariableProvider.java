@@ -0,0 +1,32 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.evaluator;
+
+import org.openmrs.Order;
+
+/**
+ * Supplies one variable that exemption rules can read. Providers are Spring beans collected by the
+ * {@link ExemptionVariableRegistry}, so other modules can add variables by registering their own.
+ * A provider is only called when a rule being evaluated reads its variable, and at most once per
+ * order.
+ */
+public interface ExemptionVariableProvider {
+	
+	/**
+	 * @return the name rules use to read the variable
+	 */
+	String getName();
+	
+	/**
+	 * @param order the order being billed
+	 * @return the variable value, or null if it does not apply to the order
+	 */
+	Object getValue(Order order);
+}
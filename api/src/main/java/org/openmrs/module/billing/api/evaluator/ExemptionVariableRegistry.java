@@ -0,0 +1,88 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.evaluator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.Order;
+import org.openmrs.api.context.Context;
+import org.springframework.core.OrderComparator;
+
+/**
+ * Index of the registered {@link ExemptionVariableProvider}s by variable name. The providers are
+ * looked up once by {@link #rebuild()}, which the module activator calls whenever the context is
+ * refreshed. When two providers use the same name, the one that sorts first wins.
+ */
+@Slf4j
+public class ExemptionVariableRegistry {
+	
+	private volatile Map<String, ExemptionVariableProvider> providers;
+	
+	/**
+	 * Reloads the registered variable providers.
+	 */
+	public synchronized void rebuild() {
+		List<ExemptionVariableProvider> registered = new ArrayList<>(
+		        Context.getRegisteredComponents(ExemptionVariableProvider.class));
+		OrderComparator.sort(registered);
+		
+		Map<String, ExemptionVariableProvider> byName = new LinkedHashMap<>();
+		for (ExemptionVariableProvider provider : registered) {
+			ExemptionVariableProvider existing = byName.putIfAbsent(provider.getName(), provider);
+			if (existing != null) {
+				log.warn("Ignoring exemption variable provider {} for '{}'; it is already provided by {}",
+				    provider.getClass().getName(), provider.getName(), existing.getClass().getName());
+			}
+		}
+		providers = Collections.unmodifiableMap(byName);
+		
+		log.info("Exemption variable registry built with variables: {}", byName.keySet());
+	}
+	
+	/**
+	 * Creates the variables for evaluating an order's exemption rules. Each value is resolved by its
+	 * provider the first time a rule reads it and then reused for the other rules of the order. The
+	 * returned map is not thread-safe.
+	 *
+	 * @param order the order being billed
+	 * @return a lazily resolved view of all registered variables
+	 */
+	public Map<String, Object> createVariables(Order order) {
+		return new ExemptionVariables(order, getProviders());
+	}
+	
+	/**
+	 * @return the names of the registered variables
+	 */
+	public Set<String> getVariableNames() {
+		return getProviders().keySet();
+	}
+	
+	private Map<String, ExemptionVariableProvider> getProviders() {
+		Map<String, ExemptionVariableProvider> current = providers;
+		if (current == null) {
+			rebuildIfEmpty();
+			current = providers;
+		}
+		return current;
+	}
+	
+	private synchronized void rebuildIfEmpty() {
+		if (providers == null) {
+			rebuild();
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.evaluator;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.openmrs.Order;
+
+/**
+ * Read-only map of exemption variables for one order whose values are resolved on first access.
+ * Only {@link #entrySet()} resolves every variable; lookups by name resolve just that variable.
+ */
+class ExemptionVariables extends AbstractMap<String, Object> {
+	
+	private final Order order;
+	
+	private final Map<String, ExemptionVariableProvider> providers;
+	
+	private final Map<String, Object> resolved = new HashMap<>();
+	
+	ExemptionVariables(Order order, Map<String, ExemptionVariableProvider> providers) {
+		this.order = order;
+		this.providers = providers;
+	}
+	
+	@Override
+	public Object get(Object key) {
+		if (resolved.containsKey(key)) {
+			return resolved.get(key);
+		}
+		
+		ExemptionVariableProvider provider = providers.get(key);
+		if (provider == null) {
+			return null;
+		}
+		
+		Object value = provider.getValue(order);
+		resolved.put(provider.getName(), value);
+		return value;
+	}
+	
+	@Override
+	public boolean containsKey(Object key) {
+		return providers.containsKey(key);
+	}
+	
+	@Override
+	public Set<String> keySet() {
+		return providers.keySet();
+	}
+	
+	@Override
+	public int size() {
+		return providers.size();
+	}
+	
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		Set<Entry<String, Object>> entries = new LinkedHashSet<>();
+		for (String name : providers.keySet()) {
+			entries.add(new SimpleImmutableEntry<>(name, get(name)));
+		}
+		return entries;
+	}
+}
@@ -11,7 +11,9 @@ package org.openmrs.module.billing.api.evaluator;
 
 public enum ScriptType {
 	
-	JAVASCRIPT("js");
+	JAVASCRIPT("js"),
+	
+	EXPRESSION("expression");
 	
 	private final String engineName;
 	
@@ -0,0 +1,42 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.evaluator.expression;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * An exemption rule expression compiled to a predicate tree by {@link ExpressionParser}. Instances
+ * are immutable and may be evaluated by several threads at once.
+ */
+public final class CompiledExpression {
+	
+	private final String source;
+	
+	private final Predicate<Map<String, Object>> predicate;
+	
+	CompiledExpression(String source, Predicate<Map<String, Object>> predicate) {
+		this.source = source;
+		this.predicate = predicate;
+	}
+	
+	/**
+	 * @param variables the rule variables, keyed by name
+	 * @return whether the expression holds for the variables
+	 */
+	public boolean evaluate(Map<String, Object> variables) {
+		return predicate.test(variables != null ? variables : Collections.emptyMap());
+	}
+	
+	public String getSource() {
+		return source;
+	}
+}
@@ -0,0 +1,506 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.evaluator.expression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Compiles exemption rule expressions into predicate trees. The grammar is:
+ *
+ * <pre>
+ * expression := and (("||" | "or") and)*
+ * and        := not (("&amp;&amp;" | "and") not)*
+ * not        := ("!" | "not") not | "(" expression ")" | condition
+ * condition  := operand [ ("==" | "!=" | "&lt;" | "&lt;=" | "&gt;" | "&gt;=") operand
+ *                       | ["not"] "in" ("[" literal ("," literal)* "]" | operand ".." operand | operand)
+ *                       | "between" operand "and" operand ]
+ * operand    := literal | name ("." name)*
+ * literal    := number | 'text' | "text" | true | false | null
+ * </pre>
+ *
+ * For example {@code patientAge < 5 or 'HIV Program' in activePrograms} or
+ * {@code patientAge between 60 and 120 and order.conceptId in [5089, 5090]}.
+ * <p>
+ * A name refers to a rule variable, and a dotted name reads an entry of a map variable. Numbers
+ * are compared by value whatever their type, text with {@code equals}. Ordering comparisons and
+ * ranges are false unless both sides are numbers (or, for comparisons, both are text). {@code in}
+ * followed by a variable tests membership of a collection. A condition without an operator holds
+ * when its value is {@code true}.
+ */
+public final class ExpressionParser {
+	
+	private static final String[] OPERATORS = { "==", "!=", "<=", ">=", "&&", "||", "..", "<", ">", "!", "(", ")", "[",
+	        "]", ",", ".", "-" };
+	
+	private static final Set<String> KEYWORDS = new HashSet<>(
+	        Arrays.asList("and", "or", "not", "in", "between", "true", "false", "null"));
+	
+	private final List<Token> tokens;
+	
+	private int index;
+	
+	private ExpressionParser(String source) {
+		this.tokens = tokenize(source);
+	}
+	
+	/**
+	 * @param source the expression text
+	 * @return the compiled expression
+	 * @throws ExpressionSyntaxException if the expression is empty or malformed
+	 */
+	public static CompiledExpression compile(String source) {
+		if (source == null || source.trim().isEmpty()) {
+			throw new ExpressionSyntaxException("Expression is empty", 0);
+		}
+		
+		ExpressionParser parser = new ExpressionParser(source);
+		Predicate<Map<String, Object>> predicate = parser.parseOr();
+		Token token = parser.peek();
+		if (token.type != TokenType.END) {
+			throw unexpected(token);
+		}
+		
+		return new CompiledExpression(source, predicate);
+	}
+	
+	private Predicate<Map<String, Object>> parseOr() {
+		Predicate<Map<String, Object>> predicate = parseAnd();
+		while (acceptOperator("||") || acceptKeyword("or")) {
+			predicate = predicate.or(parseAnd());
+		}
+		
+		return predicate;
+	}
+	
+	private Predicate<Map<String, Object>> parseAnd() {
+		Predicate<Map<String, Object>> predicate = parseNot();
+		while (acceptOperator("&&") || acceptKeyword("and")) {
+			predicate = predicate.and(parseNot());
+		}
+		
+		return predicate;
+	}
+	
+	private Predicate<Map<String, Object>> parseNot() {
+		if (acceptOperator("!") || acceptKeyword("not")) {
+			return parseNot().negate();
+		}
+		if (acceptOperator("(")) {
+			Predicate<Map<String, Object>> predicate = parseOr();
+			expectOperator(")");
+			return predicate;
+		}
+		
+		return parseCondition();
+	}
+	
+	private Predicate<Map<String, Object>> parseCondition() {
+		Token start = peek();
+		Operand left = parseOperand();
+		
+		Relation relation = peek().type == TokenType.OPERATOR ? Relation.forSymbol(peek().text) : null;
+		if (relation != null) {
+			index++;
+			return compare(left, relation, parseOperand());
+		}
+		if (acceptKeyword("in")) {
+			return parseMembership(left);
+		}
+		if (acceptKeyword("not")) {
+			expectKeyword("in");
+			return parseMembership(left).negate();
+		}
+		if (acceptKeyword("between")) {
+			Operand low = parseOperand();
+			expectKeyword("and");
+			return between(left, low, parseOperand());
+		}
+		
+		if (left instanceof Literal) {
+			Object value = ((Literal) left).value;
+			if (value instanceof Boolean) {
+				boolean constant = (Boolean) value;
+				return variables -> constant;
+			}
+			throw new ExpressionSyntaxException("Expected a condition", start.position);
+		}
+		
+		return variables -> Boolean.TRUE.equals(left.value(variables));
+	}
+	
+	private Predicate<Map<String, Object>> parseMembership(Operand value) {
+		if (acceptOperator("[")) {
+			List<Object> items = new ArrayList<>();
+			if (!acceptOperator("]")) {
+				do {
+					items.add(parseLiteral());
+				} while (acceptOperator(","));
+				expectOperator("]");
+			}
+			
+			Object[] candidates = items.toArray();
+			return variables -> containsValue(candidates, value.value(variables));
+		}
+		
+		Operand container = parseOperand();
+		if (acceptOperator("..")) {
+			return between(value, container, parseOperand());
+		}
+		
+		return variables -> containsValue(container.value(variables), value.value(variables));
+	}
+	
+	private Operand parseOperand() {
+		Token token = peek();
+		if (token.type != TokenType.IDENTIFIER || KEYWORDS.contains(token.text)) {
+			return new Literal(parseLiteral());
+		}
+		
+		index++;
+		List<String> path = new ArrayList<>();
+		path.add(token.text);
+		while (acceptOperator(".")) {
+			Token name = next();
+			if (name.type != TokenType.IDENTIFIER) {
+				throw new ExpressionSyntaxException("Expected a name after '.'", name.position);
+			}
+			path.add(name.text);
+		}
+		
+		return variable(path.toArray(new String[0]));
+	}
+	
+	private Object parseLiteral() {
+		Token token = next();
+		switch (token.type) {
+			case NUMBER:
+				return Double.valueOf(token.text);
+			case STRING:
+				return token.text;
+			case IDENTIFIER:
+				if ("true".equals(token.text)) {
+					return Boolean.TRUE;
+				}
+				if ("false".equals(token.text)) {
+					return Boolean.FALSE;
+				}
+				if ("null".equals(token.text)) {
+					return null;
+				}
+				break;
+			case OPERATOR:
+				if ("-".equals(token.text) && peek().type == TokenType.NUMBER) {
+					return -Double.parseDouble(next().text);
+				}
+				break;
+			default:
+				break;
+		}
+		
+		throw unexpected(token);
+	}
+	
+	private Token peek() {
+		return tokens.get(index);
+	}
+	
+	private Token next() {
+		Token token = tokens.get(index);
+		if (token.type != TokenType.END) {
+			index++;
+		}
+		return token;
+	}
+	
+	private boolean acceptOperator(String operator) {
+		Token token = peek();
+		if (token.type == TokenType.OPERATOR && token.text.equals(operator)) {
+			index++;
+			return true;
+		}
+		return false;
+	}
+	
+	private boolean acceptKeyword(String keyword) {
+		Token token = peek();
+		if (token.type == TokenType.IDENTIFIER && token.text.equals(keyword)) {
+			index++;
+			return true;
+		}
+		return false;
+	}
+	
+	private void expectOperator(String operator) {
+		if (!acceptOperator(operator)) {
+			throw new ExpressionSyntaxException("Expected '" + operator + "'", peek().position);
+		}
+	}
+	
+	private void expectKeyword(String keyword) {
+		if (!acceptKeyword(keyword)) {
+			throw new ExpressionSyntaxException("Expected '" + keyword + "'", peek().position);
+		}
+	}
+	
+	private static ExpressionSyntaxException unexpected(Token token) {
+		if (token.type == TokenType.END) {
+			return new ExpressionSyntaxException("Unexpected end of expression", token.position);
+		}
+		return new ExpressionSyntaxException("Unexpected '" + token.text + "'", token.position);
+	}
+	
+	private static List<Token> tokenize(String source) {
+		List<Token> tokens = new ArrayList<>();
+		int length = source.length();
+		int i = 0;
+		while (i < length) {
+			char c = source.charAt(i);
+			int start = i;
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (Character.isDigit(c)) {
+				while (i < length && Character.isDigit(source.charAt(i))) {
+					i++;
+				}
+				if (i + 1 < length && source.charAt(i) == '.' && Character.isDigit(source.charAt(i + 1))) {
+					i++;
+					while (i < length && Character.isDigit(source.charAt(i))) {
+						i++;
+					}
+				}
+				tokens.add(new Token(TokenType.NUMBER, source.substring(start, i), start));
+			} else if (Character.isJavaIdentifierStart(c)) {
+				while (i < length && Character.isJavaIdentifierPart(source.charAt(i))) {
+					i++;
+				}
+				tokens.add(new Token(TokenType.IDENTIFIER, source.substring(start, i), start));
+			} else if (c == '\'' || c == '"') {
+				StringBuilder text = new StringBuilder();
+				i++;
+				while (true) {
+					if (i >= length) {
+						throw new ExpressionSyntaxException("Unterminated string", start);
+					}
+					char ch = source.charAt(i++);
+					if (ch == c) {
+						break;
+					}
+					if (ch == '\\' && i < length) {
+						ch = source.charAt(i++);
+					}
+					text.append(ch);
+				}
+				tokens.add(new Token(TokenType.STRING, text.toString(), start));
+			} else {
+				String operator = matchOperator(source, i);
+				if (operator == null) {
+					throw new ExpressionSyntaxException("Unexpected character '" + c + "'", start);
+				}
+				i += operator.length();
+				tokens.add(new Token(TokenType.OPERATOR, operator, start));
+			}
+		}
+		
+		tokens.add(new Token(TokenType.END, "", length));
+		return tokens;
+	}
+	
+	private static String matchOperator(String source, int offset) {
+		for (String operator : OPERATORS) {
+			if (source.startsWith(operator, offset)) {
+				return operator;
+			}
+		}
+		return null;
+	}
+	
+	private static Operand variable(String[] path) {
+		String name = path[0];
+		if (path.length == 1) {
+			return variables -> variables.get(name);
+		}
+		
+		return variables -> {
+			Object current = variables.get(name);
+			for (int i = 1; i < path.length; i++) {
+				if (!(current instanceof Map)) {
+					return null;
+				}
+				current = ((Map<?, ?>) current).get(path[i]);
+			}
+			return current;
+		};
+	}
+	
+	private static Predicate<Map<String, Object>> compare(Operand left, Relation relation, Operand right) {
+		if (relation == Relation.EQUAL) {
+			return variables -> valuesEqual(left.value(variables), right.value(variables));
+		}
+		if (relation == Relation.NOT_EQUAL) {
+			return variables -> !valuesEqual(left.value(variables), right.value(variables));
+		}
+		
+		return variables -> {
+			Object a = left.value(variables);
+			Object b = right.value(variables);
+			if (a instanceof Number && b instanceof Number) {
+				double x = ((Number) a).doubleValue();
+				double y = ((Number) b).doubleValue();
+				return relation.holds(x < y ? -1 : (x > y ? 1 : 0));
+			}
+			if (a instanceof String && b instanceof String) {
+				return relation.holds(((String) a).compareTo((String) b));
+			}
+			return false;
+		};
+	}
+	
+	private static Predicate<Map<String, Object>> between(Operand value, Operand low, Operand high) {
+		return variables -> {
+			Object v = value.value(variables);
+			Object lo = low.value(variables);
+			Object hi = high.value(variables);
+			if (!(v instanceof Number) || !(lo instanceof Number) || !(hi instanceof Number)) {
+				return false;
+			}
+			
+			double x = ((Number) v).doubleValue();
+			return x >= ((Number) lo).doubleValue() && x <= ((Number) hi).doubleValue();
+		};
+	}
+	
+	private static boolean valuesEqual(Object a, Object b) {
+		if (a instanceof Number && b instanceof Number) {
+			return ((Number) a).doubleValue() == ((Number) b).doubleValue();
+		}
+		return a == null ? b == null : a.equals(b);
+	}
+	
+	private static boolean containsValue(Object[] candidates, Object value) {
+		for (Object candidate : candidates) {
+			if (valuesEqual(candidate, value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static boolean containsValue(Object container, Object value) {
+		if (container instanceof List && container instanceof RandomAccess) {
+			List<?> list = (List<?>) container;
+			for (int i = 0; i < list.size(); i++) {
+				if (valuesEqual(list.get(i), value)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (container instanceof Collection) {
+			for (Object item : (Collection<?>) container) {
+				if (valuesEqual(item, value)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	private interface Operand {
+		
+		Object value(Map<String, Object> variables);
+	}
+	
+	private static final class Literal implements Operand {
+		
+		private final Object value;
+		
+		private Literal(Object value) {
+			this.value = value;
+		}
+		
+		@Override
+		public Object value(Map<String, Object> variables) {
+			return value;
+		}
+	}
+	
+	private enum Relation {
+		
+		EQUAL("=="),
+		NOT_EQUAL("!="),
+		LESS("<"),
+		LESS_OR_EQUAL("<="),
+		GREATER(">"),
+		GREATER_OR_EQUAL(">=");
+		
+		private final String symbol;
+		
+		Relation(String symbol) {
+			this.symbol = symbol;
+		}
+		
+		static Relation forSymbol(String symbol) {
+			for (Relation relation : values()) {
+				if (relation.symbol.equals(symbol)) {
+					return relation;
+				}
+			}
+			return null;
+		}
+		
+		boolean holds(int comparison) {
+			switch (this) {
+				case LESS:
+					return comparison < 0;
+				case LESS_OR_EQUAL:
+					return comparison <= 0;
+				case GREATER:
+					return comparison > 0;
+				case GREATER_OR_EQUAL:
+					return comparison >= 0;
+				case NOT_EQUAL:
+					return comparison != 0;
+				default:
+					return comparison == 0;
+			}
+		}
+	}
+	
+	private enum TokenType {
+		NUMBER,
+		STRING,
+		IDENTIFIER,
+		OPERATOR,
+		END
+	}
+	
+	private static final class Token {
+		
+		private final TokenType type;
+		
+		private final String text;
+		
+		private final int position;
+		
+		private Token(TokenType type, String text, int position) {
+			this.type = type;
+			this.text = text;
+			this.position = position;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.evaluator.expression;
+
+/**
+ * Thrown when an exemption rule expression cannot be parsed.
+ */
+public class ExpressionSyntaxException extends IllegalArgumentException {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final int position;
+	
+	public ExpressionSyntaxException(String message, int position) {
+		super(message + " at position " + position);
+		this.position = position;
+	}
+	
+	/**
+	 * @return the zero-based offset in the expression where the error was found
+	 */
+	public int getPosition() {
+		return position;
+	}
+}
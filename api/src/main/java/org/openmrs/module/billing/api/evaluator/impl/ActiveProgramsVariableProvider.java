@@ -0,0 +1,52 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.evaluator.impl;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import lombok.Setter;
+import org.openmrs.Order;
+import org.openmrs.PatientProgram;
+import org.openmrs.api.ProgramWorkflowService;
+import org.openmrs.module.billing.api.evaluator.ExemptionVariableProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Provides {@code activePrograms}, the names of the programs the patient is currently enrolled in.
+ * This queries the patient's program enrollments, so it only runs for orders that have a rule
+ * reading the variable.
+ */
+public class ActiveProgramsVariableProvider implements ExemptionVariableProvider {
+	
+	public static final String NAME = "activePrograms";
+	
+	@Setter(onMethod_ = @Autowired)
+	private ProgramWorkflowService programWorkflowService;
+	
+	@Override
+	public String getName() {
+		return NAME;
+	}
+	
+	@Override
+	public Object getValue(Order order) {
+		if (order.getPatient() == null) {
+			return Collections.emptyList();
+		}
+		
+		List<PatientProgram> programs = programWorkflowService.getPatientPrograms(order.getPatient(), null, null, null,
+		    new Date(), null, false);
+		return programs.stream().filter(PatientProgram::getActive).map(pp -> pp.getProgram().getName())
+		        .collect(Collectors.toList());
+	}
+}
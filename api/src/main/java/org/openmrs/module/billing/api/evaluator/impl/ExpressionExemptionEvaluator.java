@@ -0,0 +1,59 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.evaluator.impl;
+
+import java.util.Map;
+
+import org.openmrs.module.billing.api.evaluator.ExemptionEvaluator;
+import org.openmrs.module.billing.api.evaluator.ScriptType;
+import org.openmrs.module.billing.api.evaluator.expression.CompiledExpression;
+import org.openmrs.module.billing.api.evaluator.expression.ExpressionParser;
+import org.openmrs.module.billing.api.util.BoundedCache;
+
+/**
+ * Evaluates {@link ScriptType#EXPRESSION} rules written in the language described by
+ * {@link ExpressionParser}. Each expression is compiled to a predicate tree once, when its rule is
+ * validated on save or on first use, and kept in a bounded cache keyed by the expression text; an
+ * evaluation only walks the tree against the variables.
+ */
+public class ExpressionExemptionEvaluator implements ExemptionEvaluator {
+	
+	private static final int CACHE_SIZE = 512;
+	
+	private final BoundedCache<String, CompiledExpression> expressions = new BoundedCache<>(CACHE_SIZE);
+	
+	@Override
+	public ScriptType getSupportedType() {
+		return ScriptType.EXPRESSION;
+	}
+	
+	@Override
+	public boolean evaluate(String script, Map<String, Object> variables) {
+		return compile(script).evaluate(variables);
+	}
+	
+	@Override
+	public void validate(String script) {
+		compile(script);
+	}
+	
+	/**
+	 * @param script the expression text
+	 * @return the compiled expression, from the cache when it was compiled before
+	 * @throws org.openmrs.module.billing.api.evaluator.expression.ExpressionSyntaxException if the
+	 *             expression is malformed
+	 */
+	public CompiledExpression compile(String script) {
+		if (script == null) {
+			return ExpressionParser.compile(null);
+		}
+		return expressions.get(script, ExpressionParser::compile);
+	}
+}
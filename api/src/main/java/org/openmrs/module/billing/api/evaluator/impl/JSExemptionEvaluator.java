@@ -10,15 +10,87 @@
 package org.openmrs.module.billing.api.evaluator.impl;
 
 import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.Source;
 import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyArray;
+import org.graalvm.polyglot.proxy.ProxyObject;
 import org.openmrs.module.billing.api.evaluator.ExemptionEvaluator;
 import org.openmrs.module.billing.api.evaluator.ScriptType;
+import org.openmrs.module.billing.api.util.BoundedCache;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * Evaluates JavaScript exemption rules with GraalJS.
+ * <p>
+ * All contexts share one {@link Engine}, so parsed code is reused across contexts. Scripts are
+ * turned into {@link Source} objects once and kept in a bounded cache keyed by the script text, so
+ * an edited rule gets a new entry. Contexts are borrowed from a bounded pool; each keeps the scripts
+ * it has already parsed. Variables are bound as read-only host proxies instead of being copied into
+ * new JS objects on every call. They are removed from the context again before it is returned to
+ * the pool.
+ * <p>
+ * Each script is wrapped in a block. Its {@code let} and {@code const} declarations stay local to
+ * one evaluation, and the value of its last expression is still the rule result. A block does not
+ * scope {@code var} declarations, hoisted functions or assignments to undeclared names, which land
+ * on the context's global object. Any global the context did not have when it was created is
+ * therefore removed after each evaluation, and a context whose globals cannot be removed, such as
+ * those declared with {@code var}, is closed instead of being returned to the pool. No rule ever
+ * sees a global left behind by another.
+ * <p>
+ * The identifiers a script mentions are collected when it is first compiled, and only variables
+ * with those names are bound. A variable no rule mentions is therefore never read from the
+ * variables map, which lets lazily resolved variables skip work nobody needs. The {@code vars}
+ * object is bound only for scripts that use it.
+ */
 public class JSExemptionEvaluator implements ExemptionEvaluator {
 	
+	private static final String LANGUAGE = ScriptType.JAVASCRIPT.getEngineName();
+	
+	private static final int SOURCE_CACHE_SIZE = 512;
+	
+	private static final long BORROW_TIMEOUT_SECONDS = 30;
+	
+	private static final String VARS = "vars";
+	
+	// Names not preceded by a dot, so property accesses such as order.conceptId only yield "order"
+	private static final Pattern IDENTIFIER = Pattern.compile("(?<![\\w$.])[A-Za-z_$][\\w$]*");
+	
+	private final Engine engine = Engine.newBuilder().build();
+	
+	private final BlockingQueue<PooledContext> idleContexts = new LinkedBlockingQueue<>();
+	
+	private final Semaphore permits;
+	
+	private final BoundedCache<String, Script> scripts = new BoundedCache<>(SOURCE_CACHE_SIZE);
+	
+	public JSExemptionEvaluator() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * @param maxContexts the maximum number of contexts evaluating rules at the same time
+	 */
+	public JSExemptionEvaluator(int maxContexts) {
+		if (maxContexts < 1) {
+			throw new IllegalArgumentException("The context pool must allow at least one context.");
+		}
+		this.permits = new Semaphore(maxContexts);
+	}
+	
 	@Override
 	public ScriptType getSupportedType() {
 		return ScriptType.JAVASCRIPT;
@@ -26,50 +98,249 @@ public class JSExemptionEvaluator implements ExemptionEvaluator {
 	
 	@Override
 	public boolean evaluate(String script, Map<String, Object> variables) {
-		try (Context context = Context.newBuilder("js").allowAllAccess(false).allowHostClassLookup(className -> false)
-		        .build()) {
-			Value bindings = context.getBindings("js");
-			
-			Map<String, Object> safeVars = (variables != null ? variables : Collections.emptyMap());
-			
-			Value varsObject = convertMapToJSObject(context, safeVars);
-			bindings.putMember("vars", varsObject);
-			
-			for (Map.Entry<String, Object> entry : safeVars.entrySet()) {
-				Object value = entry.getValue();
-				if (value instanceof Map) {
-					value = convertMapToJSObject(context, (Map<?, ?>) value);
+		Script compiled = getScript(script);
+		Map<String, Object> safeVars = (variables != null ? variables : Collections.emptyMap());
+		
+		PooledContext pooled = null;
+		boolean reusable = false;
+		try {
+			pooled = borrowContext();
+			Value bindings = pooled.context.getBindings(LANGUAGE);
+			try {
+				if (compiled.readsVars) {
+					bindings.putMember(VARS, new MapProxy(safeVars));
 				}
-				bindings.putMember(entry.getKey(), value);
-			}
-			
-			Value result = context.eval("js", script);
-			
-			if (result.isBoolean()) {
-				return result.asBoolean();
+				for (String name : compiled.identifiers) {
+					if (safeVars.containsKey(name)) {
+						bindings.putMember(name, toGuest(safeVars.get(name)));
+					}
+				}
+				
+				Value result = pooled.parse(compiled.source).execute();
+				reusable = true;
+				
+				if (result.isBoolean()) {
+					return result.asBoolean();
+				}
+				if (result.isNull()) {
+					return false;
+				}
+				return Boolean.parseBoolean(result.toString());
 			}
-			if (result.isNull()) {
-				return false;
+			finally {
+				if (reusable) {
+					if (compiled.readsVars) {
+						bindings.removeMember(VARS);
+					}
+					for (String name : compiled.identifiers) {
+						if (safeVars.containsKey(name)) {
+							bindings.removeMember(name);
+						}
+					}
+					reusable = pooled.removeAddedGlobals(bindings);
+				}
 			}
-			return Boolean.parseBoolean(result.toString());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for a JavaScript context", e);
 		}
 		catch (Exception e) {
+			reusable = false;
 			throw new RuntimeException("Error evaluating JS exemption script: " + script, e);
 		}
+		finally {
+			if (pooled != null) {
+				releaseContext(pooled, reusable);
+			}
+		}
 	}
 	
-	private Value convertMapToJSObject(Context context, Map<?, ?> map) {
-		Value jsObject = context.eval("js", "({})");
-		for (Map.Entry<?, ?> entry : map.entrySet()) {
-			String key = entry.getKey().toString();
-			Object value = entry.getValue();
+	/**
+	 * Closes the pooled contexts and the shared engine.
+	 */
+	public void close() {
+		PooledContext pooled;
+		while ((pooled = idleContexts.poll()) != null) {
+			pooled.context.close();
+		}
+		engine.close();
+	}
+	
+	private Script getScript(String script) {
+		return scripts.get(script, Script::new);
+	}
+	
+	// Every borrower holds a permit until the context goes back to the pool or is closed, so a context
+	// is only created when none is idle and a discarded context frees its slot for a waiting borrower
+	private PooledContext borrowContext() throws InterruptedException {
+		if (!permits.tryAcquire(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+			throw new IllegalStateException("Timed out waiting for a JavaScript context");
+		}
+		
+		PooledContext pooled = idleContexts.poll();
+		if (pooled != null) {
+			return pooled;
+		}
+		
+		try {
+			return new PooledContext(Context.newBuilder(LANGUAGE).engine(engine).allowAllAccess(false)
+			        .allowHostClassLookup(className -> false).build());
+		}
+		catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+	
+	// A context that failed may hold half-initialised globals, so it is replaced instead of reused
+	private void releaseContext(PooledContext pooled, boolean reusable) {
+		try {
+			if (reusable) {
+				idleContexts.offer(pooled);
+				return;
+			}
 			
-			if (value instanceof Map) {
-				value = convertMapToJSObject(context, (Map<?, ?>) value);
+			try {
+				pooled.context.close();
+			}
+			catch (RuntimeException ignored) {
+				// the context is being discarded anyway
 			}
+		}
+		finally {
+			permits.release();
+		}
+	}
+	
+	private static Object toGuest(Object value) {
+		if (value instanceof Map) {
+			return new MapProxy((Map<?, ?>) value);
+		}
+		if (value instanceof List) {
+			return new ListProxy((List<?>) value);
+		}
+		return value;
+	}
+	
+	private static final class Script {
+		
+		private final Source source;
+		
+		private final String[] identifiers;
+		
+		private final boolean readsVars;
+		
+		private Script(String script) {
+			this.source = Source.create(LANGUAGE, "{\n" + script + "\n}");
 			
-			jsObject.putMember(key, value);
+			Set<String> names = new LinkedHashSet<>();
+			Matcher matcher = IDENTIFIER.matcher(script);
+			while (matcher.find()) {
+				names.add(matcher.group());
+			}
+			this.readsVars = names.contains(VARS);
+			this.identifiers = names.toArray(new String[0]);
+		}
+	}
+	
+	private static final class PooledContext {
+		
+		private final Context context;
+		
+		private final BoundedCache<Source, Value> parsed = new BoundedCache<>(SOURCE_CACHE_SIZE);
+		
+		private final Set<String> initialGlobals;
+		
+		private PooledContext(Context context) {
+			this.context = context;
+			this.initialGlobals = new HashSet<>(context.getBindings(LANGUAGE).getMemberKeys());
+		}
+		
+		/**
+		 * Removes the globals an evaluation added to the context.
+		 *
+		 * @return whether the context is back to its initial globals and may be reused
+		 */
+		private boolean removeAddedGlobals(Value bindings) {
+			try {
+				for (String name : new ArrayList<>(bindings.getMemberKeys())) {
+					if (!initialGlobals.contains(name)) {
+						bindings.removeMember(name);
+						if (bindings.hasMember(name)) {
+							return false;
+						}
+					}
+				}
+				return true;
+			}
+			catch (RuntimeException e) {
+				// Globals declared with var cannot be deleted
+				return false;
+			}
+		}
+		
+		private Value parse(Source source) {
+			return parsed.get(source, context::parse);
+		}
+	}
+	
+	/**
+	 * Read-only view of a {@link Map} as a JS object; nested maps and lists are wrapped on access.
+	 */
+	private static final class MapProxy implements ProxyObject {
+		
+		private final Map<?, ?> map;
+		
+		private MapProxy(Map<?, ?> map) {
+			this.map = map;
+		}
+		
+		@Override
+		public Object getMember(String key) {
+			return toGuest(map.get(key));
+		}
+		
+		@Override
+		public Object getMemberKeys() {
+			return ProxyArray.fromArray(map.keySet().stream().map(String::valueOf).toArray());
+		}
+		
+		@Override
+		public boolean hasMember(String key) {
+			return map.containsKey(key);
+		}
+		
+		@Override
+		public void putMember(String key, Value value) {
+			throw new UnsupportedOperationException("Exemption rule variables are read-only");
+		}
+	}
+	
+	/**
+	 * Read-only view of a {@link List} as a JS array; nested maps and lists are wrapped on access.
+	 */
+	private static final class ListProxy implements ProxyArray {
+		
+		private final List<?> list;
+		
+		private ListProxy(List<?> list) {
+			this.list = list;
+		}
+		
+		@Override
+		public Object get(long index) {
+			return toGuest(list.get((int) index));
+		}
+		
+		@Override
+		public void set(long index, Value value) {
+			throw new UnsupportedOperationException("Exemption rule variables are read-only");
+		}
+		
+		@Override
+		public long getSize() {
+			return list.size();
 		}
-		return jsObject;
 	}
 }
@@ -0,0 +1,31 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.evaluator.impl;
+
+import org.openmrs.Order;
+import org.openmrs.module.billing.api.evaluator.ExemptionVariableProvider;
+
+/**
+ * Provides {@code patientAge}, the patient's age in whole years.
+ */
+public class PatientAgeVariableProvider implements ExemptionVariableProvider {
+	
+	public static final String NAME = "patientAge";
+	
+	@Override
+	public String getName() {
+		return NAME;
+	}
+	
+	@Override
+	public Object getValue(Order order) {
+		return order.getPatient() != null ? order.getPatient().getAge() : null;
+	}
+}
@@ -9,26 +9,63 @@
  */
 package org.openmrs.module.billing.api.handler;
 
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.openmrs.User;
 import org.openmrs.annotation.Handler;
+import org.openmrs.api.context.Context;
 import org.openmrs.api.handler.SaveHandler;
+import org.openmrs.module.billing.ModuleSettings;
 import org.openmrs.module.billing.api.IReceiptNumberGenerator;
 import org.openmrs.module.billing.api.ReceiptNumberGeneratorFactory;
 import org.openmrs.module.billing.api.model.Bill;
+import org.openmrs.module.billing.api.model.BillStatus;
+import org.openmrs.module.billing.api.model.ReceiptNumberAssignment;
 
 import java.util.Date;
 
+/**
+ * Gives a bill its receipt number when it is saved without one. The
+ * {@code billing.receiptNumberAssignment} global property chooses whether every bill is numbered
+ * when first saved or only once it leaves the pending state (see {@link ReceiptNumberAssignment}).
+ */
+@Slf4j
 @Handler(supports = Bill.class, order = 1000)
 public class BillReceiptNumberHandler implements SaveHandler<Bill> {
 	
 	@Override
 	public void handle(Bill bill, User user, Date date, String s) {
-		if (StringUtils.isEmpty(bill.getReceiptNumber())) {
+		if (StringUtils.isEmpty(bill.getReceiptNumber()) && isReadyForNumbering(bill)) {
 			IReceiptNumberGenerator receiptNumberGenerator = ReceiptNumberGeneratorFactory.getGenerator();
 			if (receiptNumberGenerator != null) {
 				bill.setReceiptNumber(receiptNumberGenerator.generateNumber(bill));
 			}
 		}
 	}
+	
+	private static boolean isReadyForNumbering(Bill bill) {
+		if (getAssignment() == ReceiptNumberAssignment.ON_POST) {
+			BillStatus status = bill.getStatus();
+			return status != null && status != BillStatus.PENDING && status != BillStatus.CANCELLED
+			        && !Boolean.TRUE.equals(bill.getVoided());
+		}
+		
+		return true;
+	}
+	
+	private static ReceiptNumberAssignment getAssignment() {
+		String property = Context.getAdministrationService()
+		        .getGlobalProperty(ModuleSettings.RECEIPT_NUMBER_ASSIGNMENT_PROPERTY);
+		if (StringUtils.isNotBlank(property)) {
+			try {
+				return ReceiptNumberAssignment.valueOf(property.trim().toUpperCase());
+			}
+			catch (IllegalArgumentException ex) {
+				log.warn("Ignoring unknown global property {}={}.", ModuleSettings.RECEIPT_NUMBER_ASSIGNMENT_PROPERTY,
+				    property);
+			}
+		}
+		
+		return ReceiptNumberAssignment.ON_CREATE;
+	}
 }
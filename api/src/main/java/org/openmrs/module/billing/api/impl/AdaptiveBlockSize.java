@@ -0,0 +1,115 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.impl;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openmrs.module.billing.api.model.SequenceGroupStatistics;
+
+/**
+ * Chooses the size of each block reserved for one sequence group from the rate at which the group
+ * consumes its values. The block is sized to last about {@link #TARGET_REFILL_INTERVAL_NANOS}, so it
+ * grows on busy groups and shrinks on idle ones, at most doubling or halving per refill and always
+ * within the configured bounds.
+ */
+final class AdaptiveBlockSize {
+	
+	static final long TARGET_REFILL_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+	
+	// Weight of the latest refill in the smoothed consumption rate and refill interval
+	private static final double SMOOTHING = 0.5;
+	
+	private int blockSize;
+	
+	private long refillCount;
+	
+	private long lastRefillNanos;
+	
+	private long lastRefillMillis;
+	
+	private boolean measuring;
+	
+	private long measuredIntervals;
+	
+	private double valuesPerNano;
+	
+	private double refillIntervalNanos;
+	
+	/**
+	 * Records a refill and returns the size of the block to reserve for it. The first block has the
+	 * smallest size.
+	 *
+	 * @param minSize the smallest block size
+	 * @param maxSize the largest block size, at least {@code minSize}
+	 * @param nowNanos the current {@link System#nanoTime()}
+	 * @return the block size to reserve
+	 */
+	synchronized int next(int minSize, int maxSize, long nowNanos) {
+		int size = clamp(blockSize == 0 ? minSize : blockSize, minSize, maxSize);
+		
+		if (measuring) {
+			long elapsed = Math.max(1, nowNanos - lastRefillNanos);
+			double rate = (double) blockSize / elapsed;
+			if (measuredIntervals == 0) {
+				valuesPerNano = rate;
+				refillIntervalNanos = elapsed;
+			} else {
+				valuesPerNano = SMOOTHING * rate + (1 - SMOOTHING) * valuesPerNano;
+				refillIntervalNanos = SMOOTHING * elapsed + (1 - SMOOTHING) * refillIntervalNanos;
+			}
+			measuredIntervals++;
+			
+			long target = Math.round(valuesPerNano * TARGET_REFILL_INTERVAL_NANOS);
+			size = clamp(target, Math.max(minSize, size / 2), (int) Math.min(maxSize, size * 2L));
+		}
+		
+		blockSize = size;
+		refillCount++;
+		lastRefillNanos = nowNanos;
+		lastRefillMillis = System.currentTimeMillis();
+		measuring = true;
+		
+		return size;
+	}
+	
+	/**
+	 * Ignores the time until the next refill when measuring the consumption rate, because the current
+	 * block was discarded before it was used up.
+	 */
+	synchronized void discardCurrentBlock() {
+		measuring = false;
+	}
+	
+	synchronized SequenceGroupStatistics toStatistics(String group) {
+		SequenceGroupStatistics.SequenceGroupStatisticsBuilder statistics = SequenceGroupStatistics.builder().group(group);
+		describe(statistics);
+		
+		return statistics.build();
+	}
+	
+	/**
+	 * Adds the block size and refill frequency to a group's statistics.
+	 */
+	synchronized void describe(SequenceGroupStatistics.SequenceGroupStatisticsBuilder statistics) {
+		statistics.blockSize(blockSize).refillCount(refillCount);
+		if (refillCount > 0) {
+			statistics.lastRefill(new Date(lastRefillMillis));
+		}
+		if (measuredIntervals > 0) {
+			statistics.averageRefillIntervalMillis(Math.round(refillIntervalNanos / TimeUnit.MILLISECONDS.toNanos(1)));
+			statistics.refillsPerHour(TimeUnit.HOURS.toNanos(1) / refillIntervalNanos);
+		}
+	}
+	
+	private static int clamp(long value, int min, int max) {
+		return (int) Math.max(min, Math.min(max, value));
+	}
+}
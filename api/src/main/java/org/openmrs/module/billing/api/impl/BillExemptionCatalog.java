@@ -0,0 +1,143 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.module.billing.api.db.BillExemptionDAO;
+import org.openmrs.module.billing.api.model.BillExemption;
+import org.openmrs.module.billing.api.model.BillExemptionRule;
+import org.openmrs.module.billing.api.model.ExemptionType;
+
+/**
+ * In-memory index of the active exemption rules, keyed by concept id and exemption type. The index
+ * is loaded with a single query and replaced as a whole, so readers always see a complete rule set.
+ * {@link #invalidate()} marks it stale and the next lookup rebuilds it.
+ * <p>
+ * The indexed rules are detached copies holding only the rule id, uuid, script type and script;
+ * they are shared between threads and must not be modified.
+ */
+@Slf4j
+class BillExemptionCatalog {
+	
+	private final BillExemptionDAO billExemptionDAO;
+	
+	private final AtomicLong generation = new AtomicLong();
+	
+	private volatile Snapshot snapshot;
+	
+	BillExemptionCatalog(BillExemptionDAO billExemptionDAO) {
+		this.billExemptionDAO = billExemptionDAO;
+	}
+	
+	/**
+	 * @param conceptId the concept being billed
+	 * @param exemptionType the exemption type to match exactly
+	 * @return the non-voided rules of the non-retired exemptions for the concept and type
+	 */
+	List<BillExemptionRule> getRules(Integer conceptId, ExemptionType exemptionType) {
+		if (conceptId == null || exemptionType == null) {
+			return Collections.emptyList();
+		}
+		
+		Map<ExemptionType, List<BillExemptionRule>> rulesByType = getSnapshot().rules.get(conceptId);
+		if (rulesByType == null) {
+			return Collections.emptyList();
+		}
+		
+		return rulesByType.getOrDefault(exemptionType, Collections.emptyList());
+	}
+	
+	/**
+	 * Marks the index stale. A rebuild that started before this call is not reused by later lookups.
+	 */
+	void invalidate() {
+		generation.incrementAndGet();
+	}
+	
+	private Snapshot getSnapshot() {
+		Snapshot current = snapshot;
+		if (current != null && current.generation == generation.get()) {
+			return current;
+		}
+		
+		return rebuild();
+	}
+	
+	private synchronized Snapshot rebuild() {
+		long currentGeneration = generation.get();
+		Snapshot current = snapshot;
+		if (current != null && current.generation == currentGeneration) {
+			return current;
+		}
+		
+		current = new Snapshot(currentGeneration, load());
+		snapshot = current;
+		return current;
+	}
+	
+	private Map<Integer, Map<ExemptionType, List<BillExemptionRule>>> load() {
+		Map<Integer, Map<ExemptionType, List<BillExemptionRule>>> index = new HashMap<>();
+		int ruleCount = 0;
+		for (BillExemption exemption : billExemptionDAO.getActiveExemptionsWithRules()) {
+			if (exemption.getConcept() == null || exemption.getExemptionType() == null || exemption.getRules() == null) {
+				continue;
+			}
+			
+			List<BillExemptionRule> rules = index
+			        .computeIfAbsent(exemption.getConcept().getConceptId(), id -> new EnumMap<>(ExemptionType.class))
+			        .computeIfAbsent(exemption.getExemptionType(), type -> new ArrayList<>());
+			for (BillExemptionRule rule : exemption.getRules()) {
+				if (!Boolean.TRUE.equals(rule.getVoided())) {
+					rules.add(copyOf(rule));
+					ruleCount++;
+				}
+			}
+		}
+		
+		for (Map.Entry<Integer, Map<ExemptionType, List<BillExemptionRule>>> entry : index.entrySet()) {
+			Map<ExemptionType, List<BillExemptionRule>> rulesByType = entry.getValue();
+			rulesByType.replaceAll((type, rules) -> Collections.unmodifiableList(rules));
+			entry.setValue(Collections.unmodifiableMap(rulesByType));
+		}
+		
+		log.debug("Exemption catalog loaded {} rules for {} concepts", ruleCount, index.size());
+		return Collections.unmodifiableMap(index);
+	}
+	
+	private static BillExemptionRule copyOf(BillExemptionRule rule) {
+		BillExemptionRule copy = new BillExemptionRule();
+		copy.setRuleId(rule.getRuleId());
+		copy.setUuid(rule.getUuid());
+		copy.setScriptType(rule.getScriptType());
+		copy.setScript(rule.getScript());
+		copy.setVoided(false);
+		return copy;
+	}
+	
+	private static class Snapshot {
+		
+		private final long generation;
+		
+		private final Map<Integer, Map<ExemptionType, List<BillExemptionRule>>> rules;
+		
+		Snapshot(long generation, Map<Integer, Map<ExemptionType, List<BillExemptionRule>>> rules) {
+			this.generation = generation;
+			this.rules = rules;
+		}
+	}
+}
@@ -13,23 +13,31 @@ import org.openmrs.Concept;
 import org.openmrs.module.billing.api.BillExemptionService;
 import org.openmrs.module.billing.api.db.BillExemptionDAO;
 import org.openmrs.module.billing.api.model.BillExemption;
+import org.openmrs.module.billing.api.model.BillExemptionRule;
 import org.openmrs.module.billing.api.model.ExemptionType;
+import org.openmrs.module.billing.api.util.TransactionUtil;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
 import java.util.List;
 
 public class BillExemptionServiceImpl implements BillExemptionService {
 	
 	private final BillExemptionDAO billExemptionDAO;
 	
+	private final BillExemptionCatalog exemptionCatalog;
+	
 	public BillExemptionServiceImpl(BillExemptionDAO billExemptionDAO) {
 		this.billExemptionDAO = billExemptionDAO;
+		this.exemptionCatalog = new BillExemptionCatalog(billExemptionDAO);
 	}
 	
 	@Override
 	@Transactional
 	public BillExemption save(BillExemption billExemption) {
-		return billExemptionDAO.save(billExemption);
+		BillExemption saved = billExemptionDAO.save(billExemption);
+		invalidateCatalog();
+		return saved;
 	}
 	
 	@Override
@@ -56,4 +64,18 @@ public class BillExemptionServiceImpl implements BillExemptionService {
 		return billExemptionDAO.getExemptionsByItemType(itemType, includeRetired);
 	}
 	
+	@Override
+	@Transactional(readOnly = true)
+	public List<BillExemptionRule> getActiveExemptionRules(Concept concept, ExemptionType itemType) {
+		if (concept == null) {
+			return Collections.emptyList();
+		}
+		
+		return exemptionCatalog.getRules(concept.getConceptId(), itemType);
+	}
+	
+	private void invalidateCatalog() {
+		TransactionUtil.runNowAndAfterCompletion(exemptionCatalog::invalidate);
+	}
+	
 }
@@ -10,20 +10,32 @@
 package org.openmrs.module.billing.api.impl;
 
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.openmrs.Patient;
+import org.openmrs.Visit;
 import org.openmrs.api.context.Context;
 import org.openmrs.api.impl.BaseOpenmrsService;
 import org.openmrs.module.billing.api.BillService;
+import org.openmrs.module.billing.api.base.KeysetPagingInfo;
 import org.openmrs.module.billing.api.base.PagingInfo;
 import org.openmrs.module.billing.api.db.BillDAO;
 import org.openmrs.module.billing.api.model.Bill;
+import org.openmrs.module.billing.api.model.BillLookupStatistics;
+import org.openmrs.module.billing.api.model.BillStatus;
+import org.openmrs.module.billing.api.model.BillSummary;
+import org.openmrs.module.billing.api.model.CashPoint;
+import org.openmrs.module.billing.api.search.BillFetchPlan;
 import org.openmrs.module.billing.api.search.BillSearch;
 import org.openmrs.module.billing.util.ReceiptGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Default implementation of {@link BillService}.
@@ -35,12 +47,16 @@ import java.util.List;
  * @see BillService
  * @see BillDAO
  */
+@Slf4j
 @Transactional
 public class BillServiceImpl extends BaseOpenmrsService implements BillService {
 	
 	@Setter(onMethod_ = { @Autowired })
 	private BillDAO billDAO;
 	
+	@Setter(onMethod_ = { @Autowired })
+	private PatientPaymentStatusCache patientPaymentStatusCache;
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -65,6 +81,18 @@ public class BillServiceImpl extends BaseOpenmrsService implements BillService {
 		return billDAO.getBillByUuid(uuid);
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public Bill getBillByUuid(String uuid, BillFetchPlan fetchPlan) {
+		if (uuid == null) {
+			return null;
+		}
+		return billDAO.getBillByUuid(uuid, fetchPlan);
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -74,6 +102,7 @@ public class BillServiceImpl extends BaseOpenmrsService implements BillService {
 		if (bill == null) {
 			throw new NullPointerException("The bill must be defined.");
 		}
+		evictPatientPaymentStatus(bill);
 		return billDAO.saveBill(bill);
 	}
 	
@@ -89,6 +118,15 @@ public class BillServiceImpl extends BaseOpenmrsService implements BillService {
 		return billDAO.getBillByReceiptNumber(receiptNumber);
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public BillLookupStatistics getBillLookupStatistics() {
+		return billDAO.getLookupStatistics();
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -113,6 +151,30 @@ public class BillServiceImpl extends BaseOpenmrsService implements BillService {
 		return billDAO.getBills(billSearch, pagingInfo);
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public List<BillSummary> getBillSummaries(BillSearch billSearch, PagingInfo pagingInfo) {
+		if (billSearch == null) {
+			return Collections.emptyList();
+		}
+		return billDAO.getBillSummaries(billSearch, pagingInfo);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public Set<Integer> getPatientIdsWithBills(Collection<Integer> patientIds, Collection<BillStatus> statuses) {
+		if (patientIds == null || patientIds.isEmpty()) {
+			return Collections.emptySet();
+		}
+		return billDAO.getPatientIdsWithBills(patientIds, statuses);
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -134,6 +196,7 @@ public class BillServiceImpl extends BaseOpenmrsService implements BillService {
 		if (bill == null) {
 			throw new NullPointerException("The bill must be defined.");
 		}
+		evictPatientPaymentStatus(bill);
 		billDAO.purgeBill(bill);
 	}
 	
@@ -146,6 +209,7 @@ public class BillServiceImpl extends BaseOpenmrsService implements BillService {
 		if (StringUtils.isBlank(voidReason)) {
 			throw new IllegalArgumentException("voidReason cannot be null or empty");
 		}
+		evictPatientPaymentStatus(bill);
 		return billDAO.saveBill(bill);
 	}
 	
@@ -155,6 +219,7 @@ public class BillServiceImpl extends BaseOpenmrsService implements BillService {
 	@Override
 	@Transactional
 	public Bill unvoidBill(Bill bill) {
+		evictPatientPaymentStatus(bill);
 		return billDAO.saveBill(bill);
 	}
 	
@@ -171,4 +236,47 @@ public class BillServiceImpl extends BaseOpenmrsService implements BillService {
 		return true;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional
+	public Bill getPendingBillForUpdate(Patient patient, Visit visit, CashPoint cashPoint) {
+		if (patient == null || visit == null || cashPoint == null) {
+			return null;
+		}
+		return billDAO.getPendingBillForUpdate(patient, visit, cashPoint);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Transactional
+	public int checkBillTotals(KeysetPagingInfo pagingInfo) {
+		BillSearch billSearch = new BillSearch();
+		billSearch.setIncludeVoided(true);
+		
+		int corrected = 0;
+		for (Bill bill : billDAO.getBills(billSearch, pagingInfo)) {
+			BigDecimal storedTotal = bill.getStoredTotal();
+			BigDecimal storedTotalPaid = bill.getStoredTotalPaid();
+			BigDecimal storedTotalDiscount = bill.getStoredTotalDiscount();
+			if (bill.updateStoredTotals()) {
+				log.warn("Corrected the stored totals of bill {} from total={}, paid={}, discount={} to total={}, paid={}, "
+				        + "discount={}",
+				    bill.getUuid(), storedTotal, storedTotalPaid, storedTotalDiscount, bill.getStoredTotal(),
+				    bill.getStoredTotalPaid(), bill.getStoredTotalDiscount());
+				corrected++;
+			}
+		}
+		return corrected;
+	}
+	
+	// Saving, voiding or purging a bill can change whether its patient has anything outstanding
+	private void evictPatientPaymentStatus(Bill bill) {
+		if (patientPaymentStatusCache != null && bill != null && bill.getPatient() != null) {
+			patientPaymentStatusCache.evict(bill.getPatient().getPatientId());
+		}
+	}
 }
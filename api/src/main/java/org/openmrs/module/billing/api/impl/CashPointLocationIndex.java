@@ -0,0 +1,148 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.Location;
+import org.openmrs.module.billing.api.model.CashPoint;
+
+/**
+ * In-memory map of locations to the id of the cash point that serves them. The active cash points
+ * are loaded with a single query; a location is served by the lowest numbered cash point at the
+ * location or, failing that, at its closest ancestor. Locations that no cash point serves fall back
+ * to the lowest numbered cash point overall. Each location's answer, including the walk up the
+ * hierarchy, is remembered until {@link #invalidate()} is called, so changes to the location
+ * hierarchy are only picked up when the cash points change or the index is otherwise invalidated.
+ */
+@Slf4j
+class CashPointLocationIndex {
+	
+	private final Supplier<List<CashPoint>> activeCashPoints;
+	
+	private final AtomicLong generation = new AtomicLong();
+	
+	private volatile Snapshot snapshot;
+	
+	CashPointLocationIndex(Supplier<List<CashPoint>> activeCashPoints) {
+		this.activeCashPoints = activeCashPoints;
+	}
+	
+	/**
+	 * @param location the location to find a cash point for, may be null
+	 * @return the id of the cash point serving the location, or null if there are no active cash
+	 *         points
+	 */
+	Integer resolve(Location location) {
+		Snapshot current = getSnapshot();
+		if (location == null || location.getLocationId() == null) {
+			return current.fallbackCashPointId;
+		}
+		
+		Integer cashPointId = current.resolved.get(location.getLocationId());
+		if (cashPointId == null) {
+			cashPointId = current.walk(location);
+			if (cashPointId != null) {
+				current.resolved.put(location.getLocationId(), cashPointId);
+			}
+		}
+		return cashPointId;
+	}
+	
+	/**
+	 * Marks the index stale. A rebuild that started before this call is not reused by later lookups.
+	 */
+	void invalidate() {
+		generation.incrementAndGet();
+	}
+	
+	private Snapshot getSnapshot() {
+		Snapshot current = snapshot;
+		if (current != null && current.generation == generation.get()) {
+			return current;
+		}
+		
+		return rebuild();
+	}
+	
+	private synchronized Snapshot rebuild() {
+		long currentGeneration = generation.get();
+		Snapshot current = snapshot;
+		if (current != null && current.generation == currentGeneration) {
+			return current;
+		}
+		
+		current = load(currentGeneration);
+		snapshot = current;
+		return current;
+	}
+	
+	private Snapshot load(long currentGeneration) {
+		Map<Integer, Integer> byLocation = new HashMap<>();
+		Integer fallback = null;
+		for (CashPoint cashPoint : activeCashPoints.get()) {
+			Integer cashPointId = cashPoint.getId();
+			if (cashPointId == null) {
+				continue;
+			}
+			
+			if (fallback == null || cashPointId < fallback) {
+				fallback = cashPointId;
+			}
+			
+			Location location = cashPoint.getLocation();
+			if (location != null && location.getLocationId() != null) {
+				byLocation.merge(location.getLocationId(), cashPointId, Math::min);
+			}
+		}
+		
+		log.debug("Cash point index loaded cash points for {} locations", byLocation.size());
+		return new Snapshot(currentGeneration, Collections.unmodifiableMap(byLocation), fallback);
+	}
+	
+	private static class Snapshot {
+		
+		private final long generation;
+		
+		private final Map<Integer, Integer> byLocation;
+		
+		private final Integer fallbackCashPointId;
+		
+		private final Map<Integer, Integer> resolved = new ConcurrentHashMap<>();
+		
+		Snapshot(long generation, Map<Integer, Integer> byLocation, Integer fallbackCashPointId) {
+			this.generation = generation;
+			this.byLocation = byLocation;
+			this.fallbackCashPointId = fallbackCashPointId;
+		}
+		
+		private Integer walk(Location location) {
+			Set<Integer> visited = new HashSet<>();
+			for (Location current = location; current != null
+			        && visited.add(current.getLocationId()); current = current.getParentLocation()) {
+				Integer cashPointId = byLocation.get(current.getLocationId());
+				if (cashPointId != null) {
+					return cashPointId;
+				}
+			}
+			
+			return fallbackCashPointId;
+		}
+	}
+}
@@ -21,6 +21,7 @@ import org.openmrs.module.billing.api.base.PagingInfo;
 import org.openmrs.module.billing.api.db.CashPointDAO;
 import org.openmrs.module.billing.api.model.CashPoint;
 import org.openmrs.module.billing.api.search.CashPointSearch;
+import org.openmrs.module.billing.api.util.TransactionUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -35,6 +36,8 @@ public class CashPointServiceImpl extends BaseOpenmrsService implements CashPoin
 	
 	private static final int MAX_CASHPOINT_NAME_CHARACTERS = 255;
 	
+	private final CashPointLocationIndex locationIndex = new CashPointLocationIndex(() -> getAllCashPoints(false));
+	
 	/**
 	 * @inheritDoc
 	 */
@@ -137,6 +140,17 @@ public class CashPointServiceImpl extends BaseOpenmrsService implements CashPoin
 		return cashPointDAO.getCashPoints(cashPointSearch, null);
 	}
 	
+	/**
+	 * @inheritDoc
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public CashPoint resolveCashPoint(Location location) {
+		Integer cashPointId = locationIndex.resolve(location);
+		// Served from the second-level entity cache once the cash point has been loaded
+		return cashPointId == null ? null : cashPointDAO.getCashPoint(cashPointId);
+	}
+	
 	/**
 	 * @inheritDoc
 	 */
@@ -146,7 +160,9 @@ public class CashPointServiceImpl extends BaseOpenmrsService implements CashPoin
 		if (cashPoint == null) {
 			throw new IllegalArgumentException("Cash point cannot be null");
 		}
-		return cashPointDAO.saveCashPoint(cashPoint);
+		CashPoint saved = cashPointDAO.saveCashPoint(cashPoint);
+		invalidateLocationIndex();
+		return saved;
 	}
 	
 	/**
@@ -159,6 +175,7 @@ public class CashPointServiceImpl extends BaseOpenmrsService implements CashPoin
 			throw new IllegalArgumentException("Cash point cannot be null");
 		}
 		cashPointDAO.purgeCashPoint(cashPoint);
+		invalidateLocationIndex();
 	}
 	
 	/**
@@ -170,7 +187,9 @@ public class CashPointServiceImpl extends BaseOpenmrsService implements CashPoin
 		if (StringUtils.isEmpty(retireReason)) {
 			throw new IllegalArgumentException("Retire reason cannot be null or empty");
 		}
-		return cashPointDAO.saveCashPoint(cashPoint);
+		CashPoint saved = cashPointDAO.saveCashPoint(cashPoint);
+		invalidateLocationIndex();
+		return saved;
 	}
 	
 	/**
@@ -179,6 +198,12 @@ public class CashPointServiceImpl extends BaseOpenmrsService implements CashPoin
 	@Override
 	@Transactional
 	public CashPoint unretireCashPoint(CashPoint cashPoint) {
-		return cashPointDAO.saveCashPoint(cashPoint);
+		CashPoint saved = cashPointDAO.saveCashPoint(cashPoint);
+		invalidateLocationIndex();
+		return saved;
+	}
+	
+	private void invalidateLocationIndex() {
+		TransactionUtil.runNowAndAfterCompletion(locationIndex::invalidate);
 	}
 }
@@ -14,6 +14,7 @@ import lombok.Setter;
 import org.apache.commons.lang3.StringUtils;
 import org.openmrs.api.impl.BaseOpenmrsService;
 import org.openmrs.module.billing.api.CashierItemPriceService;
+import org.openmrs.module.billing.api.billing.DrugPriceCache;
 import org.openmrs.module.billing.api.db.CashierItemPriceDAO;
 import org.openmrs.module.billing.api.model.CashierItemPrice;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,6 +29,9 @@ public class CashierItemPriceServiceImpl extends BaseOpenmrsService implements C
 	@Setter(onMethod_ = { @Autowired })
 	private CashierItemPriceDAO cashierItemPriceDAO;
 	
+	@Setter(onMethod_ = { @Autowired })
+	private DrugPriceCache drugPriceCache;
+	
 	/** {@inheritDoc} */
 	@Override
 	@Transactional(readOnly = true)
@@ -62,7 +66,9 @@ public class CashierItemPriceServiceImpl extends BaseOpenmrsService implements C
 		if (cashierItemPrice == null) {
 			throw new IllegalArgumentException("CashierItemPrice cannot be null");
 		}
-		return cashierItemPriceDAO.saveCashierItemPrice(cashierItemPrice);
+		CashierItemPrice saved = cashierItemPriceDAO.saveCashierItemPrice(cashierItemPrice);
+		drugPriceCache.invalidate();
+		return saved;
 	}
 	
 	/** {@inheritDoc} */
@@ -76,6 +82,7 @@ public class CashierItemPriceServiceImpl extends BaseOpenmrsService implements C
 			throw new IllegalArgumentException("Reason cannot be empty");
 		}
 		cashierItemPriceDAO.saveCashierItemPrice(cashierItemPrice);
+		drugPriceCache.invalidate();
 	}
 	
 	/** {@inheritDoc} */
@@ -85,7 +92,9 @@ public class CashierItemPriceServiceImpl extends BaseOpenmrsService implements C
 		if (cashierItemPrice == null) {
 			throw new IllegalArgumentException("CashierItemPrice cannot be null");
 		}
-		return cashierItemPriceDAO.saveCashierItemPrice(cashierItemPrice);
+		CashierItemPrice saved = cashierItemPriceDAO.saveCashierItemPrice(cashierItemPrice);
+		drugPriceCache.invalidate();
+		return saved;
 	}
 	
 	/** {@inheritDoc} */
@@ -96,5 +105,6 @@ public class CashierItemPriceServiceImpl extends BaseOpenmrsService implements C
 			throw new IllegalArgumentException("CashierItemPrice cannot be null");
 		}
 		cashierItemPriceDAO.purgeCashierItemPrice(cashierItemPrice);
+		drugPriceCache.invalidate();
 	}
 }
@@ -14,14 +14,29 @@ import org.openmrs.Patient;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.billing.api.BillService;
 import org.openmrs.module.billing.api.PatientPaymentStatusResolver;
-import org.openmrs.module.billing.api.model.Bill;
 import org.openmrs.module.billing.api.model.BillStatus;
 import org.openmrs.module.billing.api.model.PatientPaymentStatus;
 import org.openmrs.module.billing.api.model.PatientPaymentStatusResult;
+import org.openmrs.module.billing.api.util.PrivilegeConstants;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Resolves a patient as UNPAID while any of their non-voided bills is PENDING or POSTED, PAID when
+ * they have other non-voided bills, and UNKNOWN when they have none. The bills are checked with
+ * EXISTS queries rather than loaded, and the resolved statuses are kept in the
+ * {@link PatientPaymentStatusCache} until one of the patient's bills changes.
+ */
 @RequiredArgsConstructor
 public class DefaultPatientPaymentStatusResolver implements PatientPaymentStatusResolver {
 	
@@ -31,24 +46,67 @@ public class DefaultPatientPaymentStatusResolver implements PatientPaymentStatus
 	
 	static final String MSG_NO_BILLS = "billing.patientPaymentStatus.noBills";
 	
+	static final Set<BillStatus> OUTSTANDING_STATUSES = Collections
+	        .unmodifiableSet(EnumSet.of(BillStatus.PENDING, BillStatus.POSTED));
+	
 	private final BillService billService;
 	
+	private final PatientPaymentStatusCache patientPaymentStatusCache;
+	
 	@Override
 	public PatientPaymentStatusResult resolve(Patient patient) {
-		List<Bill> bills = billService.getBillsByPatientUuid(patient.getUuid(), null);
-		List<Bill> activeBills = bills.stream().filter(b -> !Boolean.TRUE.equals(b.getVoided()))
+		return resolveAll(Collections.singletonList(patient)).get(patient);
+	}
+	
+	@Override
+	public Map<Patient, PatientPaymentStatusResult> resolveAll(Collection<Patient> patients) {
+		// Cached statuses are returned without calling the bill service, so its privilege is checked here
+		Context.requirePrivilege(PrivilegeConstants.VIEW_BILLS);
+		
+		List<Integer> patientIds = patients.stream().map(Patient::getPatientId).filter(Objects::nonNull)
 		        .collect(Collectors.toList());
+		Map<Integer, PatientPaymentStatus> statuses = patientPaymentStatusCache.getAll(patientIds, this::loadStatuses);
 		
-		if (activeBills.isEmpty()) {
-			String reason = Context.getMessageSourceService().getMessage(MSG_NO_BILLS);
-			return PatientPaymentStatusResult.builder().status(PatientPaymentStatus.UNKNOWN).reason(reason).build();
+		Map<Patient, PatientPaymentStatusResult> results = new LinkedHashMap<>();
+		for (Patient patient : patients) {
+			PatientPaymentStatus status = statuses.get(patient.getPatientId());
+			results.put(patient, toResult(status == null ? PatientPaymentStatus.UNKNOWN : status));
 		}
+		return results;
+	}
+	
+	private Map<Integer, PatientPaymentStatus> loadStatuses(Set<Integer> patientIds) {
+		Set<Integer> outstanding = billService.getPatientIdsWithBills(patientIds, OUTSTANDING_STATUSES);
 		
-		boolean hasOutstanding = activeBills.stream()
-		        .anyMatch(b -> b.getStatus() == BillStatus.PENDING || b.getStatus() == BillStatus.POSTED);
+		Set<Integer> remaining = new HashSet<>(patientIds);
+		remaining.removeAll(outstanding);
+		Set<Integer> billed = remaining.isEmpty() ? Collections.emptySet()
+		        : billService.getPatientIdsWithBills(remaining, null);
+		
+		Map<Integer, PatientPaymentStatus> statuses = new HashMap<>();
+		for (Integer patientId : patientIds) {
+			if (outstanding.contains(patientId)) {
+				statuses.put(patientId, PatientPaymentStatus.UNPAID);
+			} else if (billed.contains(patientId)) {
+				statuses.put(patientId, PatientPaymentStatus.PAID);
+			} else {
+				statuses.put(patientId, PatientPaymentStatus.UNKNOWN);
+			}
+		}
+		return statuses;
+	}
+	
+	private PatientPaymentStatusResult toResult(PatientPaymentStatus status) {
+		String message;
+		if (status == PatientPaymentStatus.UNPAID) {
+			message = MSG_OUTSTANDING;
+		} else if (status == PatientPaymentStatus.PAID) {
+			message = MSG_NO_OUTSTANDING;
+		} else {
+			message = MSG_NO_BILLS;
+		}
 		
-		String reason = Context.getMessageSourceService().getMessage(hasOutstanding ? MSG_OUTSTANDING : MSG_NO_OUTSTANDING);
-		return PatientPaymentStatusResult.builder()
-		        .status(hasOutstanding ? PatientPaymentStatus.UNPAID : PatientPaymentStatus.PAID).reason(reason).build();
+		String reason = Context.getMessageSourceService().getMessage(message);
+		return PatientPaymentStatusResult.builder().status(status).reason(reason).build();
 	}
 }
@@ -9,13 +9,17 @@
  */
 package org.openmrs.module.billing.api.impl;
 
+import java.util.Collection;
 import java.util.List;
 
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Criteria;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 import org.openmrs.module.billing.api.ItemPriceService;
+import org.openmrs.module.billing.api.billing.DrugPriceCache;
+import org.openmrs.OpenmrsObject;
 import org.openmrs.module.billing.api.base.entity.impl.BaseMetadataDataServiceImpl;
 import org.openmrs.module.billing.api.base.entity.security.IMetadataAuthorizationPrivileges;
 import org.openmrs.module.billing.api.model.BillableService;
@@ -27,6 +31,9 @@ import org.springframework.transaction.annotation.Transactional;
 @Transactional
 public class ItemPriceServiceImpl extends BaseMetadataDataServiceImpl<CashierItemPrice> implements IMetadataAuthorizationPrivileges, ItemPriceService {
 	
+	@Setter
+	private DrugPriceCache drugPriceCache;
+	
 	@Override
 	protected IMetadataAuthorizationPrivileges getPrivileges() {
 		return this;
@@ -40,7 +47,22 @@ public class ItemPriceServiceImpl extends BaseMetadataDataServiceImpl<CashierIte
 	@Override
 	public CashierItemPrice save(CashierItemPrice object) {
 		log.debug("Processing save Price");
-		return super.save(object);
+		CashierItemPrice saved = super.save(object);
+		invalidateDrugPrices();
+		return saved;
+	}
+	
+	@Override
+	public CashierItemPrice saveAll(CashierItemPrice object, Collection<? extends OpenmrsObject> related) {
+		CashierItemPrice saved = super.saveAll(object, related);
+		invalidateDrugPrices();
+		return saved;
+	}
+	
+	@Override
+	public void purge(CashierItemPrice object) {
+		super.purge(object);
+		invalidateDrugPrices();
 	}
 	
 	@Override
@@ -84,4 +106,8 @@ public class ItemPriceServiceImpl extends BaseMetadataDataServiceImpl<CashierIte
 		criteria.addOrder(Order.desc("id"));
 		return criteria.list();
 	}
+	
+	private void invalidateDrugPrices() {
+		drugPriceCache.invalidate();
+	}
 }
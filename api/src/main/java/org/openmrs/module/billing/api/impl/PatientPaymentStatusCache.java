@@ -0,0 +1,115 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.impl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import lombok.Setter;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.module.billing.ModuleSettings;
+import org.openmrs.module.billing.api.model.PatientPaymentStatus;
+import org.openmrs.module.billing.api.util.BoundedCache;
+import org.openmrs.module.billing.api.util.GlobalPropertyUtil;
+import org.openmrs.module.billing.api.util.LazyBoundedCache;
+import org.openmrs.module.billing.api.util.TransactionUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Size-bounded cache of the payment status resolved for each patient, so that opening a chart does
+ * not query the patient's bills every time. The bill service calls {@link #evict(Integer)} whenever
+ * one of the patient's bills is saved, voided, unvoided or purged. The maximum size is read from
+ * {@link ModuleSettings#PATIENT_PAYMENT_STATUS_CACHE_SIZE_PROPERTY} when the cache is first used.
+ */
+public class PatientPaymentStatusCache {
+	
+	public static final int DEFAULT_MAX_SIZE = 10000;
+	
+	@Setter(onMethod_ = @Autowired)
+	private AdministrationService administrationService;
+	
+	private final LazyBoundedCache<Integer, PatientPaymentStatus> entries = new LazyBoundedCache<>(this::getMaxSize);
+	
+	private final AtomicLong evictions = new AtomicLong();
+	
+	/**
+	 * Returns the cached statuses of the given patients, loading those that are not cached with one
+	 * call to the loader.
+	 *
+	 * @param patientIds the patients whose statuses are wanted
+	 * @param loader resolves the statuses of the patients missing from the cache
+	 * @return the status of each patient the cache or the loader knows
+	 */
+	public Map<Integer, PatientPaymentStatus> getAll(Collection<Integer> patientIds,
+	        Function<Set<Integer>, Map<Integer, PatientPaymentStatus>> loader) {
+		BoundedCache<Integer, PatientPaymentStatus> current = entries.get();
+		Map<Integer, PatientPaymentStatus> statuses = new HashMap<>();
+		Set<Integer> missing = new LinkedHashSet<>();
+		for (Integer patientId : patientIds) {
+			PatientPaymentStatus status = current.get(patientId);
+			if (status != null) {
+				statuses.put(patientId, status);
+			} else {
+				missing.add(patientId);
+			}
+		}
+		
+		if (!missing.isEmpty()) {
+			long evictionsBeforeLoad = evictions.get();
+			Map<Integer, PatientPaymentStatus> loaded = loader.apply(missing);
+			statuses.putAll(loaded);
+			// A bill saved while loading may have changed a loaded status, so nothing is cached then
+			if (evictions.get() == evictionsBeforeLoad) {
+				loaded.forEach(current::put);
+			}
+		}
+		
+		return statuses;
+	}
+	
+	/**
+	 * Discards the cached status of a patient, now and again once the current transaction completes.
+	 *
+	 * @param patientId the patient whose bills changed
+	 */
+	public void evict(Integer patientId) {
+		if (patientId == null) {
+			return;
+		}
+		
+		TransactionUtil.runNowAndAfterCompletion(() -> remove(patientId));
+	}
+	
+	/**
+	 * Discards every cached status.
+	 */
+	public void clear() {
+		entries.reset();
+		evictions.incrementAndGet();
+	}
+	
+	private void remove(Integer patientId) {
+		evictions.incrementAndGet();
+		BoundedCache<Integer, PatientPaymentStatus> current = entries.getIfCreated();
+		if (current != null) {
+			current.remove(patientId);
+		}
+	}
+	
+	private int getMaxSize() {
+		return GlobalPropertyUtil.getPositiveIntProperty(administrationService,
+		    ModuleSettings.PATIENT_PAYMENT_STATUS_CACHE_SIZE_PROPERTY, DEFAULT_MAX_SIZE);
+	}
+}
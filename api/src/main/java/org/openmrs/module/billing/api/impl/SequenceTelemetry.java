@@ -0,0 +1,138 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openmrs.module.billing.api.model.SequenceGroupStatistics;
+
+/**
+ * Counts how the values of one sequence group are used on this server since startup: how many were
+ * reserved in blocks, handed out to callers, or abandoned because their block was discarded, how long
+ * block reservations take, and how often callers contended for the pool. Every value that was
+ * reserved but neither issued nor abandoned is still held in memory and becomes a gap if the server
+ * stops.
+ */
+final class SequenceTelemetry {
+	
+	/**
+	 * Upper bounds, in milliseconds, of the refill latency histogram buckets. A last bucket collects
+	 * the slower refills.
+	 */
+	static final long[] REFILL_LATENCY_BUCKETS_MILLIS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000 };
+	
+	static final String OVERFLOW_BUCKET = "+Inf";
+	
+	private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+	
+	private final LongAdder reserved = new LongAdder();
+	
+	private final LongAdder issued = new LongAdder();
+	
+	private final LongAdder abandoned = new LongAdder();
+	
+	private final LongAdder casRetries = new LongAdder();
+	
+	private final LongAdder refillWaits = new LongAdder();
+	
+	private final LongAdder reservationConflicts = new LongAdder();
+	
+	private final AtomicLongArray refillLatencyCounts = new AtomicLongArray(REFILL_LATENCY_BUCKETS_MILLIS.length + 1);
+	
+	private final LongAdder refillLatencyTotalNanos = new LongAdder();
+	
+	private final AtomicLong maxRefillLatencyNanos = new AtomicLong();
+	
+	void recordReserved(int blockSize, long latencyNanos) {
+		reserved.add(blockSize);
+		refillLatencyCounts.incrementAndGet(bucketOf(latencyNanos));
+		refillLatencyTotalNanos.add(latencyNanos);
+		maxRefillLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+	}
+	
+	void recordIssued() {
+		issued.increment();
+	}
+	
+	void recordAbandoned(long count) {
+		if (count > 0) {
+			abandoned.add(count);
+		}
+	}
+	
+	void recordCasRetry() {
+		casRetries.increment();
+	}
+	
+	void recordRefillWait() {
+		refillWaits.increment();
+	}
+	
+	void recordReservationConflict() {
+		reservationConflicts.increment();
+	}
+	
+	/**
+	 * Adds the counters to a group's statistics.
+	 */
+	void describe(SequenceGroupStatistics.SequenceGroupStatisticsBuilder statistics) {
+		long reservedCount = reserved.sum();
+		long issuedCount = issued.sum();
+		long abandonedCount = abandoned.sum();
+		
+		Map<String, Long> histogram = new LinkedHashMap<>();
+		long refills = 0;
+		for (int i = 0; i < refillLatencyCounts.length(); i++) {
+			long count = refillLatencyCounts.get(i);
+			histogram.put(i < REFILL_LATENCY_BUCKETS_MILLIS.length ? String.valueOf(REFILL_LATENCY_BUCKETS_MILLIS[i])
+			        : OVERFLOW_BUCKET, count);
+			refills += count;
+		}
+		
+		statistics.reservedCount(reservedCount).issuedCount(issuedCount).abandonedCount(abandonedCount)
+		        .outstandingCount(Math.max(0, reservedCount - issuedCount - abandonedCount)).casRetryCount(casRetries.sum())
+		        .refillWaitCount(refillWaits.sum()).reservationConflictCount(reservationConflicts.sum())
+		        .refillLatencyHistogram(histogram);
+		if (refills > 0) {
+			statistics.averageRefillLatencyMillis(refillLatencyTotalNanos.sum() / NANOS_PER_MILLI / refills)
+			        .maxRefillLatencyMillis(maxRefillLatencyNanos.get() / NANOS_PER_MILLI)
+			        .refillLatencyP95Millis(percentile(0.95, refills));
+		}
+	}
+	
+	// The upper bound of the bucket holding the percentile, or the slowest refill for the last bucket
+	private double percentile(double fraction, long refills) {
+		long rank = (long) Math.ceil(refills * fraction);
+		long seen = 0;
+		for (int i = 0; i < REFILL_LATENCY_BUCKETS_MILLIS.length; i++) {
+			seen += refillLatencyCounts.get(i);
+			if (seen >= rank) {
+				return REFILL_LATENCY_BUCKETS_MILLIS[i];
+			}
+		}
+		
+		return maxRefillLatencyNanos.get() / NANOS_PER_MILLI;
+	}
+	
+	private static int bucketOf(long latencyNanos) {
+		for (int i = 0; i < REFILL_LATENCY_BUCKETS_MILLIS.length; i++) {
+			if (latencyNanos <= REFILL_LATENCY_BUCKETS_MILLIS[i] * (long) NANOS_PER_MILLI) {
+				return i;
+			}
+		}
+		
+		return REFILL_LATENCY_BUCKETS_MILLIS.length;
+	}
+}
@@ -9,23 +9,43 @@
  */
 package org.openmrs.module.billing.api.impl;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
 import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
 
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 import org.hibernate.Criteria;
-import org.hibernate.LockMode;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.exception.LockAcquisitionException;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.billing.ModuleSettings;
 import org.openmrs.module.billing.api.ISequentialReceiptNumberGeneratorService;
+import org.openmrs.module.billing.api.base.PagingInfo;
 import org.openmrs.module.billing.api.base.entity.impl.BaseObjectDataServiceImpl;
+import org.openmrs.module.billing.api.db.GroupSequenceDAO;
 import org.openmrs.module.billing.api.model.GroupSequence;
+import org.openmrs.module.billing.api.model.SequenceGroupStatistics;
+import org.openmrs.module.billing.api.model.SequenceUsageSnapshot;
 import org.openmrs.module.billing.api.model.SequentialReceiptNumberGeneratorModel;
 import org.openmrs.module.billing.api.security.BasicEntityAuthorizationPrivileges;
+import org.openmrs.module.billing.api.util.GlobalPropertyUtil;
 import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.transaction.annotation.Propagation;
@@ -37,11 +57,23 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
  * Data service implementation class for {@link SequentialReceiptNumberGeneratorModel}s.
  * <p>
  * Sequence values are handed out from an in-memory per-group pool that is refilled by reserving
- * blocks of values (size configured by the {@code billing.sequenceBlockSize} global property,
- * default {@link #DEFAULT_SEQUENCE_BLOCK_SIZE}) in a separate, immediately-committed transaction
- * that pessimistically locks the sequence row. This keeps concurrent reservations unique across
- * threads and JVMs, at the cost of gaps in the sequence: a rolled-back consumer burns its value,
- * and a restart discards the unused remainder of the current block.
+ * blocks of values in a separate, immediately-committed transaction. The first block of a group has
+ * the {@code billing.sequenceMinBlockSize} size; later blocks are sized from the group's consumption
+ * rate, up to {@code billing.sequenceMaxBlockSize}. Either bound that is not configured defaults to
+ * the {@code billing.sequenceBlockSize} global property (default {@link #DEFAULT_SEQUENCE_BLOCK_SIZE}).
+ * Values are taken from the pool with a compare-and-set, and once the
+ * {@code billing.sequencePrefetchThreshold} fraction of a block is handed out the next block is
+ * reserved on a background thread, so callers rarely wait for a refill.
+ * A block is reserved with a single atomic update of the sequence row (see {@link GroupSequenceDAO}),
+ * which keeps concurrent reservations unique across threads and JVMs while holding the row lock only
+ * for that statement's transaction. Sequences have gaps: a rolled-back consumer burns its value, and
+ * a restart discards the unused remainder of the current block.
+ * </p>
+ * <p>
+ * Each group's reserved, issued and abandoned values, refill latencies and contention are counted
+ * (see {@link #getSequenceStatistics()}) and periodically persisted by
+ * {@link #saveSequenceUsageSnapshots()}, and once more on shutdown, so the gaps left by a clean
+ * restart can be accounted for. The values a crashed server still held are not recorded.
  * </p>
  * <p>
  * Pool invalidation on {@link #saveSequence} / {@link #purgeSequence} is JVM-local: other nodes in
@@ -57,8 +89,24 @@ public class SequentialReceiptNumberGeneratorServiceImpl extends BaseObjectDataS
 	
 	private static final int MAX_CAUSE_CHAIN_DEPTH = 10;
 	
+	private static final long PREFETCH_WAIT_SECONDS = 5;
+	
+	private static final RuntimeMXBean RUNTIME = ManagementFactory.getRuntimeMXBean();
+	
 	private final ConcurrentHashMap<String, SequencePool> pools = new ConcurrentHashMap<>();
 	
+	private final ConcurrentHashMap<String, AdaptiveBlockSize> blockSizes = new ConcurrentHashMap<>();
+	
+	private final ConcurrentHashMap<String, SequenceTelemetry> telemetry = new ConcurrentHashMap<>();
+	
+	// The statistics of each group's latest snapshot, to skip groups that were not used since
+	private final ConcurrentHashMap<String, SequenceGroupStatistics> snapshotted = new ConcurrentHashMap<>();
+	
+	@Setter
+	private GroupSequenceDAO groupSequenceDAO;
+	
+	private ExecutorService prefetchExecutor;
+	
 	@Override
 	protected BasicEntityAuthorizationPrivileges getPrivileges() {
 		// No authorization required
@@ -98,20 +146,21 @@ public class SequentialReceiptNumberGeneratorServiceImpl extends BaseObjectDataS
 	
 	// Returns null when the pool was invalidated concurrently and the reservation must be retried
 	private Integer tryReserveFromPool(String group) {
-		SequencePool pool = pools.computeIfAbsent(group, g -> new SequencePool());
+		SequencePool pool = pools.computeIfAbsent(group, g -> new SequencePool(getTelemetry(g)));
 		if (pool.isInvalidated()) {
 			pools.remove(group, pool);
 			return null;
 		}
 		
-		Integer value = pool.tryTake();
+		Integer value = take(group, pool);
 		if (value != null) {
 			return value;
 		}
 		
-		// The DB round-trip must not run under the pool monitor: it deadlocks against invalidatePool
+		// Only threads that find the pool drained wait here; takers never block on a refill
+		pool.telemetry.recordRefillWait();
 		synchronized (pool.refillLock) {
-			value = pool.tryTake();
+			value = take(group, pool);
 			if (value != null) {
 				return value;
 			}
@@ -119,8 +168,144 @@ public class SequentialReceiptNumberGeneratorServiceImpl extends BaseObjectDataS
 				return null;
 			}
 			
-			int blockSize = getBlockSize();
-			return pool.refillAndTake(reserveBlockWithRetry(group, blockSize), blockSize);
+			Prefetch prefetch = pool.prefetch.getAndSet(null);
+			if (prefetch != null) {
+				Integer first = awaitPrefetch(group, pool, prefetch);
+				if (first != null) {
+					return refill(group, pool, first, prefetch.blockSize);
+				}
+			}
+			
+			int blockSize = nextBlockSize(group);
+			return refill(group, pool, reserveBlockWithRetry(group, blockSize), blockSize);
+		}
+	}
+	
+	private Integer take(String group, SequencePool pool) {
+		Integer value = pool.tryTake();
+		if (value != null && value == pool.prefetchAt) {
+			startPrefetch(group, pool);
+		}
+		
+		return value;
+	}
+	
+	private Integer refill(String group, SequencePool pool, int first, int blockSize) {
+		Integer value = pool.refillAndTake(first, blockSize, getPrefetchPoint(first, blockSize));
+		if (value != null && value == pool.prefetchAt) {
+			startPrefetch(group, pool);
+		}
+		
+		return value;
+	}
+	
+	// The value whose hand-out starts reserving the next block, or 0 when prefetching is disabled.
+	// Only a refill reads the threshold; takes compare against the stored point.
+	private int getPrefetchPoint(int first, int blockSize) {
+		double threshold = getPrefetchThreshold();
+		if (threshold <= 0) {
+			return 0;
+		}
+		
+		int used = (int) Math.max(1, Math.min(blockSize, Math.ceil(blockSize * threshold)));
+		return first + used - 1;
+	}
+	
+	private void startPrefetch(String group, SequencePool pool) {
+		Prefetch prefetch = new Prefetch();
+		if (!pool.prefetch.compareAndSet(null, prefetch)) {
+			return;
+		}
+		if (pool.isInvalidated()) {
+			// The pool was invalidated after handing out the value that triggered this prefetch
+			pool.prefetch.compareAndSet(prefetch, null);
+			prefetch.first.cancel(false);
+			return;
+		}
+		
+		try {
+			int blockSize = nextBlockSize(group);
+			prefetch.blockSize = blockSize;
+			getPrefetchExecutor().execute(new PrefetchTask(prefetch, () -> reserveBlockInBackground(group, blockSize)));
+		}
+		catch (RuntimeException ex) {
+			prefetch.first.completeExceptionally(ex);
+		}
+	}
+	
+	// Waits a bounded time, as the refill lock is held; a block the prefetch reserves too late is abandoned
+	private Integer awaitPrefetch(String group, SequencePool pool, Prefetch prefetch) {
+		try {
+			return prefetch.first.get(PREFETCH_WAIT_SECONDS, TimeUnit.SECONDS);
+		}
+		catch (TimeoutException ex) {
+			log.warn("Prefetching a block for sequence group {} took longer than {} seconds; reserving it now.", group,
+			    PREFETCH_WAIT_SECONDS);
+			prefetch.first.thenAccept(first -> pool.telemetry.recordAbandoned(prefetch.blockSize));
+			return null;
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			prefetch.first.thenAccept(first -> pool.telemetry.recordAbandoned(prefetch.blockSize));
+			return null;
+		}
+		catch (ExecutionException | CancellationException ex) {
+			log.warn("Prefetching a block for sequence group {} failed; reserving it now.", group, ex);
+			return null;
+		}
+	}
+	
+	/**
+	 * Reserves a prefetched block on the prefetch thread, which has no OpenMRS session of its own.
+	 */
+	protected int reserveBlockInBackground(String group, int blockSize) {
+		Context.openSession();
+		try {
+			return reserveBlockWithRetry(group, blockSize);
+		}
+		finally {
+			Context.closeSession();
+		}
+	}
+	
+	private synchronized ExecutorService getPrefetchExecutor() {
+		if (prefetchExecutor == null) {
+			prefetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "billing-sequence-prefetch");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		
+		return prefetchExecutor;
+	}
+	
+	@Override
+	public synchronized void onShutdown() {
+		try {
+			saveSequenceUsageSnapshots();
+		}
+		catch (RuntimeException ex) {
+			log.warn("Could not save the final sequence usage snapshots.", ex);
+		}
+		
+		for (String group : new TreeSet<>(telemetry.keySet())) {
+			SequenceGroupStatistics.SequenceGroupStatisticsBuilder statistics = SequenceGroupStatistics.builder();
+			telemetry.get(group).describe(statistics);
+			long outstanding = statistics.build().getOutstandingCount();
+			if (outstanding > 0) {
+				log.info("Discarding {} reserved values of sequence group {}; they will be skipped.", outstanding, group);
+			}
+		}
+		
+		if (prefetchExecutor != null) {
+			// Prefetches that never started are cancelled so a thread waiting for one reserves its block itself
+			for (Runnable task : prefetchExecutor.shutdownNow()) {
+				if (task instanceof PrefetchTask) {
+					((PrefetchTask) task).prefetch.first.cancel(false);
+				}
+			}
+			prefetchExecutor = null;
 		}
 	}
 	
@@ -134,25 +319,88 @@ public class SequentialReceiptNumberGeneratorServiceImpl extends BaseObjectDataS
 			throw new IllegalArgumentException("The block size must be at least one.");
 		}
 		
-		Criteria criteria = getRepository().createCriteria(GroupSequence.class);
-		criteria.add(Restrictions.eq("group", group));
-		criteria.setLockMode(LockMode.PESSIMISTIC_WRITE);
-		GroupSequence sequence = getRepository().selectSingle(GroupSequence.class, criteria);
-		
-		int first;
-		if (sequence == null) {
-			sequence = new GroupSequence();
-			sequence.setGroup(group);
-			sequence.setValue(blockSize);
-			first = 1;
-		} else {
-			first = sequence.getValue() + 1;
-			sequence.setValue(sequence.getValue() + blockSize);
+		Integer last = groupSequenceDAO.addToSequence(group, blockSize);
+		if (last != null) {
+			return last - blockSize + 1;
 		}
 		
+		// A concurrent first reservation fails on the unique group and is retried as an update
+		GroupSequence sequence = new GroupSequence();
+		sequence.setGroup(group);
+		sequence.setValue(blockSize);
 		getRepository().save(sequence);
 		
-		return first;
+		return 1;
+	}
+	
+	@Override
+	@Transactional(readOnly = true)
+	public List<SequenceGroupStatistics> getSequenceStatistics() {
+		Set<String> groups = new TreeSet<>(blockSizes.keySet());
+		groups.addAll(telemetry.keySet());
+		
+		List<SequenceGroupStatistics> statistics = new ArrayList<>();
+		for (String group : groups) {
+			SequenceGroupStatistics.SequenceGroupStatisticsBuilder builder = SequenceGroupStatistics.builder().group(group);
+			AdaptiveBlockSize blockSize = blockSizes.get(group);
+			if (blockSize != null) {
+				blockSize.describe(builder);
+			}
+			getTelemetry(group).describe(builder);
+			statistics.add(builder.build());
+		}
+		
+		return statistics;
+	}
+	
+	@Override
+	@Transactional
+	public List<SequenceUsageSnapshot> saveSequenceUsageSnapshots() {
+		Date now = new Date();
+		List<SequenceUsageSnapshot> snapshots = new ArrayList<>();
+		for (SequenceGroupStatistics statistics : getSequenceStatistics()) {
+			SequenceGroupStatistics previous = snapshotted.get(statistics.getGroup());
+			if (previous != null && previous.getReservedCount() == statistics.getReservedCount()
+			        && previous.getIssuedCount() == statistics.getIssuedCount()
+			        && previous.getAbandonedCount() == statistics.getAbandonedCount()) {
+				continue;
+			}
+			
+			SequenceUsageSnapshot snapshot = toSnapshot(statistics, now);
+			groupSequenceDAO.saveUsageSnapshot(snapshot);
+			snapshotted.put(statistics.getGroup(), statistics);
+			snapshots.add(snapshot);
+		}
+		
+		return snapshots;
+	}
+	
+	@Override
+	@Transactional(readOnly = true)
+	public List<SequenceUsageSnapshot> getSequenceUsageSnapshots(String group, Date since, PagingInfo pagingInfo) {
+		return groupSequenceDAO.getUsageSnapshots(group, since, pagingInfo);
+	}
+	
+	private static SequenceUsageSnapshot toSnapshot(SequenceGroupStatistics statistics, Date dateCreated) {
+		SequenceUsageSnapshot snapshot = new SequenceUsageSnapshot();
+		snapshot.setGroup(statistics.getGroup());
+		snapshot.setNodeName(RUNTIME.getName());
+		snapshot.setNodeStarted(new Date(RUNTIME.getStartTime()));
+		snapshot.setDateCreated(dateCreated);
+		snapshot.setBlockSize(statistics.getBlockSize());
+		snapshot.setRefillCount(statistics.getRefillCount());
+		snapshot.setReservedCount(statistics.getReservedCount());
+		snapshot.setIssuedCount(statistics.getIssuedCount());
+		snapshot.setAbandonedCount(statistics.getAbandonedCount());
+		snapshot.setOutstandingCount(statistics.getOutstandingCount());
+		snapshot.setCasRetryCount(statistics.getCasRetryCount());
+		snapshot.setRefillWaitCount(statistics.getRefillWaitCount());
+		snapshot.setReservationConflictCount(statistics.getReservationConflictCount());
+		snapshot.setAverageRefillLatencyMillis(statistics.getAverageRefillLatencyMillis());
+		snapshot.setRefillLatencyP95Millis(statistics.getRefillLatencyP95Millis());
+		snapshot.setMaxRefillLatencyMillis(statistics.getMaxRefillLatencyMillis());
+		
+		return snapshot;
 	}
 	
 	@Override
@@ -199,40 +447,79 @@ public class SequentialReceiptNumberGeneratorServiceImpl extends BaseObjectDataS
 	}
 	
 	private int reserveBlockWithRetry(String group, int blockSize) {
+		SequenceTelemetry groupTelemetry = getTelemetry(group);
+		long start = System.nanoTime();
+		int first;
 		try {
-			return getProxy().reserveSequenceBlock(group, blockSize);
+			first = getProxy().reserveSequenceBlock(group, blockSize);
 		}
 		catch (RuntimeException ex) {
 			if (!isRetryable(ex)) {
 				throw ex;
 			}
 			
-			return getProxy().reserveSequenceBlock(group, blockSize);
+			groupTelemetry.recordReservationConflict();
+			first = getProxy().reserveSequenceBlock(group, blockSize);
 		}
+		
+		groupTelemetry.recordReserved(blockSize, System.nanoTime() - start);
+		return first;
+	}
+	
+	private SequenceTelemetry getTelemetry(String group) {
+		return telemetry.computeIfAbsent(group, g -> new SequenceTelemetry());
 	}
 	
 	protected ISequentialReceiptNumberGeneratorService getProxy() {
 		return Context.getService(ISequentialReceiptNumberGeneratorService.class);
 	}
 	
-	protected int getBlockSize() {
-		String property = Context.getAdministrationService().getGlobalProperty(ModuleSettings.SEQUENCE_BLOCK_SIZE_PROPERTY);
-		if (StringUtils.isNotBlank(property)) {
-			try {
-				int blockSize = Integer.parseInt(property.trim());
-				if (blockSize >= 1) {
-					return blockSize;
-				}
-				log.warn("Ignoring global property {}={}; the block size must be at least one.",
-				    ModuleSettings.SEQUENCE_BLOCK_SIZE_PROPERTY, property);
-			}
-			catch (NumberFormatException ex) {
-				log.warn("Ignoring non-numeric global property {}={}.", ModuleSettings.SEQUENCE_BLOCK_SIZE_PROPERTY,
-				    property);
-			}
-		}
+	private int nextBlockSize(String group) {
+		int blockSize = getBlockSize();
+		int minBlockSize = getMinBlockSize(blockSize);
+		int maxBlockSize = Math.max(minBlockSize, getMaxBlockSize(blockSize));
 		
-		return DEFAULT_SEQUENCE_BLOCK_SIZE;
+		// A group starts small and grows at most twofold per refill, so a restart or a rarely used group
+		// does not reserve a large block it may never use
+		return blockSizes.computeIfAbsent(group, g -> new AdaptiveBlockSize()).next(minBlockSize, maxBlockSize,
+		    System.nanoTime());
+	}
+	
+	/**
+	 * @return the block size used for the minimum and maximum block sizes that are not configured
+	 */
+	protected int getBlockSize() {
+		return getPositiveIntProperty(ModuleSettings.SEQUENCE_BLOCK_SIZE_PROPERTY, DEFAULT_SEQUENCE_BLOCK_SIZE);
+	}
+	
+	/**
+	 * @param blockSize the configured block size
+	 * @return the size of a group's first block and the smallest block adaptive sizing may reserve,
+	 *         {@code blockSize} when not configured
+	 */
+	protected int getMinBlockSize(int blockSize) {
+		return getPositiveIntProperty(ModuleSettings.SEQUENCE_MIN_BLOCK_SIZE_PROPERTY, blockSize);
+	}
+	
+	/**
+	 * @param blockSize the configured block size
+	 * @return the largest block adaptive sizing may reserve, {@code blockSize} when not configured
+	 */
+	protected int getMaxBlockSize(int blockSize) {
+		return getPositiveIntProperty(ModuleSettings.SEQUENCE_MAX_BLOCK_SIZE_PROPERTY, blockSize);
+	}
+	
+	/**
+	 * @return the fraction of a block that is handed out before the next block is reserved in the
+	 *         background, or 0 to reserve blocks only when the pool is drained
+	 */
+	protected double getPrefetchThreshold() {
+		return GlobalPropertyUtil.getDoubleProperty(Context.getAdministrationService(),
+		    ModuleSettings.SEQUENCE_PREFETCH_THRESHOLD_PROPERTY, 0, 1, 0);
+	}
+	
+	private int getPositiveIntProperty(String propertyName, int defaultValue) {
+		return GlobalPropertyUtil.getPositiveIntProperty(Context.getAdministrationService(), propertyName, defaultValue);
 	}
 	
 	// Invalidating before commit blocks concurrent refills on this transaction's row lock,
@@ -261,6 +548,11 @@ public class SequentialReceiptNumberGeneratorServiceImpl extends BaseObjectDataS
 			pool.invalidate();
 			pools.remove(group, pool);
 		}
+		
+		AdaptiveBlockSize blockSize = blockSizes.get(group);
+		if (blockSize != null) {
+			blockSize.discardCurrentBlock();
+		}
 	}
 	
 	private static boolean isRetryable(Throwable ex) {
@@ -279,39 +571,111 @@ public class SequentialReceiptNumberGeneratorServiceImpl extends BaseObjectDataS
 	
 	private static final class SequencePool {
 		
+		// Any range whose next value is past its last value is empty
+		private static final long EMPTY = pack(1, 0);
+		
 		private final Object refillLock = new Object();
 		
-		private int next = 1;
+		private final SequenceTelemetry telemetry;
+		
+		// The next value to hand out in the high half and the last value of the block in the low half
+		private final AtomicLong range = new AtomicLong(EMPTY);
+		
+		private final AtomicReference<Prefetch> prefetch = new AtomicReference<>();
+		
+		private volatile int prefetchAt;
 		
-		private int max = 0;
+		private volatile boolean invalidated;
 		
-		private boolean invalidated = false;
+		SequencePool(SequenceTelemetry telemetry) {
+			this.telemetry = telemetry;
+		}
 		
-		synchronized boolean isInvalidated() {
+		boolean isInvalidated() {
 			return invalidated;
 		}
 		
-		synchronized void invalidate() {
+		// Emptying the range makes a take racing with this call either complete before it or fail its CAS
+		void invalidate() {
 			invalidated = true;
+			telemetry.recordAbandoned(remaining(range.getAndSet(EMPTY)));
+			
+			Prefetch discarded = prefetch.getAndSet(null);
+			if (discarded != null) {
+				discarded.first.thenAccept(first -> telemetry.recordAbandoned(discarded.blockSize));
+			}
 		}
 		
-		synchronized Integer tryTake() {
-			if (invalidated || next > max) {
-				return null;
+		Integer tryTake() {
+			while (true) {
+				long current = range.get();
+				int next = (int) (current >>> 32);
+				int max = (int) current;
+				if (invalidated || next > max) {
+					return null;
+				}
+				if (range.compareAndSet(current, pack(next + 1, max))) {
+					telemetry.recordIssued();
+					return next;
+				}
+				telemetry.recordCasRetry();
 			}
-			
-			return next++;
 		}
 		
-		synchronized Integer refillAndTake(int first, int blockSize) {
+		// Called under refillLock with a drained range
+		Integer refillAndTake(int first, int blockSize, int prefetchAt) {
 			if (invalidated) {
+				telemetry.recordAbandoned(blockSize);
 				return null;
 			}
 			
-			next = first;
-			max = first + blockSize - 1;
+			this.prefetchAt = prefetchAt;
+			range.set(pack(first + 1, first + blockSize - 1));
+			if (invalidated) {
+				// Values taken before the range is emptied again were handed out; the first never was
+				telemetry.recordAbandoned(remaining(range.getAndSet(EMPTY)) + 1);
+				return null;
+			}
 			
-			return next++;
+			telemetry.recordIssued();
+			return first;
+		}
+		
+		private static long pack(int next, int max) {
+			return ((long) next << 32) | (max & 0xFFFFFFFFL);
+		}
+		
+		private static long remaining(long range) {
+			return Math.max(0, (long) (int) range - (int) (range >>> 32) + 1);
+		}
+	}
+	
+	private static final class Prefetch {
+		
+		private final CompletableFuture<Integer> first = new CompletableFuture<>();
+		
+		private volatile int blockSize;
+	}
+	
+	private static final class PrefetchTask implements Runnable {
+		
+		private final Prefetch prefetch;
+		
+		private final IntSupplier reservation;
+		
+		PrefetchTask(Prefetch prefetch, IntSupplier reservation) {
+			this.prefetch = prefetch;
+			this.reservation = reservation;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				prefetch.first.complete(reservation.getAsInt());
+			}
+			catch (Throwable ex) {
+				prefetch.first.completeExceptionally(ex);
+			}
 		}
 	}
 }
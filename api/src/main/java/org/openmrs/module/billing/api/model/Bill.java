@@ -69,6 +69,22 @@ public class Bill extends BaseOpenmrsData {
 	
 	private Set<BillRefund> refunds;
 	
+	/**
+	 * Stored copy of {@link #getTotal()}, kept current by {@code BillTotalsInterceptor} so reports can
+	 * filter and sort on it without loading the line items.
+	 */
+	private BigDecimal storedTotal;
+	
+	/**
+	 * Stored copy of {@link #getTotalPayments()}.
+	 */
+	private BigDecimal storedTotalPaid;
+	
+	/**
+	 * Stored copy of {@link #getTotalDiscount()}.
+	 */
+	private BigDecimal storedTotalDiscount;
+	
 	/**
 	 * Returns every non-voided refund on this bill. Voided rows are excluded — for the full audit
 	 * history, query {@code BillRefundService.getRefundsByBillId} (or the equivalent REST search at
@@ -124,11 +140,18 @@ public class Bill extends BaseOpenmrsData {
 	}
 	
 	private BigDecimal effectiveTotal() {
-		BigDecimal total = getTotal();
+		return getTotal().subtract(getTotalDiscount());
+	}
+	
+	/**
+	 * @return the sum of the approved, non-voided discount amounts
+	 */
+	public BigDecimal getTotalDiscount() {
+		BigDecimal total = BigDecimal.ZERO;
 		if (discounts != null) {
 			for (BillDiscount d : discounts) {
 				if (d != null && !d.getVoided() && d.getStatus() == DiscountStatus.APPROVED) {
-					total = total.subtract(d.getDiscountAmount());
+					total = total.add(d.getDiscountAmount());
 				}
 			}
 		}
@@ -165,6 +188,56 @@ public class Bill extends BaseOpenmrsData {
 		return total;
 	}
 	
+	/**
+	 * Copies the current total, payments and discounts into the stored totals.
+	 *
+	 * @return {@code true} if any stored total changed
+	 */
+	public boolean updateStoredTotals() {
+		return updateStoredTotals(true, true, true);
+	}
+	
+	/**
+	 * Copies only the given parts of the bill into the stored totals, so that collections which cannot
+	 * have changed are not read. Stored totals that were never set, and the discounts when the total
+	 * changed, are recomputed as well, since percentage discounts depend on the total.
+	 *
+	 * @param lineItems whether to recompute the total from the line items
+	 * @param payments whether to recompute the amount paid from the payments
+	 * @param discounts whether to recompute the approved discounts
+	 * @return {@code true} if any stored total changed
+	 */
+	public boolean updateStoredTotals(boolean lineItems, boolean payments, boolean discounts) {
+		boolean totalChanged = false;
+		if (lineItems || storedTotal == null) {
+			BigDecimal total = getTotal();
+			if (!sameAmount(storedTotal, total)) {
+				storedTotal = total;
+				totalChanged = true;
+			}
+		}
+		boolean changed = totalChanged;
+		if (payments || storedTotalPaid == null) {
+			BigDecimal totalPaid = getTotalPayments();
+			if (!sameAmount(storedTotalPaid, totalPaid)) {
+				storedTotalPaid = totalPaid;
+				changed = true;
+			}
+		}
+		if (discounts || totalChanged || storedTotalDiscount == null) {
+			BigDecimal totalDiscount = getTotalDiscount();
+			if (!sameAmount(storedTotalDiscount, totalDiscount)) {
+				storedTotalDiscount = totalDiscount;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+	
+	private static boolean sameAmount(BigDecimal stored, BigDecimal current) {
+		return stored != null && stored.compareTo(current) == 0;
+	}
+	
 	@Override
 	public Integer getId() {
 		return this.getBillId();
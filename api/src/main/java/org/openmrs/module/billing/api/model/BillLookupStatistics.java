@@ -0,0 +1,46 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.model;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Snapshot of how often bills looked up by uuid or receipt number were found by their remembered id
+ * rather than by a query. The counters are cumulative since the server started.
+ */
+@Builder
+@Getter
+public class BillLookupStatistics {
+	
+	private int size;
+	
+	private int maxSize;
+	
+	/**
+	 * Lookups that loaded the bill by its remembered id.
+	 */
+	private long hits;
+	
+	/**
+	 * Lookups that had to query because no id was remembered for the value.
+	 */
+	private long misses;
+	
+	/**
+	 * Lookups that had to query because the bill of the remembered id no longer had the value.
+	 */
+	private long staleEntries;
+	
+	/**
+	 * Fraction of lookups served by a remembered id since startup, between 0 and 1.
+	 */
+	private double hitRate;
+}
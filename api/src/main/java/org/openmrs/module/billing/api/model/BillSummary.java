@@ -0,0 +1,55 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.model;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Read-only summary of a {@link Bill} for list screens such as the cashier queue. Its amounts are
+ * the totals stored on the bill, so the bill's line items, payments and discounts are never loaded.
+ */
+@Builder
+@Getter
+public class BillSummary {
+	
+	private String uuid;
+	
+	private String receiptNumber;
+	
+	private String patientUuid;
+	
+	/**
+	 * Full preferred name of the patient, or null when the patient has none.
+	 */
+	private String patientName;
+	
+	private BillStatus status;
+	
+	/**
+	 * Sum of the non-voided line items, as {@link Bill#getTotal()}.
+	 */
+	private BigDecimal total;
+	
+	/**
+	 * Total less the approved discounts, as {@link Bill#getAmountAfterDiscount()}.
+	 */
+	private BigDecimal amountAfterDiscount;
+	
+	/**
+	 * Sum of the amounts tendered by the non-voided payments, as {@link Bill#getTotalPayments()}.
+	 */
+	private BigDecimal totalPayments;
+	
+	private Date dateCreated;
+}
@@ -0,0 +1,71 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.openmrs.Order;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.UniqueConstraint;
+import java.util.Date;
+
+/**
+ * Order billing ledger entry. Each order has at most one record, enforced by a unique key on the
+ * order, so inserting the record claims the order for billing. The record then keeps the outcome
+ * of billing the order and the line item that was created for it.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "cashier_order_billing_record", uniqueConstraints = {
+        @UniqueConstraint(name = "cashier_order_billing_record_order_uk", columnNames = "order_id") })
+public class OrderBillingRecord {
+	
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "order_billing_record_id")
+	private Integer orderBillingRecordId;
+	
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "order_id", nullable = false)
+	private Order order;
+	
+	@Enumerated(EnumType.STRING)
+	@Column(name = "status", nullable = false, length = 20)
+	private OrderBillingStatus status;
+	
+	@Column(name = "reason", length = 1024)
+	private String reason;
+	
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "bill_line_item_id")
+	private BillLineItem billLineItem;
+	
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "date_created", nullable = false)
+	private Date dateCreated;
+	
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "date_changed")
+	private Date dateChanged;
+}
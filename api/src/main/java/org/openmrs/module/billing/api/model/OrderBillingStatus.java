@@ -0,0 +1,24 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.model;
+
+/**
+ * Outcome of automatic billing recorded in the order billing ledger.
+ */
+public enum OrderBillingStatus {
+	/** The order was claimed for billing but no outcome has been recorded. */
+	CLAIMED,
+	/** A payable line item was created for the order. */
+	BILLED,
+	/** A line item was created for the order and marked as exempted. */
+	EXEMPTED,
+	/** The order was not billed; the record's reason says why. A redelivered order is claimed again. */
+	SKIPPED
+}
@@ -0,0 +1,27 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.model;
+
+/**
+ * When a {@link Bill} is given its receipt number.
+ */
+public enum ReceiptNumberAssignment {
+	
+	/**
+	 * Number every bill when it is first saved.
+	 */
+	ON_CREATE,
+	
+	/**
+	 * Number a bill only once it has left {@link BillStatus#PENDING}: posted, paid, exempted, adjusted
+	 * and refunded bills are numbered, while pending, cancelled and voided bills never use a number.
+	 */
+	ON_POST
+}
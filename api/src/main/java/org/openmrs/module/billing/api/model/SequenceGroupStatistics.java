@@ -0,0 +1,98 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.model;
+
+import java.util.Date;
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Snapshot of how a sequence group's values are reserved and used on this server. The counters are
+ * cumulative since the server started.
+ */
+@Builder
+@Getter
+public class SequenceGroupStatistics {
+	
+	private String group;
+	
+	/**
+	 * Size of the block reserved at the latest refill, or 0 before the first one.
+	 */
+	private int blockSize;
+	
+	private long refillCount;
+	
+	private Date lastRefill;
+	
+	/**
+	 * Smoothed time between refills, or null until the group has refilled twice.
+	 */
+	private Long averageRefillIntervalMillis;
+	
+	/**
+	 * Refill frequency derived from {@link #averageRefillIntervalMillis}, or null until the group has
+	 * refilled twice.
+	 */
+	private Double refillsPerHour;
+	
+	/**
+	 * Number of values reserved in blocks.
+	 */
+	private long reservedCount;
+	
+	/**
+	 * Number of values handed out to callers, including those whose transaction later rolled back.
+	 */
+	private long issuedCount;
+	
+	/**
+	 * Number of reserved values that were discarded without being handed out, because the group's
+	 * sequence was edited or purged or the block was reserved while the pool was being invalidated.
+	 */
+	private long abandonedCount;
+	
+	/**
+	 * Number of reserved values still held in memory. They are lost, leaving a gap, if the server stops.
+	 */
+	private long outstandingCount;
+	
+	/**
+	 * Number of times a caller had to retry taking a value because another caller took it first.
+	 */
+	private long casRetryCount;
+	
+	/**
+	 * Number of times a caller found the pool drained and waited for a block to be reserved.
+	 */
+	private long refillWaitCount;
+	
+	/**
+	 * Number of block reservations that were retried after a constraint violation or lock failure.
+	 */
+	private long reservationConflictCount;
+	
+	private Double averageRefillLatencyMillis;
+	
+	/**
+	 * Upper bound of the histogram bucket holding the 95th percentile refill latency.
+	 */
+	private Double refillLatencyP95Millis;
+	
+	private Double maxRefillLatencyMillis;
+	
+	/**
+	 * Number of block reservations by latency, keyed by each bucket's upper bound in milliseconds, the
+	 * last bucket being {@code +Inf}.
+	 */
+	private Map<String, Long> refillLatencyHistogram;
+}
@@ -0,0 +1,96 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import java.util.Date;
+
+/**
+ * Periodic record of a sequence group's {@link SequenceGroupStatistics} on one server. The counters
+ * are cumulative since the server started, so the latest snapshot of each server run tells how many
+ * values that run reserved, issued and abandoned. A final snapshot is saved when the server shuts
+ * down, so after a clean shutdown the outstanding count of the run's last snapshot is the gap its
+ * restart left. After a crash the last snapshot can be up to a snapshot interval old and the values
+ * reserved since are not recorded, so the gap is not bounded by the snapshots.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "cashier_seq_usage_snapshot")
+public class SequenceUsageSnapshot {
+	
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "seq_usage_snapshot_id")
+	private Integer sequenceUsageSnapshotId;
+	
+	@Column(name = "sequence_group", nullable = false, length = 50)
+	private String group;
+	
+	/**
+	 * The JVM that took the snapshot, as {@code pid@host}.
+	 */
+	@Column(name = "node_name", nullable = false)
+	private String nodeName;
+	
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "node_started", nullable = false)
+	private Date nodeStarted;
+	
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "date_created", nullable = false)
+	private Date dateCreated;
+	
+	@Column(name = "block_size", nullable = false)
+	private int blockSize;
+	
+	@Column(name = "refill_count", nullable = false)
+	private long refillCount;
+	
+	@Column(name = "reserved_count", nullable = false)
+	private long reservedCount;
+	
+	@Column(name = "issued_count", nullable = false)
+	private long issuedCount;
+	
+	@Column(name = "abandoned_count", nullable = false)
+	private long abandonedCount;
+	
+	@Column(name = "outstanding_count", nullable = false)
+	private long outstandingCount;
+	
+	@Column(name = "cas_retry_count", nullable = false)
+	private long casRetryCount;
+	
+	@Column(name = "refill_wait_count", nullable = false)
+	private long refillWaitCount;
+	
+	@Column(name = "reservation_conflict_count", nullable = false)
+	private long reservationConflictCount;
+	
+	@Column(name = "avg_refill_latency_ms")
+	private Double averageRefillLatencyMillis;
+	
+	@Column(name = "p95_refill_latency_ms")
+	private Double refillLatencyP95Millis;
+	
+	@Column(name = "max_refill_latency_ms")
+	private Double maxRefillLatencyMillis;
+}
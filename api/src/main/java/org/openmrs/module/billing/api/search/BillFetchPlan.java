@@ -0,0 +1,48 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.search;
+
+import lombok.Getter;
+
+/**
+ * The associations of a {@link org.openmrs.module.billing.api.model.Bill} that are loaded together
+ * with it for a particular use. The listed associations are join fetched in the bill query; the
+ * bill's other collections are batch fetched, a page of bills at a time, when first used.
+ * Collections are never join fetched for a paged search, since the page would then have to be cut
+ * in memory.
+ */
+@Getter
+public enum BillFetchPlan {
+	
+	/**
+	 * Bill lists, which show who and where each bill is for.
+	 */
+	LIST(new String[] { "patient", "cashier", "cashPoint" }, new String[0]),
+	
+	/**
+	 * A single bill with its line items and payments.
+	 */
+	DETAIL(new String[] { "patient", "cashier", "cashPoint", "visit", "billAdjusted" },
+	        new String[] { "lineItems", "payments" }),
+	
+	/**
+	 * Printing a bill's receipt.
+	 */
+	RECEIPT(new String[] { "patient", "cashier", "cashPoint" }, new String[] { "lineItems", "payments" });
+	
+	private final String[] associations;
+	
+	private final String[] collections;
+	
+	BillFetchPlan(String[] associations, String[] collections) {
+		this.associations = associations;
+		this.collections = collections;
+	}
+}
@@ -9,6 +9,7 @@
  */
 package org.openmrs.module.billing.api.search;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 import lombok.AllArgsConstructor;
@@ -48,6 +49,27 @@ public class BillSearch {
 	
 	private String patientName;
 	
+	/**
+	 * How {@link #patientName} is matched; {@code null} matches the start of names and identifiers.
+	 */
+	private PatientNameMatchMode patientNameMatchMode;
+	
+	/**
+	 * Only bills whose outstanding balance (the stored total less approved discounts and payments) is
+	 * at least this amount; {@code null} matches any balance.
+	 */
+	private BigDecimal minBalance;
+	
+	/**
+	 * The order of the bills; {@code null} lists the newest first.
+	 */
+	private BillSortOrder sortOrder;
+	
+	/**
+	 * The associations to load with the bills; {@code null} uses the mapped defaults.
+	 */
+	private BillFetchPlan fetchPlan;
+	
 	private Boolean includeVoided = false;
 	
 	private Boolean includeVoidedLineItems = false;
@@ -0,0 +1,27 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.search;
+
+/**
+ * The order of the bills returned by a {@link BillSearch}.
+ */
+public enum BillSortOrder {
+	
+	/**
+	 * Newest bills first. This is the default order and the only one keyset paging supports.
+	 */
+	NEWEST_FIRST,
+	
+	/**
+	 * Bills with the largest outstanding balance first, newest first among equal balances. The
+	 * balance is read from the stored totals: the total less approved discounts and payments.
+	 */
+	HIGHEST_BALANCE_FIRST
+}
@@ -0,0 +1,30 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.search;
+
+/**
+ * How {@link BillSearch#getPatientName()} is matched against patient names and identifiers.
+ */
+public enum PatientNameMatchMode {
+	
+	/**
+	 * Match the text anywhere in a name or identifier, ignoring case. Such matches cannot use the name
+	 * and identifier indexes.
+	 */
+	ANYWHERE,
+	
+	/**
+	 * Match names and identifiers that start with the text, as core's patient search does by default.
+	 * This is the default mode, and it ignores case. On MySQL and MariaDB, whose default collation
+	 * ignores case, it can use the name and identifier indexes. Other databases compare the lowercased
+	 * columns, which needs expression indexes on them to avoid scanning.
+	 */
+	PREFIX
+}
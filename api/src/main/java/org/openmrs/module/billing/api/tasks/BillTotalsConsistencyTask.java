@@ -0,0 +1,61 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.tasks;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.billing.api.BillService;
+import org.openmrs.module.billing.api.base.KeysetPagingInfo;
+import org.openmrs.scheduler.tasks.AbstractTask;
+
+/**
+ * A scheduled task that checks the stored totals of every bill against its line items, payments and
+ * discounts, and corrects those that drifted
+ */
+@Slf4j
+public class BillTotalsConsistencyTask extends AbstractTask {
+	
+	private static final int BATCH_SIZE = 100;
+	
+	@Override
+	public void execute() {
+		if (!isExecuting) {
+			if (log.isDebugEnabled()) {
+				log.debug("Starting Bill Totals Consistency Task...");
+			}
+			
+			startExecuting();
+			
+			try {
+				BillService service = Context.getService(BillService.class);
+				
+				int corrected = 0;
+				String token = null;
+				do {
+					KeysetPagingInfo pagingInfo = new KeysetPagingInfo(BATCH_SIZE, token);
+					corrected += service.checkBillTotals(pagingInfo);
+					token = pagingInfo.getNextToken();
+					// Each batch is committed, so its bills can be dropped from the session
+					Context.clearSession();
+				} while (token != null);
+				
+				if (corrected > 0) {
+					log.warn("Corrected the stored totals of {} bills", corrected);
+				}
+			}
+			catch (Exception e) {
+				log.error("Error while checking the stored bill totals:", e);
+			}
+			finally {
+				stopExecuting();
+			}
+		}
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.tasks;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.billing.api.ISequentialReceiptNumberGeneratorService;
+import org.openmrs.scheduler.tasks.AbstractTask;
+
+/**
+ * A scheduled task that persists a usage snapshot of the receipt number sequences used on this server
+ */
+@Slf4j
+public class SequenceUsageSnapshotTask extends AbstractTask {
+	
+	@Override
+	public void execute() {
+		if (!isExecuting) {
+			if (log.isDebugEnabled()) {
+				log.debug("Starting Sequence Usage Snapshot Task...");
+			}
+			
+			startExecuting();
+			
+			try {
+				ISequentialReceiptNumberGeneratorService service = Context
+				        .getService(ISequentialReceiptNumberGeneratorService.class);
+				
+				service.saveSequenceUsageSnapshots();
+			}
+			catch (Exception e) {
+				log.error("Error while saving the sequence usage snapshots:", e);
+			}
+			finally {
+				stopExecuting();
+			}
+		}
+	}
+}
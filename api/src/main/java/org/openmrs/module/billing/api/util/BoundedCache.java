@@ -0,0 +1,106 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Thread-safe, size-bounded cache that evicts the least recently used entry once full. Null values
+ * are not cached.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class BoundedCache<K, V> {
+	
+	private final int maxSize;
+	
+	private final Map<K, V> entries;
+	
+	private long hitCount;
+	
+	private long missCount;
+	
+	public BoundedCache(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("The cache size must be at least one.");
+		}
+		
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				return size() > BoundedCache.this.maxSize;
+			}
+		};
+	}
+	
+	public synchronized V get(K key) {
+		V value = entries.get(key);
+		if (value == null) {
+			missCount++;
+		} else {
+			hitCount++;
+		}
+		return value;
+	}
+	
+	/**
+	 * Returns the cached value, loading and caching it on a miss. The loader runs outside the cache
+	 * lock, so two threads missing the same key at once may both load it.
+	 *
+	 * @param key the key to look up
+	 * @param loader computes the value on a miss; may return null, which is not cached
+	 * @return the cached or loaded value
+	 */
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		V value = get(key);
+		if (value == null) {
+			value = loader.apply(key);
+			if (value != null) {
+				put(key, value);
+			}
+		}
+		return value;
+	}
+	
+	public synchronized void put(K key, V value) {
+		if (value != null) {
+			entries.put(key, value);
+		}
+	}
+	
+	public synchronized V remove(K key) {
+		return entries.remove(key);
+	}
+	
+	public synchronized void clear() {
+		entries.clear();
+	}
+	
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	public int getMaxSize() {
+		return maxSize;
+	}
+	
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+	
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+}
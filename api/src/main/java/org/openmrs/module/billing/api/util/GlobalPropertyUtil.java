@@ -0,0 +1,104 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.api.AdministrationService;
+
+/**
+ * Reads numeric tuning global properties, falling back to a default with a warning when a value is
+ * not a number or is out of range.
+ */
+@Slf4j
+public class GlobalPropertyUtil {
+	
+	protected GlobalPropertyUtil() {
+	}
+	
+	/**
+	 * @param administrationService the service to read the property with; {@code null} returns the
+	 *            default
+	 * @param propertyName the global property name
+	 * @param defaultValue the value used when the property is blank, not a number or less than one
+	 * @return the property value, at least one
+	 */
+	public static int getPositiveIntProperty(AdministrationService administrationService, String propertyName,
+	        int defaultValue) {
+		return getIntProperty(administrationService, propertyName, 1, defaultValue);
+	}
+	
+	/**
+	 * @param administrationService the service to read the property with; {@code null} returns the
+	 *            default
+	 * @param propertyName the global property name
+	 * @param minValue the smallest accepted value
+	 * @param defaultValue the value used when the property is blank, not a number or less than
+	 *            {@code minValue}
+	 * @return the property value, at least {@code minValue} unless the default is smaller
+	 */
+	public static int getIntProperty(AdministrationService administrationService, String propertyName, int minValue,
+	        int defaultValue) {
+		if (administrationService == null) {
+			return defaultValue;
+		}
+		
+		String property = administrationService.getGlobalProperty(propertyName);
+		if (StringUtils.isNotBlank(property)) {
+			try {
+				int value = Integer.parseInt(property.trim());
+				if (value >= minValue) {
+					return value;
+				}
+				log.warn("Ignoring global property {}={}; the value must be at least {}.", propertyName, property,
+				    minValue);
+			}
+			catch (NumberFormatException ex) {
+				log.warn("Ignoring non-numeric global property {}={}.", propertyName, property);
+			}
+		}
+		
+		return defaultValue;
+	}
+	
+	/**
+	 * @param administrationService the service to read the property with; {@code null} returns the
+	 *            default
+	 * @param propertyName the global property name
+	 * @param minValue the smallest accepted value
+	 * @param maxValue the largest accepted value
+	 * @param defaultValue the value used when the property is blank, not a number or outside
+	 *            {@code minValue} and {@code maxValue}
+	 * @return the property value, between {@code minValue} and {@code maxValue} unless the default is not
+	 */
+	public static double getDoubleProperty(AdministrationService administrationService, String propertyName,
+	        double minValue, double maxValue, double defaultValue) {
+		if (administrationService == null) {
+			return defaultValue;
+		}
+		
+		String property = administrationService.getGlobalProperty(propertyName);
+		if (StringUtils.isNotBlank(property)) {
+			try {
+				double value = Double.parseDouble(property.trim());
+				if (value >= minValue && value <= maxValue) {
+					return value;
+				}
+				log.warn("Ignoring global property {}={}; the value must be between {} and {}.", propertyName, property,
+				    minValue, maxValue);
+			}
+			catch (NumberFormatException ex) {
+				log.warn("Ignoring non-numeric global property {}={}.", propertyName, property);
+			}
+		}
+		
+		return defaultValue;
+	}
+}
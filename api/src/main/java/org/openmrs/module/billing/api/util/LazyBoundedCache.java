@@ -0,0 +1,96 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.util;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Holds a {@link BoundedCache} that is created on first use, with the maximum size read at that
+ * time, and can be discarded at once so the next use starts empty and reads the size again.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class LazyBoundedCache<K, V> {
+	
+	private final IntSupplier maxSize;
+	
+	private volatile BoundedCache<K, V> entries;
+	
+	/**
+	 * @param maxSize supplies the maximum size whenever the cache is created
+	 */
+	public LazyBoundedCache(IntSupplier maxSize) {
+		this.maxSize = maxSize;
+	}
+	
+	/**
+	 * @return the current cache, created if there is none
+	 */
+	public BoundedCache<K, V> get() {
+		BoundedCache<K, V> current = entries;
+		if (current == null) {
+			synchronized (this) {
+				current = entries;
+				if (current == null) {
+					current = new BoundedCache<>(maxSize.getAsInt());
+					entries = current;
+				}
+			}
+		}
+		return current;
+	}
+	
+	/**
+	 * @return the current cache, or {@code null} if it has not been created since it was last reset
+	 */
+	public BoundedCache<K, V> getIfCreated() {
+		return entries;
+	}
+	
+	/**
+	 * Discards the cache. Callers still holding it keep writing to the discarded one, so values they
+	 * loaded before the reset never reach the next cache.
+	 */
+	public void reset() {
+		entries = null;
+	}
+	
+	/**
+	 * Discards the cache now and, inside a transaction, again once it completes.
+	 *
+	 * @see TransactionUtil#runNowAndAfterCompletion(Runnable)
+	 */
+	public void resetNowAndAfterCompletion() {
+		TransactionUtil.runNowAndAfterCompletion(this::reset);
+	}
+	
+	public int size() {
+		BoundedCache<K, V> current = entries;
+		return current == null ? 0 : current.size();
+	}
+	
+	/**
+	 * @return the maximum size of the current cache, or the size the next one would have
+	 */
+	public int getMaxSize() {
+		BoundedCache<K, V> current = entries;
+		return current == null ? maxSize.getAsInt() : current.getMaxSize();
+	}
+	
+	/**
+	 * @param hits the lookups served from the cache
+	 * @param lookups all lookups
+	 * @return the fraction of lookups served from the cache, between 0 and 1
+	 */
+	public static double hitRate(long hits, long lookups) {
+		return lookups > 0 ? (double) hits / lookups : 0.0;
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Helpers for keeping in-memory state consistent with the current transaction.
+ */
+public class TransactionUtil {
+	
+	protected TransactionUtil() {
+	}
+	
+	/**
+	 * Runs an action that discards cached state now and, when called inside a transaction, once more
+	 * after the transaction has committed or rolled back. Another thread may reload the state from the
+	 * rows as they were before the transaction's change became visible; the second run discards that
+	 * reloaded state too.
+	 *
+	 * @param discard discards the cached state; must be safe to run twice
+	 */
+	public static void runNowAndAfterCompletion(Runnable discard) {
+		discard.run();
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				
+				@Override
+				public void afterCompletion(int status) {
+					discard.run();
+				}
+			});
+		}
+	}
+}
@@ -172,7 +172,7 @@ public class ReceiptGenerator {
 		
 		receiptHeader.addCell(new Paragraph("Receipt No:")).setFontSize(FONT_SIZE_12).setTextAlignment(TextAlignment.LEFT)
 		        .setFont(headerSectionFont);
-		receiptHeader.addCell(new Paragraph(bill.getReceiptNumber())).setFontSize(FONT_SIZE_12)
+		receiptHeader.addCell(new Paragraph(StringUtils.defaultString(bill.getReceiptNumber()))).setFontSize(FONT_SIZE_12)
 		        .setTextAlignment(TextAlignment.LEFT).setFont(helvetica);
 		
 		receiptHeader.addCell(new Paragraph("Patient:")).setFontSize(FONT_SIZE_12).setTextAlignment(TextAlignment.LEFT)
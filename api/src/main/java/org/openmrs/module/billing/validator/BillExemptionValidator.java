@@ -0,0 +1,69 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.validator;
+
+import javax.annotation.Nonnull;
+
+import lombok.Setter;
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.annotation.Handler;
+import org.openmrs.module.billing.api.evaluator.ExemptionRuleEngine;
+import org.openmrs.module.billing.api.model.BillExemption;
+import org.openmrs.module.billing.api.model.BillExemptionRule;
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+
+/**
+ * Rejects exemptions whose active rules have no script or a script their evaluator cannot run.
+ * Validating a rule also compiles it, so expression rules are compiled when they are saved rather
+ * than when the first order is billed.
+ */
+@Handler(supports = { BillExemption.class }, order = 50)
+public class BillExemptionValidator implements Validator {
+	
+	@Setter
+	private ExemptionRuleEngine exemptionRuleEngine;
+	
+	@Override
+	public boolean supports(@Nonnull Class<?> clazz) {
+		return BillExemption.class.isAssignableFrom(clazz);
+	}
+	
+	@Override
+	public void validate(@Nonnull Object target, @Nonnull Errors errors) {
+		if (!(target instanceof BillExemption)) {
+			errors.reject("error.general");
+			return;
+		}
+		BillExemption exemption = (BillExemption) target;
+		if (exemption.getRules() == null) {
+			return;
+		}
+		
+		for (BillExemptionRule rule : exemption.getRules()) {
+			if (Boolean.TRUE.equals(rule.getVoided())) {
+				continue;
+			}
+			
+			if (rule.getScriptType() == null || StringUtils.isBlank(rule.getScript())) {
+				errors.reject("billing.error.exemption.ruleScriptRequired");
+				continue;
+			}
+			
+			try {
+				exemptionRuleEngine.validateRule(rule);
+			}
+			catch (IllegalArgumentException e) {
+				errors.reject("billing.error.exemption.invalidRuleScript", new Object[] { rule.getScript(), e.getMessage() },
+				    "Invalid exemption rule script: " + e.getMessage());
+			}
+		}
+	}
+}
@@ -12,6 +12,7 @@ package org.openmrs.module.billing;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 
@@ -229,6 +230,63 @@ public class SequentialReceiptNumberGeneratorReserveTest extends BaseModuleConte
 		Assert.assertEquals("Overlapping blocks were handed out", 100, new HashSet<>(firsts).size());
 	}
 	
+	@Test
+	public void reserveNextSequence_shouldHandOutEveryValueExactlyOnceAcrossSeveralNodes() throws Exception {
+		final int nodeCount = 3;
+		final int threadsPerNode = 2;
+		final int callsPerThread = 50;
+		final int blockSize = 10;
+		final int total = nodeCount * threadsPerNode * callsPerThread;
+		Context.getAdministrationService().setGlobalProperty(ModuleSettings.SEQUENCE_BLOCK_SIZE_PROPERTY,
+		    String.valueOf(blockSize));
+		
+		final ConcurrentLinkedQueue<Integer> results = new ConcurrentLinkedQueue<>();
+		final ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+		final CountDownLatch start = new CountDownLatch(1);
+		
+		// Each node has its own in-memory pool and reserves its blocks through the shared database
+		List<Thread> threads = new ArrayList<>();
+		for (int n = 0; n < nodeCount; n++) {
+			final SequentialReceiptNumberGeneratorServiceImpl node = new SequentialReceiptNumberGeneratorServiceImpl();
+			for (int i = 0; i < threadsPerNode; i++) {
+				Thread thread = new Thread(() -> {
+					Context.openSession();
+					try {
+						start.await();
+						for (int call = 0; call < callsPerThread; call++) {
+							results.add(node.reserveNextSequence("reserve-nodes"));
+						}
+					}
+					catch (Throwable t) {
+						failures.add(t);
+					}
+					finally {
+						Context.closeSession();
+					}
+				});
+				threads.add(thread);
+				thread.start();
+			}
+		}
+		
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join(180000);
+		}
+		
+		Assert.assertTrue("Worker threads failed: " + failures, failures.isEmpty());
+		Assert.assertEquals(total, results.size());
+		
+		// Every node drains whole blocks, so the values handed out must be exactly 1..total
+		Set<Integer> expected = new HashSet<>();
+		for (int value = 1; value <= total; value++) {
+			expected.add(value);
+		}
+		Assert.assertEquals("Duplicate sequence values were handed out", total, new HashSet<>(results).size());
+		Assert.assertEquals("Sequence values were skipped", expected, new HashSet<>(results));
+		Assert.assertEquals(total, persistedValue("reserve-nodes"));
+	}
+	
 	@Test(expected = IllegalArgumentException.class)
 	public void reserveSequenceBlock_shouldThrowIllegalArgumentExceptionIfTheGroupIsNull() {
 		service.reserveSequenceBlock(null, BLOCK_SIZE);
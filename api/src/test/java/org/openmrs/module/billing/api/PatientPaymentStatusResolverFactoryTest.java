@@ -56,7 +56,7 @@ public class PatientPaymentStatusResolverFactoryTest {
 	
 	@Test
 	public void getResolver_shouldReturnRegisteredDefaultWhenGpIsBlank() {
-		DefaultPatientPaymentStatusResolver registeredDefault = new DefaultPatientPaymentStatusResolver(null);
+		DefaultPatientPaymentStatusResolver registeredDefault = new DefaultPatientPaymentStatusResolver(null, null);
 		when(administrationService.getGlobalProperty(ModuleSettings.PATIENT_PAYMENT_STATUS_RESOLVER)).thenReturn("");
 		contextMock.when(() -> Context.getRegisteredComponents(PatientPaymentStatusResolver.class))
 		        .thenReturn(Collections.singletonList(registeredDefault));
@@ -66,7 +66,7 @@ public class PatientPaymentStatusResolverFactoryTest {
 	
 	@Test
 	public void getResolver_shouldReturnRegisteredDefaultWhenGpIsNull() {
-		DefaultPatientPaymentStatusResolver registeredDefault = new DefaultPatientPaymentStatusResolver(null);
+		DefaultPatientPaymentStatusResolver registeredDefault = new DefaultPatientPaymentStatusResolver(null, null);
 		when(administrationService.getGlobalProperty(ModuleSettings.PATIENT_PAYMENT_STATUS_RESOLVER)).thenReturn(null);
 		contextMock.when(() -> Context.getRegisteredComponents(PatientPaymentStatusResolver.class))
 		        .thenReturn(Collections.singletonList(registeredDefault));
@@ -0,0 +1,118 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.billing.test.AnotherTestReceiptNumberGenerator;
+import org.openmrs.module.billing.test.InvalidReceiptNumberGenerator;
+import org.openmrs.module.billing.test.TestReceiptNumberGenerator;
+
+public class ReceiptNumberGeneratorFactoryTest {
+	
+	private MockedStatic<Context> contextMock;
+	
+	@BeforeEach
+	public void setUp() {
+		ReceiptNumberGeneratorFactory.reset();
+		
+		contextMock = mockStatic(Context.class);
+		contextMock.when(Context::getAdministrationService).thenReturn(mock(AdministrationService.class));
+		contextMock.when(() -> Context.getRegisteredComponents(IReceiptNumberGenerator.class))
+		        .thenReturn(Collections.singletonList(new AnotherTestReceiptNumberGenerator()));
+	}
+	
+	@AfterEach
+	public void tearDown() {
+		ReceiptNumberGeneratorFactory.reset();
+		if (contextMock != null) {
+			contextMock.close();
+		}
+	}
+	
+	/**
+	 * @see ReceiptNumberGeneratorFactory#locateGenerators()
+	 */
+	@Test
+	public void locateGenerators_shouldLocateAllClassesThatImplementIReceiptNumberGenerator() {
+		Set<Class<?>> classes = classesOf(ReceiptNumberGeneratorFactory.locateGenerators());
+		
+		assertEquals(new HashSet<Class<?>>(Arrays.asList(SequentialReceiptNumberGenerator.class,
+		    TestReceiptNumberGenerator.class, AnotherTestReceiptNumberGenerator.class)), classes);
+	}
+	
+	/**
+	 * @see ReceiptNumberGeneratorFactory#locateGenerators()
+	 */
+	@Test
+	public void locateGenerators_shouldNotThrowAnExceptionIfTheClassInstantiationFails() {
+		Set<Class<?>> classes = classesOf(ReceiptNumberGeneratorFactory.locateGenerators());
+		
+		assertTrue(classes.contains(TestReceiptNumberGenerator.class));
+		assertFalse(classes.contains(InvalidReceiptNumberGenerator.class));
+	}
+	
+	/**
+	 * @see ReceiptNumberGeneratorFactory#locateGenerators()
+	 */
+	@Test
+	public void locateGenerators_shouldUseTheExistingInstanceForTheCurrentlyDefinedGenerator() {
+		TestReceiptNumberGenerator current = new TestReceiptNumberGenerator();
+		ReceiptNumberGeneratorFactory.setGenerator(current);
+		
+		IReceiptNumberGenerator located = null;
+		for (IReceiptNumberGenerator generator : ReceiptNumberGeneratorFactory.locateGenerators()) {
+			if (generator instanceof TestReceiptNumberGenerator) {
+				located = generator;
+			}
+		}
+		
+		assertSame(current, located);
+	}
+	
+	/**
+	 * @see ReceiptNumberGeneratorFactory#locateGenerators()
+	 */
+	@Test
+	public void locateGenerators_shouldLookUpTheGeneratorClassesOnlyOnceUntilRefreshed() {
+		ReceiptNumberGeneratorFactory.locateGenerators();
+		ReceiptNumberGeneratorFactory.locateGenerators();
+		contextMock.verify(() -> Context.getRegisteredComponents(IReceiptNumberGenerator.class), times(1));
+		
+		ReceiptNumberGeneratorFactory.refreshGenerators();
+		ReceiptNumberGeneratorFactory.locateGenerators();
+		contextMock.verify(() -> Context.getRegisteredComponents(IReceiptNumberGenerator.class), times(2));
+	}
+	
+	private static Set<Class<?>> classesOf(IReceiptNumberGenerator[] generators) {
+		Set<Class<?>> classes = new HashSet<Class<?>>();
+		for (IReceiptNumberGenerator generator : generators) {
+			classes.add(generator.getClass());
+		}
+		return classes;
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api;
+
+import java.text.SimpleDateFormat;
+import java.time.Clock;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openmrs.Provider;
+import org.openmrs.module.billing.api.model.Bill;
+import org.openmrs.module.billing.api.model.CashPoint;
+import org.openmrs.module.billing.api.model.SequentialReceiptNumberGeneratorModel;
+import org.openmrs.patient.impl.LuhnIdentifierValidator;
+
+/**
+ * Measures how many receipt numbers per second {@link ReceiptNumberTemplate} formats, against the
+ * string concatenation it replaced. The sequence reservation is left out so that only formatting is
+ * measured. Run it from the api module after {@code mvn test-compile} with
+ * {@code java -cp <test classpath> org.openmrs.module.billing.api.ReceiptNumberTemplateBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReceiptNumberTemplateBenchmark {
+	
+	@Param({ "COUNTER", "DATE_TIME_COUNTER" })
+	public SequentialReceiptNumberGenerator.SequenceType sequenceType;
+	
+	private SequentialReceiptNumberGeneratorModel model;
+	
+	private ReceiptNumberTemplate template;
+	
+	private LuhnIdentifierValidator checkDigitGenerator;
+	
+	private Bill bill;
+	
+	private int sequence;
+	
+	@Setup
+	public void setup() {
+		model = new SequentialReceiptNumberGeneratorModel();
+		model.setGroupingType(SequentialReceiptNumberGenerator.GroupingType.CASHIER_AND_CASH_POINT);
+		model.setSequenceType(sequenceType);
+		model.setIncludeCheckDigit(true);
+		template = new ReceiptNumberTemplate(model, Clock.systemDefaultZone());
+		checkDigitGenerator = new LuhnIdentifierValidator();
+		
+		CashPoint cashPoint = new CashPoint();
+		cashPoint.setId(3);
+		bill = new Bill();
+		bill.setCashier(new Provider(12));
+		bill.setCashPoint(cashPoint);
+	}
+	
+	@Benchmark
+	public String template() {
+		String group = template.getSequenceGroup(bill);
+		return template.format(bill, group, ++sequence);
+	}
+	
+	@Benchmark
+	public String concatenation() {
+		String grouping = model.getCashierPrefix() + bill.getCashier().getId() + model.getSeparator()
+		        + model.getCashPointPrefix() + bill.getCashPoint().getId();
+		// The sequence group is computed as well, as the generator needs it to reserve the sequence
+		grouping.replace(model.getSeparator(), "");
+		
+		String number = String.format("%0" + model.getSequencePadding() + "d", ++sequence);
+		if (model.getSequenceType() == SequentialReceiptNumberGenerator.SequenceType.DATE_TIME_COUNTER) {
+			number = new SimpleDateFormat("yyMMddHHmmss").format(new Date(Calendar.getInstance().getTimeInMillis()))
+			        + number;
+		}
+		number = grouping + model.getSeparator() + number;
+		
+		String identifier = checkDigitGenerator.getValidIdentifier(number.replace(model.getSeparator(), ""));
+		return number + model.getSeparator() + identifier.substring(identifier.length() - 1);
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ReceiptNumberTemplateBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.text.SimpleDateFormat;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+import org.openmrs.Provider;
+import org.openmrs.module.billing.api.model.Bill;
+import org.openmrs.module.billing.api.model.CashPoint;
+import org.openmrs.module.billing.api.model.SequentialReceiptNumberGeneratorModel;
+import org.openmrs.patient.impl.LuhnIdentifierValidator;
+
+public class ReceiptNumberTemplateTest {
+	
+	private static final Instant NOW = Instant.parse("2026-10-17T09:41:27Z");
+	
+	private static final int[] SEQUENCES = { 1, 7, 42, 9999, 10000, 123456789 };
+	
+	private final MutableClock clock = new MutableClock(NOW);
+	
+	@Test
+	public void format_shouldBuildTheSameNumbersAsConcatenatingThePartsForEveryLayout() {
+		Bill bill = createBill(12, 305);
+		for (SequentialReceiptNumberGenerator.GroupingType groupingType : SequentialReceiptNumberGenerator.GroupingType
+		        .values()) {
+			for (SequentialReceiptNumberGenerator.SequenceType sequenceType : SequentialReceiptNumberGenerator.SequenceType
+			        .values()) {
+				for (String separator : new String[] { "", "-", "/" }) {
+					for (boolean includeCheckDigit : new boolean[] { false, true }) {
+						SequentialReceiptNumberGeneratorModel model = createModel(groupingType, sequenceType, separator,
+						    includeCheckDigit);
+						assertFormatsLikeConcatenation(model, bill);
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void format_shouldComputeTheCheckDigitWithTheValidatorForSeparatorsThatLookLikePartOfTheNumber() {
+		Bill bill = createBill(12, 305);
+		for (String separator : new String[] { "0", "P", "-1-" }) {
+			SequentialReceiptNumberGeneratorModel model = createModel(
+			    SequentialReceiptNumberGenerator.GroupingType.CASHIER_AND_CASH_POINT,
+			    SequentialReceiptNumberGenerator.SequenceType.DATE_COUNTER, separator, true);
+			assertFormatsLikeConcatenation(model, bill);
+		}
+	}
+	
+	@Test
+	public void format_shouldPadTheSequenceToTheConfiguredWidth() {
+		SequentialReceiptNumberGeneratorModel model = createModel(SequentialReceiptNumberGenerator.GroupingType.NONE,
+		    SequentialReceiptNumberGenerator.SequenceType.COUNTER, "-", false);
+		model.setSequencePadding(6);
+		ReceiptNumberTemplate template = new ReceiptNumberTemplate(model, clock);
+		
+		assertEquals("000042", template.format(createBill(1, 1), "", 42));
+		assertEquals("1234567", template.format(createBill(1, 1), "", 1234567));
+	}
+	
+	@Test
+	public void format_shouldRefreshTheDatePrefixWhenTheDayOrSecondChanges() {
+		Bill bill = createBill(1, 3);
+		ReceiptNumberTemplate dateTemplate = new ReceiptNumberTemplate(createModel(
+		    SequentialReceiptNumberGenerator.GroupingType.NONE, SequentialReceiptNumberGenerator.SequenceType.DATE_COUNTER,
+		    "", false), clock);
+		ReceiptNumberTemplate dateTimeTemplate = new ReceiptNumberTemplate(createModel(
+		    SequentialReceiptNumberGenerator.GroupingType.NONE,
+		    SequentialReceiptNumberGenerator.SequenceType.DATE_TIME_COUNTER, "", false), clock);
+		
+		clock.instant = Instant.parse("2026-10-17T23:59:59.500Z");
+		assertEquals("2610170001", dateTemplate.format(bill, "", 1));
+		assertEquals("2610172359590001", dateTimeTemplate.format(bill, "", 1));
+		
+		clock.instant = Instant.parse("2026-10-17T23:59:59.999Z");
+		assertEquals("2610170002", dateTemplate.format(bill, "", 2));
+		assertEquals("2610172359590002", dateTimeTemplate.format(bill, "", 2));
+		
+		clock.instant = Instant.parse("2026-10-18T00:00:00Z");
+		assertEquals("2610180003", dateTemplate.format(bill, "", 3));
+		assertEquals("2610180000000003", dateTimeTemplate.format(bill, "", 3));
+	}
+	
+	@Test
+	public void getSequenceGroup_shouldReturnTheGroupingWithoutSeparators() {
+		Bill bill = createBill(12, 305);
+		
+		assertEquals("P12CP305", new ReceiptNumberTemplate(createModel(
+		    SequentialReceiptNumberGenerator.GroupingType.CASHIER_AND_CASH_POINT,
+		    SequentialReceiptNumberGenerator.SequenceType.COUNTER, "-", true), clock).getSequenceGroup(bill));
+		assertEquals("CP305", new ReceiptNumberTemplate(createModel(
+		    SequentialReceiptNumberGenerator.GroupingType.CASH_POINT, SequentialReceiptNumberGenerator.SequenceType.COUNTER,
+		    "-", true), clock).getSequenceGroup(bill));
+		assertEquals("", new ReceiptNumberTemplate(createModel(SequentialReceiptNumberGenerator.GroupingType.NONE,
+		    SequentialReceiptNumberGenerator.SequenceType.COUNTER, "-", true), clock).getSequenceGroup(bill));
+	}
+	
+	private void assertFormatsLikeConcatenation(SequentialReceiptNumberGeneratorModel model, Bill bill) {
+		ReceiptNumberTemplate template = new ReceiptNumberTemplate(model, clock);
+		String grouping = concatenateGrouping(model, bill);
+		String group = model.getSeparator().isEmpty() ? grouping : grouping.replace(model.getSeparator(), "");
+		
+		assertEquals(group, template.getSequenceGroup(bill));
+		for (int sequence : SEQUENCES) {
+			assertEquals(concatenateNumber(model, grouping, sequence), template.format(bill, group, sequence),
+			    "Layout " + model.getGroupingType() + "/" + model.getSequenceType() + " with separator '"
+			            + model.getSeparator() + "' and sequence " + sequence);
+		}
+	}
+	
+	private String concatenateGrouping(SequentialReceiptNumberGeneratorModel model, Bill bill) {
+		switch (model.getGroupingType()) {
+			case CASHIER:
+				return model.getCashierPrefix() + bill.getCashier().getId();
+			case CASH_POINT:
+				return model.getCashPointPrefix() + bill.getCashPoint().getId();
+			case CASHIER_AND_CASH_POINT:
+				return model.getCashierPrefix() + bill.getCashier().getId() + model.getSeparator()
+				        + model.getCashPointPrefix() + bill.getCashPoint().getId();
+			default:
+				return "";
+		}
+	}
+	
+	private String concatenateNumber(SequentialReceiptNumberGeneratorModel model, String grouping, int sequenceNumber) {
+		String sequence = String.format("%0" + model.getSequencePadding() + "d", sequenceNumber);
+		SimpleDateFormat format = null;
+		switch (model.getSequenceType()) {
+			case DATE_COUNTER:
+				format = new SimpleDateFormat("yyMMdd");
+				break;
+			case DATE_TIME_COUNTER:
+				format = new SimpleDateFormat("yyMMddHHmmss");
+				break;
+			default:
+				break;
+		}
+		if (format != null) {
+			format.setTimeZone(TimeZone.getTimeZone(clock.getZone()));
+			sequence = format.format(Date.from(clock.instant())) + sequence;
+		}
+		
+		String number = StringUtils.isEmpty(grouping) ? sequence : grouping + model.getSeparator() + sequence;
+		if (model.getIncludeCheckDigit()) {
+			String identifier = new LuhnIdentifierValidator().getValidIdentifier(
+			    model.getSeparator().isEmpty() ? number : number.replace(model.getSeparator(), ""));
+			number = number + model.getSeparator() + identifier.substring(identifier.length() - 1);
+		}
+		
+		return number;
+	}
+	
+	private SequentialReceiptNumberGeneratorModel createModel(SequentialReceiptNumberGenerator.GroupingType groupingType,
+	        SequentialReceiptNumberGenerator.SequenceType sequenceType, String separator, boolean includeCheckDigit) {
+		SequentialReceiptNumberGeneratorModel model = new SequentialReceiptNumberGeneratorModel();
+		model.setGroupingType(groupingType);
+		model.setSequenceType(sequenceType);
+		model.setSeparator(separator);
+		model.setSequencePadding(SequentialReceiptNumberGeneratorModel.DEFAULT_SEQUENCE_PADDING);
+		model.setCashierPrefix(SequentialReceiptNumberGeneratorModel.DEFAULT_CASHIER_PREFIX);
+		model.setCashPointPrefix(SequentialReceiptNumberGeneratorModel.DEFAULT_CASH_POINT_PREFIX);
+		model.setIncludeCheckDigit(includeCheckDigit);
+		return model;
+	}
+	
+	private Bill createBill(int cashierId, int cashPointId) {
+		CashPoint cashPoint = new CashPoint();
+		cashPoint.setId(cashPointId);
+		Bill bill = new Bill();
+		bill.setCashier(new Provider(cashierId));
+		bill.setCashPoint(cashPoint);
+		return bill;
+	}
+	
+	private static class MutableClock extends Clock {
+		
+		private Instant instant;
+		
+		MutableClock(Instant instant) {
+			this.instant = instant;
+		}
+		
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+		
+		@Override
+		public Clock withZone(ZoneId zone) {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public Instant instant() {
+			return instant;
+		}
+	}
+}
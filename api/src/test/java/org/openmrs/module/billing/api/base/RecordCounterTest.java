@@ -0,0 +1,174 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.billing.ModuleSettings;
+
+public class RecordCounterTest {
+	
+	private MockedStatic<Context> contextMock;
+	
+	private AdministrationService administrationService;
+	
+	@BeforeEach
+	public void setUp() {
+		administrationService = mock(AdministrationService.class);
+		contextMock = mockStatic(Context.class);
+		contextMock.when(Context::getAdministrationService).thenReturn(administrationService);
+		RecordCounter.clearCachedCounts();
+	}
+	
+	@AfterEach
+	public void tearDown() {
+		if (contextMock != null) {
+			contextMock.close();
+		}
+	}
+	
+	@Test
+	public void loadRecordCount_shouldCountEveryRecordByDefault() {
+		FakeCountQuery query = new FakeCountQuery(250, null);
+		PagingInfo pagingInfo = new PagingInfo(2, 10);
+		
+		RecordCounter.loadRecordCount(pagingInfo, query);
+		
+		assertEquals(Long.valueOf(250), pagingInfo.getTotalRecordCount());
+		assertFalse(pagingInfo.getLoadRecordCount());
+		assertEquals(1, query.counts);
+	}
+	
+	@Test
+	public void loadRecordCount_shouldCountOnlyOnePastTheRequestedPageWhenCapped() {
+		FakeCountQuery query = new FakeCountQuery(250, null);
+		PagingInfo pagingInfo = pagingInfo(2, 10, CountStrategy.CAPPED);
+		
+		RecordCounter.loadRecordCount(pagingInfo, query);
+		
+		assertEquals(Long.valueOf(21), pagingInfo.getTotalRecordCount());
+		assertTrue(pagingInfo.hasMoreResults());
+		assertEquals(0, query.counts);
+		
+		PagingInfo lastPage = pagingInfo(25, 10, CountStrategy.CAPPED);
+		RecordCounter.loadRecordCount(lastPage, query);
+		
+		assertEquals(Long.valueOf(250), lastPage.getTotalRecordCount());
+		assertFalse(lastPage.hasMoreResults());
+	}
+	
+	@Test
+	public void loadRecordCount_shouldReuseCachedCountsOfTheSameSearch() {
+		FakeCountQuery query = new FakeCountQuery(250, null);
+		
+		RecordCounter.loadRecordCount(pagingInfo(1, 10, CountStrategy.CACHED), query);
+		query.total = 251;
+		PagingInfo pagingInfo = pagingInfo(2, 10, CountStrategy.CACHED);
+		RecordCounter.loadRecordCount(pagingInfo, query);
+		
+		assertEquals(Long.valueOf(250), pagingInfo.getTotalRecordCount());
+		assertEquals(1, query.counts);
+		
+		query.signature = "another search";
+		pagingInfo = pagingInfo(1, 10, CountStrategy.CACHED);
+		RecordCounter.loadRecordCount(pagingInfo, query);
+		
+		assertEquals(Long.valueOf(251), pagingInfo.getTotalRecordCount());
+		assertEquals(2, query.counts);
+	}
+	
+	@Test
+	public void loadRecordCount_shouldNotCacheCountsWhenCachingIsDisabled() {
+		when(administrationService.getGlobalProperty(ModuleSettings.PAGING_COUNT_CACHE_SECONDS_PROPERTY)).thenReturn("0");
+		FakeCountQuery query = new FakeCountQuery(250, null);
+		
+		RecordCounter.loadRecordCount(pagingInfo(1, 10, CountStrategy.CACHED), query);
+		RecordCounter.loadRecordCount(pagingInfo(1, 10, CountStrategy.CACHED), query);
+		
+		assertEquals(2, query.counts);
+	}
+	
+	@Test
+	public void loadRecordCount_shouldUseTheEstimateOnlyWhenItReachesPastTheRequestedPage() {
+		FakeCountQuery query = new FakeCountQuery(250, 10000L);
+		PagingInfo pagingInfo = pagingInfo(1, 10, CountStrategy.ESTIMATE);
+		
+		RecordCounter.loadRecordCount(pagingInfo, query);
+		
+		assertEquals(Long.valueOf(10000), pagingInfo.getTotalRecordCount());
+		
+		query.estimate = 5L;
+		pagingInfo = pagingInfo(1, 10, CountStrategy.ESTIMATE);
+		RecordCounter.loadRecordCount(pagingInfo, query);
+		
+		assertEquals(Long.valueOf(11), pagingInfo.getTotalRecordCount());
+		
+		query.estimate = null;
+		pagingInfo = pagingInfo(30, 10, CountStrategy.ESTIMATE);
+		RecordCounter.loadRecordCount(pagingInfo, query);
+		
+		assertEquals(Long.valueOf(250), pagingInfo.getTotalRecordCount());
+		assertEquals(0, query.counts);
+	}
+	
+	private PagingInfo pagingInfo(int page, int pageSize, CountStrategy countStrategy) {
+		PagingInfo pagingInfo = new PagingInfo(page, pageSize);
+		pagingInfo.setCountStrategy(countStrategy);
+		return pagingInfo;
+	}
+	
+	private static class FakeCountQuery implements RecordCounter.CountQuery {
+		
+		private long total;
+		
+		private Long estimate;
+		
+		private Object signature = "bills";
+		
+		private int counts;
+		
+		FakeCountQuery(long total, Long estimate) {
+			this.total = total;
+			this.estimate = estimate;
+		}
+		
+		@Override
+		public long count() {
+			counts++;
+			return total;
+		}
+		
+		@Override
+		public long countUpTo(int limit) {
+			return Math.min(total, limit);
+		}
+		
+		@Override
+		public Long estimate() {
+			return estimate;
+		}
+		
+		@Override
+		public Object getSignature() {
+			return signature;
+		}
+	}
+}
@@ -12,6 +12,7 @@ package org.openmrs.module.billing.api.billing;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.math.BigDecimal;
@@ -34,10 +35,15 @@ import org.openmrs.api.context.Context;
 import org.openmrs.module.billing.TestConstants;
 import org.openmrs.module.billing.api.BillLineItemService;
 import org.openmrs.module.billing.api.BillService;
+import org.openmrs.module.billing.api.BillableServiceService;
+import org.openmrs.module.billing.api.db.OrderBillingDAO;
 import org.openmrs.module.billing.api.model.Bill;
 import org.openmrs.module.billing.api.model.BillLineItem;
 import org.openmrs.module.billing.api.model.BillLineItemStatus;
 import org.openmrs.module.billing.api.model.BillStatus;
+import org.openmrs.module.billing.api.model.BillableService;
+import org.openmrs.module.billing.api.model.OrderBillingRecord;
+import org.openmrs.module.billing.api.model.OrderBillingStatus;
 import org.openmrs.test.jupiter.BaseModuleContextSensitiveTest;
 
 public class OrderBillingEventListenerTest extends BaseModuleContextSensitiveTest {
@@ -54,6 +60,8 @@ public class OrderBillingEventListenerTest extends BaseModuleContextSensitiveTes
 	
 	private OrderBillingEventListener listener;
 	
+	private OrderBillingDAO orderBillingDAO;
+	
 	@BeforeEach
 	public void setup() {
 		billService = Context.getService(BillService.class);
@@ -62,6 +70,7 @@ public class OrderBillingEventListenerTest extends BaseModuleContextSensitiveTes
 		conceptService = Context.getConceptService();
 		encounterService = Context.getEncounterService();
 		listener = Context.getRegisteredComponent("orderBillingEventListener", OrderBillingEventListener.class);
+		orderBillingDAO = Context.getRegisteredComponent("orderBillingDAO", OrderBillingDAO.class);
 		
 		executeDataSet(TestConstants.CORE_DATASET2);
 		executeDataSet(TestConstants.BASE_DATASET_DIR + "StockOperationType.xml");
@@ -99,6 +108,12 @@ public class OrderBillingEventListenerTest extends BaseModuleContextSensitiveTes
 		assertEquals(1, lineItem.getQuantity());
 		assertEquals(new BigDecimal("75.00"), lineItem.getPrice());
 		assertEquals(savedOrder.getId(), lineItem.getOrder().getId());
+		
+		// 5. Verify the order billing ledger
+		OrderBillingRecord record = orderBillingDAO.getOrderBillingRecord(savedOrder);
+		assertNotNull(record);
+		assertEquals(OrderBillingStatus.BILLED, record.getStatus());
+		assertEquals(lineItem.getId(), record.getBillLineItem().getId());
 	}
 	
 	@Test
@@ -115,6 +130,46 @@ public class OrderBillingEventListenerTest extends BaseModuleContextSensitiveTes
 		List<Bill> bills = billService.getBillsByPatientUuid(patient.getUuid(), null);
 		assertTrue(bills == null || bills.isEmpty(),
 		    "No bill should be created when no billable service matches the concept");
+		
+		OrderBillingRecord record = orderBillingDAO.getOrderBillingRecord(savedOrder);
+		assertNotNull(record);
+		assertEquals(OrderBillingStatus.SKIPPED, record.getStatus());
+		assertEquals("No billable item found for order", record.getReason());
+	}
+	
+	@Test
+	public void shouldBillSkippedOrderWhenRedeliveredAfterConfigurationIsFixed() {
+		Concept unmappedConcept = conceptService.getConcept(5089);
+		Encounter encounter = encounterService.getEncounter(3);
+		Patient patient = encounter.getPatient();
+		
+		// 1. No billable service matches the concept, so the order is skipped
+		Order savedOrder = saveNewTestOrder(patient, unmappedConcept, encounter);
+		listener.processOrder(savedOrder);
+		Context.flushSession();
+		assertEquals(OrderBillingStatus.SKIPPED, orderBillingDAO.getOrderBillingRecord(savedOrder).getStatus());
+		
+		// 2. Link the billable service to the concept
+		BillableServiceService billableServiceService = Context.getService(BillableServiceService.class);
+		BillableService billableService = billableServiceService.getBillableService(10);
+		billableService.setConcept(unmappedConcept);
+		billableServiceService.saveBillableService(billableService);
+		Context.flushSession();
+		
+		// 3. Redeliver the order
+		listener.processOrder(savedOrder);
+		Context.flushSession();
+		Context.clearSession();
+		
+		List<Bill> bills = billService.getBillsByPatientUuid(patient.getUuid(), null);
+		assertEquals(1, bills.size(), "The redelivered order should be billed");
+		BillLineItem lineItem = bills.get(0).getLineItems().get(0);
+		assertEquals(savedOrder.getId(), lineItem.getOrder().getId());
+		
+		OrderBillingRecord record = orderBillingDAO.getOrderBillingRecord(savedOrder);
+		assertEquals(OrderBillingStatus.BILLED, record.getStatus());
+		assertEquals(lineItem.getId(), record.getBillLineItem().getId());
+		assertNull(record.getReason());
 	}
 	
 	@Test
@@ -0,0 +1,137 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.billing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.openmrs.Order;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.billing.api.db.OrderBillingDAO;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+@ExtendWith(MockitoExtension.class)
+public class OrderBillingPipelineTest {
+	
+	@Mock
+	private OrderBillingDAO orderBillingDAO;
+	
+	@Mock
+	private PlatformTransactionManager transactionManager;
+	
+	@Mock
+	private Consumer<Order> orderProcessor;
+	
+	private OrderBillingPipeline pipeline;
+	
+	private MockedStatic<Context> contextMock;
+	
+	@BeforeEach
+	public void setUp() {
+		contextMock = mockStatic(Context.class);
+		when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+		
+		pipeline = new OrderBillingPipeline();
+		pipeline.setOrderBillingDAO(orderBillingDAO);
+		pipeline.setTransactionManager(transactionManager);
+		pipeline.setOrderProcessor(orderProcessor);
+	}
+	
+	@AfterEach
+	public void tearDown() {
+		if (contextMock != null) {
+			contextMock.close();
+		}
+	}
+	
+	@Test
+	public void processBatch_shouldBillAllOrdersInOneTransaction() {
+		Order first = newOrder("order-1");
+		Order second = newOrder("order-2");
+		List<String> uuids = Arrays.asList("order-1", "order-2");
+		when(orderBillingDAO.getOrdersByUuids(uuids)).thenReturn(Arrays.asList(first, second));
+		
+		pipeline.processBatch(uuids);
+		
+		verify(orderBillingDAO).getOrdersByUuids(uuids);
+		verify(orderProcessor).accept(first);
+		verify(orderProcessor).accept(second);
+		verify(transactionManager, times(1)).getTransaction(any());
+		
+		OrderBillingPipelineStatistics statistics = pipeline.getStatistics();
+		assertEquals(2, statistics.getProcessed());
+		assertEquals(0, statistics.getFailed());
+		assertEquals(1, statistics.getBatches());
+		assertFalse(statistics.isRunning());
+	}
+	
+	@Test
+	public void processBatch_shouldRetryOrdersIndividuallyWhenBatchFails() {
+		Order failing = newOrder("order-1");
+		Order healthy = newOrder("order-2");
+		List<String> uuids = Arrays.asList("order-1", "order-2");
+		when(orderBillingDAO.getOrdersByUuids(uuids)).thenReturn(Arrays.asList(failing, healthy));
+		when(orderBillingDAO.getOrdersByUuids(Collections.singletonList("order-1")))
+		        .thenReturn(Collections.singletonList(failing));
+		when(orderBillingDAO.getOrdersByUuids(Collections.singletonList("order-2")))
+		        .thenReturn(Collections.singletonList(healthy));
+		doThrow(new IllegalStateException("boom")).when(orderProcessor).accept(failing);
+		
+		pipeline.processBatch(uuids);
+		
+		verify(orderProcessor, times(2)).accept(failing);
+		verify(orderProcessor, times(1)).accept(healthy);
+		verify(transactionManager, times(3)).getTransaction(any());
+		contextMock.verify(Context::clearSession);
+		
+		OrderBillingPipelineStatistics statistics = pipeline.getStatistics();
+		assertEquals(1, statistics.getProcessed());
+		assertEquals(1, statistics.getFailed());
+	}
+	
+	@Test
+	public void processBatch_shouldSkipUuidsWithoutOrder() {
+		Order order = newOrder("order-1");
+		List<String> uuids = Arrays.asList("order-1", "missing");
+		when(orderBillingDAO.getOrdersByUuids(uuids)).thenReturn(Collections.singletonList(order));
+		
+		pipeline.processBatch(uuids);
+		
+		verify(orderProcessor, times(1)).accept(any());
+		verify(orderProcessor).accept(order);
+		assertEquals(1, pipeline.getStatistics().getProcessed());
+	}
+	
+	private Order newOrder(String uuid) {
+		Order order = new Order();
+		order.setUuid(uuid);
+		return order;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.billing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.openmrs.DrugOrder;
+import org.openmrs.Order;
+import org.openmrs.TestOrder;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.billing.api.billing.impl.DrugOrderBillingStrategy;
+import org.openmrs.module.billing.api.billing.impl.TestOrderBillingStrategy;
+
+public class OrderBillingStrategyRegistryTest {
+	
+	private MockedStatic<Context> contextMock;
+	
+	private DrugOrderBillingStrategy drugStrategy;
+	
+	private TestOrderBillingStrategy testStrategy;
+	
+	private OrderBillingStrategyRegistry registry;
+	
+	@BeforeEach
+	public void setUp() {
+		drugStrategy = new DrugOrderBillingStrategy();
+		testStrategy = new TestOrderBillingStrategy();
+		contextMock = mockStatic(Context.class);
+		contextMock.when(() -> Context.getRegisteredComponents(OrderBillingStrategy.class))
+		        .thenAnswer(inv -> Arrays.asList(drugStrategy, testStrategy));
+		
+		registry = new OrderBillingStrategyRegistry();
+	}
+	
+	@AfterEach
+	public void tearDown() {
+		if (contextMock != null) {
+			contextMock.close();
+		}
+	}
+	
+	@Test
+	public void getStrategy_shouldDispatchByOrderClass() {
+		registry.rebuild();
+		
+		assertSame(drugStrategy, registry.getStrategy(newOrder(new DrugOrder(), Order.Action.NEW)));
+		assertSame(testStrategy, registry.getStrategy(newOrder(new TestOrder(), Order.Action.REVISE)));
+		assertNull(registry.getStrategy(newOrder(new Order(), Order.Action.NEW)));
+	}
+	
+	@Test
+	public void getStrategyChain_shouldOnlyContainStrategiesSupportingClassAndAction() {
+		registry.rebuild();
+		
+		assertEquals(Collections.singletonList(testStrategy), registry.getStrategyChain(TestOrder.class, Order.Action.NEW));
+		assertTrue(registry.getStrategyChain(Order.class, Order.Action.NEW).isEmpty());
+		assertTrue(registry.getStrategyChain(DrugOrder.class, null).isEmpty());
+	}
+	
+	@Test
+	public void getStrategyChain_shouldCacheChainsAndLookUpStrategiesOncePerRebuild() {
+		List<OrderBillingStrategy> first = registry.getStrategyChain(DrugOrder.class, Order.Action.NEW);
+		List<OrderBillingStrategy> second = registry.getStrategyChain(DrugOrder.class, Order.Action.NEW);
+		registry.getStrategyChain(TestOrder.class, Order.Action.NEW);
+		
+		assertSame(first, second);
+		contextMock.verify(() -> Context.getRegisteredComponents(OrderBillingStrategy.class), times(1));
+		
+		registry.rebuild();
+		
+		contextMock.verify(() -> Context.getRegisteredComponents(OrderBillingStrategy.class), times(2));
+	}
+	
+	private Order newOrder(Order order, Order.Action action) {
+		order.setAction(action);
+		return order;
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.billing.impl;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+import org.openmrs.Order;
+import org.openmrs.TestOrder;
+import org.openmrs.module.billing.api.billing.BillingResult;
+import org.openmrs.module.billing.api.model.CashPoint;
+
+/**
+ * Tests for {@link AbstractOrderBillingStrategy}.
+ */
+public class AbstractOrderBillingStrategyTest {
+	
+	@Test
+	public void resolveCashPoint_shouldDelegateToNoArgMethodWhenOnlyThatIsOverridden() {
+		CashPoint cashPoint = new CashPoint();
+		AbstractOrderBillingStrategy strategy = new LegacyStrategy(cashPoint);
+		
+		assertSame(cashPoint, strategy.resolveCashPoint(new TestOrder()));
+	}
+	
+	/**
+	 * A strategy written against the deprecated no-arg cash point method.
+	 */
+	private static class LegacyStrategy extends AbstractOrderBillingStrategy {
+		
+		private final CashPoint cashPoint;
+		
+		LegacyStrategy(CashPoint cashPoint) {
+			this.cashPoint = cashPoint;
+		}
+		
+		@Override
+		protected boolean supportsOrder(Order order) {
+			return true;
+		}
+		
+		@Override
+		protected BillingResult handleNewOrder(Order order) {
+			return BillingResult.skipped("Not billed");
+		}
+		
+		@Override
+		@SuppressWarnings("deprecation")
+		public CashPoint resolveCashPoint() {
+			return cashPoint;
+		}
+	}
+}
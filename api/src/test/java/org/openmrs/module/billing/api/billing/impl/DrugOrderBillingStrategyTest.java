@@ -12,6 +12,10 @@ package org.openmrs.module.billing.api.billing.impl;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
@@ -30,6 +34,9 @@ import org.openmrs.DrugOrder;
 import org.openmrs.TestOrder;
 import org.openmrs.module.billing.api.BillExemptionService;
 import org.openmrs.module.billing.api.ItemPriceService;
+import org.openmrs.module.billing.api.billing.DrugPriceCache;
+import org.openmrs.module.billing.api.billing.DrugPriceCacheStatistics;
+import org.openmrs.module.billing.api.db.OrderBillingDAO;
 import org.openmrs.module.billing.api.model.BillLineItem;
 import org.openmrs.module.billing.api.model.BillLineItemStatus;
 import org.openmrs.module.billing.api.model.CashierItemPrice;
@@ -48,9 +55,14 @@ public class DrugOrderBillingStrategyTest {
 	@Mock
 	private BillExemptionService billExemptionService;
 	
+	@Mock
+	private OrderBillingDAO orderBillingDAO;
+	
 	@InjectMocks
 	private DrugOrderBillingStrategy strategy;
 	
+	private DrugPriceCache drugPriceCache;
+	
 	private Drug drug;
 	
 	private DrugOrder drugOrder;
@@ -69,8 +81,12 @@ public class DrugOrderBillingStrategyTest {
 		drugOrder.setUuid("test-order-uuid");
 		
 		stockItem = new StockItem();
+		stockItem.setId(7);
 		stockItem.setUuid("test-stock-item-uuid");
 		stockItem.setPurchasePrice(new BigDecimal("100.00"));
+		
+		drugPriceCache = new DrugPriceCache();
+		strategy.setDrugPriceCache(drugPriceCache);
 	}
 	
 	@Test
@@ -90,6 +106,7 @@ public class DrugOrderBillingStrategyTest {
 		
 		when(stockManagementService.getStockItemByDrug(1)).thenReturn(Collections.singletonList(stockItem));
 		when(itemPriceService.getItemPrice(stockItem)).thenReturn(Collections.singletonList(itemPrice));
+		when(orderBillingDAO.getStockItemReference(7)).thenReturn(stockItem);
 		
 		Optional<BillLineItem> result = strategy.createBillLineItem(drugOrder);
 		
@@ -105,6 +122,7 @@ public class DrugOrderBillingStrategyTest {
 	public void createBillLineItem_shouldFallBackToPurchasePrice() {
 		when(stockManagementService.getStockItemByDrug(1)).thenReturn(Collections.singletonList(stockItem));
 		when(itemPriceService.getItemPrice(stockItem)).thenReturn(Collections.emptyList());
+		when(orderBillingDAO.getStockItemReference(7)).thenReturn(stockItem);
 		
 		Optional<BillLineItem> result = strategy.createBillLineItem(drugOrder);
 		
@@ -117,6 +135,7 @@ public class DrugOrderBillingStrategyTest {
 		stockItem.setPurchasePrice(null);
 		when(stockManagementService.getStockItemByDrug(1)).thenReturn(Collections.singletonList(stockItem));
 		when(itemPriceService.getItemPrice(stockItem)).thenReturn(Collections.emptyList());
+		when(orderBillingDAO.getStockItemReference(7)).thenReturn(stockItem);
 		
 		Optional<BillLineItem> result = strategy.createBillLineItem(drugOrder);
 		
@@ -147,10 +166,54 @@ public class DrugOrderBillingStrategyTest {
 		drugOrder.setQuantity(null);
 		when(stockManagementService.getStockItemByDrug(1)).thenReturn(Collections.singletonList(stockItem));
 		when(itemPriceService.getItemPrice(stockItem)).thenReturn(Collections.emptyList());
+		when(orderBillingDAO.getStockItemReference(7)).thenReturn(stockItem);
 		
 		Optional<BillLineItem> result = strategy.createBillLineItem(drugOrder);
 		
 		assertTrue(result.isPresent());
 		assertEquals(0, result.get().getQuantity());
 	}
+	
+	@Test
+	public void createBillLineItem_shouldReuseTheCachedStockItemAndPriceForTheSameDrug() {
+		CashierItemPrice itemPrice = new CashierItemPrice();
+		itemPrice.setPrice(new BigDecimal("200.00"));
+		
+		when(stockManagementService.getStockItemByDrug(1)).thenReturn(Collections.singletonList(stockItem));
+		when(itemPriceService.getItemPrice(stockItem)).thenReturn(Collections.singletonList(itemPrice));
+		when(orderBillingDAO.getStockItemReference(7)).thenReturn(stockItem);
+		
+		strategy.createBillLineItem(drugOrder);
+		Optional<BillLineItem> result = strategy.createBillLineItem(drugOrder);
+		
+		assertEquals(new BigDecimal("200.00"), result.get().getPrice());
+		verify(stockManagementService, times(1)).getStockItemByDrug(1);
+		verify(itemPriceService, times(1)).getItemPrice(stockItem);
+		verify(stockManagementService, never()).getStockItemByUuid(anyString());
+		
+		DrugPriceCacheStatistics statistics = drugPriceCache.getStatistics();
+		assertEquals(1, statistics.getHits());
+		assertEquals(1, statistics.getMisses());
+		assertEquals(0.5, statistics.getHitRate());
+	}
+	
+	@Test
+	public void createBillLineItem_shouldReloadThePriceAfterTheCacheIsInvalidated() {
+		CashierItemPrice oldPrice = new CashierItemPrice();
+		oldPrice.setPrice(new BigDecimal("200.00"));
+		CashierItemPrice newPrice = new CashierItemPrice();
+		newPrice.setPrice(new BigDecimal("250.00"));
+		
+		when(stockManagementService.getStockItemByDrug(1)).thenReturn(Collections.singletonList(stockItem));
+		when(itemPriceService.getItemPrice(stockItem)).thenReturn(Collections.singletonList(oldPrice),
+		    Collections.singletonList(newPrice));
+		when(orderBillingDAO.getStockItemReference(7)).thenReturn(stockItem);
+		
+		strategy.createBillLineItem(drugOrder);
+		drugPriceCache.invalidate();
+		Optional<BillLineItem> result = strategy.createBillLineItem(drugOrder);
+		
+		assertEquals(new BigDecimal("250.00"), result.get().getPrice());
+		assertEquals(0, drugPriceCache.getStatistics().getHits());
+	}
 }
@@ -12,9 +12,12 @@ package org.openmrs.module.billing.api.billing.impl;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -32,23 +35,31 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.openmrs.Concept;
 import org.openmrs.DrugOrder;
 import org.openmrs.Encounter;
+import org.openmrs.Location;
 import org.openmrs.Order;
 import org.openmrs.Patient;
 import org.openmrs.Provider;
 import org.openmrs.TestOrder;
 import org.openmrs.Visit;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.module.billing.ModuleSettings;
 import org.openmrs.module.billing.api.BillExemptionService;
 import org.openmrs.module.billing.api.BillService;
 import org.openmrs.module.billing.api.BillableServiceService;
 import org.openmrs.module.billing.api.CashPointService;
 import org.openmrs.module.billing.api.ItemPriceService;
+import org.openmrs.module.billing.api.billing.BillingResult;
+import org.openmrs.module.billing.api.db.OrderBillingDAO;
 import org.openmrs.module.billing.api.model.Bill;
 import org.openmrs.module.billing.api.model.BillLineItem;
 import org.openmrs.module.billing.api.model.BillLineItemStatus;
 import org.openmrs.module.billing.api.model.BillableService;
 import org.openmrs.module.billing.api.model.CashPoint;
 import org.openmrs.module.billing.api.model.CashierItemPrice;
+import org.openmrs.module.billing.api.model.OrderBillingStatus;
 import org.openmrs.module.billing.api.search.BillableServiceSearch;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
 
 @ExtendWith(MockitoExtension.class)
 public class TestOrderBillingStrategyTest {
@@ -68,6 +79,15 @@ public class TestOrderBillingStrategyTest {
 	@Mock
 	private CashPointService cashPointService;
 	
+	@Mock
+	private AdministrationService administrationService;
+	
+	@Mock
+	private PlatformTransactionManager transactionManager;
+	
+	@Mock
+	private OrderBillingDAO orderBillingDAO;
+	
 	@InjectMocks
 	private TestOrderBillingStrategy strategy;
 	
@@ -150,6 +170,30 @@ public class TestOrderBillingStrategyTest {
 		assertFalse(result.isPresent());
 	}
 	
+	@Test
+	public void createBillIfAbsent_shouldSkipOrdersThatHaveAlreadyBeenClaimed() {
+		when(orderBillingDAO.claimOrder(testOrder)).thenReturn(false);
+		
+		BillingResult result = strategy.createBillIfAbsent(testOrder);
+		
+		assertEquals(BillingResult.Action.SKIPPED, result.getAction());
+		verify(billableServiceService, never()).getBillableServices(any(), any());
+		verify(orderBillingDAO, never()).recordOrderBillingOutcome(any(), any(), any(), any());
+	}
+	
+	@Test
+	public void createBillIfAbsent_shouldRecordWhyAClaimedOrderWasNotBilled() {
+		when(orderBillingDAO.claimOrder(testOrder)).thenReturn(true);
+		when(billableServiceService.getBillableServices(any(BillableServiceSearch.class), isNull()))
+		        .thenReturn(Collections.emptyList());
+		
+		BillingResult result = strategy.createBillIfAbsent(testOrder);
+		
+		assertEquals(BillingResult.Action.SKIPPED, result.getAction());
+		verify(orderBillingDAO).recordOrderBillingOutcome(testOrder, OrderBillingStatus.SKIPPED,
+		    "No billable item found for order", null);
+	}
+	
 	@Test
 	public void createBill_shouldInheritVisitFromOrderEncounter() {
 		Patient patient = new Patient();
@@ -163,7 +207,7 @@ public class TestOrderBillingStrategyTest {
 		CashPoint cashPoint = new CashPoint();
 		BillLineItem lineItem = new BillLineItem();
 		
-		when(cashPointService.getAllCashPoints(false)).thenReturn(Collections.singletonList(cashPoint));
+		when(cashPointService.resolveCashPoint(null)).thenReturn(cashPoint);
 		when(billService.saveBill(any(Bill.class))).thenAnswer(inv -> inv.getArgument(0));
 		
 		strategy.createBill(patient, lineItem, order);
@@ -184,7 +228,7 @@ public class TestOrderBillingStrategyTest {
 		CashPoint cashPoint = new CashPoint();
 		BillLineItem lineItem = new BillLineItem();
 		
-		when(cashPointService.getAllCashPoints(false)).thenReturn(Collections.singletonList(cashPoint));
+		when(cashPointService.resolveCashPoint(null)).thenReturn(cashPoint);
 		when(billService.saveBill(any(Bill.class))).thenAnswer(inv -> inv.getArgument(0));
 		
 		strategy.createBill(patient, lineItem, order);
@@ -193,4 +237,96 @@ public class TestOrderBillingStrategyTest {
 		verify(billService).saveBill(captor.capture());
 		assertNull(captor.getValue().getVisit());
 	}
+	
+	@Test
+	public void createBill_shouldUseTheCashPointServingTheEncounterLocation() {
+		Location location = new Location(5);
+		Encounter encounter = new Encounter();
+		encounter.setLocation(location);
+		Order order = new TestOrder();
+		order.setEncounter(encounter);
+		order.setOrderer(new Provider());
+		CashPoint cashPoint = new CashPoint();
+		
+		when(cashPointService.resolveCashPoint(location)).thenReturn(cashPoint);
+		when(billService.saveBill(any(Bill.class))).thenAnswer(inv -> inv.getArgument(0));
+		
+		BillingResult result = strategy.createBill(new Patient(), new BillLineItem(), order);
+		
+		assertSame(cashPoint, result.getBill().getCashPoint());
+	}
+	
+	@Test
+	public void createBill_shouldAppendToPendingBillWhenCoalescingIsEnabled() {
+		Patient patient = new Patient();
+		Visit visit = new Visit();
+		Order order = newOrderInVisit(visit);
+		CashPoint cashPoint = new CashPoint();
+		Bill pendingBill = new Bill();
+		pendingBill.addLineItem(new BillLineItem());
+		BillLineItem lineItem = new BillLineItem();
+		
+		when(administrationService.getGlobalProperty(ModuleSettings.ORDER_BILLING_COALESCE_BILLS_PROPERTY))
+		        .thenReturn("true");
+		when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+		when(cashPointService.resolveCashPoint(null)).thenReturn(cashPoint);
+		when(billService.getPendingBillForUpdate(patient, visit, cashPoint)).thenReturn(pendingBill);
+		when(billService.saveBill(any(Bill.class))).thenAnswer(inv -> inv.getArgument(0));
+		
+		BillingResult result = strategy.createBill(patient, lineItem, order);
+		
+		assertEquals(BillingResult.Action.UPDATED, result.getAction());
+		assertSame(pendingBill, result.getBill());
+		assertEquals(2, pendingBill.getLineItems().size());
+		assertSame(pendingBill, lineItem.getBill());
+		assertEquals(Integer.valueOf(1), lineItem.getLineItemOrder());
+	}
+	
+	@Test
+	public void createBill_shouldCreateBillWhenCoalescingIsEnabledAndNoPendingBillExists() {
+		Patient patient = new Patient();
+		Visit visit = new Visit();
+		Order order = newOrderInVisit(visit);
+		CashPoint cashPoint = new CashPoint();
+		BillLineItem lineItem = new BillLineItem();
+		
+		when(administrationService.getGlobalProperty(ModuleSettings.ORDER_BILLING_COALESCE_BILLS_PROPERTY))
+		        .thenReturn("true");
+		when(transactionManager.getTransaction(any())).thenReturn(mock(TransactionStatus.class));
+		when(cashPointService.resolveCashPoint(null)).thenReturn(cashPoint);
+		when(billService.getPendingBillForUpdate(patient, visit, cashPoint)).thenReturn(null);
+		when(billService.saveBill(any(Bill.class))).thenAnswer(inv -> inv.getArgument(0));
+		
+		BillingResult result = strategy.createBill(patient, lineItem, order);
+		
+		assertEquals(BillingResult.Action.CREATED, result.getAction());
+		assertEquals(visit, result.getBill().getVisit());
+		assertEquals(1, result.getBill().getLineItems().size());
+	}
+	
+	@Test
+	public void createBill_shouldNotLookUpPendingBillWhenCoalescingIsDisabled() {
+		Patient patient = new Patient();
+		Order order = newOrderInVisit(new Visit());
+		CashPoint cashPoint = new CashPoint();
+		
+		when(administrationService.getGlobalProperty(ModuleSettings.ORDER_BILLING_COALESCE_BILLS_PROPERTY))
+		        .thenReturn("false");
+		when(cashPointService.resolveCashPoint(null)).thenReturn(cashPoint);
+		when(billService.saveBill(any(Bill.class))).thenAnswer(inv -> inv.getArgument(0));
+		
+		BillingResult result = strategy.createBill(patient, new BillLineItem(), order);
+		
+		assertEquals(BillingResult.Action.CREATED, result.getAction());
+		verify(billService, never()).getPendingBillForUpdate(any(), any(), any());
+	}
+	
+	private Order newOrderInVisit(Visit visit) {
+		Encounter encounter = new Encounter();
+		encounter.setVisit(visit);
+		Order order = new TestOrder();
+		order.setEncounter(encounter);
+		order.setOrderer(new Provider());
+		return order;
+	}
 }
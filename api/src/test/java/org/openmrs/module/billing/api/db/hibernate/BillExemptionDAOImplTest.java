@@ -9,6 +9,7 @@
  */
 package org.openmrs.module.billing.api.db.hibernate;
 
+import org.hibernate.Hibernate;
 import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -289,4 +290,19 @@ public class BillExemptionDAOImplTest extends BaseModuleContextSensitiveTest {
 		assertTrue(allExemptions.size() >= 3);
 		assertTrue(allExemptions.stream().noneMatch(BaseOpenmrsMetadata::getRetired));
 	}
+	
+	/**
+	 * @see BillExemptionDAO#getActiveExemptionsWithRules()
+	 */
+	@Test
+	public void getActiveExemptionsWithRules_shouldReturnNonRetiredExemptionsWithInitializedRules() {
+		List<BillExemption> exemptions = dao.getActiveExemptionsWithRules();
+		
+		assertEquals(3, exemptions.size());
+		assertTrue(exemptions.stream().noneMatch(BaseOpenmrsMetadata::getRetired));
+		for (BillExemption exemption : exemptions) {
+			assertTrue(Hibernate.isInitialized(exemption.getRules()));
+			assertEquals(1, exemption.getRules().size());
+		}
+	}
 }
@@ -0,0 +1,128 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.evaluator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mockStatic;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.openmrs.Order;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.billing.api.evaluator.impl.ExpressionExemptionEvaluator;
+import org.springframework.core.Ordered;
+
+public class ExemptionVariableRegistryTest {
+	
+	private MockedStatic<Context> contextMock;
+	
+	private CountingProvider ageProvider;
+	
+	private CountingProvider programsProvider;
+	
+	private CountingProvider overridingAgeProvider;
+	
+	private ExemptionVariableRegistry registry;
+	
+	@BeforeEach
+	public void setUp() {
+		ageProvider = new CountingProvider("patientAge", 4, Ordered.LOWEST_PRECEDENCE);
+		programsProvider = new CountingProvider("activePrograms", Arrays.asList("HIV Program"), Ordered.LOWEST_PRECEDENCE);
+		overridingAgeProvider = new CountingProvider("patientAge", 70, Ordered.HIGHEST_PRECEDENCE);
+		
+		contextMock = mockStatic(Context.class);
+		contextMock.when(() -> Context.getRegisteredComponents(ExemptionVariableProvider.class))
+		        .thenAnswer(inv -> Arrays.asList(ageProvider, programsProvider, overridingAgeProvider));
+		
+		registry = new ExemptionVariableRegistry();
+	}
+	
+	@AfterEach
+	public void tearDown() {
+		if (contextMock != null) {
+			contextMock.close();
+		}
+	}
+	
+	@Test
+	public void createVariables_shouldResolveOnlyTheVariablesThatAreReadAndOnlyOnce() {
+		ExpressionExemptionEvaluator evaluator = new ExpressionExemptionEvaluator();
+		
+		Map<String, Object> variables = registry.createVariables(new Order());
+		
+		assertTrue(evaluator.evaluate("patientAge >= 65", variables));
+		assertTrue(evaluator.evaluate("patientAge between 65 and 120", variables));
+		assertEquals(1, overridingAgeProvider.calls.get());
+		assertEquals(0, programsProvider.calls.get());
+	}
+	
+	@Test
+	public void createVariables_shouldExposeAllRegisteredNamesWithoutResolvingThem() {
+		Map<String, Object> variables = registry.createVariables(new Order());
+		
+		assertEquals(new HashSet<>(Arrays.asList("patientAge", "activePrograms")), variables.keySet());
+		assertTrue(variables.containsKey("activePrograms"));
+		assertFalse(variables.containsKey("insuranceScheme"));
+		assertNull(variables.get("insuranceScheme"));
+		assertEquals(0, programsProvider.calls.get());
+	}
+	
+	@Test
+	public void rebuild_shouldPreferTheProviderThatSortsFirstForDuplicateNames() {
+		registry.rebuild();
+		
+		assertEquals(70, registry.createVariables(new Order()).get("patientAge"));
+		assertEquals(0, ageProvider.calls.get());
+		assertEquals(1, overridingAgeProvider.calls.get());
+	}
+	
+	private static class CountingProvider implements ExemptionVariableProvider, Ordered {
+		
+		private final String name;
+		
+		private final Object value;
+		
+		private final int order;
+		
+		private final AtomicInteger calls = new AtomicInteger();
+		
+		CountingProvider(String name, Object value, int order) {
+			this.name = name;
+			this.value = value;
+			this.order = order;
+		}
+		
+		@Override
+		public String getName() {
+			return name;
+		}
+		
+		@Override
+		public Object getValue(Order order) {
+			calls.incrementAndGet();
+			return value;
+		}
+		
+		@Override
+		public int getOrder() {
+			return order;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.evaluator.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmrs.module.billing.api.evaluator.ScriptType;
+import org.openmrs.module.billing.api.evaluator.expression.CompiledExpression;
+import org.openmrs.module.billing.api.evaluator.expression.ExpressionSyntaxException;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExpressionExemptionEvaluatorTest {
+	
+	private ExpressionExemptionEvaluator evaluator;
+	
+	private Map<String, Object> variables;
+	
+	@BeforeEach
+	public void setup() {
+		evaluator = new ExpressionExemptionEvaluator();
+		
+		Map<String, Object> order = new HashMap<>();
+		order.put("uuid", "order-uuid");
+		order.put("conceptId", 5089);
+		
+		variables = new HashMap<>();
+		variables.put("patientAge", 4);
+		variables.put("activePrograms", Arrays.asList("HIV Program", "TB Program"));
+		variables.put("order", order);
+		variables.put("pregnant", true);
+	}
+	
+	/**
+	 * @see ExpressionExemptionEvaluator#getSupportedType()
+	 */
+	@Test
+	public void getSupportedType_shouldReturnExpression() {
+		assertEquals(ScriptType.EXPRESSION, evaluator.getSupportedType());
+	}
+	
+	/**
+	 * @see ExpressionExemptionEvaluator#evaluate(String, Map)
+	 */
+	@Test
+	public void evaluate_shouldCompareNumbersWhateverTheirType() {
+		assertTrue(evaluator.evaluate("patientAge < 5", variables));
+		assertTrue(evaluator.evaluate("patientAge <= 4", variables));
+		assertTrue(evaluator.evaluate("patientAge == 4.0", variables));
+		assertTrue(evaluator.evaluate("patientAge != 5", variables));
+		assertFalse(evaluator.evaluate("patientAge >= 65", variables));
+		assertTrue(evaluator.evaluate("patientAge > -1", variables));
+	}
+	
+	/**
+	 * @see ExpressionExemptionEvaluator#evaluate(String, Map)
+	 */
+	@Test
+	public void evaluate_shouldCombineConditionsWithPrecedenceAndParentheses() {
+		assertTrue(evaluator.evaluate("patientAge >= 65 or patientAge < 5 and pregnant", variables));
+		assertFalse(evaluator.evaluate("(patientAge >= 65 || patientAge < 5) && !pregnant", variables));
+		assertTrue(evaluator.evaluate("not (patientAge >= 65)", variables));
+		assertTrue(evaluator.evaluate("pregnant", variables));
+		assertFalse(evaluator.evaluate("false", variables));
+	}
+	
+	/**
+	 * @see ExpressionExemptionEvaluator#evaluate(String, Map)
+	 */
+	@Test
+	public void evaluate_shouldCheckMembershipOfCollectionsListsAndRanges() {
+		assertTrue(evaluator.evaluate("'HIV Program' in activePrograms", variables));
+		assertFalse(evaluator.evaluate("\"Malaria Program\" in activePrograms", variables));
+		assertTrue(evaluator.evaluate("'Malaria Program' not in activePrograms", variables));
+		assertTrue(evaluator.evaluate("order.conceptId in [5089, 5090]", variables));
+		assertTrue(evaluator.evaluate("patientAge in 0..4", variables));
+		assertFalse(evaluator.evaluate("patientAge in 5..12", variables));
+		assertTrue(evaluator.evaluate("patientAge between 0 and 4 and order.uuid == 'order-uuid'", variables));
+	}
+	
+	/**
+	 * @see ExpressionExemptionEvaluator#evaluate(String, Map)
+	 */
+	@Test
+	public void evaluate_shouldTreatMissingValuesAsNull() {
+		assertFalse(evaluator.evaluate("patientAge < 5", Collections.emptyMap()));
+		assertTrue(evaluator.evaluate("patient.age == null", variables));
+		assertFalse(evaluator.evaluate("order.conceptId.value == 5089", variables));
+		assertFalse(evaluator.evaluate("'HIV Program' in missingPrograms", null));
+	}
+	
+	/**
+	 * @see ExpressionExemptionEvaluator#compile(String)
+	 */
+	@Test
+	public void compile_shouldCacheCompiledExpressions() {
+		CompiledExpression expression = evaluator.compile("patientAge < 5 or 'HIV Program' in activePrograms");
+		
+		assertSame(expression, evaluator.compile("patientAge < 5 or 'HIV Program' in activePrograms"));
+	}
+	
+	/**
+	 * @see ExpressionExemptionEvaluator#validate(String)
+	 */
+	@Test
+	public void validate_shouldRejectMalformedExpressions() {
+		assertThrows(ExpressionSyntaxException.class, () -> evaluator.validate("patientAge <"));
+		assertThrows(ExpressionSyntaxException.class, () -> evaluator.validate("patientAge < 5 )"));
+		assertThrows(ExpressionSyntaxException.class, () -> evaluator.validate("patientAge = 5"));
+		assertThrows(ExpressionSyntaxException.class, () -> evaluator.validate("'unterminated"));
+		assertThrows(ExpressionSyntaxException.class, () -> evaluator.validate("5"));
+		assertThrows(ExpressionSyntaxException.class, () -> evaluator.validate(" "));
+		assertThrows(ExpressionSyntaxException.class, () -> evaluator.validate(null));
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.evaluator.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures how many exemption rules per second the pooled {@link JSExemptionEvaluator} evaluates,
+ * against the context-per-evaluation approach it replaced. Run it from the api module after
+ * {@code mvn test-compile} with
+ * {@code java -cp <test classpath> org.openmrs.module.billing.api.evaluator.impl.JSExemptionEvaluatorBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JSExemptionEvaluatorBenchmark {
+	
+	private static final String SCRIPT = "patientAge < 5 || order.conceptId === 5497 || activePrograms.length > 3";
+	
+	private JSExemptionEvaluator evaluator;
+	
+	private Map<String, Object> variables;
+	
+	@Setup
+	public void setup() {
+		evaluator = new JSExemptionEvaluator(1);
+		
+		Map<String, Object> order = new HashMap<>();
+		order.put("uuid", "benchmark-order");
+		order.put("conceptId", 5497);
+		
+		variables = new HashMap<>();
+		variables.put("patientAge", 42);
+		variables.put("order", order);
+		variables.put("activePrograms", Arrays.asList("HIV Program"));
+	}
+	
+	@TearDown
+	public void tearDown() {
+		evaluator.close();
+	}
+	
+	@Benchmark
+	public boolean pooled() {
+		return evaluator.evaluate(SCRIPT, variables);
+	}
+	
+	/**
+	 * The evaluation strategy used before contexts were pooled: a new context, re-parsed script and
+	 * freshly built JS objects for every call.
+	 */
+	@Benchmark
+	public boolean contextPerEvaluation() {
+		try (Context context = Context.newBuilder("js").allowAllAccess(false).allowHostClassLookup(className -> false)
+		        .build()) {
+			Value bindings = context.getBindings("js");
+			bindings.putMember("vars", toJSObject(context, variables));
+			for (Map.Entry<String, Object> entry : variables.entrySet()) {
+				Object value = entry.getValue();
+				if (value instanceof Map) {
+					value = toJSObject(context, (Map<?, ?>) value);
+				}
+				bindings.putMember(entry.getKey(), value);
+			}
+			
+			Value result = context.eval("js", SCRIPT);
+			return result.isBoolean() && result.asBoolean();
+		}
+	}
+	
+	private static Value toJSObject(Context context, Map<?, ?> map) {
+		Value jsObject = context.eval("js", "({})");
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			Object value = entry.getValue();
+			if (value instanceof Map) {
+				value = toJSObject(context, (Map<?, ?>) value);
+			}
+			jsObject.putMember(entry.getKey().toString(), value);
+		}
+		return jsObject;
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(JSExemptionEvaluatorBenchmark.class.getSimpleName()).build()).run();
+	}
+}
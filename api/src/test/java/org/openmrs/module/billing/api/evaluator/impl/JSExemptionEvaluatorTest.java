@@ -9,12 +9,20 @@
  */
 package org.openmrs.module.billing.api.evaluator.impl;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.openmrs.module.billing.api.evaluator.ScriptType;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -30,6 +38,11 @@ public class JSExemptionEvaluatorTest {
 		evaluator = new JSExemptionEvaluator();
 	}
 	
+	@AfterEach
+	public void tearDown() {
+		evaluator.close();
+	}
+	
 	/**
 	 * @see JSExemptionEvaluator#getSupportedType()
 	 */
@@ -111,4 +124,158 @@ public class JSExemptionEvaluatorTest {
 			evaluator.evaluate("invalid javascript +++", null);
 		});
 	}
+	
+	/**
+	 * @see JSExemptionEvaluator#evaluate(String, Map)
+	 */
+	@Test
+	public void evaluate_shouldExposeNestedMapsAndLists() {
+		Map<String, Object> order = new HashMap<>();
+		order.put("conceptId", 5497);
+		Map<String, Object> variables = new HashMap<>();
+		variables.put("order", order);
+		variables.put("activePrograms", Arrays.asList("HIV Program", "TB Program"));
+		
+		assertTrue(evaluator.evaluate("order.conceptId === 5497 && vars.order.conceptId === 5497", variables));
+		assertTrue(evaluator.evaluate("activePrograms.length === 2 && activePrograms[1] === 'TB Program'", variables));
+	}
+	
+	/**
+	 * @see JSExemptionEvaluator#evaluate(String, Map)
+	 */
+	@Test
+	public void evaluate_shouldAllowBlockScopedDeclarationsWhenContextIsReused() {
+		evaluator.close();
+		evaluator = new JSExemptionEvaluator(1);
+		Map<String, Object> variables = new HashMap<>();
+		variables.put("age", 10);
+		
+		assertTrue(evaluator.evaluate("let limit = 18; age < limit", variables));
+		assertTrue(evaluator.evaluate("let limit = 18; age < limit", variables));
+	}
+	
+	/**
+	 * @see JSExemptionEvaluator#evaluate(String, Map)
+	 */
+	@Test
+	public void evaluate_shouldNotLeakVariablesBetweenEvaluations() {
+		evaluator.close();
+		evaluator = new JSExemptionEvaluator(1);
+		Map<String, Object> variables = new HashMap<>();
+		variables.put("hasInsurance", true);
+		
+		assertTrue(evaluator.evaluate("hasInsurance", variables));
+		assertTrue(evaluator.evaluate("typeof hasInsurance === 'undefined'", null));
+	}
+	
+	/**
+	 * @see JSExemptionEvaluator#evaluate(String, Map)
+	 */
+	@Test
+	public void evaluate_shouldNotLeakVarDeclarationsToTheNextRule() {
+		evaluator.close();
+		evaluator = new JSExemptionEvaluator(1);
+		
+		assertTrue(evaluator.evaluate("var x = 1; x === 1", null));
+		assertTrue(evaluator.evaluate("typeof x === 'undefined'", null));
+	}
+	
+	/**
+	 * @see JSExemptionEvaluator#evaluate(String, Map)
+	 */
+	@Test
+	public void evaluate_shouldNotLeakImplicitGlobalsOrFunctionsToTheNextRule() {
+		evaluator.close();
+		evaluator = new JSExemptionEvaluator(1);
+		
+		assertTrue(evaluator.evaluate("y = 2; function isAdult(age) { return age >= 18; } y === 2", null));
+		assertTrue(evaluator.evaluate("typeof y === 'undefined' && typeof isAdult === 'undefined'", null));
+	}
+	
+	/**
+	 * @see JSExemptionEvaluator#evaluate(String, Map)
+	 */
+	@Test
+	public void evaluate_shouldRecoverAfterFailedEvaluation() {
+		evaluator.close();
+		evaluator = new JSExemptionEvaluator(1);
+		
+		assertThrows(RuntimeException.class, () -> evaluator.evaluate("undefinedFunction()", null));
+		assertTrue(evaluator.evaluate("true", null));
+	}
+	
+	/**
+	 * @see JSExemptionEvaluator#evaluate(String, Map)
+	 */
+	@Test
+	public void evaluate_shouldEvaluateConcurrentlyWithBoundedPool() throws Exception {
+		evaluator.close();
+		evaluator = new JSExemptionEvaluator(2);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int i = 0; i < 40; i++) {
+				int age = i;
+				results.add(executor.submit(() -> {
+					Map<String, Object> variables = new HashMap<>();
+					variables.put("age", age);
+					return evaluator.evaluate("age < 18", variables);
+				}));
+			}
+			
+			for (int i = 0; i < results.size(); i++) {
+				assertEquals(i < 18, results.get(i).get(30, TimeUnit.SECONDS));
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * @see JSExemptionEvaluator#evaluate(String, Map)
+	 */
+	@Test
+	public void evaluate_shouldHandOverSlotOfDiscardedContextToWaitingCaller() throws Exception {
+		evaluator.close();
+		evaluator = new JSExemptionEvaluator(1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			// Every context is closed after a var declaration, so callers only get a context once a
+			// discarded one has freed its slot
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				results.add(executor.submit(() -> evaluator.evaluate("var flag = true; flag", null)));
+			}
+			
+			for (Future<Boolean> result : results) {
+				assertTrue(result.get(10, TimeUnit.SECONDS));
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * @see JSExemptionEvaluator#evaluate(String, Map)
+	 */
+	@Test
+	public void evaluate_shouldOnlyReadVariablesTheScriptMentions() {
+		List<String> reads = new ArrayList<>();
+		Map<String, Object> variables = new HashMap<String, Object>() {
+			
+			@Override
+			public Object get(Object key) {
+				reads.add(String.valueOf(key));
+				return super.get(key);
+			}
+		};
+		variables.put("age", 10);
+		variables.put("activePrograms", Arrays.asList("HIV Program"));
+		
+		assertTrue(evaluator.evaluate("age < 18 && Math.max(age, 1) === 10", variables));
+		assertEquals(Arrays.asList("age"), reads);
+		assertTrue(evaluator.evaluate("Math.min(age, 1) === 1", variables));
+	}
 }
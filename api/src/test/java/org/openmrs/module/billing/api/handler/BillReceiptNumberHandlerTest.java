@@ -0,0 +1,160 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.openmrs.api.AdministrationService;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.billing.ModuleSettings;
+import org.openmrs.module.billing.api.IReceiptNumberGenerator;
+import org.openmrs.module.billing.api.ReceiptNumberGeneratorFactory;
+import org.openmrs.module.billing.api.model.Bill;
+import org.openmrs.module.billing.api.model.BillStatus;
+
+public class BillReceiptNumberHandlerTest {
+	
+	private MockedStatic<Context> contextMock;
+	
+	private AdministrationService administrationService;
+	
+	private IReceiptNumberGenerator generator;
+	
+	private BillReceiptNumberHandler handler;
+	
+	@BeforeEach
+	public void setUp() {
+		administrationService = mock(AdministrationService.class);
+		contextMock = mockStatic(Context.class);
+		contextMock.when(Context::getAdministrationService).thenReturn(administrationService);
+		
+		generator = mock(IReceiptNumberGenerator.class);
+		when(generator.isLoaded()).thenReturn(true);
+		when(generator.generateNumber(any(Bill.class))).thenReturn("0001");
+		ReceiptNumberGeneratorFactory.setGenerator(generator);
+		
+		handler = new BillReceiptNumberHandler();
+	}
+	
+	@AfterEach
+	public void tearDown() {
+		ReceiptNumberGeneratorFactory.setGenerator(null);
+		if (contextMock != null) {
+			contextMock.close();
+		}
+	}
+	
+	@Test
+	public void handle_shouldNumberPendingBillsByDefault() {
+		Bill bill = newBill(BillStatus.PENDING);
+		
+		handler.handle(bill, null, new Date(), null);
+		
+		assertEquals("0001", bill.getReceiptNumber());
+	}
+	
+	@Test
+	public void handle_shouldNotNumberPendingBillsWhenAssignedOnPost() {
+		setAssignment("ON_POST");
+		Bill bill = newBill(BillStatus.PENDING);
+		
+		handler.handle(bill, null, new Date(), null);
+		
+		assertNull(bill.getReceiptNumber());
+		verify(generator, never()).generateNumber(any(Bill.class));
+	}
+	
+	@Test
+	public void handle_shouldNumberPostedAndPaidBillsWhenAssignedOnPost() {
+		setAssignment("on_post");
+		Bill posted = newBill(BillStatus.POSTED);
+		Bill paid = newBill(BillStatus.PAID);
+		
+		handler.handle(posted, null, new Date(), null);
+		handler.handle(paid, null, new Date(), null);
+		
+		assertEquals("0001", posted.getReceiptNumber());
+		assertEquals("0001", paid.getReceiptNumber());
+	}
+	
+	@Test
+	public void handle_shouldNumberExemptedAndAdjustedBillsWhenAssignedOnPost() {
+		setAssignment("ON_POST");
+		Bill exempted = newBill(BillStatus.EXEMPTED);
+		Bill adjusted = newBill(BillStatus.ADJUSTED);
+		
+		handler.handle(exempted, null, new Date(), null);
+		handler.handle(adjusted, null, new Date(), null);
+		
+		assertEquals("0001", exempted.getReceiptNumber());
+		assertEquals("0001", adjusted.getReceiptNumber());
+	}
+	
+	@Test
+	public void handle_shouldNotNumberCancelledOrVoidedBillsWhenAssignedOnPost() {
+		setAssignment("ON_POST");
+		Bill cancelled = newBill(BillStatus.CANCELLED);
+		Bill voided = newBill(BillStatus.POSTED);
+		voided.setVoided(true);
+		
+		handler.handle(cancelled, null, new Date(), null);
+		handler.handle(voided, null, new Date(), null);
+		
+		assertNull(cancelled.getReceiptNumber());
+		assertNull(voided.getReceiptNumber());
+		verify(generator, never()).generateNumber(any(Bill.class));
+	}
+	
+	@Test
+	public void handle_shouldKeepAnExistingReceiptNumber() {
+		setAssignment("ON_POST");
+		Bill bill = newBill(BillStatus.PAID);
+		bill.setReceiptNumber("0042");
+		
+		handler.handle(bill, null, new Date(), null);
+		
+		assertEquals("0042", bill.getReceiptNumber());
+		verify(generator, never()).generateNumber(any(Bill.class));
+	}
+	
+	@Test
+	public void handle_shouldNumberEveryBillWhenTheAssignmentIsUnknown() {
+		setAssignment("LATER");
+		Bill bill = newBill(BillStatus.PENDING);
+		
+		handler.handle(bill, null, new Date(), null);
+		
+		assertEquals("0001", bill.getReceiptNumber());
+	}
+	
+	private void setAssignment(String assignment) {
+		when(administrationService.getGlobalProperty(ModuleSettings.RECEIPT_NUMBER_ASSIGNMENT_PROPERTY))
+		        .thenReturn(assignment);
+	}
+	
+	private static Bill newBill(BillStatus status) {
+		Bill bill = new Bill();
+		bill.setStatus(status);
+		return bill;
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmrs.module.billing.api.model.SequenceGroupStatistics;
+
+public class AdaptiveBlockSizeTest {
+	
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+	
+	private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+	
+	private AdaptiveBlockSize blockSize;
+	
+	@BeforeEach
+	public void setUp() {
+		blockSize = new AdaptiveBlockSize();
+	}
+	
+	@Test
+	public void next_shouldStartAtTheMinimumSize() {
+		assertEquals(10, blockSize.next(10, 50, 0));
+		assertEquals(100, new AdaptiveBlockSize().next(100, 1000, 0));
+	}
+	
+	@Test
+	public void next_shouldAtMostDoubleTheBlockUpToTheMaximumForBusyGroups() {
+		assertEquals(100, blockSize.next(100, 1000, 0));
+		assertEquals(200, blockSize.next(100, 1000, SECOND));
+		assertEquals(400, blockSize.next(100, 1000, 2 * SECOND));
+		assertEquals(800, blockSize.next(100, 1000, 3 * SECOND));
+		assertEquals(1000, blockSize.next(100, 1000, 4 * SECOND));
+		assertEquals(1000, blockSize.next(100, 1000, 5 * SECOND));
+	}
+	
+	// The first block is sized by a higher minimum so that the later, lower one leaves room to shrink
+	@Test
+	public void next_shouldAtMostHalveTheBlockDownToTheMinimumForIdleGroups() {
+		assertEquals(100, blockSize.next(100, 1000, 0));
+		assertEquals(50, blockSize.next(10, 1000, 10 * MINUTE));
+		assertEquals(25, blockSize.next(10, 1000, 20 * MINUTE));
+		assertEquals(12, blockSize.next(10, 1000, 60 * MINUTE));
+		assertEquals(10, blockSize.next(10, 1000, 120 * MINUTE));
+	}
+	
+	@Test
+	public void next_shouldKeepTheBlockThatLastsTheTargetInterval() {
+		assertEquals(100, blockSize.next(100, 1000, 0));
+		assertEquals(100, blockSize.next(10, 1000, MINUTE));
+		assertEquals(100, blockSize.next(10, 1000, 2 * MINUTE));
+	}
+	
+	@Test
+	public void next_shouldNotMeasureTheRateFromADiscardedBlock() {
+		assertEquals(100, blockSize.next(100, 1000, 0));
+		blockSize.discardCurrentBlock();
+		
+		assertEquals(100, blockSize.next(10, 1000, 1));
+		assertEquals(200, blockSize.next(10, 1000, 1 + SECOND));
+	}
+	
+	@Test
+	public void next_shouldApplyChangedBounds() {
+		assertEquals(100, blockSize.next(100, 1000, 0));
+		
+		assertEquals(40, blockSize.next(10, 40, MINUTE));
+	}
+	
+	@Test
+	public void toStatistics_shouldReportTheBlockSizeAndRefillFrequency() {
+		SequenceGroupStatistics empty = blockSize.toStatistics("main");
+		assertEquals("main", empty.getGroup());
+		assertEquals(0, empty.getBlockSize());
+		assertEquals(0, empty.getRefillCount());
+		assertNull(empty.getLastRefill());
+		assertNull(empty.getAverageRefillIntervalMillis());
+		assertNull(empty.getRefillsPerHour());
+		
+		blockSize.next(100, 1000, 0);
+		blockSize.next(10, 1000, MINUTE);
+		blockSize.next(10, 1000, 2 * MINUTE);
+		
+		SequenceGroupStatistics statistics = blockSize.toStatistics("main");
+		assertEquals(100, statistics.getBlockSize());
+		assertEquals(3, statistics.getRefillCount());
+		assertNotNull(statistics.getLastRefill());
+		assertEquals(Long.valueOf(60000), statistics.getAverageRefillIntervalMillis());
+		assertEquals(60.0, statistics.getRefillsPerHour(), 0.001);
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.openmrs.Concept;
+import org.openmrs.module.billing.api.db.BillExemptionDAO;
+import org.openmrs.module.billing.api.evaluator.ScriptType;
+import org.openmrs.module.billing.api.model.BillExemption;
+import org.openmrs.module.billing.api.model.BillExemptionRule;
+import org.openmrs.module.billing.api.model.ExemptionType;
+
+@ExtendWith(MockitoExtension.class)
+public class BillExemptionCatalogTest {
+	
+	@Mock
+	private BillExemptionDAO billExemptionDAO;
+	
+	private BillExemptionCatalog catalog;
+	
+	@BeforeEach
+	public void setUp() {
+		catalog = new BillExemptionCatalog(billExemptionDAO);
+	}
+	
+	@Test
+	public void getRules_shouldIndexRulesByConceptAndExemptionType() {
+		BillExemptionRule serviceRule = newRule(1, "patientAge < 5", false);
+		BillExemptionRule commodityRule = newRule(2, "patientAge >= 65", false);
+		when(billExemptionDAO.getActiveExemptionsWithRules())
+		        .thenReturn(Arrays.asList(newExemption(100, ExemptionType.SERVICE, serviceRule),
+		            newExemption(100, ExemptionType.COMMODITY, commodityRule)));
+		
+		List<BillExemptionRule> serviceRules = catalog.getRules(100, ExemptionType.SERVICE);
+		assertEquals(1, serviceRules.size());
+		assertEquals(Integer.valueOf(1), serviceRules.get(0).getRuleId());
+		assertEquals("patientAge < 5", serviceRules.get(0).getScript());
+		assertEquals(ScriptType.JAVASCRIPT, serviceRules.get(0).getScriptType());
+		assertNotSame(serviceRule, serviceRules.get(0));
+		
+		assertEquals(1, catalog.getRules(100, ExemptionType.COMMODITY).size());
+		assertTrue(catalog.getRules(100, ExemptionType.BOTH).isEmpty());
+		assertTrue(catalog.getRules(101, ExemptionType.SERVICE).isEmpty());
+	}
+	
+	@Test
+	public void getRules_shouldMergeRulesOfExemptionsForTheSameConceptAndSkipVoidedRules() {
+		when(billExemptionDAO.getActiveExemptionsWithRules()).thenReturn(
+		    Arrays.asList(newExemption(100, ExemptionType.SERVICE, newRule(1, "true", false), newRule(2, "false", true)),
+		        newExemption(100, ExemptionType.SERVICE, newRule(3, "false", false))));
+		
+		List<BillExemptionRule> rules = catalog.getRules(100, ExemptionType.SERVICE);
+		
+		assertEquals(2, rules.size());
+		assertEquals(Integer.valueOf(1), rules.get(0).getRuleId());
+		assertEquals(Integer.valueOf(3), rules.get(1).getRuleId());
+		assertThrows(UnsupportedOperationException.class, () -> rules.add(new BillExemptionRule()));
+	}
+	
+	@Test
+	public void getRules_shouldLoadOnceUntilInvalidated() {
+		when(billExemptionDAO.getActiveExemptionsWithRules())
+		        .thenReturn(Collections.singletonList(newExemption(100, ExemptionType.SERVICE, newRule(1, "true", false))))
+		        .thenReturn(Collections.emptyList());
+		
+		assertEquals(1, catalog.getRules(100, ExemptionType.SERVICE).size());
+		assertEquals(1, catalog.getRules(100, ExemptionType.SERVICE).size());
+		verify(billExemptionDAO, times(1)).getActiveExemptionsWithRules();
+		
+		catalog.invalidate();
+		
+		assertTrue(catalog.getRules(100, ExemptionType.SERVICE).isEmpty());
+		verify(billExemptionDAO, times(2)).getActiveExemptionsWithRules();
+	}
+	
+	@Test
+	public void getRules_shouldRebuildAgainWhenInvalidatedDuringALoad() {
+		when(billExemptionDAO.getActiveExemptionsWithRules()).thenAnswer(invocation -> {
+			catalog.invalidate();
+			return Collections.emptyList();
+		}).thenReturn(Collections.singletonList(newExemption(100, ExemptionType.SERVICE, newRule(1, "true", false))));
+		
+		assertTrue(catalog.getRules(100, ExemptionType.SERVICE).isEmpty());
+		assertEquals(1, catalog.getRules(100, ExemptionType.SERVICE).size());
+		verify(billExemptionDAO, times(2)).getActiveExemptionsWithRules();
+	}
+	
+	@Test
+	public void getRules_shouldReturnEmptyListForMissingConceptOrType() {
+		assertTrue(catalog.getRules(null, ExemptionType.SERVICE).isEmpty());
+		assertTrue(catalog.getRules(100, null).isEmpty());
+	}
+	
+	private BillExemption newExemption(int conceptId, ExemptionType exemptionType, BillExemptionRule... rules) {
+		Concept concept = new Concept(conceptId);
+		BillExemption exemption = new BillExemption();
+		exemption.setConcept(concept);
+		exemption.setExemptionType(exemptionType);
+		exemption.setRules(new ArrayList<>(Arrays.asList(rules)));
+		return exemption;
+	}
+	
+	private BillExemptionRule newRule(int ruleId, String script, boolean voided) {
+		BillExemptionRule rule = new BillExemptionRule();
+		rule.setRuleId(ruleId);
+		rule.setScriptType(ScriptType.JAVASCRIPT);
+		rule.setScript(script);
+		rule.setVoided(voided);
+		return rule;
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmrs.Location;
+import org.openmrs.module.billing.api.model.CashPoint;
+
+public class CashPointLocationIndexTest {
+	
+	private Location hospital;
+	
+	private Location outpatient;
+	
+	private Location pharmacy;
+	
+	private Location clinic;
+	
+	private List<CashPoint> cashPoints;
+	
+	private AtomicInteger loads;
+	
+	private CashPointLocationIndex index;
+	
+	@BeforeEach
+	public void setUp() {
+		hospital = new Location(1);
+		outpatient = newChild(2, hospital);
+		pharmacy = newChild(3, outpatient);
+		clinic = new Location(4);
+		
+		cashPoints = new ArrayList<>(Arrays.asList(newCashPoint(20, hospital), newCashPoint(11, outpatient),
+		    newCashPoint(10, outpatient), newCashPoint(30, clinic)));
+		loads = new AtomicInteger();
+		index = new CashPointLocationIndex(() -> {
+			loads.incrementAndGet();
+			return cashPoints;
+		});
+	}
+	
+	@Test
+	public void resolve_shouldPreferTheLowestNumberedCashPointAtTheLocation() {
+		assertEquals(Integer.valueOf(10), index.resolve(outpatient));
+		assertEquals(Integer.valueOf(20), index.resolve(hospital));
+	}
+	
+	@Test
+	public void resolve_shouldWalkUpTheLocationHierarchy() {
+		assertEquals(Integer.valueOf(10), index.resolve(pharmacy));
+		assertEquals(Integer.valueOf(20), index.resolve(newChild(5, hospital)));
+	}
+	
+	@Test
+	public void resolve_shouldFallBackToTheLowestNumberedCashPoint() {
+		assertEquals(Integer.valueOf(10), index.resolve(new Location(6)));
+		assertEquals(Integer.valueOf(10), index.resolve(null));
+	}
+	
+	@Test
+	public void resolve_shouldStopAtCyclesInTheLocationHierarchy() {
+		Location first = new Location(7);
+		Location second = newChild(8, first);
+		first.setParentLocation(second);
+		
+		assertEquals(Integer.valueOf(10), index.resolve(first));
+	}
+	
+	@Test
+	public void resolve_shouldReturnNullWhenThereAreNoCashPoints() {
+		cashPoints.clear();
+		
+		assertNull(index.resolve(pharmacy));
+	}
+	
+	@Test
+	public void resolve_shouldLoadCashPointsOnceAndRememberResolvedLocations() {
+		index.resolve(pharmacy);
+		
+		pharmacy.setParentLocation(clinic);
+		
+		assertEquals(Integer.valueOf(10), index.resolve(pharmacy));
+		assertEquals(Integer.valueOf(30), index.resolve(clinic));
+		assertEquals(1, loads.get());
+	}
+	
+	@Test
+	public void invalidate_shouldReloadCashPointsOnTheNextLookup() {
+		assertEquals(Integer.valueOf(30), index.resolve(clinic));
+		
+		cashPoints.remove(3);
+		index.invalidate();
+		
+		assertEquals(Integer.valueOf(10), index.resolve(clinic));
+		assertEquals(2, loads.get());
+	}
+	
+	private static Location newChild(int locationId, Location parent) {
+		Location location = new Location(locationId);
+		location.setParentLocation(parent);
+		return location;
+	}
+	
+	private static CashPoint newCashPoint(int cashPointId, Location location) {
+		CashPoint cashPoint = new CashPoint();
+		cashPoint.setId(cashPointId);
+		cashPoint.setLocation(location);
+		return cashPoint;
+	}
+}
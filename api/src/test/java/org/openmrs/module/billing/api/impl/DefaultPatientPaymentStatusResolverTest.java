@@ -10,16 +10,22 @@
 package org.openmrs.module.billing.api.impl;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Map;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -32,7 +38,6 @@ import org.openmrs.Patient;
 import org.openmrs.api.context.Context;
 import org.openmrs.messagesource.MessageSourceService;
 import org.openmrs.module.billing.api.BillService;
-import org.openmrs.module.billing.api.model.Bill;
 import org.openmrs.module.billing.api.model.BillStatus;
 import org.openmrs.module.billing.api.model.PatientPaymentStatus;
 import org.openmrs.module.billing.api.model.PatientPaymentStatusResult;
@@ -40,11 +45,13 @@ import org.openmrs.module.billing.api.model.PatientPaymentStatusResult;
 @ExtendWith(MockitoExtension.class)
 public class DefaultPatientPaymentStatusResolverTest {
 	
-	private static final String PATIENT_UUID = "patient-uuid-123";
+	private static final Integer PATIENT_ID = 123;
 	
 	@Mock
 	private BillService billService;
 	
+	private PatientPaymentStatusCache cache;
+	
 	private DefaultPatientPaymentStatusResolver resolver;
 	
 	private Patient patient;
@@ -63,9 +70,9 @@ public class DefaultPatientPaymentStatusResolverTest {
 		contextMock = mockStatic(Context.class);
 		contextMock.when(Context::getMessageSourceService).thenReturn(messageSourceService);
 		
-		resolver = new DefaultPatientPaymentStatusResolver(billService);
-		patient = new Patient();
-		patient.setUuid(PATIENT_UUID);
+		cache = new PatientPaymentStatusCache();
+		resolver = new DefaultPatientPaymentStatusResolver(billService, cache);
+		patient = patient(PATIENT_ID);
 	}
 	
 	@AfterEach
@@ -77,8 +84,6 @@ public class DefaultPatientPaymentStatusResolverTest {
 	
 	@Test
 	public void resolve_shouldReturnUnknownWhenPatientHasNoBills() {
-		when(billService.getBillsByPatientUuid(PATIENT_UUID, null)).thenReturn(Collections.emptyList());
-		
 		PatientPaymentStatusResult result = resolver.resolve(patient);
 		
 		assertEquals(PatientPaymentStatus.UNKNOWN, result.getStatus());
@@ -86,9 +91,8 @@ public class DefaultPatientPaymentStatusResolverTest {
 	}
 	
 	@Test
-	public void resolve_shouldReturnUnpaidWhenAnyBillIsPending() {
-		when(billService.getBillsByPatientUuid(PATIENT_UUID, null))
-		        .thenReturn(Collections.singletonList(bill(BillStatus.PENDING, false)));
+	public void resolve_shouldReturnUnpaidWhenAnyBillIsOutstanding() {
+		whenOutstanding(PATIENT_ID);
 		
 		PatientPaymentStatusResult result = resolver.resolve(patient);
 		
@@ -97,70 +101,112 @@ public class DefaultPatientPaymentStatusResolverTest {
 	}
 	
 	@Test
-	public void resolve_shouldReturnUnpaidWhenAnyBillIsPosted() {
-		when(billService.getBillsByPatientUuid(PATIENT_UUID, null))
-		        .thenReturn(Collections.singletonList(bill(BillStatus.POSTED, false)));
+	public void resolve_shouldReturnPaidWhenNoBillIsOutstanding() {
+		whenBilled(PATIENT_ID);
+		
+		PatientPaymentStatusResult result = resolver.resolve(patient);
 		
-		assertEquals(PatientPaymentStatus.UNPAID, resolver.resolve(patient).getStatus());
+		assertEquals(PatientPaymentStatus.PAID, result.getStatus());
+		assertEquals("No outstanding bills", result.getReason());
 	}
 	
 	@Test
-	public void resolve_shouldReturnPaidWhenAllBillsArePaid() {
-		when(billService.getBillsByPatientUuid(PATIENT_UUID, null))
-		        .thenReturn(Arrays.asList(bill(BillStatus.PAID, false), bill(BillStatus.PAID, false)));
-		
-		assertEquals(PatientPaymentStatus.PAID, resolver.resolve(patient).getStatus());
+	public void resolve_shouldTreatPendingAndPostedBillsAsOutstanding() {
+		assertEquals(EnumSet.of(BillStatus.PENDING, BillStatus.POSTED),
+		    DefaultPatientPaymentStatusResolver.OUTSTANDING_STATUSES);
 	}
 	
 	@Test
-	public void resolve_shouldReturnPaidForExemptedAndRefundedBills() {
-		when(billService.getBillsByPatientUuid(PATIENT_UUID, null))
-		        .thenReturn(Arrays.asList(bill(BillStatus.EXEMPTED, false), bill(BillStatus.REFUNDED, false),
-		            bill(BillStatus.PARTIALLY_REFUNDED, false), bill(BillStatus.CANCELLED, false)));
+	public void resolve_shouldNotLookForOtherBillsWhenAnyIsOutstanding() {
+		whenOutstanding(PATIENT_ID);
 		
-		assertEquals(PatientPaymentStatus.PAID, resolver.resolve(patient).getStatus());
+		resolver.resolve(patient);
+		
+		verify(billService).getPatientIdsWithBills(Collections.singleton(PATIENT_ID),
+		    DefaultPatientPaymentStatusResolver.OUTSTANDING_STATUSES);
+		verify(billService, never()).getPatientIdsWithBills(anyCollection(), isNull());
 	}
 	
 	@Test
-	public void resolve_shouldReturnUnknownWhenAllBillsAreVoided() {
-		when(billService.getBillsByPatientUuid(PATIENT_UUID, null))
-		        .thenReturn(Collections.singletonList(bill(BillStatus.PENDING, true)));
+	public void resolve_shouldReturnTheCachedStatusWithoutQueryingBills() {
+		whenOutstanding(PATIENT_ID);
+		resolver.resolve(patient);
 		
 		PatientPaymentStatusResult result = resolver.resolve(patient);
 		
-		assertEquals(PatientPaymentStatus.UNKNOWN, result.getStatus());
-		assertEquals("No bills on record", result.getReason());
+		assertEquals(PatientPaymentStatus.UNPAID, result.getStatus());
+		verify(billService, times(1)).getPatientIdsWithBills(anyCollection(),
+		    eq(DefaultPatientPaymentStatusResolver.OUTSTANDING_STATUSES));
 	}
 	
 	@Test
-	public void resolve_shouldReturnUnknownWhenMultipleBillsAreAllVoided() {
-		when(billService.getBillsByPatientUuid(PATIENT_UUID, null)).thenReturn(
-		    Arrays.asList(bill(BillStatus.PENDING, true), bill(BillStatus.PAID, true), bill(BillStatus.POSTED, true)));
+	public void resolve_shouldQueryBillsAgainOnceThePatientIsEvicted() {
+		whenOutstanding(PATIENT_ID);
+		resolver.resolve(patient);
 		
-		assertEquals(PatientPaymentStatus.UNKNOWN, resolver.resolve(patient).getStatus());
+		cache.evict(PATIENT_ID);
+		when(billService.getPatientIdsWithBills(Collections.singleton(PATIENT_ID),
+		    DefaultPatientPaymentStatusResolver.OUTSTANDING_STATUSES)).thenReturn(Collections.emptySet());
+		whenBilled(PATIENT_ID);
+		
+		assertEquals(PatientPaymentStatus.PAID, resolver.resolve(patient).getStatus());
 	}
 	
 	@Test
-	public void resolve_shouldReturnUnpaidWhenMixHasPendingAlongsidePaid() {
-		when(billService.getBillsByPatientUuid(PATIENT_UUID, null)).thenReturn(
-		    Arrays.asList(bill(BillStatus.PAID, false), bill(BillStatus.PENDING, false), bill(BillStatus.PAID, false)));
+	public void resolve_shouldReturnUnknownForAPatientThatIsNotSaved() {
+		PatientPaymentStatusResult result = resolver.resolve(new Patient());
 		
-		assertEquals(PatientPaymentStatus.UNPAID, resolver.resolve(patient).getStatus());
+		assertEquals(PatientPaymentStatus.UNKNOWN, result.getStatus());
+		verify(billService, never()).getPatientIdsWithBills(anyCollection(),
+		    eq(DefaultPatientPaymentStatusResolver.OUTSTANDING_STATUSES));
 	}
 	
 	@Test
-	public void resolve_shouldPassPatientUuidToBillService() {
-		when(billService.getBillsByPatientUuid(PATIENT_UUID, null)).thenReturn(Collections.emptyList());
+	public void resolveAll_shouldResolveAllPatientsWithOneQueryPerKindOfBill() {
+		Patient unpaid = patient(1);
+		Patient paid = patient(2);
+		Patient unknown = patient(3);
+		when(billService.getPatientIdsWithBills(new HashSet<>(Arrays.asList(1, 2, 3)),
+		    DefaultPatientPaymentStatusResolver.OUTSTANDING_STATUSES)).thenReturn(Collections.singleton(1));
+		when(billService.getPatientIdsWithBills(new HashSet<>(Arrays.asList(2, 3)), null))
+		        .thenReturn(Collections.singleton(2));
 		
-		resolver.resolve(patient);
+		Map<Patient, PatientPaymentStatusResult> results = resolver.resolveAll(Arrays.asList(unpaid, paid, unknown));
 		
-		verify(billService).getBillsByPatientUuid(eq(PATIENT_UUID), isNull());
+		assertEquals(Arrays.asList(unpaid, paid, unknown), Arrays.asList(results.keySet().toArray()));
+		assertEquals(PatientPaymentStatus.UNPAID, results.get(unpaid).getStatus());
+		assertEquals(PatientPaymentStatus.PAID, results.get(paid).getStatus());
+		assertEquals(PatientPaymentStatus.UNKNOWN, results.get(unknown).getStatus());
+	}
+	
+	@Test
+	public void resolveAll_shouldOnlyQueryThePatientsThatAreNotCached() {
+		Patient cached = patient(1);
+		Patient uncached = patient(2);
+		whenOutstanding(1);
+		resolver.resolve(cached);
+		
+		Map<Patient, PatientPaymentStatusResult> results = resolver.resolveAll(Arrays.asList(cached, uncached));
+		
+		assertEquals(PatientPaymentStatus.UNPAID, results.get(cached).getStatus());
+		assertEquals(PatientPaymentStatus.UNKNOWN, results.get(uncached).getStatus());
+		verify(billService).getPatientIdsWithBills(Collections.singleton(2),
+		    DefaultPatientPaymentStatusResolver.OUTSTANDING_STATUSES);
+	}
+	
+	private void whenOutstanding(Integer patientId) {
+		lenient().when(billService.getPatientIdsWithBills(Collections.singleton(patientId),
+		    DefaultPatientPaymentStatusResolver.OUTSTANDING_STATUSES)).thenReturn(Collections.singleton(patientId));
+	}
+	
+	private void whenBilled(Integer patientId) {
+		lenient().when(billService.getPatientIdsWithBills(Collections.singleton(patientId), null))
+		        .thenReturn(Collections.singleton(patientId));
 	}
 	
-	private Bill bill(BillStatus status, boolean voided) {
-		Bill bill = new Bill();
-		bill.setStatus(status);
-		bill.setVoided(voided);
-		return bill;
+	private Patient patient(Integer patientId) {
+		Patient patient = new Patient(patientId);
+		patient.setUuid("patient-uuid-" + patientId);
+		return patient;
 	}
 }
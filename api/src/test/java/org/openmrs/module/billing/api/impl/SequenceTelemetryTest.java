@@ -0,0 +1,96 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmrs.module.billing.api.model.SequenceGroupStatistics;
+
+public class SequenceTelemetryTest {
+	
+	private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+	
+	private SequenceTelemetry telemetry;
+	
+	@BeforeEach
+	public void setUp() {
+		telemetry = new SequenceTelemetry();
+	}
+	
+	@Test
+	public void describe_shouldReportTheOutstandingValuesAsReservedLessIssuedAndAbandoned() {
+		telemetry.recordReserved(100, MILLI);
+		telemetry.recordReserved(100, MILLI);
+		for (int i = 0; i < 30; i++) {
+			telemetry.recordIssued();
+		}
+		telemetry.recordAbandoned(50);
+		telemetry.recordAbandoned(0);
+		
+		SequenceGroupStatistics statistics = describe();
+		
+		assertEquals(200, statistics.getReservedCount());
+		assertEquals(30, statistics.getIssuedCount());
+		assertEquals(50, statistics.getAbandonedCount());
+		assertEquals(120, statistics.getOutstandingCount());
+	}
+	
+	@Test
+	public void describe_shouldCountTheRefillsInTheirLatencyBuckets() {
+		telemetry.recordReserved(10, MILLI / 2);
+		telemetry.recordReserved(10, 3 * MILLI);
+		telemetry.recordReserved(10, 5 * MILLI);
+		telemetry.recordReserved(10, 9000 * MILLI);
+		
+		SequenceGroupStatistics statistics = describe();
+		Map<String, Long> histogram = statistics.getRefillLatencyHistogram();
+		
+		assertEquals(SequenceTelemetry.REFILL_LATENCY_BUCKETS_MILLIS.length + 1, histogram.size());
+		assertEquals(Long.valueOf(1), histogram.get("1"));
+		assertEquals(Long.valueOf(0), histogram.get("2"));
+		assertEquals(Long.valueOf(2), histogram.get("5"));
+		assertEquals(Long.valueOf(1), histogram.get(SequenceTelemetry.OVERFLOW_BUCKET));
+		assertEquals(9000, statistics.getMaxRefillLatencyMillis(), 0.001);
+		assertEquals(9000, statistics.getRefillLatencyP95Millis(), 0.001);
+		assertEquals(2252.125, statistics.getAverageRefillLatencyMillis(), 0.001);
+	}
+	
+	@Test
+	public void describe_shouldReportTheBucketHoldingThe95thPercentile() {
+		for (int i = 0; i < 19; i++) {
+			telemetry.recordReserved(10, 20 * MILLI);
+		}
+		telemetry.recordReserved(10, 400 * MILLI);
+		
+		assertEquals(25, describe().getRefillLatencyP95Millis(), 0.001);
+	}
+	
+	@Test
+	public void describe_shouldLeaveTheLatenciesUnsetBeforeTheFirstRefill() {
+		SequenceGroupStatistics statistics = describe();
+		
+		assertEquals(0, statistics.getReservedCount());
+		assertNull(statistics.getAverageRefillLatencyMillis());
+		assertNull(statistics.getRefillLatencyP95Millis());
+		assertNull(statistics.getMaxRefillLatencyMillis());
+	}
+	
+	private SequenceGroupStatistics describe() {
+		SequenceGroupStatistics.SequenceGroupStatisticsBuilder statistics = SequenceGroupStatistics.builder().group("main");
+		telemetry.describe(statistics);
+		return statistics.build();
+	}
+}
@@ -13,6 +13,7 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -34,13 +35,16 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.openmrs.module.billing.api.ISequentialReceiptNumberGeneratorService;
+import org.openmrs.module.billing.api.db.GroupSequenceDAO;
+import org.openmrs.module.billing.api.model.SequenceGroupStatistics;
 import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.dao.DataIntegrityViolationException;
 
 /**
  * Tests the in-memory pool distribution of
  * {@link SequentialReceiptNumberGeneratorServiceImpl#reserveNextSequence(String)} without a
- * database: the block reservation proxy is replaced with an atomic in-memory counter.
+ * database: the block reservation proxy is replaced with an atomic in-memory counter. Prefetching is
+ * disabled unless a test sets a threshold.
  */
 public class SequentialReceiptNumberGeneratorPoolTest {
 	
@@ -50,12 +54,20 @@ public class SequentialReceiptNumberGeneratorPoolTest {
 	
 	private SequentialReceiptNumberGeneratorServiceImpl service;
 	
+	private double prefetchThreshold;
+	
+	private Set<Thread> reservingThreads;
+	
 	@Before
 	public void before() {
 		blockReserver = mock(ISequentialReceiptNumberGeneratorService.class);
 		
+		prefetchThreshold = 0;
+		reservingThreads = ConcurrentHashMap.newKeySet();
+		
 		ConcurrentHashMap<String, AtomicInteger> counters = new ConcurrentHashMap<>();
 		when(blockReserver.reserveSequenceBlock(anyString(), anyInt())).thenAnswer(invocation -> {
+			reservingThreads.add(Thread.currentThread());
 			String group = invocation.getArgument(0);
 			int blockSize = invocation.getArgument(1);
 			
@@ -73,6 +85,26 @@ public class SequentialReceiptNumberGeneratorPoolTest {
 			protected int getBlockSize() {
 				return BLOCK_SIZE;
 			}
+			
+			@Override
+			protected int getMinBlockSize(int blockSize) {
+				return blockSize;
+			}
+			
+			@Override
+			protected int getMaxBlockSize(int blockSize) {
+				return blockSize;
+			}
+			
+			@Override
+			protected double getPrefetchThreshold() {
+				return prefetchThreshold;
+			}
+			
+			@Override
+			protected int reserveBlockInBackground(String group, int blockSize) {
+				return blockReserver.reserveSequenceBlock(group, blockSize);
+			}
 		};
 	}
 	
@@ -120,6 +152,148 @@ public class SequentialReceiptNumberGeneratorPoolTest {
 		verify(blockReserver, times(total / BLOCK_SIZE)).reserveSequenceBlock("main", BLOCK_SIZE);
 	}
 	
+	@Test
+	public void reserveNextSequence_shouldReserveTheNextBlockInTheBackgroundOnceTheThresholdIsReached() {
+		prefetchThreshold = 0.5;
+		
+		for (int i = 1; i <= BLOCK_SIZE / 2; i++) {
+			Assert.assertEquals(i, service.reserveNextSequence("prefetch"));
+		}
+		verify(blockReserver, timeout(5000).times(2)).reserveSequenceBlock("prefetch", BLOCK_SIZE);
+		
+		for (int i = BLOCK_SIZE / 2 + 1; i <= BLOCK_SIZE + 1; i++) {
+			Assert.assertEquals(i, service.reserveNextSequence("prefetch"));
+		}
+		
+		verify(blockReserver, times(2)).reserveSequenceBlock("prefetch", BLOCK_SIZE);
+		Assert.assertEquals(2, reservingThreads.size());
+		Assert.assertTrue(reservingThreads.contains(Thread.currentThread()));
+	}
+	
+	@Test
+	public void reserveNextSequence_shouldHandOutUniqueGaplessValuesUnderConcurrencyWithPrefetching() throws Exception {
+		prefetchThreshold = 0.5;
+		final int threadCount = 20;
+		final int callsPerThread = 500;
+		final int total = threadCount * callsPerThread;
+		
+		final ConcurrentLinkedQueue<Integer> results = new ConcurrentLinkedQueue<>();
+		final ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+		final CountDownLatch start = new CountDownLatch(1);
+		
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < threadCount; i++) {
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+					for (int call = 0; call < callsPerThread; call++) {
+						results.add(service.reserveNextSequence("prefetch-concurrent"));
+					}
+				}
+				catch (Throwable t) {
+					failures.add(t);
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join(60000);
+		}
+		
+		Assert.assertTrue("Worker threads failed: " + failures, failures.isEmpty());
+		Set<Integer> unique = new HashSet<>(results);
+		Assert.assertEquals("Duplicate sequence values were handed out", total, unique.size());
+		Assert.assertTrue(unique.contains(1));
+		Assert.assertTrue(unique.contains(total));
+	}
+	
+	@Test
+	public void reserveNextSequence_shouldDiscardThePrefetchedBlockWhenThePoolIsInvalidated() {
+		prefetchThreshold = 0.5;
+		
+		for (int i = 1; i <= BLOCK_SIZE / 2; i++) {
+			service.reserveNextSequence("prefetch-invalidated");
+		}
+		verify(blockReserver, timeout(5000).times(2)).reserveSequenceBlock("prefetch-invalidated", BLOCK_SIZE);
+		
+		service.invalidatePool("prefetch-invalidated");
+		
+		Assert.assertEquals(2 * BLOCK_SIZE + 1, service.reserveNextSequence("prefetch-invalidated"));
+		verify(blockReserver, times(3)).reserveSequenceBlock("prefetch-invalidated", BLOCK_SIZE);
+	}
+	
+	@Test
+	public void reserveNextSequence_shouldReserveTheBlockItselfWhenPrefetchingFailed() {
+		prefetchThreshold = 0.5;
+		when(blockReserver.reserveSequenceBlock("prefetch-failing", BLOCK_SIZE)).thenReturn(1)
+		        .thenThrow(new IllegalStateException("boom")).thenReturn(BLOCK_SIZE + 1);
+		
+		for (int i = 1; i <= BLOCK_SIZE; i++) {
+			Assert.assertEquals(i, service.reserveNextSequence("prefetch-failing"));
+		}
+		
+		Assert.assertEquals(BLOCK_SIZE + 1, service.reserveNextSequence("prefetch-failing"));
+		verify(blockReserver, times(3)).reserveSequenceBlock("prefetch-failing", BLOCK_SIZE);
+	}
+	
+	@Test
+	public void reserveNextSequence_shouldReserveTheBlockItselfWhenPrefetchingTakesTooLong() {
+		prefetchThreshold = 0.5;
+		CountDownLatch release = new CountDownLatch(1);
+		when(blockReserver.reserveSequenceBlock("prefetch-slow", BLOCK_SIZE)).thenReturn(1).thenAnswer(invocation -> {
+			release.await();
+			return BLOCK_SIZE + 1;
+		}).thenReturn(2 * BLOCK_SIZE + 1);
+		
+		try {
+			for (int i = 1; i <= BLOCK_SIZE; i++) {
+				Assert.assertEquals(i, service.reserveNextSequence("prefetch-slow"));
+			}
+			
+			Assert.assertEquals(2 * BLOCK_SIZE + 1, service.reserveNextSequence("prefetch-slow"));
+			verify(blockReserver, times(3)).reserveSequenceBlock("prefetch-slow", BLOCK_SIZE);
+		}
+		finally {
+			release.countDown();
+		}
+	}
+	
+	@Test
+	public void onShutdown_shouldCancelPrefetchesThatNeverStarted() {
+		prefetchThreshold = 0.5;
+		service.setGroupSequenceDAO(mock(GroupSequenceDAO.class));
+		CountDownLatch release = new CountDownLatch(1);
+		when(blockReserver.reserveSequenceBlock("prefetch-blocking", BLOCK_SIZE)).thenReturn(1)
+		        .thenAnswer(invocation -> {
+			        release.await();
+			        return BLOCK_SIZE + 1;
+		        });
+		
+		try {
+			for (int i = 1; i <= BLOCK_SIZE / 2; i++) {
+				service.reserveNextSequence("prefetch-blocking");
+			}
+			verify(blockReserver, timeout(5000).times(2)).reserveSequenceBlock("prefetch-blocking", BLOCK_SIZE);
+			
+			// The single prefetch thread is busy, so this group's prefetch stays queued
+			for (int i = 1; i <= BLOCK_SIZE / 2; i++) {
+				service.reserveNextSequence("prefetch-queued");
+			}
+			service.onShutdown();
+			
+			for (int i = BLOCK_SIZE / 2 + 1; i <= BLOCK_SIZE + 1; i++) {
+				Assert.assertEquals(i, service.reserveNextSequence("prefetch-queued"));
+			}
+			verify(blockReserver, times(2)).reserveSequenceBlock("prefetch-queued", BLOCK_SIZE);
+		}
+		finally {
+			release.countDown();
+		}
+	}
+	
 	@Test
 	public void reserveNextSequence_shouldRetryOnceWhenBlockReservationHitsAConstraintViolation() {
 		when(blockReserver.reserveSequenceBlock("race", BLOCK_SIZE))
@@ -173,6 +347,28 @@ public class SequentialReceiptNumberGeneratorPoolTest {
 		verify(blockReserver, times(2)).reserveSequenceBlock("invalidated", BLOCK_SIZE);
 	}
 	
+	@Test
+	public void getSequenceStatistics_shouldCountTheReservedIssuedAndAbandonedValuesOfEachGroup() {
+		for (int i = 0; i < 30; i++) {
+			service.reserveNextSequence("telemetry");
+		}
+		service.invalidatePool("telemetry");
+		service.reserveNextSequence("telemetry");
+		
+		List<SequenceGroupStatistics> statistics = service.getSequenceStatistics();
+		
+		Assert.assertEquals(1, statistics.size());
+		SequenceGroupStatistics telemetry = statistics.get(0);
+		Assert.assertEquals("telemetry", telemetry.getGroup());
+		Assert.assertEquals(2 * BLOCK_SIZE, telemetry.getReservedCount());
+		Assert.assertEquals(31, telemetry.getIssuedCount());
+		Assert.assertEquals(BLOCK_SIZE - 30, telemetry.getAbandonedCount());
+		Assert.assertEquals(BLOCK_SIZE - 1, telemetry.getOutstandingCount());
+		Assert.assertEquals(2, telemetry.getRefillWaitCount());
+		Assert.assertEquals(2L,
+		    telemetry.getRefillLatencyHistogram().values().stream().mapToLong(Long::longValue).sum());
+	}
+	
 	@Test
 	public void reserveNextSequence_shouldThrowIllegalArgumentExceptionIfTheGroupIsNull() {
 		try {
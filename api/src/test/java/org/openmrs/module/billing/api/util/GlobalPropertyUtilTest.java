@@ -0,0 +1,79 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmrs.api.AdministrationService;
+
+public class GlobalPropertyUtilTest {
+	
+	private static final String PROPERTY = "billing.test";
+	
+	private AdministrationService administrationService;
+	
+	@BeforeEach
+	public void setUp() {
+		administrationService = mock(AdministrationService.class);
+	}
+	
+	@Test
+	public void getPositiveIntProperty_shouldReturnTheTrimmedValue() {
+		when(administrationService.getGlobalProperty(PROPERTY)).thenReturn(" 25 ");
+		
+		assertEquals(25, GlobalPropertyUtil.getPositiveIntProperty(administrationService, PROPERTY, 10));
+	}
+	
+	@Test
+	public void getPositiveIntProperty_shouldReturnTheDefaultForBlankNonNumericOrNonPositiveValues() {
+		for (String value : new String[] { null, " ", "ten", "0", "-3" }) {
+			when(administrationService.getGlobalProperty(PROPERTY)).thenReturn(value);
+			
+			assertEquals(10, GlobalPropertyUtil.getPositiveIntProperty(administrationService, PROPERTY, 10),
+			    "Value " + value);
+		}
+	}
+	
+	@Test
+	public void getPositiveIntProperty_shouldReturnTheDefaultWithoutAnAdministrationService() {
+		assertEquals(10, GlobalPropertyUtil.getPositiveIntProperty(null, PROPERTY, 10));
+	}
+	
+	@Test
+	public void getIntProperty_shouldAcceptTheMinimumValue() {
+		when(administrationService.getGlobalProperty(PROPERTY)).thenReturn("0");
+		
+		assertEquals(0, GlobalPropertyUtil.getIntProperty(administrationService, PROPERTY, 0, 60));
+	}
+	
+	@Test
+	public void getDoubleProperty_shouldReturnTheTrimmedValueWithinTheBounds() {
+		for (String value : new String[] { " 0.75 ", "0", "1" }) {
+			when(administrationService.getGlobalProperty(PROPERTY)).thenReturn(value);
+			
+			assertEquals(Double.parseDouble(value.trim()),
+			    GlobalPropertyUtil.getDoubleProperty(administrationService, PROPERTY, 0, 1, 0.5), "Value " + value);
+		}
+	}
+	
+	@Test
+	public void getDoubleProperty_shouldReturnTheDefaultForBlankNonNumericOrOutOfRangeValues() {
+		for (String value : new String[] { null, " ", "half", "-0.1", "1.5", "NaN" }) {
+			when(administrationService.getGlobalProperty(PROPERTY)).thenReturn(value);
+			
+			assertEquals(0.5, GlobalPropertyUtil.getDoubleProperty(administrationService, PROPERTY, 0, 1, 0.5),
+			    "Value " + value);
+		}
+	}
+}
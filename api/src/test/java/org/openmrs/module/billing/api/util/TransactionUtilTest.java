@@ -0,0 +1,48 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.api.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class TransactionUtilTest {
+	
+	@Test
+	public void runNowAndAfterCompletion_shouldRunOnceOutsideATransaction() {
+		AtomicInteger runs = new AtomicInteger();
+		
+		TransactionUtil.runNowAndAfterCompletion(runs::incrementAndGet);
+		
+		assertEquals(1, runs.get());
+	}
+	
+	@Test
+	public void runNowAndAfterCompletion_shouldRunAgainWhenTheTransactionCompletes() {
+		AtomicInteger runs = new AtomicInteger();
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			TransactionUtil.runNowAndAfterCompletion(runs::incrementAndGet);
+			assertEquals(1, runs.get());
+			
+			for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+				synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+			}
+			assertEquals(2, runs.get());
+		}
+		finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+}
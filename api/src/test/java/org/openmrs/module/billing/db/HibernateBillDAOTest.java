@@ -11,15 +11,24 @@ package org.openmrs.module.billing.db;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.openmrs.Patient;
+import org.openmrs.Visit;
 import org.openmrs.api.PatientService;
 import org.openmrs.api.ProviderService;
 import org.openmrs.api.context.Context;
@@ -27,19 +36,31 @@ import org.openmrs.module.billing.TestConstants;
 import org.openmrs.module.billing.api.CashPointService;
 import org.openmrs.module.billing.api.BillDiscountService;
 import org.openmrs.module.billing.api.BillRefundService;
+import org.openmrs.module.billing.api.base.CountStrategy;
+import org.openmrs.module.billing.api.base.KeysetPagingInfo;
 import org.openmrs.module.billing.api.base.PagingInfo;
 import org.openmrs.module.billing.api.db.BillDAO;
 import org.openmrs.module.billing.api.model.Bill;
 import org.openmrs.module.billing.api.model.BillStatus;
+import org.openmrs.module.billing.api.model.BillSummary;
+import org.openmrs.module.billing.api.model.CashPoint;
 import org.openmrs.module.billing.api.model.DiscountStatus;
+import org.openmrs.module.billing.api.model.Payment;
 import org.openmrs.module.billing.api.model.RefundStatus;
+import org.openmrs.module.billing.api.search.BillFetchPlan;
 import org.openmrs.module.billing.api.search.BillSearch;
+import org.openmrs.module.billing.api.search.BillSortOrder;
+import org.openmrs.module.billing.api.search.PatientNameMatchMode;
 import org.openmrs.test.jupiter.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
 
 public class HibernateBillDAOTest extends BaseModuleContextSensitiveTest {
 	
 	private BillDAO billDAO;
 	
+	@Autowired
+	private SessionFactory sessionFactory;
+	
 	private PatientService patientService;
 	
 	private ProviderService providerService;
@@ -147,6 +168,53 @@ public class HibernateBillDAOTest extends BaseModuleContextSensitiveTest {
 		assertNull(bill);
 	}
 	
+	@Test
+	public void getBillByReceiptNumber_shouldLoadARepeatedLookupByIdWithoutQuerying() {
+		assertNotNull(billDAO.getBillByReceiptNumber("test 2 receipt number"));
+		long hits = billDAO.getLookupStatistics().getHits();
+		
+		Statistics statistics = startCountingStatements();
+		try {
+			Bill bill = billDAO.getBillByReceiptNumber("test 2 receipt number");
+			assertEquals(1, bill.getId());
+			assertEquals(0, statistics.getQueryExecutionCount());
+			assertEquals(hits + 1, billDAO.getLookupStatistics().getHits());
+		}
+		finally {
+			statistics.setStatisticsEnabled(false);
+		}
+	}
+	
+	@Test
+	public void getBillByUuid_shouldResolveARepeatedLookupWithAFetchPlanThroughTheCache() {
+		String uuid = billDAO.getBill(1).getUuid();
+		assertNotNull(billDAO.getBillByUuid(uuid, BillFetchPlan.DETAIL));
+		long hits = billDAO.getLookupStatistics().getHits();
+		Context.clearSession();
+		
+		Bill bill = billDAO.getBillByUuid(uuid, BillFetchPlan.DETAIL);
+		assertEquals(1, bill.getId());
+		assertEquals(uuid, bill.getUuid());
+		assertEquals(hits + 1, billDAO.getLookupStatistics().getHits());
+		assertNotNull(bill.getPatient().getUuid());
+	}
+	
+	@Test
+	public void getBillByReceiptNumber_shouldFindTheBillByItsCurrentReceiptNumberAfterItChanges() {
+		Bill bill = billDAO.getBillByReceiptNumber("test 3 receipt number");
+		assertEquals(2, bill.getId());
+		assertNull(billDAO.getBillByReceiptNumber("late receipt number"));
+		
+		bill.setReceiptNumber("late receipt number");
+		billDAO.saveBill(bill);
+		Context.flushSession();
+		
+		long staleEntries = billDAO.getLookupStatistics().getStaleEntries();
+		assertNull(billDAO.getBillByReceiptNumber("test 3 receipt number"));
+		assertEquals(staleEntries + 1, billDAO.getLookupStatistics().getStaleEntries());
+		assertEquals(2, billDAO.getBillByReceiptNumber("late receipt number").getId());
+	}
+	
 	@Test
 	public void getBillsByPatientId_shouldReturnBillsForPatient() {
 		List<Bill> bills = billDAO.getBillsByPatientUuid("5631b434-78aa-102b-91a0-001e378eb67e", null);
@@ -272,6 +340,232 @@ public class HibernateBillDAOTest extends BaseModuleContextSensitiveTest {
 		assertNull(billRefundService.getBillRefundByUuid("b0000000-0000-0000-0000-000000000901"));
 	}
 	
+	@Test
+	public void getBills_shouldPageThroughAllBillsWithContinuationTokens() {
+		List<Integer> expected = billDAO.getBills(new BillSearch(), null).stream().map(Bill::getId)
+		        .collect(Collectors.toList());
+		assertTrue(expected.size() > 2, "Expected more than one page of bills in the test dataset");
+		
+		List<Integer> paged = new ArrayList<>();
+		KeysetPagingInfo pagingInfo = new KeysetPagingInfo(2);
+		while (true) {
+			List<Bill> page = billDAO.getBills(new BillSearch(), pagingInfo);
+			assertTrue(page.size() <= 2);
+			page.forEach(bill -> paged.add(bill.getId()));
+			if (!pagingInfo.hasMoreResults()) {
+				break;
+			}
+			pagingInfo = new KeysetPagingInfo(2, pagingInfo.getNextToken());
+		}
+		
+		assertEquals(expected, paged);
+		assertNull(pagingInfo.getTotalRecordCount());
+	}
+	
+	@Test
+	public void getBills_shouldCountOnlyOnePastTheRequestedPageWhenCapped() {
+		int total = billDAO.getBills(new BillSearch(), null).size();
+		assertTrue(total > 2, "Expected more than two bills in the test dataset");
+		
+		PagingInfo pagingInfo = new PagingInfo(1, 1);
+		pagingInfo.setCountStrategy(CountStrategy.CAPPED);
+		List<Bill> bills = billDAO.getBills(new BillSearch(), pagingInfo);
+		
+		assertEquals(1, bills.size());
+		assertEquals(Long.valueOf(2), pagingInfo.getTotalRecordCount());
+		assertTrue(pagingInfo.hasMoreResults());
+		
+		PagingInfo exact = new PagingInfo(1, 1);
+		billDAO.getBills(new BillSearch(), exact);
+		assertEquals(Long.valueOf(total), exact.getTotalRecordCount());
+	}
+	
+	@Test
+	public void getBills_shouldMatchPatientNamesAnywhereIgnoringCase() {
+		List<Integer> johns = searchByPatientName("john", PatientNameMatchMode.ANYWHERE);
+		assertTrue(johns.containsAll(Arrays.asList(0, 2)));
+		
+		assertTrue(searchByPatientName("mith", PatientNameMatchMode.ANYWHERE).contains(2));
+		
+		List<Integer> johnSmiths = searchByPatientName("John Smith", PatientNameMatchMode.ANYWHERE);
+		assertTrue(johnSmiths.contains(2));
+		assertFalse(johnSmiths.contains(0));
+	}
+	
+	@Test
+	public void getBills_shouldMatchOnlyTheStartOfNamesInPrefixMode() {
+		List<Integer> bills = searchByPatientName("Smi", PatientNameMatchMode.PREFIX);
+		assertTrue(bills.contains(2));
+		assertFalse(bills.contains(0));
+		
+		assertFalse(searchByPatientName("mith", PatientNameMatchMode.PREFIX).contains(2));
+	}
+	
+	@Test
+	public void getBills_shouldIgnoreCaseInPrefixMode() {
+		assertTrue(searchByPatientName("smi", PatientNameMatchMode.PREFIX).contains(2));
+		assertTrue(searchByPatientName("JOHN SMI", PatientNameMatchMode.PREFIX).contains(2));
+		assertTrue(searchByPatientName("test 23", PatientNameMatchMode.PREFIX).contains(1));
+	}
+	
+	@Test
+	public void getBills_shouldMatchOnlyTheStartOfNamesByDefault() {
+		List<Integer> johnSmiths = searchByPatientName("John Smi", null);
+		assertTrue(johnSmiths.contains(2));
+		assertFalse(johnSmiths.contains(0));
+		
+		assertFalse(searchByPatientName("mith", null).contains(2));
+	}
+	
+	@Test
+	public void getBills_shouldMatchPatientIdentifiersByName() {
+		List<Integer> bills = searchByPatientName("Test 23", PatientNameMatchMode.PREFIX);
+		
+		assertTrue(bills.contains(1));
+		assertFalse(bills.contains(0));
+	}
+	
+	@Test
+	public void getBills_shouldTreatLikeWildcardsInPatientNamesAsText() {
+		assertTrue(searchByPatientName("%", PatientNameMatchMode.ANYWHERE).isEmpty());
+		assertTrue(searchByPatientName("J_hn", PatientNameMatchMode.ANYWHERE).isEmpty());
+		assertTrue(searchByPatientName("J_hn", null).isEmpty());
+	}
+	
+	@Test
+	public void getBillSummaries_shouldMatchTheAmountsComputedByTheBills() {
+		executeDataSet(TestConstants.BASE_DATASET_DIR + "BillDiscountStatusFilterTest.xml");
+		storeBillTotals();
+		List<Bill> bills = billDAO.getBills(new BillSearch(), null);
+		List<BillSummary> summaries = billDAO.getBillSummaries(new BillSearch(), null);
+		
+		assertEquals(uuids(bills), summaries.stream().map(BillSummary::getUuid).sorted().collect(Collectors.toList()));
+		for (int i = 0; i < bills.size(); i++) {
+			Bill bill = bills.get(i);
+			BillSummary summary = summaries.get(i);
+			assertEquals(bill.getReceiptNumber(), summary.getReceiptNumber());
+			assertEquals(bill.getPatient().getUuid(), summary.getPatientUuid());
+			assertEquals(bill.getStatus(), summary.getStatus());
+			assertEquals(bill.getDateCreated(), summary.getDateCreated());
+			assertEquals(0, bill.getTotal().compareTo(summary.getTotal()), "Total of " + bill.getUuid());
+			assertEquals(0, bill.getAmountAfterDiscount().compareTo(summary.getAmountAfterDiscount()),
+			    "Amount after discount of " + bill.getUuid());
+			assertEquals(0, bill.getTotalPayments().compareTo(summary.getTotalPayments()),
+			    "Payments of " + bill.getUuid());
+		}
+	}
+	
+	@Test
+	public void getBillSummaries_shouldSubtractOnlyApprovedDiscounts() {
+		executeDataSet(TestConstants.BASE_DATASET_DIR + "BillDiscountStatusFilterTest.xml");
+		storeBillTotals();
+		BillSearch search = BillSearch.builder().discountStatuses(Arrays.asList(DiscountStatus.values())).build();
+		
+		List<BillSummary> summaries = billDAO.getBillSummaries(search, null);
+		
+		// 10% of 100.00 on bill 1002 and 5.00 off the 50.00 line of bill 1004; the rest are not approved
+		assertEquals(0, new BigDecimal("90.00").compareTo(amountAfterDiscount(summaries, "b2000000")));
+		assertEquals(0, new BigDecimal("145.00").compareTo(amountAfterDiscount(summaries, "b4000000")));
+		assertEquals(0, new BigDecimal("100.00").compareTo(amountAfterDiscount(summaries, "b1000000")));
+		assertEquals(0, new BigDecimal("100.00").compareTo(amountAfterDiscount(summaries, "b3000000")));
+		assertTrue(summaries.stream().allMatch(summary -> "John Doe".equals(summary.getPatientName())));
+	}
+	
+	@Test
+	public void getBillSummaries_shouldListBillsOfPatientsWithTwoPreferredNamesOnce() {
+		executeDataSet(TestConstants.BASE_DATASET_DIR + "BillSummaryTest.xml");
+		BillSearch search = BillSearch.builder().patientUuid(patientService.getPatient(0).getUuid()).build();
+		
+		List<Bill> bills = billDAO.getBills(search, null);
+		List<BillSummary> summaries = billDAO.getBillSummaries(search, null);
+		
+		assertFalse(bills.isEmpty());
+		assertEquals(uuids(bills), summaries.stream().map(BillSummary::getUuid).sorted().collect(Collectors.toList()));
+		assertTrue(summaries.stream().allMatch(summary -> "John Doe".equals(summary.getPatientName())));
+	}
+	
+	@Test
+	public void getBills_shouldReturnOnlyBillsWithAtLeastTheMinimumBalance() {
+		executeDataSet(TestConstants.BASE_DATASET_DIR + "BillDiscountStatusFilterTest.xml");
+		storeBillTotals();
+		BigDecimal minBalance = new BigDecimal("100.00");
+		
+		List<Bill> bills = billDAO.getBills(BillSearch.builder().minBalance(minBalance).build(), null);
+		
+		List<Bill> expected = billDAO.getBills(new BillSearch(), null).stream()
+		        .filter(bill -> balance(bill).compareTo(minBalance) >= 0).collect(Collectors.toList());
+		assertFalse(expected.isEmpty());
+		assertEquals(uuids(expected), uuids(bills));
+	}
+	
+	@Test
+	public void getBills_shouldListTheLargestBalancesFirst() {
+		executeDataSet(TestConstants.BASE_DATASET_DIR + "BillDiscountStatusFilterTest.xml");
+		storeBillTotals();
+		
+		List<Bill> bills = billDAO.getBills(BillSearch.builder().sortOrder(BillSortOrder.HIGHEST_BALANCE_FIRST).build(),
+		    null);
+		
+		assertTrue(bills.size() >= 2);
+		for (int i = 0; i < bills.size() - 1; i++) {
+			assertTrue(balance(bills.get(i)).compareTo(balance(bills.get(i + 1))) >= 0,
+			    "Bill " + bills.get(i).getUuid() + " is listed before a larger balance");
+		}
+	}
+	
+	@Test
+	public void getBillSummaries_shouldRejectKeysetPagingOfBillsSortedByBalance() {
+		BillSearch search = BillSearch.builder().sortOrder(BillSortOrder.HIGHEST_BALANCE_FIRST).build();
+		
+		assertThrows(IllegalArgumentException.class, () -> billDAO.getBillSummaries(search, new KeysetPagingInfo(2)));
+		assertThrows(IllegalArgumentException.class, () -> billDAO.getBills(search, new KeysetPagingInfo(2)));
+	}
+	
+	@Test
+	public void getBillSummaries_shouldPageAndCountLikeGetBills() {
+		PagingInfo billPaging = new PagingInfo(1, 2);
+		PagingInfo summaryPaging = new PagingInfo(1, 2);
+		
+		List<Bill> bills = billDAO.getBills(new BillSearch(), billPaging);
+		List<BillSummary> summaries = billDAO.getBillSummaries(new BillSearch(), summaryPaging);
+		
+		assertEquals(uuids(bills), summaries.stream().map(BillSummary::getUuid).sorted().collect(Collectors.toList()));
+		assertEquals(billPaging.getTotalRecordCount(), summaryPaging.getTotalRecordCount());
+	}
+	
+	@Test
+	public void getBills_shouldLoadAPageOfBillsForAListInAConstantNumberOfQueries() {
+		long twoBills = countStatementsToListBills(2);
+		long threeBills = countStatementsToListBills(3);
+		
+		// The bills, then one query each for their line items, payments, payment attributes, discounts and
+		// refunds; loading each bill's collections separately would take 15 queries for three bills
+		assertEquals(twoBills, threeBills);
+		assertTrue(threeBills <= 6, "Expected at most 6 queries but ran " + threeBills);
+	}
+	
+	@Test
+	public void getBillByUuid_shouldLoadTheLineItemsAndPaymentsOfTheDetailPlanInOneQuery() {
+		Bill bill = billDAO.getBill(0);
+		String uuid = bill.getUuid();
+		
+		Statistics statistics = startCountingStatements();
+		try {
+			Bill detail = billDAO.getBillByUuid(uuid, BillFetchPlan.DETAIL);
+			assertEquals(3, detail.getLineItems().size());
+			assertEquals(1, detail.getPayments().size());
+			assertNotNull(detail.getPatient().getUuid());
+			assertNotNull(detail.getCashPoint().getUuid());
+			
+			// The bill query, then at most one for the attributes of its payment
+			long statements = statistics.getPrepareStatementCount();
+			assertTrue(statements <= 2, "Expected at most 2 queries but ran " + statements);
+		}
+		finally {
+			statistics.setStatisticsEnabled(false);
+		}
+	}
+	
 	@Test
 	public void getBills_shouldReturnBillsOrderedByDateCreatedDescending() {
 		BillSearch billSearch = new BillSearch();
@@ -439,7 +733,134 @@ public class HibernateBillDAOTest extends BaseModuleContextSensitiveTest {
 		    "Bill 2005 has only a voided REQUESTED refund — must be excluded even in multi-status query");
 	}
 	
+	@Test
+	public void getPatientIdsWithBills_shouldFindThePatientsWithABillInOneOfTheStatuses() {
+		Set<Integer> patientIds = billDAO.getPatientIdsWithBills(Arrays.asList(0, 1, 2, 999),
+		    Arrays.asList(BillStatus.PENDING, BillStatus.POSTED));
+		
+		assertEquals(new HashSet<>(Arrays.asList(0, 2)), patientIds);
+	}
+	
+	@Test
+	public void getPatientIdsWithBills_shouldFindThePatientsWithAnyBillWhenNoStatusIsGiven() {
+		Set<Integer> patientIds = billDAO.getPatientIdsWithBills(Arrays.asList(0, 1, 2, 999), null);
+		
+		assertEquals(new HashSet<>(Arrays.asList(0, 1, 2)), patientIds);
+	}
+	
+	@Test
+	public void getPatientIdsWithBills_shouldIgnoreVoidedBills() {
+		Bill bill = billDAO.getBill(2);
+		bill.setVoided(true);
+		bill.setVoidReason("test");
+		billDAO.saveBill(bill);
+		Context.flushSession();
+		
+		assertEquals(new HashSet<>(Arrays.asList(0, 1)), billDAO.getPatientIdsWithBills(Arrays.asList(0, 1, 2), null));
+		assertTrue(billDAO.getPatientIdsWithBills(Arrays.asList(0, 1, 2), Collections.singletonList(BillStatus.PENDING))
+		        .isEmpty());
+	}
+	
+	@Test
+	public void getPendingBillForUpdate_shouldReturnPendingBillForPatientVisitAndCashPoint() {
+		Visit visit = Context.getVisitService().getVisit(1);
+		Bill bill = newBillInVisit(visit, cashPointService.getCashPoint(0), BillStatus.PENDING);
+		billDAO.saveBill(bill);
+		Context.flushSession();
+		
+		Bill pendingBill = billDAO.getPendingBillForUpdate(visit.getPatient(), visit, cashPointService.getCashPoint(0));
+		
+		assertNotNull(pendingBill);
+		assertEquals(bill.getUuid(), pendingBill.getUuid());
+	}
+	
+	@Test
+	public void getPendingBillForUpdate_shouldIgnoreBillsThatAreNotPendingOrAtAnotherCashPoint() {
+		Visit visit = Context.getVisitService().getVisit(1);
+		billDAO.saveBill(newBillInVisit(visit, cashPointService.getCashPoint(0), BillStatus.POSTED));
+		billDAO.saveBill(newBillInVisit(visit, cashPointService.getCashPoint(1), BillStatus.PENDING));
+		Context.flushSession();
+		
+		assertNull(billDAO.getPendingBillForUpdate(visit.getPatient(), visit, cashPointService.getCashPoint(0)));
+	}
+	
+	private Bill newBillInVisit(Visit visit, CashPoint cashPoint, BillStatus status) {
+		Bill bill = new Bill();
+		bill.setCashier(providerService.getProvider(0));
+		bill.setPatient(visit.getPatient());
+		bill.setVisit(visit);
+		bill.setCashPoint(cashPoint);
+		bill.setReceiptNumber("TEST-" + UUID.randomUUID());
+		bill.setStatus(status);
+		return bill;
+	}
+	
+	// The test data is inserted directly, without stored totals
+	private void storeBillTotals() {
+		BillSearch billSearch = new BillSearch();
+		billSearch.setIncludeVoided(true);
+		billDAO.getBills(billSearch, null).forEach(Bill::updateStoredTotals);
+		sessionFactory.getCurrentSession().flush();
+	}
+	
+	private BigDecimal balance(Bill bill) {
+		return bill.getTotal().subtract(bill.getTotalDiscount()).subtract(bill.getTotalPayments());
+	}
+	
 	private List<String> uuids(List<Bill> bills) {
 		return bills.stream().map(Bill::getUuid).sorted().collect(Collectors.toList());
 	}
+	
+	private List<Integer> searchByPatientName(String patientName, PatientNameMatchMode matchMode) {
+		BillSearch billSearch = new BillSearch();
+		billSearch.setPatientName(patientName);
+		billSearch.setPatientNameMatchMode(matchMode);
+		return billDAO.getBills(billSearch, null).stream().map(Bill::getId).collect(Collectors.toList());
+	}
+	
+	private long countStatementsToListBills(int pageSize) {
+		BillSearch billSearch = new BillSearch();
+		billSearch.setFetchPlan(BillFetchPlan.LIST);
+		PagingInfo pagingInfo = new PagingInfo(1, pageSize);
+		pagingInfo.setLoadRecordCount(false);
+		
+		Statistics statistics = startCountingStatements();
+		try {
+			List<Bill> bills = billDAO.getBills(billSearch, pagingInfo);
+			assertEquals(pageSize, bills.size());
+			for (Bill bill : bills) {
+				assertNotNull(bill.getPatient().getUuid());
+				assertNotNull(bill.getCashier().getUuid());
+				assertNotNull(bill.getCashPoint().getUuid());
+				bill.getLineItems().size();
+				bill.getDiscounts().size();
+				bill.getRefunds().size();
+				for (Payment payment : bill.getPayments()) {
+					payment.getAttributes().size();
+				}
+			}
+			return statistics.getPrepareStatementCount();
+		}
+		finally {
+			statistics.setStatisticsEnabled(false);
+		}
+	}
+	
+	private Statistics startCountingStatements() {
+		Session session = sessionFactory.getCurrentSession();
+		session.flush();
+		session.clear();
+		sessionFactory.getCache().evictAllRegions();
+		
+		Statistics statistics = sessionFactory.getStatistics();
+		statistics.setStatisticsEnabled(true);
+		statistics.clear();
+		return statistics;
+	}
+	
+	private BigDecimal amountAfterDiscount(List<BillSummary> summaries, String uuidPrefix) {
+		return summaries.stream().filter(summary -> summary.getUuid().startsWith(uuidPrefix)).findFirst()
+		        .map(BillSummary::getAmountAfterDiscount)
+		        .orElseThrow(() -> new AssertionError("No summary of bill " + uuidPrefix));
+	}
 }
@@ -0,0 +1,113 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmrs.Order;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.billing.api.db.OrderBillingDAO;
+import org.openmrs.module.billing.api.db.hibernate.HibernateOrderBillingDAO;
+import org.openmrs.module.billing.api.model.OrderBillingStatus;
+import org.openmrs.test.jupiter.BaseModuleContextSensitiveTest;
+
+/**
+ * Tests for {@link HibernateOrderBillingDAO}.
+ */
+public class HibernateOrderBillingDAOTest extends BaseModuleContextSensitiveTest {
+	
+	private OrderBillingDAO orderBillingDAO;
+	
+	private SessionFactory sessionFactory;
+	
+	@BeforeEach
+	public void setup() {
+		orderBillingDAO = Context.getRegisteredComponent("orderBillingDAO", OrderBillingDAO.class);
+		sessionFactory = Context.getRegisteredComponent("sessionFactory", SessionFactory.class);
+	}
+	
+	/**
+	 * @see HibernateOrderBillingDAO#claimOrder(Order)
+	 */
+	@Test
+	public void claimOrder_shouldClaimUnclaimedOrderOnce() {
+		Order order = Context.getOrderService().getOrder(1);
+		
+		assertTrue(orderBillingDAO.claimOrder(order));
+		assertFalse(orderBillingDAO.claimOrder(order));
+		assertEquals(OrderBillingStatus.CLAIMED, orderBillingDAO.getOrderBillingRecord(order).getStatus());
+	}
+	
+	/**
+	 * @see HibernateOrderBillingDAO#claimOrder(Order)
+	 */
+	@Test
+	public void claimOrder_shouldReclaimSkippedOrder() {
+		Order order = Context.getOrderService().getOrder(1);
+		orderBillingDAO.claimOrder(order);
+		orderBillingDAO.recordOrderBillingOutcome(order, OrderBillingStatus.SKIPPED, "No price", null);
+		
+		assertTrue(orderBillingDAO.claimOrder(order));
+		assertFalse(orderBillingDAO.claimOrder(order));
+	}
+	
+	/**
+	 * @see HibernateOrderBillingDAO#claimOrder(Order)
+	 */
+	@Test
+	public void claimOrder_shouldLeaveTransactionUsableWhenAnotherTransactionClaimedTheOrder() {
+		Order order = Context.getOrderService().getOrder(1);
+		Order otherOrder = Context.getOrderService().getOrder(2);
+		
+		// The winning claim commits in its own transaction before the test transaction tries to claim
+		insertCommittedClaim(order.getOrderId());
+		try {
+			assertFalse(orderBillingDAO.claimOrder(order));
+			
+			Session session = sessionFactory.getCurrentSession();
+			assertFalse(session.getTransaction().getRollbackOnly());
+			
+			assertTrue(orderBillingDAO.claimOrder(otherOrder));
+			session.flush();
+			assertNotNull(orderBillingDAO.getOrderBillingRecord(otherOrder));
+			assertFalse(session.getTransaction().getRollbackOnly());
+		}
+		finally {
+			deleteCommittedClaim(order.getOrderId());
+		}
+	}
+	
+	private void insertCommittedClaim(Integer orderId) {
+		try (Session session = sessionFactory.openSession()) {
+			Transaction transaction = session.beginTransaction();
+			session.createNativeQuery("insert into cashier_order_billing_record (order_id, status, date_created) "
+			        + "values (:orderId, :status, current_timestamp)").setParameter("orderId", orderId)
+			        .setParameter("status", OrderBillingStatus.CLAIMED.name()).executeUpdate();
+			transaction.commit();
+		}
+	}
+	
+	private void deleteCommittedClaim(Integer orderId) {
+		try (Session session = sessionFactory.openSession()) {
+			Transaction transaction = session.beginTransaction();
+			session.createNativeQuery("delete from cashier_order_billing_record where order_id = :orderId")
+			        .setParameter("orderId", orderId).executeUpdate();
+			transaction.commit();
+		}
+	}
+}
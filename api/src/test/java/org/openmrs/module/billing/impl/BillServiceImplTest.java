@@ -13,6 +13,7 @@ import java.math.BigDecimal;
 import java.util.List;
 import java.util.UUID;
 
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.openmrs.Patient;
@@ -28,6 +29,7 @@ import org.openmrs.module.billing.TestConstants;
 import org.openmrs.module.billing.api.BillService;
 import org.openmrs.module.billing.api.CashPointService;
 import org.openmrs.module.billing.api.PaymentModeService;
+import org.openmrs.module.billing.api.base.KeysetPagingInfo;
 import org.openmrs.module.billing.api.base.PagingInfo;
 import org.openmrs.module.billing.api.model.Bill;
 import org.openmrs.module.billing.api.model.BillLineItem;
@@ -634,4 +636,87 @@ public class BillServiceImplTest extends BaseModuleContextSensitiveTest {
 		assertNotNull(reloaded.getVisit());
 		assertEquals(savedVisit.getUuid(), reloaded.getVisit().getUuid());
 	}
+	
+	@Test
+	public void saveBill_shouldKeepTheStoredTotalsCurrent() {
+		Bill bill = billService.getBill(2);
+		BillLineItem lineItem = bill.getLineItems().get(0);
+		lineItem.setPrice(lineItem.getPrice().add(BigDecimal.TEN));
+		BigDecimal total = bill.getTotal();
+		
+		billService.saveBill(bill);
+		Context.flushSession();
+		Context.clearSession();
+		
+		Bill reloaded = billService.getBill(2);
+		assertEquals(0, total.compareTo(reloaded.getStoredTotal()));
+		assertEquals(0, reloaded.getTotalPayments().compareTo(reloaded.getStoredTotalPaid()));
+		assertEquals(0, reloaded.getTotalDiscount().compareTo(reloaded.getStoredTotalDiscount()));
+	}
+	
+	@Test
+	public void saveBill_shouldStoreTheTotalsOfANewBill() {
+		Bill templateBill = billService.getBill(0);
+		
+		Bill newBill = new Bill();
+		newBill.setCashier(providerService.getProvider(0));
+		newBill.setPatient(patientService.getPatient(0));
+		newBill.setCashPoint(cashPointService.getCashPoint(0));
+		newBill.setReceiptNumber("TEST-TOTALS-" + UUID.randomUUID());
+		newBill.setStatus(BillStatus.PENDING);
+		BillLineItem lineItem = newBill.addLineItem(templateBill.getLineItems().get(0).getItem(), BigDecimal.valueOf(40),
+		    "Test price", 3);
+		lineItem.setStatus(BillLineItemStatus.PENDING);
+		
+		Bill saved = billService.saveBill(newBill);
+		Context.flushSession();
+		Context.clearSession();
+		
+		Bill reloaded = billService.getBill(saved.getId());
+		assertEquals(0, BigDecimal.valueOf(120).compareTo(reloaded.getStoredTotal()));
+		assertEquals(0, BigDecimal.ZERO.compareTo(reloaded.getStoredTotalPaid()));
+		assertEquals(0, BigDecimal.ZERO.compareTo(reloaded.getStoredTotalDiscount()));
+	}
+	
+	@Test
+	public void flush_shouldNotReadTheCollectionsOfABillThatCannotHaveChanged() {
+		Bill templateBill = billService.getBill(0);
+		
+		Bill newBill = new Bill();
+		newBill.setCashier(providerService.getProvider(0));
+		newBill.setPatient(patientService.getPatient(0));
+		newBill.setCashPoint(cashPointService.getCashPoint(0));
+		newBill.setReceiptNumber("TEST-TOTALS-" + UUID.randomUUID());
+		newBill.setStatus(BillStatus.PENDING);
+		BillLineItem lineItem = newBill.addLineItem(templateBill.getLineItems().get(0).getItem(), BigDecimal.valueOf(40),
+		    "Test price", 3);
+		lineItem.setStatus(BillLineItemStatus.PENDING);
+		Integer billId = billService.saveBill(newBill).getId();
+		Context.flushSession();
+		Context.clearSession();
+		
+		Bill bill = billService.getBill(billId);
+		bill.setReceiptNumber("TEST-TOTALS-" + UUID.randomUUID());
+		Context.flushSession();
+		
+		// Only the bill itself changed, so its line items, payments and discounts are not loaded
+		assertFalse(Hibernate.isInitialized(bill.getLineItems()));
+		assertFalse(Hibernate.isInitialized(bill.getPayments()));
+		assertFalse(Hibernate.isInitialized(bill.getDiscounts()));
+		assertEquals(0, BigDecimal.valueOf(120).compareTo(bill.getStoredTotal()));
+	}
+	
+	/**
+	 * @see org.openmrs.module.billing.api.impl.BillServiceImpl#checkBillTotals(KeysetPagingInfo)
+	 */
+	@Test
+	public void checkBillTotals_shouldCorrectTheBillsWhoseStoredTotalsDrifted() {
+		// The test data is inserted directly, without stored totals
+		int corrected = billService.checkBillTotals(new KeysetPagingInfo(100));
+		Context.flushSession();
+		Context.clearSession();
+		
+		assertEquals(billService.getBills(new BillSearch(), null).size(), corrected);
+		assertEquals(0, billService.checkBillTotals(new KeysetPagingInfo(100)));
+	}
 }
@@ -0,0 +1,94 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.validator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openmrs.module.billing.api.evaluator.ExemptionRuleEngine;
+import org.openmrs.module.billing.api.evaluator.ScriptType;
+import org.openmrs.module.billing.api.evaluator.impl.ExpressionExemptionEvaluator;
+import org.openmrs.module.billing.api.model.BillExemption;
+import org.openmrs.module.billing.api.model.BillExemptionRule;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+
+public class BillExemptionValidatorTest {
+	
+	private BillExemptionValidator validator;
+	
+	@BeforeEach
+	public void setUp() {
+		validator = new BillExemptionValidator();
+		validator.setExemptionRuleEngine(
+		    new ExemptionRuleEngine(Collections.singletonList(new ExpressionExemptionEvaluator())));
+	}
+	
+	@Test
+	public void validate_shouldAcceptValidExpressionRules() {
+		Errors errors = validate(newRule(ScriptType.EXPRESSION, "patientAge < 5", false));
+		
+		assertFalse(errors.hasErrors());
+	}
+	
+	@Test
+	public void validate_shouldRejectMalformedExpressionRules() {
+		Errors errors = validate(newRule(ScriptType.EXPRESSION, "patientAge <", false));
+		
+		assertTrue(errors.hasErrors());
+		assertEquals("billing.error.exemption.invalidRuleScript", errors.getGlobalError().getCode());
+	}
+	
+	@Test
+	public void validate_shouldRejectRulesWithoutScript() {
+		Errors errors = validate(newRule(ScriptType.EXPRESSION, " ", false));
+		
+		assertTrue(errors.hasErrors());
+		assertEquals("billing.error.exemption.ruleScriptRequired", errors.getGlobalError().getCode());
+	}
+	
+	@Test
+	public void validate_shouldRejectRulesWithUnsupportedScriptType() {
+		Errors errors = validate(newRule(ScriptType.JAVASCRIPT, "patientAge < 5", false));
+		
+		assertTrue(errors.hasErrors());
+		assertEquals("billing.error.exemption.invalidRuleScript", errors.getGlobalError().getCode());
+	}
+	
+	@Test
+	public void validate_shouldIgnoreVoidedRules() {
+		Errors errors = validate(newRule(ScriptType.EXPRESSION, "patientAge <", true));
+		
+		assertFalse(errors.hasErrors());
+	}
+	
+	private Errors validate(BillExemptionRule... rules) {
+		BillExemption exemption = new BillExemption();
+		exemption.setRules(new ArrayList<>(Arrays.asList(rules)));
+		Errors errors = new BeanPropertyBindingResult(exemption, "exemption");
+		validator.validate(exemption, errors);
+		return errors;
+	}
+	
+	private BillExemptionRule newRule(ScriptType scriptType, String script, boolean voided) {
+		BillExemptionRule rule = new BillExemptionRule();
+		rule.setScriptType(scriptType);
+		rule.setScript(script);
+		rule.setVoided(voided);
+		return rule;
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.web.base.resource;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.openmrs.module.billing.api.base.KeysetPagingInfo;
+import org.openmrs.module.webservices.rest.SimpleObject;
+import org.openmrs.module.webservices.rest.web.Hyperlink;
+import org.openmrs.module.webservices.rest.web.RequestContext;
+import org.openmrs.module.webservices.rest.web.resource.api.Converter;
+import org.openmrs.module.webservices.rest.web.resource.impl.AlreadyPaged;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+/**
+ * A page of results loaded with {@link KeysetPagingInfo}. Instead of offset based links it returns
+ * the continuation token of the next page as {@code nextCursor}, with a {@code next} link that
+ * requests that page.
+ *
+ * @param <T> The model class.
+ */
+public class KeysetPaged<T> extends AlreadyPaged<T> {
+	
+	private final RequestContext context;
+	
+	private final KeysetPagingInfo pagingInfo;
+	
+	public KeysetPaged(RequestContext context, List<T> results, KeysetPagingInfo pagingInfo) {
+		super(context, results, pagingInfo.hasMoreResults());
+		this.context = context;
+		this.pagingInfo = pagingInfo;
+	}
+	
+	@Override
+	public SimpleObject toSimpleObject(Converter converter) {
+		SimpleObject result = super.toSimpleObject(converter);
+		result.remove("links");
+		
+		String token = pagingInfo.getNextToken();
+		if (token != null) {
+			String next = ServletUriComponentsBuilder.fromRequest(context.getRequest())
+			        .replaceQueryParam(PagingUtil.CURSOR_PARAMETER, token).replaceQueryParam(PagingUtil.PAGING_PARAMETER)
+			        .replaceQueryParam("startIndex").build().toUriString();
+			result.add("nextCursor", token);
+			result.add("links", Collections.singletonList(new Hyperlink("next", next)));
+		}
+		
+		return result;
+	}
+}
@@ -9,19 +9,89 @@
  */
 package org.openmrs.module.billing.web.base.resource;
 
+import org.apache.commons.lang3.StringUtils;
+import org.openmrs.module.billing.api.base.CountStrategy;
+import org.openmrs.module.billing.api.base.KeysetPagingInfo;
 import org.openmrs.module.billing.api.base.PagingInfo;
 import org.openmrs.module.webservices.rest.web.RequestContext;
+import org.openmrs.module.webservices.rest.web.response.InvalidSearchException;
 
 /**
  * Utility class for extracting paging information from a request
  */
 public class PagingUtil {
 	
+	/**
+	 * Request parameter that asks for keyset paging when set to {@value #KEYSET_PAGING}.
+	 */
+	public static final String PAGING_PARAMETER = "paging";
+	
+	public static final String KEYSET_PAGING = "keyset";
+	
+	/**
+	 * Request parameter holding the continuation token of the previous keyset page.
+	 */
+	public static final String CURSOR_PARAMETER = "cursor";
+	
+	/**
+	 * Request parameter selecting how the total count is loaded; one of the {@link CountStrategy}
+	 * names, case-insensitive.
+	 */
+	public static final String COUNT_STRATEGY_PARAMETER = "countStrategy";
+	
 	private PagingUtil() {
 	}
 	
+	/**
+	 * Gets offset paging information for the requested page, with the count strategy requested by
+	 * the {@code countStrategy} parameter.
+	 *
+	 * @param context The request context.
+	 * @return The paging information.
+	 * @throws InvalidSearchException if the count strategy is not known
+	 */
 	public static PagingInfo getPagingInfoFromContext(RequestContext context) {
 		int page = (context.getStartIndex() / context.getLimit()) + 1;
-		return new PagingInfo(page, context.getLimit());
+		PagingInfo pagingInfo = new PagingInfo(page, context.getLimit());
+		pagingInfo.setCountStrategy(getCountStrategy(context));
+		return pagingInfo;
+	}
+	
+	/**
+	 * Gets keyset paging information when the request asks for it, with {@code paging=keyset} for the
+	 * first page or with the {@code cursor} returned for the previous page.
+	 *
+	 * @param context The request context.
+	 * @return The keyset paging information, or null if the request uses offset paging.
+	 * @throws InvalidSearchException if the cursor is not a valid continuation token
+	 */
+	public static KeysetPagingInfo getKeysetPagingInfoFromContext(RequestContext context) {
+		String cursor = context.getRequest().getParameter(CURSOR_PARAMETER);
+		if (StringUtils.isBlank(cursor)
+		        && !KEYSET_PAGING.equalsIgnoreCase(context.getRequest().getParameter(PAGING_PARAMETER))) {
+			return null;
+		}
+		
+		try {
+			return new KeysetPagingInfo(context.getLimit(), cursor);
+		}
+		catch (IllegalArgumentException ex) {
+			throw new InvalidSearchException(ex.getMessage());
+		}
+	}
+	
+	private static CountStrategy getCountStrategy(RequestContext context) {
+		String value = context.getRequest() == null ? null : context.getRequest().getParameter(COUNT_STRATEGY_PARAMETER);
+		if (StringUtils.isBlank(value)) {
+			return null;
+		}
+		
+		try {
+			return CountStrategy.valueOf(value.trim().toUpperCase());
+		}
+		catch (IllegalArgumentException ex) {
+			throw new InvalidSearchException("Invalid " + COUNT_STRATEGY_PARAMETER + " '" + value + "'; expected one of "
+			        + StringUtils.join(CountStrategy.values(), ", "));
+		}
 	}
 }
@@ -0,0 +1,36 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.web.rest.controller;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.billing.api.billing.DrugPriceCache;
+import org.openmrs.module.billing.api.billing.DrugPriceCacheStatistics;
+import org.openmrs.module.billing.api.util.PrivilegeConstants;
+import org.openmrs.module.webservices.rest.web.RestConstants;
+import org.openmrs.module.webservices.rest.web.v1_0.controller.BaseRestController;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+/**
+ * Exposes how often drug orders were billed with the stock item and price cached for their drug
+ * rather than looked up in the catalog.
+ */
+@Controller
+@RequestMapping("/rest/" + RestConstants.VERSION_1 + "/billing/drugPriceCacheStatistics")
+public class DrugPriceCacheStatisticsController extends BaseRestController {
+	
+	@GetMapping
+	public ResponseEntity<DrugPriceCacheStatistics> getStatistics() {
+		Context.requirePrivilege(PrivilegeConstants.VIEW_METADATA);
+		return ResponseEntity.ok(Context.getRegisteredComponent("drugPriceCache", DrugPriceCache.class).getStatistics());
+	}
+}
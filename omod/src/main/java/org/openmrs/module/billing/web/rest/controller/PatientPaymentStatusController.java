@@ -20,6 +20,13 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 @Controller
 @RequestMapping("/rest/" + RestConstants.VERSION_1 + "/billing/patientPaymentStatus")
@@ -39,4 +46,27 @@ public class PatientPaymentStatusController {
 		PatientPaymentStatusResult result = patientPaymentStatusResolverFactory.getResolver().resolve(patient);
 		return ResponseEntity.ok(result);
 	}
+	
+	/**
+	 * Resolves the payment status of many patients in one call, such as everyone on a ward list. The
+	 * results are keyed by patient UUID; UUIDs that match no patient are left out.
+	 */
+	@GetMapping
+	public ResponseEntity<Map<String, PatientPaymentStatusResult>> getPatientPaymentStatuses(
+	        @RequestParam("patientUuids") List<String> patientUuids) {
+		List<Patient> patients = new ArrayList<>();
+		for (String patientUuid : new LinkedHashSet<>(patientUuids)) {
+			Patient patient = Context.getPatientService().getPatientByUuid(patientUuid);
+			if (patient != null) {
+				patients.add(patient);
+			}
+		}
+		
+		Map<String, PatientPaymentStatusResult> results = new LinkedHashMap<>();
+		if (!patients.isEmpty()) {
+			patientPaymentStatusResolverFactory.getResolver().resolveAll(patients)
+			        .forEach((patient, result) -> results.put(patient.getUuid(), result));
+		}
+		return ResponseEntity.ok(results);
+	}
 }
@@ -12,6 +12,7 @@ package org.openmrs.module.billing.web.rest.controller;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.billing.api.BillService;
 import org.openmrs.module.billing.api.model.Bill;
+import org.openmrs.module.billing.api.search.BillFetchPlan;
 import org.openmrs.module.webservices.rest.web.RestConstants;
 import org.openmrs.module.webservices.rest.web.v1_0.controller.BaseRestController;
 import org.springframework.http.HttpHeaders;
@@ -33,7 +34,7 @@ public class ReceiptController extends BaseRestController {
 	@RequestMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_PDF_VALUE)
 	public ResponseEntity<byte[]> get(@RequestParam(value = "billUuid", required = false) String billUuid) {
 		BillService service = Context.getService(BillService.class);
-		Bill bill = service.getBillByUuid(billUuid);
+		Bill bill = service.getBillByUuid(billUuid, BillFetchPlan.RECEIPT);
 		
 		if (bill == null) {
 			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
@@ -0,0 +1,64 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.web.rest.controller;
+
+import java.util.Date;
+import java.util.List;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.billing.api.ISequentialReceiptNumberGeneratorService;
+import org.openmrs.module.billing.api.base.PagingInfo;
+import org.openmrs.module.billing.api.model.SequenceGroupStatistics;
+import org.openmrs.module.billing.api.model.SequenceUsageSnapshot;
+import org.openmrs.module.webservices.rest.web.RestConstants;
+import org.openmrs.module.webservices.rest.web.RestUtil;
+import org.openmrs.module.webservices.rest.web.v1_0.controller.BaseRestController;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * Exposes how the receipt number sequences are reserved and used: the live statistics of this
+ * server and the usage snapshots persisted by every server.
+ */
+@Controller
+@RequestMapping("/rest/" + RestConstants.VERSION_1 + "/billing/sequenceUsage")
+public class SequenceUsageController extends BaseRestController {
+	
+	@GetMapping
+	public ResponseEntity<List<SequenceGroupStatistics>> getStatistics() {
+		return ResponseEntity.ok(getService().getSequenceStatistics());
+	}
+	
+	/**
+	 * Lists the persisted snapshots, oldest first, a page of {@code limit} snapshots (the REST default
+	 * limit when not given) starting at {@code startIndex}.
+	 */
+	@GetMapping("snapshots")
+	public ResponseEntity<List<SequenceUsageSnapshot>> getSnapshots(
+	        @RequestParam(value = "group", required = false) String group,
+	        @RequestParam(value = "since", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date since,
+	        @RequestParam(value = RestConstants.REQUEST_PROPERTY_FOR_LIMIT, required = false) Integer limit,
+	        @RequestParam(value = RestConstants.REQUEST_PROPERTY_FOR_START_INDEX, defaultValue = "0") int startIndex) {
+		int pageSize = limit == null || limit < 1 ? RestUtil.getDefaultLimit()
+		        : Math.min(limit, RestUtil.getAbsoluteLimit());
+		PagingInfo pagingInfo = PagingInfo.builder().page(Math.max(0, startIndex) / pageSize + 1).pageSize(pageSize)
+		        .build();
+		
+		return ResponseEntity.ok(getService().getSequenceUsageSnapshots(group, since, pagingInfo));
+	}
+	
+	private ISequentialReceiptNumberGeneratorService getService() {
+		return Context.getService(ISequentialReceiptNumberGeneratorService.class);
+	}
+}
@@ -9,6 +9,7 @@
  */
 package org.openmrs.module.billing.web.rest.resource;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -27,6 +28,7 @@ import org.openmrs.module.billing.api.base.ProviderUtil;
 import org.openmrs.module.billing.ModuleSettings;
 import org.openmrs.module.billing.api.BillService;
 import org.openmrs.module.billing.api.ITimesheetService;
+import org.openmrs.module.billing.api.base.KeysetPagingInfo;
 import org.openmrs.module.billing.api.base.PagingInfo;
 import org.openmrs.module.billing.api.model.Bill;
 import org.openmrs.module.billing.api.model.BillDiscount;
@@ -38,10 +40,14 @@ import org.openmrs.module.billing.api.model.DiscountStatus;
 import org.openmrs.module.billing.api.model.Payment;
 import org.openmrs.module.billing.api.model.RefundStatus;
 import org.openmrs.module.billing.api.model.Timesheet;
+import org.openmrs.module.billing.api.search.BillFetchPlan;
 import org.openmrs.module.billing.api.search.BillSearch;
+import org.openmrs.module.billing.api.search.BillSortOrder;
+import org.openmrs.module.billing.api.search.PatientNameMatchMode;
 import org.openmrs.module.billing.api.util.PrivilegeConstants;
 import org.openmrs.module.billing.api.util.RoundingUtil;
 import org.openmrs.module.billing.web.base.resource.BaseRestDataResource;
+import org.openmrs.module.billing.web.base.resource.KeysetPaged;
 import org.openmrs.module.billing.web.base.resource.PagingUtil;
 import org.openmrs.module.billing.web.rest.controller.base.CashierResourceController;
 import org.openmrs.module.webservices.rest.web.RequestContext;
@@ -214,11 +220,16 @@ public class BillResource extends DataDelegatingCrudResource<Bill> {
 	@Override
 	protected AlreadyPaged<Bill> doSearch(RequestContext context) {
 		BillSearch billSearch = buildBillSearchFromRequest(context);
-		PagingInfo pagingInfo = PagingUtil.getPagingInfoFromContext(context);
+		billSearch.setFetchPlan(BillFetchPlan.LIST);
+		KeysetPagingInfo keysetPagingInfo = PagingUtil.getKeysetPagingInfoFromContext(context);
+		PagingInfo pagingInfo = keysetPagingInfo != null ? keysetPagingInfo : PagingUtil.getPagingInfoFromContext(context);
 		
 		BillService service = Context.getService(BillService.class);
 		List<Bill> result = service.getBills(billSearch, pagingInfo);
 		
+		if (keysetPagingInfo != null) {
+			return new KeysetPaged<>(context, result, keysetPagingInfo);
+		}
 		return new AlreadyPaged<>(context, result, pagingInfo.hasMoreResults(), pagingInfo.getTotalRecordCount());
 	}
 	
@@ -234,7 +245,7 @@ public class BillResource extends DataDelegatingCrudResource<Bill> {
 			return null;
 		}
 		
-		return Context.getService(BillService.class).getBillByUuid(uniqueId);
+		return Context.getService(BillService.class).getBillByUuid(uniqueId, BillFetchPlan.DETAIL);
 	}
 	
 	@Override
@@ -321,7 +332,8 @@ public class BillResource extends DataDelegatingCrudResource<Bill> {
 		}
 	}
 	
-	private BillSearch buildBillSearchFromRequest(RequestContext context) {
+	// Shared with BillSummaryResource so both accept the same search parameters
+	static BillSearch buildBillSearchFromRequest(RequestContext context) {
 		BillSearch billSearch = new BillSearch();
 		
 		String patientUuid = context.getRequest().getParameter("patientUuid");
@@ -334,6 +346,11 @@ public class BillResource extends DataDelegatingCrudResource<Bill> {
 			billSearch.setPatientName(patientName);
 		}
 		
+		String patientNameMatchMode = context.getRequest().getParameter("patientNameMatchMode");
+		if (StringUtils.isNotBlank(patientNameMatchMode)) {
+			billSearch.setPatientNameMatchMode(parsePatientNameMatchMode(patientNameMatchMode.trim()));
+		}
+		
 		String status = context.getRequest().getParameter("status");
 		if (StringUtils.isNotBlank(status)) {
 			List<BillStatus> statuses = Arrays.stream(status.split(",")).map(String::trim).filter(StringUtils::isNotBlank)
@@ -371,10 +388,43 @@ public class BillResource extends DataDelegatingCrudResource<Bill> {
 			billSearch.setIncludeVoidedLineItems(Boolean.parseBoolean(includeAll));
 		}
 		
+		String minBalance = context.getRequest().getParameter("minBalance");
+		if (StringUtils.isNotBlank(minBalance)) {
+			billSearch.setMinBalance(parseAmount("minBalance", minBalance.trim()));
+		}
+		
+		String sort = context.getRequest().getParameter("sort");
+		if (StringUtils.isNotBlank(sort)) {
+			billSearch.setSortOrder(parseSortOrder(sort.trim()));
+			if (billSearch.getSortOrder() != BillSortOrder.NEWEST_FIRST
+			        && PagingUtil.getKeysetPagingInfoFromContext(context) != null) {
+				throw new InvalidSearchException("Keyset paging only lists the newest bills first; remove sort=" + sort);
+			}
+		}
+		
 		return billSearch;
 	}
 	
-	private List<DiscountStatus> parseDiscountStatuses(String param) {
+	private static BigDecimal parseAmount(String name, String param) {
+		try {
+			return new BigDecimal(param);
+		}
+		catch (NumberFormatException e) {
+			throw new InvalidSearchException("Invalid " + name + " '" + param + "'. It must be a number");
+		}
+	}
+	
+	private static BillSortOrder parseSortOrder(String param) {
+		if ("balance".equalsIgnoreCase(param)) {
+			return BillSortOrder.HIGHEST_BALANCE_FIRST;
+		}
+		if ("newest".equalsIgnoreCase(param)) {
+			return BillSortOrder.NEWEST_FIRST;
+		}
+		throw new InvalidSearchException("Invalid sort '" + param + "'. Allowed values: [balance, newest]");
+	}
+	
+	private static List<DiscountStatus> parseDiscountStatuses(String param) {
 		return Arrays.stream(param.split(",")).map(String::trim).filter(StringUtils::isNotBlank).map(s -> {
 			try {
 				return DiscountStatus.valueOf(s.toUpperCase(Locale.ROOT));
@@ -386,7 +436,17 @@ public class BillResource extends DataDelegatingCrudResource<Bill> {
 		}).collect(Collectors.toList());
 	}
 	
-	private List<RefundStatus> parseRefundStatuses(String param) {
+	private static PatientNameMatchMode parsePatientNameMatchMode(String param) {
+		try {
+			return PatientNameMatchMode.valueOf(param.toUpperCase(Locale.ROOT));
+		}
+		catch (IllegalArgumentException e) {
+			throw new InvalidSearchException("Invalid patientNameMatchMode '" + param + "'. Allowed values: "
+			        + Arrays.toString(PatientNameMatchMode.values()));
+		}
+	}
+	
+	private static List<RefundStatus> parseRefundStatuses(String param) {
 		return Arrays.stream(param.split(",")).map(String::trim).filter(StringUtils::isNotBlank).map(s -> {
 			try {
 				return RefundStatus.valueOf(s.toUpperCase(Locale.ROOT));
@@ -0,0 +1,114 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.web.rest.resource;
+
+import java.util.List;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.billing.api.BillService;
+import org.openmrs.module.billing.api.base.KeysetPagingInfo;
+import org.openmrs.module.billing.api.base.PagingInfo;
+import org.openmrs.module.billing.api.model.BillSummary;
+import org.openmrs.module.billing.api.search.BillSearch;
+import org.openmrs.module.billing.web.base.resource.KeysetPaged;
+import org.openmrs.module.billing.web.base.resource.PagingUtil;
+import org.openmrs.module.billing.web.rest.controller.base.CashierResourceController;
+import org.openmrs.module.webservices.rest.web.RequestContext;
+import org.openmrs.module.webservices.rest.web.RestConstants;
+import org.openmrs.module.webservices.rest.web.annotation.Resource;
+import org.openmrs.module.webservices.rest.web.representation.DefaultRepresentation;
+import org.openmrs.module.webservices.rest.web.representation.FullRepresentation;
+import org.openmrs.module.webservices.rest.web.representation.Representation;
+import org.openmrs.module.webservices.rest.web.resource.impl.AlreadyPaged;
+import org.openmrs.module.webservices.rest.web.resource.impl.DelegatingCrudResource;
+import org.openmrs.module.webservices.rest.web.resource.impl.DelegatingResourceDescription;
+import org.openmrs.module.webservices.rest.web.response.ResourceDoesNotSupportOperationException;
+import org.openmrs.module.webservices.rest.web.response.ResponseException;
+
+/**
+ * Read-only REST resource listing {@link BillSummary}s. It takes the same search parameters as
+ * {@link BillResource} and its links point to the summarized bills.
+ */
+@Resource(name = RestConstants.VERSION_1 + CashierResourceController.BILLING_NAMESPACE
+        + "/billSummary", supportedClass = BillSummary.class, supportedOpenmrsVersions = { "2.0 - 2.*" })
+public class BillSummaryResource extends DelegatingCrudResource<BillSummary> {
+	
+	@Override
+	public DelegatingResourceDescription getRepresentationDescription(Representation rep) {
+		if (rep instanceof DefaultRepresentation || rep instanceof FullRepresentation) {
+			DelegatingResourceDescription description = new DelegatingResourceDescription();
+			description.addProperty("uuid");
+			description.addProperty("receiptNumber");
+			description.addProperty("patientUuid");
+			description.addProperty("patientName");
+			description.addProperty("status");
+			description.addProperty("total");
+			description.addProperty("amountAfterDiscount");
+			description.addProperty("totalPayments");
+			description.addProperty("dateCreated");
+			description.addSelfLink();
+			return description;
+		}
+		return null;
+	}
+	
+	@Override
+	public String getUri(Object delegate) {
+		if (delegate == null) {
+			return "";
+		}
+		return RestConstants.URI_PREFIX + RestConstants.VERSION_1 + CashierResourceController.BILLING_NAMESPACE + "/bill/"
+		        + ((BillSummary) delegate).getUuid();
+	}
+	
+	@Override
+	protected AlreadyPaged<BillSummary> doGetAll(RequestContext context) throws ResponseException {
+		return doSearch(context);
+	}
+	
+	@Override
+	protected AlreadyPaged<BillSummary> doSearch(RequestContext context) {
+		BillSearch billSearch = BillResource.buildBillSearchFromRequest(context);
+		KeysetPagingInfo keysetPagingInfo = PagingUtil.getKeysetPagingInfoFromContext(context);
+		PagingInfo pagingInfo = keysetPagingInfo != null ? keysetPagingInfo : PagingUtil.getPagingInfoFromContext(context);
+		
+		List<BillSummary> result = Context.getService(BillService.class).getBillSummaries(billSearch, pagingInfo);
+		
+		if (keysetPagingInfo != null) {
+			return new KeysetPaged<>(context, result, keysetPagingInfo);
+		}
+		return new AlreadyPaged<>(context, result, pagingInfo.hasMoreResults(), pagingInfo.getTotalRecordCount());
+	}
+	
+	@Override
+	public BillSummary getByUniqueId(String uniqueId) {
+		throw new ResourceDoesNotSupportOperationException("Bill summaries can only be searched; get the bill instead");
+	}
+	
+	@Override
+	public BillSummary newDelegate() {
+		throw new ResourceDoesNotSupportOperationException("Bill summaries are read-only");
+	}
+	
+	@Override
+	public BillSummary save(BillSummary delegate) {
+		throw new ResourceDoesNotSupportOperationException("Bill summaries are read-only");
+	}
+	
+	@Override
+	protected void delete(BillSummary delegate, String reason, RequestContext context) throws ResponseException {
+		throw new ResourceDoesNotSupportOperationException("Bill summaries are read-only");
+	}
+	
+	@Override
+	public void purge(BillSummary delegate, RequestContext context) throws ResponseException {
+		throw new ResourceDoesNotSupportOperationException("Bill summaries are read-only");
+	}
+}
@@ -11,6 +11,7 @@ package org.openmrs.module.billing.web.rest.controller;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.times;
@@ -18,6 +19,11 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -116,6 +122,45 @@ public class PatientPaymentStatusControllerTest {
 		verify(factory, times(2)).getResolver();
 	}
 	
+	@Test
+	public void getPatientPaymentStatuses_shouldResolveTheFoundPatientsTogetherKeyedByUuid() {
+		Patient first = patientWithUuid("abc");
+		Patient second = patientWithUuid("def");
+		PatientPaymentStatusResult paid = PatientPaymentStatusResult.builder().status(PatientPaymentStatus.PAID).build();
+		PatientPaymentStatusResult unpaid = PatientPaymentStatusResult.builder().status(PatientPaymentStatus.UNPAID)
+		        .build();
+		Map<Patient, PatientPaymentStatusResult> resolved = new LinkedHashMap<>();
+		resolved.put(first, paid);
+		resolved.put(second, unpaid);
+		
+		when(patientService.getPatientByUuid("abc")).thenReturn(first);
+		when(patientService.getPatientByUuid("def")).thenReturn(second);
+		when(patientService.getPatientByUuid("missing")).thenReturn(null);
+		when(factory.getResolver()).thenReturn(resolver);
+		when(resolver.resolveAll(Arrays.asList(first, second))).thenReturn(resolved);
+		
+		ResponseEntity<Map<String, PatientPaymentStatusResult>> response = controller
+		        .getPatientPaymentStatuses(Arrays.asList("abc", "missing", "def", "abc"));
+		
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertEquals(2, response.getBody().size());
+		assertSame(paid, response.getBody().get("abc"));
+		assertSame(unpaid, response.getBody().get("def"));
+		verify(resolver).resolveAll(Arrays.asList(first, second));
+	}
+	
+	@Test
+	public void getPatientPaymentStatuses_shouldReturnAnEmptyMapWhenNoPatientIsFound() {
+		when(patientService.getPatientByUuid("missing")).thenReturn(null);
+		
+		ResponseEntity<Map<String, PatientPaymentStatusResult>> response = controller
+		        .getPatientPaymentStatuses(Collections.singletonList("missing"));
+		
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		assertTrue(response.getBody().isEmpty());
+		verifyNoInteractions(factory);
+	}
+	
 	private Patient patientWithUuid(String uuid) {
 		Patient patient = new Patient();
 		patient.setUuid(uuid);
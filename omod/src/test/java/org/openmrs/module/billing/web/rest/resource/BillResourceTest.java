@@ -24,6 +24,7 @@ import static org.mockito.Mockito.when;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 
@@ -39,6 +40,8 @@ import org.openmrs.Visit;
 import org.openmrs.api.VisitService;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.billing.api.BillService;
+import org.openmrs.module.billing.api.base.CountStrategy;
+import org.openmrs.module.billing.api.base.KeysetPagingInfo;
 import org.openmrs.module.billing.api.base.PagingInfo;
 import org.openmrs.module.billing.api.model.Bill;
 import org.openmrs.module.billing.api.model.BillRefund;
@@ -47,6 +50,7 @@ import org.openmrs.module.billing.api.model.CashPoint;
 import org.openmrs.module.billing.api.model.DiscountStatus;
 import org.openmrs.module.billing.api.model.RefundStatus;
 import org.openmrs.module.billing.api.search.BillSearch;
+import org.openmrs.module.billing.api.search.PatientNameMatchMode;
 import org.openmrs.module.billing.api.util.PrivilegeConstants;
 import org.openmrs.module.webservices.rest.web.RequestContext;
 import org.openmrs.module.webservices.rest.web.representation.Representation;
@@ -67,15 +71,20 @@ public class BillResourceTest {
 	/** Captures the BillSearch passed to billService.getBills() in the current test. */
 	private final List<BillSearch> capturedSearches = new ArrayList<>();
 	
+	/** Captures the PagingInfo passed to billService.getBills() in the current test. */
+	private final List<PagingInfo> capturedPagingInfos = new ArrayList<>();
+	
 	@BeforeEach
 	public void setUp() {
 		resource = new BillResource();
 		billService = mock(BillService.class);
 		capturedSearches.clear();
+		capturedPagingInfos.clear();
 		
 		doAnswer(invocation -> {
 			capturedSearches.add(invocation.getArgument(0));
 			PagingInfo pagingInfo = invocation.getArgument(1);
+			capturedPagingInfos.add(pagingInfo);
 			pagingInfo.setTotalRecordCount(0L);
 			return Collections.emptyList();
 		}).when(billService).getBills(any(), any());
@@ -225,6 +234,110 @@ public class BillResourceTest {
 		assertNull(capturedSearches.get(0).getVisitUuid());
 	}
 	
+	@Test
+	public void doSearch_shouldPassPatientNameMatchModeIntoBillSearch() {
+		RequestContext context = mock(RequestContext.class);
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(context.getRequest()).thenReturn(request);
+		when(request.getParameter("patientName")).thenReturn("Smi");
+		when(request.getParameter("patientNameMatchMode")).thenReturn("prefix");
+		when(context.getLimit()).thenReturn(10);
+		when(context.getStartIndex()).thenReturn(0);
+		
+		resource.doSearch(context);
+		
+		assertEquals("Smi", capturedSearches.get(0).getPatientName());
+		assertEquals(PatientNameMatchMode.PREFIX, capturedSearches.get(0).getPatientNameMatchMode());
+	}
+	
+	@Test
+	public void doSearch_shouldRejectInvalidPatientNameMatchMode() {
+		RequestContext context = mock(RequestContext.class);
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(context.getRequest()).thenReturn(request);
+		when(request.getParameter("patientNameMatchMode")).thenReturn("fuzzy");
+		when(context.getLimit()).thenReturn(10);
+		when(context.getStartIndex()).thenReturn(0);
+		
+		InvalidSearchException ex = assertThrows(InvalidSearchException.class, () -> resource.doSearch(context));
+		assertTrue(ex.getMessage().contains("fuzzy"));
+	}
+	
+	@Test
+	public void doSearch_shouldUseKeysetPagingWhenRequested() {
+		RequestContext context = mock(RequestContext.class);
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(context.getRequest()).thenReturn(request);
+		when(request.getParameter("paging")).thenReturn("keyset");
+		when(context.getLimit()).thenReturn(10);
+		when(context.getStartIndex()).thenReturn(0);
+		
+		resource.doSearch(context);
+		
+		KeysetPagingInfo pagingInfo = (KeysetPagingInfo) capturedPagingInfos.get(0);
+		assertTrue(pagingInfo.isFirstPage());
+		assertEquals(10, pagingInfo.getPageSize());
+	}
+	
+	@Test
+	public void doSearch_shouldContinueFromTheCursor() {
+		KeysetPagingInfo previous = new KeysetPagingInfo(10);
+		previous.setNextPosition(new Date(1700000000000L), 42);
+		
+		RequestContext context = mock(RequestContext.class);
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(context.getRequest()).thenReturn(request);
+		when(request.getParameter("cursor")).thenReturn(previous.getNextToken());
+		when(context.getLimit()).thenReturn(10);
+		when(context.getStartIndex()).thenReturn(0);
+		
+		resource.doSearch(context);
+		
+		KeysetPagingInfo pagingInfo = (KeysetPagingInfo) capturedPagingInfos.get(0);
+		assertEquals(new Date(1700000000000L), pagingInfo.getAfterDateCreated());
+		assertEquals(Integer.valueOf(42), pagingInfo.getAfterId());
+	}
+	
+	@Test
+	public void doSearch_shouldPassTheRequestedCountStrategy() {
+		RequestContext context = mock(RequestContext.class);
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(context.getRequest()).thenReturn(request);
+		when(request.getParameter("countStrategy")).thenReturn("capped");
+		when(context.getLimit()).thenReturn(10);
+		when(context.getStartIndex()).thenReturn(0);
+		
+		resource.doSearch(context);
+		
+		assertEquals(CountStrategy.CAPPED, capturedPagingInfos.get(0).getCountStrategy());
+	}
+	
+	@Test
+	public void doSearch_shouldRejectUnknownCountStrategy() {
+		RequestContext context = mock(RequestContext.class);
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(context.getRequest()).thenReturn(request);
+		when(request.getParameter("countStrategy")).thenReturn("sometimes");
+		when(context.getLimit()).thenReturn(10);
+		when(context.getStartIndex()).thenReturn(0);
+		
+		InvalidSearchException ex = assertThrows(InvalidSearchException.class, () -> resource.doSearch(context));
+		assertTrue(ex.getMessage().contains("sometimes"));
+	}
+	
+	@Test
+	public void doSearch_shouldRejectInvalidCursor() {
+		RequestContext context = mock(RequestContext.class);
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(context.getRequest()).thenReturn(request);
+		when(request.getParameter("cursor")).thenReturn("not-a-cursor");
+		when(context.getLimit()).thenReturn(10);
+		when(context.getStartIndex()).thenReturn(0);
+		
+		assertThrows(InvalidSearchException.class, () -> resource.doSearch(context));
+		assertTrue(capturedSearches.isEmpty());
+	}
+	
 	@Test
 	public void save_shouldAutoPopulateVisitWhenPatientHasSingleActiveVisit() {
 		VisitService visitService = mock(VisitService.class);
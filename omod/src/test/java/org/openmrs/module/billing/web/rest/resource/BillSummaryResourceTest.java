@@ -0,0 +1,154 @@
+/*
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.module.billing.web.rest.resource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.billing.api.BillService;
+import org.openmrs.module.billing.api.base.KeysetPagingInfo;
+import org.openmrs.module.billing.api.base.PagingInfo;
+import org.openmrs.module.billing.api.model.BillStatus;
+import org.openmrs.module.billing.api.model.BillSummary;
+import org.openmrs.module.billing.api.search.BillSearch;
+import org.openmrs.module.billing.api.search.BillSortOrder;
+import org.openmrs.module.webservices.rest.web.RequestContext;
+import org.openmrs.module.webservices.rest.web.response.InvalidSearchException;
+import org.openmrs.module.webservices.rest.web.response.ResourceDoesNotSupportOperationException;
+
+/**
+ * Tests for {@link BillSummaryResource}
+ */
+public class BillSummaryResourceTest {
+	
+	private BillSummaryResource resource;
+	
+	private MockedStatic<Context> contextMock;
+	
+	private final List<BillSearch> capturedSearches = new ArrayList<>();
+	
+	private final List<PagingInfo> capturedPagingInfos = new ArrayList<>();
+	
+	@BeforeEach
+	public void setUp() {
+		resource = new BillSummaryResource();
+		BillService billService = mock(BillService.class);
+		capturedSearches.clear();
+		capturedPagingInfos.clear();
+		
+		doAnswer(invocation -> {
+			capturedSearches.add(invocation.getArgument(0));
+			PagingInfo pagingInfo = invocation.getArgument(1);
+			capturedPagingInfos.add(pagingInfo);
+			pagingInfo.setTotalRecordCount(0L);
+			return Collections.emptyList();
+		}).when(billService).getBillSummaries(any(), any());
+		
+		contextMock = mockStatic(Context.class);
+		contextMock.when(() -> Context.getService(BillService.class)).thenReturn(billService);
+	}
+	
+	@AfterEach
+	public void tearDown() {
+		if (contextMock != null) {
+			contextMock.close();
+		}
+	}
+	
+	@Test
+	public void doSearch_shouldSearchWithTheBillSearchParameters() {
+		RequestContext context = buildContext();
+		when(context.getRequest().getParameter("status")).thenReturn("pending,posted");
+		when(context.getRequest().getParameter("cashPointUuid")).thenReturn("cash-point-uuid");
+		
+		resource.doSearch(context);
+		
+		BillSearch search = capturedSearches.get(0);
+		assertEquals(2, search.getStatuses().size());
+		assertTrue(search.getStatuses().contains(BillStatus.POSTED));
+		assertEquals("cash-point-uuid", search.getCashPointUuid());
+		assertEquals(1, capturedPagingInfos.get(0).getPage());
+		assertEquals(10, capturedPagingInfos.get(0).getPageSize());
+	}
+	
+	@Test
+	public void doGetAll_shouldListEveryBillWithKeysetPagingWhenRequested() {
+		RequestContext context = buildContext();
+		when(context.getRequest().getParameter("paging")).thenReturn("keyset");
+		
+		resource.doGetAll(context);
+		
+		assertNull(capturedSearches.get(0).getStatuses());
+		assertTrue(((KeysetPagingInfo) capturedPagingInfos.get(0)).isFirstPage());
+	}
+	
+	@Test
+	public void doSearch_shouldSearchByBalance() {
+		RequestContext context = buildContext();
+		when(context.getRequest().getParameter("minBalance")).thenReturn("25.50");
+		when(context.getRequest().getParameter("sort")).thenReturn("balance");
+		
+		resource.doSearch(context);
+		
+		BillSearch search = capturedSearches.get(0);
+		assertEquals(0, new BigDecimal("25.50").compareTo(search.getMinBalance()));
+		assertEquals(BillSortOrder.HIGHEST_BALANCE_FIRST, search.getSortOrder());
+	}
+	
+	@Test
+	public void doSearch_shouldRejectKeysetPagingOfBillsSortedByBalance() {
+		RequestContext context = buildContext();
+		when(context.getRequest().getParameter("sort")).thenReturn("balance");
+		when(context.getRequest().getParameter("paging")).thenReturn("keyset");
+		
+		assertThrows(InvalidSearchException.class, () -> resource.doSearch(context));
+		assertTrue(capturedSearches.isEmpty());
+	}
+	
+	@Test
+	public void getUri_shouldPointToTheSummarizedBill() {
+		BillSummary summary = BillSummary.builder().uuid("bill-uuid").build();
+		
+		assertTrue(resource.getUri(summary).endsWith("/billing/bill/bill-uuid"));
+	}
+	
+	@Test
+	public void getByUniqueId_shouldNotBeSupported() {
+		assertThrows(ResourceDoesNotSupportOperationException.class, () -> resource.getByUniqueId("bill-uuid"));
+	}
+	
+	private RequestContext buildContext() {
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		RequestContext context = mock(RequestContext.class);
+		when(context.getRequest()).thenReturn(request);
+		when(context.getLimit()).thenReturn(10);
+		when(context.getStartIndex()).thenReturn(0);
+		return context;
+	}
+}